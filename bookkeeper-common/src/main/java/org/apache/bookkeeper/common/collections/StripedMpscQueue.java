@@ -0,0 +1,396 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.common.collections;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import org.jctools.queues.MpscArrayQueue;
+import org.jctools.util.UnsafeRefArrayAccess;
+
+/**
+ * Blocking queue for multiple producers and a single consumer, striped across lock-free ring buffers.
+ *
+ * <p>Each producer thread offers to the same stripe, picked from its thread id, so that the producers running on
+ * different cores mostly contend on different rings. When its stripe is full, a producer falls back to the other
+ * stripes, so that the queue only applies backpressure once all the stripes are full and the capacity is shared by
+ * all the producers. The rings are rounded up to a power of two, so the configured capacity is enforced by a counter of
+ * the items in the queue, which the producers increment before offering to a ring. The order of the items offered by a
+ * given thread is preserved as long as its stripe is not full, while the items of different threads are interleaved in
+ * no particular order.
+ *
+ * <p>The consumer drains the stripes in batches, starting from a different stripe at each drain. When the queue is
+ * empty, the consumer busy-spins for a while, then yields and finally parks until a producer unparks it. With busy
+ * wait enabled, the consumer never parks.
+ *
+ * <p>The iterator is weakly consistent, it goes through the stripes one after the other and may or may not see the
+ * items offered or polled during the iteration. It does not support removing items.
+ */
+public class StripedMpscQueue<T> extends AbstractQueue<T> implements BlockingQueue<T> {
+
+    private static final int MAX_STRIPES = 64;
+    private static final int SPIN_TRIES = 128;
+    private static final int YIELD_TRIES = 16;
+    // Backoff of the producers while the queue is full
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final Stripe<T>[] stripes;
+    private final int mask;
+    private final int capacity;
+    private final boolean busyWait;
+    // Items offered and not consumed yet, never above the capacity
+    private final AtomicInteger count = new AtomicInteger();
+
+    private volatile Thread parkedConsumer = null;
+    private int nextStripe = 0;
+
+    public StripedMpscQueue(int capacity, boolean busyWait) {
+        this(capacity, Runtime.getRuntime().availableProcessors(), busyWait);
+    }
+
+    @SuppressWarnings("unchecked")
+    public StripedMpscQueue(int capacity, int numStripes, boolean busyWait) {
+        int n = Integer.highestOneBit(Math.max(1, Math.min(numStripes, MAX_STRIPES)) * 2 - 1);
+        this.stripes = new Stripe[n];
+        // The capacity is split across the stripes, the producers use the other stripes when theirs is full
+        int stripeCapacity = Math.max(2, (capacity + n - 1) / n);
+        for (int i = 0; i < n; i++) {
+            stripes[i] = new Stripe<>(stripeCapacity);
+        }
+        this.mask = n - 1;
+        this.capacity = capacity;
+        this.busyWait = busyWait;
+    }
+
+    @Override
+    public boolean offer(T e) {
+        if (!reserve()) {
+            return false;
+        }
+
+        int home = (int) Thread.currentThread().getId() & mask;
+        boolean offered = stripes[home].offer(e);
+        for (int i = 1; !offered && i <= mask; i++) {
+            offered = stripes[(home + i) & mask].offer(e);
+        }
+        if (!offered) {
+            count.decrementAndGet();
+            return false;
+        }
+        // The offer published the item before reading the parked consumer, and the consumer publishes itself before
+        // checking whether the queue is empty, so at least one of them sees the other
+        Thread consumer = parkedConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+        return true;
+    }
+
+    private boolean reserve() {
+        while (true) {
+            int current = count.get();
+            if (current >= capacity) {
+                return false;
+            } else if (count.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void put(T e) throws InterruptedException {
+        int idleCounter = 0;
+        while (!offer(e)) {
+            idleCounter = producerIdle(idleCounter);
+        }
+    }
+
+    @Override
+    public boolean offer(T e, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int idleCounter = 0;
+        while (!offer(e)) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            idleCounter = producerIdle(idleCounter);
+        }
+        return true;
+    }
+
+    @Override
+    public T poll() {
+        int start = nextStripe;
+        for (int i = 0; i <= mask; i++) {
+            T item = stripes[(start + i) & mask].relaxedPoll();
+            if (item != null) {
+                nextStripe = (start + i + 1) & mask;
+                count.decrementAndGet();
+                return item;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public T peek() {
+        int start = nextStripe;
+        for (int i = 0; i <= mask; i++) {
+            T item = stripes[(start + i) & mask].relaxedPeek();
+            if (item != null) {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public T take() throws InterruptedException {
+        int idleCounter = 0;
+        while (true) {
+            T item = poll();
+            if (item != null) {
+                return item;
+            }
+            idleCounter = consumerIdle(idleCounter, Long.MAX_VALUE);
+        }
+    }
+
+    @Override
+    public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int idleCounter = 0;
+        while (true) {
+            T item = poll();
+            if (item != null) {
+                return item;
+            } else if (System.nanoTime() > deadline) {
+                return null;
+            }
+            idleCounter = consumerIdle(idleCounter, deadline);
+        }
+    }
+
+    /**
+     * Drain the available items, without waiting.
+     *
+     * @param consumer the consumer of the drained items
+     * @param maxItems the maximum number of items to drain
+     * @return the number of drained items
+     */
+    public int drain(Consumer<? super T> consumer, int maxItems) {
+        int start = nextStripe;
+        nextStripe = (start + 1) & mask;
+        int drained = 0;
+        for (int i = 0; i <= mask && drained < maxItems; i++) {
+            drained += stripes[(start + i) & mask].drain(consumer::accept, maxItems - drained);
+        }
+        if (drained > 0) {
+            count.addAndGet(-drained);
+        }
+        return drained;
+    }
+
+    /**
+     * Drain the available items, waiting for at least one item to be available.
+     *
+     * @param consumer the consumer of the drained items
+     * @param maxItems the maximum number of items to drain
+     * @return the number of drained items
+     */
+    public int take(Consumer<? super T> consumer, int maxItems) throws InterruptedException {
+        int idleCounter = 0;
+        while (true) {
+            int drained = drain(consumer, maxItems);
+            if (drained > 0) {
+                return drained;
+            }
+            idleCounter = consumerIdle(idleCounter, Long.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Drain the available items, waiting up to the given timeout for at least one item to be available.
+     *
+     * @param consumer the consumer of the drained items
+     * @param maxItems the maximum number of items to drain
+     * @return the number of drained items, 0 if the timeout expired
+     */
+    public int poll(Consumer<? super T> consumer, int maxItems, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int idleCounter = 0;
+        while (true) {
+            int drained = drain(consumer, maxItems);
+            if (drained > 0) {
+                return drained;
+            } else if (System.nanoTime() > deadline) {
+                return 0;
+            }
+            idleCounter = consumerIdle(idleCounter, deadline);
+        }
+    }
+
+    private int consumerIdle(int idleCounter, long deadline) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+
+        if (busyWait || idleCounter < SPIN_TRIES) {
+            BusyWait.onSpinWait();
+        } else if (idleCounter < SPIN_TRIES + YIELD_TRIES) {
+            Thread.yield();
+        } else {
+            parkedConsumer = Thread.currentThread();
+            try {
+                if (isEmpty()) {
+                    if (deadline == Long.MAX_VALUE) {
+                        LockSupport.park(this);
+                    } else {
+                        LockSupport.parkNanos(this, deadline - System.nanoTime());
+                    }
+                }
+            } finally {
+                parkedConsumer = null;
+            }
+            return idleCounter;
+        }
+        return idleCounter + 1;
+    }
+
+    private int producerIdle(int idleCounter) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+
+        if (busyWait || idleCounter < SPIN_TRIES) {
+            BusyWait.onSpinWait();
+        } else {
+            LockSupport.parkNanos(this, FULL_PARK_NANOS);
+        }
+        return idleCounter + 1;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (Stripe<T> stripe : stripes) {
+            if (!stripe.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Stripe<T> stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Math.max(0, capacity - count.get());
+    }
+
+    @Override
+    public int drainTo(Collection<? super T> c) {
+        return drain(c::add, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super T> c, int maxElements) {
+        return drain(c::add, maxElements);
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private int stripe = 0;
+            private Iterator<T> current = stripes[0].iterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext()) {
+                    if (++stripe > mask) {
+                        return false;
+                    }
+                    current = stripes[stripe].iterator();
+                }
+                return true;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+
+    /**
+     * A ring of the queue, with a weakly consistent iterator over the items between the consumer and the producer
+     * indexes, read when the iterator is created.
+     */
+    private static final class Stripe<T> extends MpscArrayQueue<T> {
+
+        Stripe(int capacity) {
+            super(capacity);
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            final long producerIndex = lvProducerIndex();
+            return new Iterator<T>() {
+                private long index = lvConsumerIndex();
+                private T next = null;
+
+                @Override
+                public boolean hasNext() {
+                    // Skip the slots that were consumed since the iteration started
+                    while (next == null && index < producerIndex) {
+                        next = UnsafeRefArrayAccess.lvElement(buffer, calcElementOffset(index++));
+                    }
+                    return next != null;
+                }
+
+                @Override
+                public T next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    T item = next;
+                    next = null;
+                    return item;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.common.collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Unit test for {@link StripedMpscQueue}.
+ */
+public class StripedMpscQueueTest {
+
+    @Test
+    public void testOfferPoll() {
+        StripedMpscQueue<Integer> queue = new StripedMpscQueue<>(64, 4, false);
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+        assertNull(queue.peek());
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(queue.offer(i));
+        }
+        assertEquals(10, queue.size());
+        assertEquals(54, queue.remainingCapacity());
+
+        // The items of a single producer are in order while its stripe is not full
+        assertEquals(0, queue.peek().intValue());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, queue.poll().intValue());
+        }
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testSingleProducerUsesTheWholeCapacity() throws Exception {
+        StripedMpscQueue<Integer> queue = new StripedMpscQueue<>(16, 4, false);
+
+        // The stripe of the producer fills up first, then the other stripes
+        for (int i = 0; i < 16; i++) {
+            assertTrue("Offer " + i + " should succeed", queue.offer(i));
+        }
+        assertFalse(queue.offer(16));
+        assertFalse(queue.offer(16, 10, TimeUnit.MILLISECONDS));
+        assertEquals(16, queue.size());
+        assertEquals(0, queue.remainingCapacity());
+
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(16, queue.drainTo(drained));
+        drained.sort(Integer::compareTo);
+        for (int i = 0; i < 16; i++) {
+            assertEquals(i, drained.get(i).intValue());
+        }
+        assertTrue(queue.offer(16));
+    }
+
+    @Test
+    public void testCapacityNotPowerOfTwo() throws Exception {
+        // The stripes of 1250 items are rounded up to 2048 items each
+        StripedMpscQueue<Integer> queue = new StripedMpscQueue<>(10000, 8, false);
+        for (int i = 0; i < 10000; i++) {
+            assertTrue("Offer " + i + " should succeed", queue.offer(i));
+        }
+        assertFalse(queue.offer(10000));
+        assertFalse(queue.offer(10000, 10, TimeUnit.MILLISECONDS));
+        assertEquals(10000, queue.size());
+        assertEquals(0, queue.remainingCapacity());
+
+        // Each consumed item frees a single slot
+        assertEquals(0, queue.poll().intValue());
+        assertEquals(1, queue.remainingCapacity());
+        assertTrue(queue.offer(10000));
+        assertFalse(queue.offer(10001));
+
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(100, queue.drain(drained::add, 100));
+        assertEquals(100, queue.remainingCapacity());
+        assertEquals(9900, queue.drainTo(drained));
+        assertEquals(10000, queue.remainingCapacity());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testPutBlocksUntilConsumed() throws Exception {
+        StripedMpscQueue<Integer> queue = new StripedMpscQueue<>(4, 1, false);
+        for (int i = 0; i < 4; i++) {
+            queue.put(i);
+        }
+
+        CountDownLatch done = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            try {
+                queue.put(4);
+                done.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        assertFalse(done.await(100, TimeUnit.MILLISECONDS));
+
+        assertEquals(0, queue.take().intValue());
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        producer.join();
+        assertEquals(4, queue.size());
+    }
+
+    @Test
+    public void testIterator() {
+        StripedMpscQueue<Integer> queue = new StripedMpscQueue<>(16, 4, false);
+        assertFalse(queue.iterator().hasNext());
+
+        // The items spill over several stripes
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            queue.offer(i);
+            expected.add(i);
+        }
+        Integer polled = queue.poll();
+        expected.remove(polled);
+
+        List<Integer> items = new ArrayList<>();
+        queue.iterator().forEachRemaining(items::add);
+        items.sort(Integer::compareTo);
+        assertEquals(expected, items);
+
+        // The methods inherited from the collection go through the iterator
+        assertTrue(queue.contains(expected.get(0)));
+        assertFalse(queue.contains(polled));
+        Object[] array = queue.toArray();
+        Arrays.sort(array);
+        assertArrayEquals(expected.toArray(), array);
+        assertEquals(9, queue.toArray(new Integer[0]).length);
+        assertTrue(queue.toString().contains(expected.get(0).toString()));
+        assertEquals(9, queue.size());
+    }
+
+    @Test
+    public void testIteratorIsWeaklyConsistent() {
+        StripedMpscQueue<Integer> queue = new StripedMpscQueue<>(16, 1, false);
+        for (int i = 0; i < 4; i++) {
+            queue.offer(i);
+        }
+
+        Iterator<Integer> iterator = queue.iterator();
+        assertEquals(0, iterator.next().intValue());
+
+        // The items consumed during the iteration are skipped, and the items offered after it started are not seen
+        queue.poll();
+        queue.poll();
+        queue.offer(4);
+        List<Integer> items = new ArrayList<>();
+        iterator.forEachRemaining(items::add);
+        assertEquals(Arrays.asList(2, 3), items);
+    }
+
+    @Test
+    public void testIteratorRemoveNotSupported() {
+        StripedMpscQueue<Integer> queue = new StripedMpscQueue<>(16, 4, false);
+        queue.offer(1);
+        Iterator<Integer> iterator = queue.iterator();
+        iterator.next();
+        try {
+            iterator.remove();
+            fail("Removing through the iterator is not supported");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    public void testDrain() throws Exception {
+        StripedMpscQueue<Integer> queue = new StripedMpscQueue<>(64, 4, false);
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(0, queue.poll(drained::add, 10, 10, TimeUnit.MILLISECONDS));
+
+        for (int i = 0; i < 20; i++) {
+            queue.offer(i);
+        }
+        assertEquals(10, queue.drain(drained::add, 10));
+        assertEquals(10, queue.take(drained::add, 100));
+        assertEquals(20, drained.size());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test(timeout = 60000)
+    public void testMultipleProducers() throws Exception {
+        int numProducers = 8;
+        int itemsPerProducer = 100000;
+        // Small enough for the producers to hit the backpressure
+        StripedMpscQueue<long[]> queue = new StripedMpscQueue<>(128, 4, false);
+
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < numProducers; p++) {
+            final int producer = p;
+            Thread thread = new Thread(() -> {
+                try {
+                    for (int i = 0; i < itemsPerProducer; i++) {
+                        queue.put(new long[] { producer, i });
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            producers.add(thread);
+            thread.start();
+        }
+
+        long[] received = new long[numProducers];
+        long[] sums = new long[numProducers];
+        int total = 0;
+        while (total < numProducers * itemsPerProducer) {
+            total += queue.take(item -> {
+                received[(int) item[0]]++;
+                sums[(int) item[0]] += item[1];
+            }, 1000);
+        }
+        for (Thread thread : producers) {
+            thread.join();
+        }
+
+        // Every item was received exactly once
+        long expectedSum = (long) itemsPerProducer * (itemsPerProducer - 1) / 2;
+        for (int p = 0; p < numProducers; p++) {
+            assertEquals(itemsPerProducer, received[p]);
+            assertEquals(expectedSum, sums[p]);
+        }
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+    }
+}
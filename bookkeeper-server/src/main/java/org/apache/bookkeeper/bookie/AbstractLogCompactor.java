@@ -23,7 +23,11 @@ package org.apache.bookkeeper.bookie;
 
 import com.google.common.util.concurrent.RateLimiter;
 
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
 import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.util.MathUtils;
 
 /**
  * Abstract entry log compactor used for compaction.
@@ -40,8 +44,30 @@ public abstract class AbstractLogCompactor {
     protected final LogRemovalListener logRemovalListener;
 
     public AbstractLogCompactor(ServerConfiguration conf, LogRemovalListener logRemovalListener) {
+        this(conf, logRemovalListener, () -> 0L);
+    }
+
+    /**
+     * Create a compactor throttled against the latency of the reads of the clients.
+     *
+     * @param readLatencyNanos supplies the current latency of the reads of the clients, in nanoseconds
+     */
+    public AbstractLogCompactor(ServerConfiguration conf, LogRemovalListener logRemovalListener,
+                                LongSupplier readLatencyNanos) {
+        this(conf, logRemovalListener, readLatencyNanos, 1.0);
+    }
+
+    /**
+     * Create a compactor throttled against the latency of the reads of the clients, limited to a share of the
+     * configured compaction rate.
+     *
+     * @param readLatencyNanos supplies the current latency of the reads of the clients, in nanoseconds
+     * @param rateShare the share of the configured compaction rate given to this compactor, between 0 and 1
+     */
+    public AbstractLogCompactor(ServerConfiguration conf, LogRemovalListener logRemovalListener,
+                                LongSupplier readLatencyNanos, double rateShare) {
         this.conf = conf;
-        this.throttler = new Throttler(conf);
+        this.throttler = new Throttler(conf, readLatencyNanos, rateShare);
         this.logRemovalListener = logRemovalListener;
     }
 
@@ -57,20 +83,80 @@ public abstract class AbstractLogCompactor {
      */
     public void cleanUpAndRecover() {}
 
+    /**
+     * Limits the rate of compaction to the configured rate.
+     *
+     * <p>With a read latency threshold, the rate is also adjusted to the latency of the reads of the clients: it is
+     * halved while the latency is above the threshold, down to a fraction of the configured rate, and increased back
+     * to the configured rate step by step once the latency goes below the threshold.
+     */
     static class Throttler {
+        // Interval between two adjustments of the rate to the read latency
+        private static final long ADJUST_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+        // Lowest rate while backing off, as a fraction of the configured rate
+        private static final double MIN_RATE_RATIO = 1.0 / 16;
+        // Increase of the rate at each adjustment while the latency is low, as a fraction of the configured rate
+        private static final double RATE_INCREASE_RATIO = 1.0 / 8;
+
         private final RateLimiter rateLimiter;
         private final boolean isThrottleByBytes;
+        private final double maxRate;
+        private final long readLatencyThresholdNanos;
+        private final LongSupplier readLatencyNanos;
+        private long nextAdjustNanos;
 
         Throttler(ServerConfiguration conf) {
+            this(conf, () -> 0L);
+        }
+
+        Throttler(ServerConfiguration conf, LongSupplier readLatencyNanos) {
+            this(conf, readLatencyNanos, 1.0);
+        }
+
+        Throttler(ServerConfiguration conf, LongSupplier readLatencyNanos, double rateShare) {
             this.isThrottleByBytes  = conf.getIsThrottleByBytes();
-            this.rateLimiter = RateLimiter.create(this.isThrottleByBytes
+            this.maxRate = rateShare * (this.isThrottleByBytes
                 ? conf.getCompactionRateByBytes() : conf.getCompactionRateByEntries());
+            this.rateLimiter = RateLimiter.create(maxRate);
+            this.readLatencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(
+                conf.getCompactionReadLatencyThresholdMs());
+            this.readLatencyNanos = readLatencyNanos;
+            this.nextAdjustNanos = MathUtils.nowInNano();
         }
 
         // acquire. if bybytes: bytes of this entry; if byentries: 1.
         void acquire(int permits) {
+            if (readLatencyThresholdNanos > 0) {
+                adjustRate();
+            }
             rateLimiter.acquire(this.isThrottleByBytes ? permits : 1);
         }
+
+        private void adjustRate() {
+            long now = MathUtils.nowInNano();
+            if (now - nextAdjustNanos < 0) {
+                return;
+            }
+            nextAdjustNanos = now + ADJUST_INTERVAL_NANOS;
+
+            double rate = rateLimiter.getRate();
+            double newRate;
+            if (readLatencyNanos.getAsLong() > readLatencyThresholdNanos) {
+                newRate = Math.max(maxRate * MIN_RATE_RATIO, rate / 2);
+            } else {
+                newRate = Math.min(maxRate, rate + maxRate * RATE_INCREASE_RATIO);
+            }
+            if (newRate != rate) {
+                rateLimiter.setRate(newRate);
+            }
+        }
+
+        /**
+         * @return the current rate of compaction, in bytes or entries per second
+         */
+        double getRate() {
+            return rateLimiter.getRate();
+        }
     }
 
 }
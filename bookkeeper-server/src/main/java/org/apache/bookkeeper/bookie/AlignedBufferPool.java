@@ -0,0 +1,103 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.ReferenceCountUtil;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A pool of off-heap buffers whose memory address and capacity are aligned to a block size, as required by direct
+ * I/O.
+ *
+ * <p>The pool keeps a bounded number of buffers for reuse, so that rolling to a new file does not allocate a new
+ * buffer. Buffers that are recycled when the pool is full, or after it is closed, are released.
+ */
+class AlignedBufferPool implements Closeable {
+
+    private final ByteBufAllocator allocator;
+    private final int alignment;
+    private final int bufferSize;
+    private final BlockingQueue<ByteBuf> buffers;
+    private volatile boolean closed = false;
+
+    /**
+     * @param alignment the alignment of the memory addresses of the buffers
+     * @param bufferSize the capacity of the buffers, rounded up to a multiple of the alignment and to at least two
+     *                   blocks
+     * @param maxPooledBuffers the maximum number of buffers kept for reuse
+     */
+    AlignedBufferPool(ByteBufAllocator allocator, int alignment, int bufferSize, int maxPooledBuffers) {
+        this.allocator = allocator;
+        this.alignment = alignment;
+        int blocks = Math.max(2, (bufferSize + alignment - 1) / alignment);
+        this.bufferSize = blocks * alignment;
+        this.buffers = new ArrayBlockingQueue<>(maxPooledBuffers);
+    }
+
+    int getAlignment() {
+        return alignment;
+    }
+
+    /**
+     * Get an empty buffer from the pool, allocating one if none is available.
+     */
+    ByteBuf acquire() throws IOException {
+        ByteBuf buffer = buffers.poll();
+        if (buffer != null) {
+            return buffer;
+        }
+
+        // Over-allocate and slice at the first aligned address, releasing the slice releases the whole buffer
+        ByteBuf buf = allocator.directBuffer(bufferSize + alignment, bufferSize + alignment);
+        if (!buf.hasMemoryAddress()) {
+            ReferenceCountUtil.safeRelease(buf);
+            throw new IOException("Aligned buffers require direct buffers with a memory address");
+        }
+        int offset = (int) ((alignment - buf.memoryAddress() % alignment) % alignment);
+        return buf.slice(offset, bufferSize).clear();
+    }
+
+    /**
+     * Return a buffer obtained from {@link #acquire()} to the pool.
+     */
+    void recycle(ByteBuf buffer) {
+        buffer.clear();
+        if (closed || !buffers.offer(buffer)) {
+            ReferenceCountUtil.safeRelease(buffer);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        ByteBuf buffer;
+        while ((buffer = buffers.poll()) != null) {
+            ReferenceCountUtil.safeRelease(buffer);
+        }
+    }
+}
@@ -46,6 +46,8 @@ public interface BookKeeperServerStats {
     // Stats
     String ADD_ENTRY_REQUEST = "ADD_ENTRY_REQUEST";
     String ADD_ENTRY = "ADD_ENTRY";
+    String BATCH_ADD_ENTRY_REQUEST = "BATCH_ADD_ENTRY_REQUEST";
+    String BATCH_ADD_ENTRY = "BATCH_ADD_ENTRY";
     String FORCE_LEDGER_REQUEST = "FORCE_LEDGER_REQUEST";
     String FORCE_LEDGER = "FORCE_LEDGER";
     String READ_ENTRY_REQUEST = "READ_ENTRY_REQUEST";
@@ -58,6 +60,8 @@ public interface BookKeeperServerStats {
     String READ_ENTRY_LONG_POLL_PRE_WAIT = "READ_ENTRY_LONG_POLL_PRE_WAIT";
     String READ_ENTRY_LONG_POLL_WAIT = "READ_ENTRY_LONG_POLL_WAIT";
     String READ_ENTRY_LONG_POLL_READ = "READ_ENTRY_LONG_POLL_READ";
+    String BATCH_READ_ENTRY_REQUEST = "BATCH_READ_ENTRY_REQUEST";
+    String BATCH_READ_ENTRY = "BATCH_READ_ENTRY";
     String WRITE_LAC_REQUEST = "WRITE_LAC_REQUEST";
     String WRITE_LAC = "WRITE_LAC";
     String READ_LAC_REQUEST = "READ_LAC_REQUEST";
@@ -109,6 +113,7 @@ public interface BookKeeperServerStats {
     String JOURNAL_QUEUE_LATENCY = "JOURNAL_QUEUE_LATENCY";
     String JOURNAL_PROCESS_TIME_LATENCY = "JOURNAL_PROCESS_TIME_LATENCY";
     String JOURNAL_CREATION_LATENCY = "JOURNAL_CREATION_LATENCY";
+    String JOURNAL_GROUP_COMMIT_WAIT = "JOURNAL_GROUP_COMMIT_WAIT";
 
     // Ledger Storage Stats
     String STORAGE_GET_OFFSET = "STORAGE_GET_OFFSET";
@@ -155,6 +160,8 @@ public interface BookKeeperServerStats {
     String JOURNAL_NUM_FLUSH_EMPTY_QUEUE = "JOURNAL_NUM_FLUSH_EMPTY_QUEUE";
     String JOURNAL_NUM_FLUSH_MAX_OUTSTANDING_BYTES = "JOURNAL_NUM_FLUSH_MAX_OUTSTANDING_BYTES";
     String JOURNAL_NUM_FLUSH_MAX_WAIT = "JOURNAL_NUM_FLUSH_MAX_WAIT";
+    String JOURNAL_NUM_GROUP_COMMIT_NO_WAIT = "JOURNAL_NUM_GROUP_COMMIT_NO_WAIT";
+    String JOURNAL_NUM_GROUP_COMMIT_OVER_TARGET = "JOURNAL_NUM_GROUP_COMMIT_OVER_TARGET";
     String SKIP_LIST_FLUSH_BYTES = "SKIP_LIST_FLUSH_BYTES";
     String SKIP_LIST_THROTTLING = "SKIP_LIST_THROTTLING";
     String SKIP_LIST_THROTTLING_LATENCY = "SKIP_LIST_THROTTLING_LATENCY";
@@ -185,4 +192,16 @@ public interface BookKeeperServerStats {
     String NUM_OF_WRITE_LEDGERS_REMOVED_CACHE_MAXSIZE = "NUM_OF_WRITE_LEDGERS_REMOVED_CACHE_MAXSIZE";
     String NUM_LEDGERS_HAVING_MULTIPLE_ENTRYLOGS = "NUM_LEDGERS_HAVING_MULTIPLE_ENTRYLOGS";
     String ENTRYLOGS_PER_LEDGER = "ENTRYLOGS_PER_LEDGER";
+
+    // EntryLogChannelCache Stats
+    String READ_CHANNEL_CACHE_HITS = "READ_CHANNEL_CACHE_HITS";
+    String READ_CHANNEL_CACHE_MISSES = "READ_CHANNEL_CACHE_MISSES";
+    String READ_CHANNEL_CACHE_EVICTIONS = "READ_CHANNEL_CACHE_EVICTIONS";
+    String READ_CHANNELS_OPEN = "READ_CHANNELS_OPEN";
+
+    // Entry log cold tier Stats
+    String ENTRY_LOG_PRIMARY_TIER_READS = "ENTRY_LOG_PRIMARY_TIER_READS";
+    String ENTRY_LOG_COLD_TIER_READS = "ENTRY_LOG_COLD_TIER_READS";
+    String ENTRY_LOGS_MOVED_TO_COLD_TIER = "ENTRY_LOGS_MOVED_TO_COLD_TIER";
+    String ENTRY_LOG_BYTES_MOVED_TO_COLD_TIER = "ENTRY_LOG_BYTES_MOVED_TO_COLD_TIER";
 }
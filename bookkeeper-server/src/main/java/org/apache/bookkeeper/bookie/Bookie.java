@@ -1445,6 +1445,37 @@ public class Bookie extends BookieCriticalThread {
         }
     }
 
+    /**
+     * Read a sequence of contiguous entries of a ledger, see {@link LedgerStorage#getEntries}.
+     */
+    public List<ByteBuf> readEntries(long ledgerId, long startEntryId, int maxCount, long maxSize)
+            throws IOException, NoLedgerException {
+        long requestNanos = MathUtils.nowInNano();
+        boolean success = false;
+        long size = 0;
+        try {
+            LedgerDescriptor handle = handles.getReadOnlyHandle(ledgerId);
+            if (LOG.isTraceEnabled()) {
+                LOG.trace("Reading {} entries from {}@{}", maxCount, startEntryId, ledgerId);
+            }
+            List<ByteBuf> entries = handle.readEntries(startEntryId, maxCount, maxSize);
+            for (ByteBuf entry : entries) {
+                size += entry.readableBytes();
+            }
+            bookieStats.getReadBytes().add(size);
+            success = true;
+            return entries;
+        } finally {
+            long elapsedNanos = MathUtils.elapsedNanos(requestNanos);
+            if (success) {
+                bookieStats.getReadEntryStats().registerSuccessfulEvent(elapsedNanos, TimeUnit.NANOSECONDS);
+                bookieStats.getReadBytesStats().registerSuccessfulValue(size);
+            } else {
+                bookieStats.getReadEntryStats().registerFailedEvent(elapsedNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
     public long readLastAddConfirmed(long ledgerId) throws IOException {
         LedgerDescriptor handle = handles.getReadOnlyHandle(ledgerId);
         return handle.getLastAddConfirmed();
@@ -29,8 +29,14 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.bookkeeper.util.IoUring;
+
 /**
  * Provides a buffering layer in front of a FileChannel.
  */
@@ -40,7 +46,7 @@ public class BufferedChannel extends BufferedReadChannel implements Closeable {
 	// The position of the file channel's write pointer.
 	protected AtomicLong writeBufferStartPosition = new AtomicLong(0);
 	// The buffer used to write operations.
-	protected final ByteBuf writeBuffer;
+	protected ByteBuf writeBuffer;
 	// The absolute position of the next write operation.
 	protected volatile long position;
 
@@ -65,6 +71,13 @@ public class BufferedChannel extends BufferedReadChannel implements Closeable {
 
 	private boolean closed = false;
 
+	// Maximum number of flushed write buffers that are being written through the io_uring at the same time
+	private static final int MAX_IN_FLIGHT_WRITES = 4;
+	// The writes submitted to the io_uring that are not known to be complete, in the order of their positions, and
+	// the buffers of the completed ones that can be reused for the next flushes
+	private final ArrayDeque<InFlightWrite> inFlightWrites = new ArrayDeque<>();
+	private final ArrayDeque<ByteBuf> spareWriteBuffers = new ArrayDeque<>();
+
 	// make constructor to be public for unit test
 	public BufferedChannel(ByteBufAllocator allocator, FileChannel fc, int capacity) throws IOException {
 		// Use the same capacity for read and write buffers.
@@ -79,11 +92,33 @@ public class BufferedChannel extends BufferedReadChannel implements Closeable {
 
 	public BufferedChannel(ByteBufAllocator allocator, FileChannel fc, int writeCapacity, int readCapacity,
 			long unpersistedBytesBound) throws IOException {
-		super(fc, readCapacity);
-		this.writeCapacity = writeCapacity;
+		this(allocator, fc, writeCapacity, readCapacity, unpersistedBytesBound, null, -1);
+	}
+
+	/**
+	 * Create a buffered channel whose flushes and force writes go through the given io_uring, using the file
+	 * descriptor of fc.
+	 */
+	public BufferedChannel(ByteBufAllocator allocator, FileChannel fc, int writeCapacity, int readCapacity,
+			long unpersistedBytesBound, IoUring ioUring, int fd) throws IOException {
+		this(fc, allocator.directBuffer(writeCapacity), readCapacity, unpersistedBytesBound, ioUring, fd);
+	}
+
+	/**
+	 * Create a buffered channel that uses the given buffer as write buffer. The buffer is released when the channel
+	 * is closed.
+	 */
+	protected BufferedChannel(FileChannel fc, ByteBuf writeBuffer, int readCapacity, long unpersistedBytesBound,
+			IoUring ioUring, int fd) throws IOException {
+		super(fc, readCapacity, ioUring, fd);
+		this.writeCapacity = writeBuffer.capacity();
 		this.position = fc.position();
 		this.writeBufferStartPosition.set(position);
-		this.writeBuffer = allocator.directBuffer(writeCapacity);
+		this.writeBuffer = writeBuffer;
+		if (this.ioUring != null && !writeBuffer.hasMemoryAddress()) {
+			ReferenceCountUtil.safeRelease(writeBuffer);
+			throw new IOException("io_uring requires a write buffer with a memory address");
+		}
 		this.unpersistedBytes = new AtomicLong(0);
 		this.unpersistedBytesBound = unpersistedBytesBound;
 		this.doRegularFlushes = unpersistedBytesBound > 0;
@@ -94,6 +129,14 @@ public class BufferedChannel extends BufferedReadChannel implements Closeable {
 		if (closed) {
 			return;
 		}
+		// The kernel may still be reading from the buffers in flight
+		for (InFlightWrite write : inFlightWrites) {
+			write.pending.handle((rc, cause) -> null).join();
+			ReferenceCountUtil.safeRelease(write.buffer);
+		}
+		inFlightWrites.clear();
+		spareWriteBuffers.forEach(ReferenceCountUtil::safeRelease);
+		spareWriteBuffers.clear();
 		ReferenceCountUtil.safeRelease(writeBuffer);
 		fileChannel.close();
 		closed = true;
@@ -138,6 +181,41 @@ public class BufferedChannel extends BufferedReadChannel implements Closeable {
 		}
 	}
 
+	/**
+	 * Append a range of another file to the file, with {@link FileChannel#transferTo}, so that the data is moved by
+	 * the kernel without being copied through the memory of the process. The write buffer is flushed first.
+	 *
+	 * @param src the file to read from
+	 * @param srcPosition the position of the range in the source file
+	 * @param count the length of the range
+	 * @throws IOException if the transfer fails
+	 */
+	public void transferFrom(FileChannel src, long srcPosition, long count) throws IOException {
+		boolean shouldForceWrite = false;
+		synchronized (this) {
+			flush();
+			FileChannel fc = validateAndGetFileChannel();
+			long transferred = 0;
+			while (transferred < count) {
+				long n = src.transferTo(srcPosition + transferred, count - transferred, fc);
+				if (n <= 0) {
+					throw new IOException("Short transfer at " + (srcPosition + transferred));
+				}
+				transferred += n;
+			}
+			writeBufferStartPosition.set(fc.position());
+			position += count;
+			if (doRegularFlushes) {
+				if (unpersistedBytes.addAndGet(count) >= unpersistedBytesBound) {
+					shouldForceWrite = true;
+				}
+			}
+		}
+		if (shouldForceWrite) {
+			forceWrite(false);
+		}
+	}
+
 	/**
 	 * Get the position where the next write operation will begin writing from.
 	 * @return
@@ -190,6 +268,11 @@ public class BufferedChannel extends BufferedReadChannel implements Closeable {
 	 * @throws IOException if the write fails.
 	 */
 	public synchronized void flush() throws IOException {
+		if (ioUring != null) {
+			submitWriteBuffer();
+			return;
+		}
+
 		ByteBuffer toWrite = writeBuffer.internalNioBuffer(0, writeBuffer.writerIndex());
 		do {
 			fileChannel.write(toWrite);
@@ -198,6 +281,110 @@ public class BufferedChannel extends BufferedReadChannel implements Closeable {
 		writeBufferStartPosition.set(fileChannel.position());
 	}
 
+	/**
+	 * Submit the content of the write buffer to the io_uring and continue with another buffer, without waiting for
+	 * the write. The position of the file channel is moved past the submitted data, since it is used to track the
+	 * flushed data.
+	 */
+	private void submitWriteBuffer() throws IOException {
+		FileChannel fc = validateAndGetFileChannel();
+		int length = writeBuffer.writerIndex();
+		if (length == 0) {
+			return;
+		}
+
+		retireCompletedWrites();
+		while (inFlightWrites.size() >= MAX_IN_FLIGHT_WRITES) {
+			inFlightWrites.peekFirst().await();
+			retireCompletedWrites();
+		}
+
+		long pos = writeBufferStartPosition.get();
+		inFlightWrites.addLast(new InFlightWrite(writeBuffer, pos, length));
+		ByteBuf next = spareWriteBuffers.pollFirst();
+		writeBuffer = next != null ? next : writeBuffer.alloc().directBuffer(writeCapacity, writeCapacity);
+		fc.position(pos + length);
+		writeBufferStartPosition.set(pos + length);
+	}
+
+	/**
+	 * Wait for the data flushed so far to be written to the file. The data is only guaranteed to be in the file
+	 * system page cache after this method returns, when the channel writes through an io_uring.
+	 *
+	 * @throws IOException if one of the writes failed
+	 */
+	public void awaitFlushedWrites() throws IOException {
+		if (ioUring == null) {
+			return;
+		}
+
+		List<InFlightWrite> writes;
+		synchronized (this) {
+			if (inFlightWrites.isEmpty()) {
+				return;
+			}
+			writes = new ArrayList<>(inFlightWrites);
+		}
+		// Wait outside of the channel lock, so that more data can be written and flushed in the meantime
+		for (InFlightWrite write : writes) {
+			write.await();
+		}
+		synchronized (this) {
+			retireCompletedWrites();
+		}
+	}
+
+	private void retireCompletedWrites() {
+		while (!inFlightWrites.isEmpty() && inFlightWrites.peekFirst().isComplete()) {
+			ByteBuf buffer = inFlightWrites.pollFirst().buffer;
+			if (spareWriteBuffers.size() < MAX_IN_FLIGHT_WRITES) {
+				buffer.clear();
+				spareWriteBuffers.addLast(buffer);
+			} else {
+				ReferenceCountUtil.safeRelease(buffer);
+			}
+		}
+	}
+
+	/**
+	 * A write buffer being written through the io_uring. Short writes are resumed by the thread that waits for the
+	 * write, not by the completion thread of the ring.
+	 */
+	private final class InFlightWrite {
+		final ByteBuf buffer;
+		private long position;
+		private int offset;
+		private int remaining;
+		private CompletableFuture<Integer> pending;
+
+		InFlightWrite(ByteBuf buffer, long position, int length) {
+			this.buffer = buffer;
+			this.position = position;
+			this.remaining = length;
+			this.pending = ioUring.write(fd, buffer.memoryAddress(), length, position);
+		}
+
+		synchronized void await() throws IOException {
+			while (remaining > 0) {
+				int rc = IoUring.await(pending);
+				if (rc <= 0) {
+					throw new IOException("Short write at position " + position);
+				}
+				position += rc;
+				offset += rc;
+				remaining -= rc;
+				if (remaining > 0) {
+					pending = ioUring.write(fd, buffer.memoryAddress() + offset, remaining, position);
+				}
+			}
+		}
+
+		synchronized boolean isComplete() {
+			return remaining == 0 || (pending.isDone() && !pending.isCompletedExceptionally()
+					&& pending.join() == remaining);
+		}
+	}
+
 	/*
 	 * force a sync operation so that data is persisted to the disk.
 	 */
@@ -228,13 +415,27 @@ public class BufferedChannel extends BufferedReadChannel implements Closeable {
 			}
 		}
 
-		fileChannel.force(forceMetadata);
+		if (ioUring != null) {
+			// The fsync only covers the writes that completed before it is submitted
+			awaitFlushedWrites();
+			validateAndGetFileChannel();
+			IoUring.await(ioUring.fsync(fd, forceMetadata));
+		} else {
+			fileChannel.force(forceMetadata);
+		}
 		return positionForceWrite;
 	}
 
 	@Override
 	public synchronized int read(ByteBuf dest, long pos, int length) throws IOException {
 		long prevPos = pos;
+		if (!inFlightWrites.isEmpty() && pos < writeBufferStartPosition.get()) {
+			// The flushed data might not be in the file yet
+			for (InFlightWrite write : inFlightWrites) {
+				write.await();
+			}
+			retireCompletedWrites();
+		}
 		
 		while (length > 0) {
 			// check if it is in the write buffer
@@ -27,6 +27,10 @@ import io.netty.buffer.Unpooled;
 
 import java.io.IOException;
 import java.nio.channels.FileChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.apache.bookkeeper.util.IoUring;
 
 /**
  * A Buffered channel without a write buffer. Only reads are buffered.
@@ -42,13 +46,23 @@ public class BufferedReadChannel extends BufferedChannelBase  {
     // The starting position of the data currently in the read buffer.
     protected long readBufferStartPosition = Long.MIN_VALUE;
 
+    // When set, the asynchronous reads are submitted to this ring, using the file descriptor of the channel
+    protected final IoUring ioUring;
+    protected final int fd;
+
     long invocationCount = 0;
     long cacheHitCount = 0;
 
     public BufferedReadChannel(FileChannel fileChannel, int readCapacity) {
+        this(fileChannel, readCapacity, null, -1);
+    }
+
+    public BufferedReadChannel(FileChannel fileChannel, int readCapacity, IoUring ioUring, int fd) {
         super(fileChannel);
         this.readCapacity = readCapacity;
-        this.readBuffer = Unpooled.buffer(readCapacity);
+        this.readBuffer = readCapacity > 0 ? Unpooled.buffer(readCapacity) : Unpooled.EMPTY_BUFFER;
+        this.ioUring = fd >= 0 ? ioUring : null;
+        this.fd = fd;
     }
 
     /**
@@ -65,7 +79,39 @@ public class BufferedReadChannel extends BufferedChannelBase  {
         return read(dest, pos, dest.writableBytes());
     }
 
-    public synchronized int read(ByteBuf dest, long pos, int length) throws IOException {
+    public int read(ByteBuf dest, long pos, int length) throws IOException {
+        if (readCapacity == 0) {
+            return readUnbuffered(dest, pos, length);
+        }
+        synchronized (this) {
+            return readBuffered(dest, pos, length);
+        }
+    }
+
+    /**
+     * Without a read buffer, the reads are positional reads of the file channel, which keep no state and can be
+     * issued concurrently by several threads.
+     */
+    private int readUnbuffered(ByteBuf dest, long pos, int length) throws IOException {
+        long eof = validateAndGetFileChannel().size();
+        // return -1 if the given position is greater than or equal to the file's current size.
+        if (pos >= eof) {
+            return -1;
+        }
+        long currentPosition = pos;
+        length = (int) Math.min(length, eof - pos);
+        while (length > 0) {
+            int readBytes = dest.writeBytes(validateAndGetFileChannel(), currentPosition, length);
+            if (readBytes <= 0) {
+                break;
+            }
+            currentPosition += readBytes;
+            length -= readBytes;
+        }
+        return (int) (currentPosition - pos);
+    }
+
+    private int readBuffered(ByteBuf dest, long pos, int length) throws IOException {
         invocationCount++;
         long currentPosition = pos;
         long eof = validateAndGetFileChannel().size();
@@ -86,6 +132,16 @@ public class BufferedReadChannel extends BufferedChannelBase  {
             } else if (currentPosition >= eof) {
                 // here we reached eof.
                 break;
+            } else if (length >= readCapacity) {
+                // Reads larger than the buffer go straight into the destination, there's no point in copying them
+                // through the read buffer
+                int readBytes = dest.writeBytes(validateAndGetFileChannel(), currentPosition,
+                        (int) Math.min(length, eof - currentPosition));
+                if (readBytes <= 0) {
+                    throw new IOException("Reading from filechannel returned a non-positive value. Short read.");
+                }
+                currentPosition += readBytes;
+                length -= readBytes;
             } else {
                 // We don't have it in the buffer, so put necessary data in the buffer
                 readBufferStartPosition = currentPosition;
@@ -100,6 +156,43 @@ public class BufferedReadChannel extends BufferedChannelBase  {
         return (int) (currentPosition - pos);
     }
 
+    /**
+     * Read length bytes at position pos into dest, without going through the read buffer.
+     *
+     * <p>When the channel has an io_uring, the read is submitted to the ring and the caller can issue more reads
+     * before waiting for this one. Otherwise the read is done synchronously.
+     *
+     * @return a future completed with the number of bytes read, or -1 if pos is past the end of the file
+     */
+    public CompletableFuture<Integer> readAsync(ByteBuf dest, long pos, int length) {
+        if (ioUring == null || !dest.hasMemoryAddress()) {
+            CompletableFuture<Integer> future = new CompletableFuture<>();
+            try {
+                future.complete(read(dest, pos, length));
+            } catch (IOException e) {
+                future.completeExceptionally(e);
+            }
+            return future;
+        }
+
+        if (!fileChannel.isOpen()) {
+            CompletableFuture<Integer> future = new CompletableFuture<>();
+            future.completeExceptionally(new BufferedChannelClosedException());
+            return future;
+        }
+
+        dest.ensureWritable(length);
+        int writerIndex = dest.writerIndex();
+        return ioUring.read(fd, dest.memoryAddress() + writerIndex, length, pos).thenApply(readBytes -> {
+            // If the channel was closed while the read was in flight, its descriptor might have been reused
+            if (!fileChannel.isOpen()) {
+                throw new CompletionException(new BufferedChannelClosedException());
+            }
+            dest.writerIndex(writerIndex + readBytes);
+            return readBytes == 0 && length > 0 ? -1 : readBytes;
+        });
+    }
+
     public synchronized void clear() {
         readBuffer.clear();
     }
@@ -0,0 +1,111 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import lombok.Getter;
+
+/**
+ * The entry logs picked by a compaction run, in the order they are compacted.
+ *
+ * <p>Compacting an entry log reads the whole log and rewrites its live entries, so the candidates are ranked by the
+ * space they reclaim per byte read and rewritten. With a limit on the bytes rewritten by a run, the best candidates
+ * are picked until the limit is reached.
+ */
+@Getter
+public class CompactionPlan {
+
+    /**
+     * An entry log that may be compacted.
+     */
+    @Getter
+    public static class Candidate {
+        private final long entryLogId;
+        private final long totalSize;
+        private final long remainingSize;
+
+        public Candidate(long entryLogId, long totalSize, long remainingSize) {
+            this.entryLogId = entryLogId;
+            this.totalSize = totalSize;
+            this.remainingSize = remainingSize;
+        }
+
+        public long getReclaimableSize() {
+            return totalSize - remainingSize;
+        }
+
+        /**
+         * @return the space reclaimed per byte read and rewritten, between 0 and 1
+         */
+        public double getScore() {
+            return totalSize == 0 ? 0 : (double) getReclaimableSize() / (totalSize + remainingSize);
+        }
+    }
+
+    private static final Comparator<Candidate> BEST_FIRST = Comparator
+        .comparingDouble(Candidate::getScore).reversed()
+        .thenComparing(Comparator.comparingLong(Candidate::getReclaimableSize).reversed());
+
+    private final double threshold;
+    private final long maxBytes;
+    private final long reclaimableSize;
+    private final long rewriteSize;
+    private final List<Candidate> candidates;
+
+    private CompactionPlan(double threshold, long maxBytes, List<Candidate> candidates) {
+        this.threshold = threshold;
+        this.maxBytes = maxBytes;
+        this.reclaimableSize = candidates.stream().mapToLong(Candidate::getReclaimableSize).sum();
+        this.rewriteSize = candidates.stream().mapToLong(Candidate::getRemainingSize).sum();
+        this.candidates = Collections.unmodifiableList(candidates);
+    }
+
+    /**
+     * Pick the entry logs to compact.
+     *
+     * @param threshold the usage below which an entry log is compacted
+     * @param maxBytes the maximum number of bytes to rewrite, 0 for no limit
+     * @param candidates the entry logs whose usage is below the threshold
+     * @return the compaction plan
+     */
+    public static CompactionPlan create(double threshold, long maxBytes, List<Candidate> candidates) {
+        candidates.sort(BEST_FIRST);
+        if (maxBytes <= 0) {
+            return new CompactionPlan(threshold, maxBytes, candidates);
+        }
+
+        List<Candidate> picked = new ArrayList<>();
+        long rewriteSize = 0;
+        for (Candidate candidate : candidates) {
+            // Always pick the best candidate, even if it goes above the limit, so that a run makes progress
+            if (picked.isEmpty() || rewriteSize + candidate.getRemainingSize() <= maxBytes) {
+                picked.add(candidate);
+                rewriteSize += candidate.getRemainingSize();
+            }
+        }
+        return new CompactionPlan(threshold, maxBytes, picked);
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import io.netty.buffer.ByteBuf;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+import org.apache.bookkeeper.util.NativeIO;
+
+/**
+ * A {@link BufferedChannel} that writes to its file with direct I/O, bypassing the file system page cache.
+ *
+ * <p>Direct I/O only writes whole blocks from an aligned buffer, so the write buffer always starts at a block
+ * boundary of the file. A flush pads the last block with zeros and keeps it in the write buffer, to be completed and
+ * written again by the next flush. The file channel is still used for the reads and for the data written before the
+ * channel was created, such as the file header.
+ */
+class DirectBufferedChannel extends BufferedChannel {
+
+    private final AlignedBufferPool bufferPool;
+    private final int alignment;
+    private final int directFd;
+    // The position up to which the data has been written to the file
+    private volatile long flushedPosition;
+    private boolean closed = false;
+
+    DirectBufferedChannel(FileChannel fc, File file, AlignedBufferPool bufferPool, int readCapacity)
+            throws IOException {
+        super(fc, bufferPool.acquire(), readCapacity, 0L, null, -1);
+        this.bufferPool = bufferPool;
+        this.alignment = bufferPool.getAlignment();
+        this.flushedPosition = position;
+
+        int fd = -1;
+        try {
+            fd = NativeIO.openDirect(file);
+
+            // Load the beginning of the first block, so that it is written back along with the new data
+            long blockStart = position - position % alignment;
+            while (writeBuffer.writerIndex() < position - blockStart) {
+                int length = (int) (position - blockStart) - writeBuffer.writerIndex();
+                if (writeBuffer.writeBytes(fc, blockStart + writeBuffer.writerIndex(), length) <= 0) {
+                    throw new ShortReadException("Short read of the first block of " + file);
+                }
+            }
+            writeBufferStartPosition.set(blockStart);
+        } catch (IOException e) {
+            if (fd >= 0) {
+                NativeIO.closeFd(fd);
+            }
+            bufferPool.recycle(writeBuffer);
+            throw e;
+        }
+        this.directFd = fd;
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        long startPosition = writeBufferStartPosition.get();
+        int length = writeBuffer.writerIndex();
+        if (startPosition + length == flushedPosition) {
+            return;
+        }
+
+        validateAndGetFileChannel();
+        int alignedLength = (length + alignment - 1) / alignment * alignment;
+        writeBuffer.setZero(length, alignedLength - length);
+        NativeIO.pwriteFully(directFd, writeBuffer.memoryAddress(), alignedLength, startPosition);
+        flushedPosition = startPosition + length;
+
+        // Keep the partial last block at the beginning of the buffer
+        int tail = length % alignment;
+        int tailStart = length - tail;
+        if (tailStart > 0) {
+            writeBuffer.setBytes(0, writeBuffer, tailStart, tail);
+            writeBuffer.writerIndex(tail);
+            writeBufferStartPosition.set(startPosition + tailStart);
+        }
+    }
+
+    /**
+     * Extend the file up to end with a block of zeros, for the file systems that do not support fallocate. The zeros
+     * are written with direct I/O like the rest of the file, since writing them through the file channel would mix
+     * page cache and direct I/O on the same file. Nothing is written if the block is reached by the data still to be
+     * flushed.
+     *
+     * @param end the new size of the file, a multiple of the alignment
+     */
+    synchronized void preallocate(long end) throws IOException {
+        long blockStart = end - alignment;
+        long alignedPosition = (position + alignment - 1) / alignment * alignment;
+        if (end % alignment != 0 || blockStart < alignedPosition) {
+            return;
+        }
+
+        validateAndGetFileChannel();
+        ByteBuf zeros = bufferPool.acquire();
+        try {
+            zeros.setZero(0, alignment);
+            NativeIO.pwriteFully(directFd, zeros.memoryAddress(), alignment, blockStart);
+        } finally {
+            bufferPool.recycle(zeros);
+        }
+    }
+
+    @Override
+    public long forceWrite(boolean forceMetadata) throws IOException {
+        long positionForceWrite = flushedPosition;
+        validateAndGetFileChannel();
+        NativeIO.fsync(directFd, forceMetadata);
+        return positionForceWrite;
+    }
+
+    @Override
+    public long getFileChannelPosition() {
+        return flushedPosition;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        // The write buffer goes back to the pool instead of being released
+        writeBuffer.retain();
+        try {
+            super.close();
+        } finally {
+            bufferPool.recycle(writeBuffer);
+            NativeIO.closeFd(directFd);
+        }
+    }
+}
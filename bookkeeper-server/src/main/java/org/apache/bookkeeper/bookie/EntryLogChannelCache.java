@@ -0,0 +1,223 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie;
+
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.CATEGORY_SERVER;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ENTRYLOGGER_SCOPE;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.READ_CHANNELS_OPEN;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.READ_CHANNEL_CACHE_EVICTIONS;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.READ_CHANNEL_CACHE_HITS;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.READ_CHANNEL_CACHE_MISSES;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.bookkeeper.stats.annotations.StatsDoc;
+import org.apache.bookkeeper.util.IoUring;
+import org.apache.bookkeeper.util.NativeIO;
+
+/**
+ * A bounded cache of the file channels used to read the entry logs, shared by all the threads that read them.
+ *
+ * <p>The channels have no read buffer and are read with positional reads, so that a single file descriptor per entry
+ * log is enough whatever the number of reading threads. The least recently used channels are evicted once the cache
+ * is full. Channels are reference counted: an evicted channel, or the channel of a deleted entry log, is only closed
+ * once the reads in flight have released it.
+ */
+@Slf4j
+@StatsDoc(
+    name = ENTRYLOGGER_SCOPE,
+    category = CATEGORY_SERVER,
+    help = "EntryLogger related stats"
+)
+class EntryLogChannelCache {
+    private final Cache<Long, CachedChannel> channels;
+    private final FileLoader fileLoader;
+    private final IoUring ioUring;
+
+    @StatsDoc(
+        name = READ_CHANNEL_CACHE_HITS,
+        help = "Number of reads of entry logs that found the channel of the entry log in the cache"
+    )
+    private final Counter hits;
+    @StatsDoc(
+        name = READ_CHANNEL_CACHE_MISSES,
+        help = "Number of reads of entry logs that had to open the entry log"
+    )
+    private final Counter misses;
+    @StatsDoc(
+        name = READ_CHANNEL_CACHE_EVICTIONS,
+        help = "Number of channels evicted from the cache because it was full"
+    )
+    private final Counter evictions;
+    @StatsDoc(
+        name = READ_CHANNELS_OPEN,
+        help = "Number of channels open to read the entry logs, including the evicted ones still being read"
+    )
+    private final Counter openChannels;
+
+    EntryLogChannelCache(int maxChannels, FileLoader fileLoader, IoUring ioUring, StatsLogger statsLogger) {
+        this.fileLoader = fileLoader;
+        this.ioUring = ioUring;
+        this.hits = statsLogger.getCounter(READ_CHANNEL_CACHE_HITS);
+        this.misses = statsLogger.getCounter(READ_CHANNEL_CACHE_MISSES);
+        this.evictions = statsLogger.getCounter(READ_CHANNEL_CACHE_EVICTIONS);
+        this.openChannels = statsLogger.getCounter(READ_CHANNELS_OPEN);
+        this.channels = CacheBuilder.newBuilder()
+            .maximumSize(maxChannels)
+            .removalListener(this::onRemoval)
+            .build();
+    }
+
+    /**
+     * Get the channel of an entry log, opening the entry log if its channel is not in the cache.
+     * The caller owns a reference to the channel and must {@link CachedChannel#release()} it.
+     *
+     * @param logId the entry log id
+     * @return the channel of the entry log
+     * @throws java.io.FileNotFoundException if the entry log does not exist
+     */
+    CachedChannel acquire(long logId) throws IOException {
+        while (true) {
+            CachedChannel channel = channels.getIfPresent(logId);
+            if (channel != null) {
+                hits.inc();
+            } else {
+                misses.inc();
+                CachedChannel newChannel = open(logId);
+                channel = channels.asMap().putIfAbsent(logId, newChannel);
+                if (channel == null) {
+                    channel = newChannel;
+                } else {
+                    // another thread opened the entry log first
+                    newChannel.release();
+                }
+            }
+
+            // tryRetain only fails if the channel was removed from the cache and released by all its users since we
+            // got it, in which case the next lookup won't find it anymore
+            if (channel.tryRetain()) {
+                return channel;
+            }
+        }
+    }
+
+    /**
+     * Remove the channel of an entry log from the cache, typically because the entry log is being deleted.
+     */
+    void invalidate(long logId) {
+        channels.invalidate(logId);
+    }
+
+    void invalidateAll() {
+        channels.invalidateAll();
+    }
+
+    private CachedChannel open(long logId) throws IOException {
+        File file = fileLoader.load(logId);
+        // the entry logs are only read through these channels, writes go through the channels of the entry log manager
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        int fd = ioUring != null ? NativeIO.getSysFileDescriptor(randomAccessFile.getFD()) : -1;
+        openChannels.inc();
+        return new CachedChannel(logId, file, randomAccessFile.getChannel(), fd);
+    }
+
+    private void onRemoval(RemovalNotification<Long, CachedChannel> notification) {
+        if (notification.getCause() == RemovalCause.SIZE) {
+            evictions.inc();
+        }
+        // release the reference of the cache
+        notification.getValue().release();
+    }
+
+    /**
+     * The channel of an entry log. Reads are positional and without a read buffer, so that the channel can be shared
+     * by all the threads.
+     */
+    class CachedChannel extends BufferedReadChannel {
+        final long logId;
+        final File file;
+        // the cache owns a reference while the channel is in the cache
+        private final AtomicInteger refCount = new AtomicInteger(1);
+
+        CachedChannel(long logId, File file, FileChannel fileChannel, int fd) {
+            super(fileChannel, 0, EntryLogChannelCache.this.ioUring, fd);
+            this.logId = logId;
+            this.file = file;
+        }
+
+        /**
+         * Attempt to retain the channel. Fails if the channel has already been released by the cache and all its
+         * users, and closed. A channel that reached a count of 0 is never retained again.
+         *
+         * @return true if we managed to increment the refcount, false otherwise
+         */
+        boolean tryRetain() {
+            while (true) {
+                int count = refCount.get();
+                if (count <= 0) {
+                    return false;
+                } else if (refCount.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void release() {
+            if (refCount.decrementAndGet() == 0) {
+                try {
+                    fileChannel.close();
+                } catch (IOException e) {
+                    log.warn("Exception while closing channel for log file: {}", logId, e);
+                }
+                openChannels.dec();
+            }
+        }
+
+        /**
+         * Get the underlying file channel, to read the entry log through a buffered channel of the caller.
+         */
+        FileChannel getFileChannel() {
+            return fileChannel;
+        }
+
+        @Override
+        public String toString() {
+            return "CachedChannel(log=" + logId + ",refCount=" + refCount.get() + ")";
+        }
+    }
+
+    interface FileLoader {
+        File load(long logId) throws IOException;
+    }
+}
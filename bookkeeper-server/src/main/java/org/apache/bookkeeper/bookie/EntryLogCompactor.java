@@ -43,14 +43,29 @@ public class EntryLogCompactor extends AbstractLogCompactor {
     final EntryLogger entryLogger;
     final CompactableLedgerStorage ledgerStorage;
     private final int maxOutstandingRequests;
+    private final boolean useZeroCopy;
 
     public EntryLogCompactor(
             ServerConfiguration conf,
             EntryLogger entryLogger,
             CompactableLedgerStorage ledgerStorage,
             LogRemovalListener logRemover) {
-        super(conf, logRemover);
+        this(conf, entryLogger, ledgerStorage, logRemover, 1.0);
+    }
+
+    /**
+     * Create a compactor limited to a share of the configured compaction rate, for compactors that run in parallel
+     * and rewrite the entries to the same entry logger.
+     */
+    public EntryLogCompactor(
+            ServerConfiguration conf,
+            EntryLogger entryLogger,
+            CompactableLedgerStorage ledgerStorage,
+            LogRemovalListener logRemover,
+            double rateShare) {
+        super(conf, logRemover, entryLogger::getReadLatencyNanos, rateShare);
         this.maxOutstandingRequests = conf.getCompactionMaxOutstandingRequests();
+        this.useZeroCopy = conf.getUseZeroCopyCompaction();
         this.entryLogger = entryLogger;
         this.ledgerStorage = ledgerStorage;
     }
@@ -58,8 +73,13 @@ public class EntryLogCompactor extends AbstractLogCompactor {
     @Override
     public boolean compact(EntryLogMetadata entryLogMeta) {
         try {
-            entryLogger.scanEntryLog(entryLogMeta.getEntryLogId(),
-                scannerFactory.newScanner(entryLogMeta));
+            if (useZeroCopy) {
+                entryLogger.relocateEntries(entryLogMeta.getEntryLogId(),
+                    scannerFactory.newRelocator(entryLogMeta));
+            } else {
+                entryLogger.scanEntryLog(entryLogMeta.getEntryLogId(),
+                    scannerFactory.newScanner(entryLogMeta));
+            }
             scannerFactory.flush();
             LOG.info("Removing entry log {} after compaction", entryLogMeta.getEntryLogId());
             logRemovalListener.removeEntryLog(entryLogMeta.getEntryLogId());
@@ -106,6 +126,26 @@ public class EntryLogCompactor extends AbstractLogCompactor {
             };
         }
 
+        EntryLogger.EntryRelocator newRelocator(final EntryLogMetadata meta) {
+
+            return new EntryLogger.EntryRelocator() {
+                @Override
+                public boolean accept(long ledgerId) {
+                    return meta.containsLedger(ledgerId);
+                }
+
+                @Override
+                public void relocated(long ledgerId, long entryId, int entrySize, long location) throws IOException {
+                    throttler.acquire(entrySize);
+
+                    if (offsets.size() > maxOutstandingRequests) {
+                        flush();
+                    }
+                    offsets.add(new EntryLocation(ledgerId, entryId, location));
+                }
+            };
+        }
+
         void flush() throws IOException {
             if (offsets.isEmpty()) {
                 if (LOG.isDebugEnabled()) {
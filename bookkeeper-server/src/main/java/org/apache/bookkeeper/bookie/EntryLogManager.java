@@ -24,6 +24,7 @@ package org.apache.bookkeeper.bookie;
 import io.netty.buffer.ByteBuf;
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.util.List;
 
 import org.apache.bookkeeper.bookie.EntryLogger.BufferedLogChannel;
@@ -36,6 +37,13 @@ interface EntryLogManager {
      */
     long addEntry(long ledger, ByteBuf entry, boolean rollLog) throws IOException;
 
+    /*
+     * transfer a range of entries of the ledger, with their size headers, from
+     * another entrylog to the corresponding entrylog, and return the position
+     * of the range in the entrylog
+     */
+    long transferEntries(long ledger, FileChannel src, long srcPos, int length) throws IOException;
+
     /*
      * gets the active logChannel with the given entryLogId. null if it is
      * not existing.
@@ -41,6 +41,7 @@ import io.netty.buffer.ByteBuf;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -628,6 +629,17 @@ class EntryLogManagerForEntryLogPerLedger extends EntryLogManagerBase {
         }
     }
 
+    @Override
+    public long transferEntries(long ledger, FileChannel src, long srcPos, int length) throws IOException {
+        Lock lock = getLock(ledger);
+        lock.lock();
+        try {
+            return super.transferEntries(ledger, src, srcPos, length);
+        } finally {
+            lock.unlock();
+        }
+    }
+
     @Override
     void createNewLog(long ledgerId) throws IOException {
         Lock lock = getLock(ledgerId);
@@ -21,6 +21,8 @@
 
 package org.apache.bookkeeper.bookie;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.function.LongPredicate;
 
 import org.apache.bookkeeper.util.collections.ConcurrentLongLongHashMap;
@@ -29,6 +31,11 @@ import org.apache.bookkeeper.util.collections.ConcurrentLongLongHashMap;
  * Records the total size, remaining size and the set of ledgers that comprise a entry log.
  */
 public class EntryLogMetadata {
+    // Version of the serialized metadata
+    private static final short SERIALIZATION_VERSION = 1;
+    // Version, entry log id, total size, remaining size and number of ledgers
+    private static final int HEADER_SIZE = Short.BYTES + 4 * Long.BYTES;
+
     private final long entryLogId;
     private long totalSize;
     private long remainingSize;
@@ -88,6 +95,57 @@ public class EntryLogMetadata {
         });
     }
 
+    /**
+     * Serialize the metadata, to be stored in the entry log metadata map.
+     *
+     * @return the serialized metadata
+     */
+    public byte[] serialize() {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + (int) ledgersMap.size() * 2 * Long.BYTES);
+        buffer.putShort(SERIALIZATION_VERSION);
+        buffer.putLong(entryLogId);
+        buffer.putLong(totalSize);
+        buffer.putLong(remainingSize);
+        // The ledgers map is only updated by the garbage collector thread, so it does not change while serialized
+        buffer.putLong(ledgersMap.size());
+        ledgersMap.forEach((ledgerId, size) -> {
+            buffer.putLong(ledgerId);
+            buffer.putLong(size);
+        });
+        return buffer.array();
+    }
+
+    /**
+     * Deserialize the metadata stored by {@link #serialize()}.
+     *
+     * @param data the serialized metadata
+     * @return the entry log metadata
+     * @throws IOException if the data is not valid serialized metadata
+     */
+    public static EntryLogMetadata deserialize(byte[] data) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        if (buffer.remaining() < HEADER_SIZE) {
+            throw new IOException("Invalid entry log metadata of " + data.length + " bytes");
+        }
+        short version = buffer.getShort();
+        if (version != SERIALIZATION_VERSION) {
+            throw new IOException("Unsupported entry log metadata version " + version);
+        }
+
+        EntryLogMetadata meta = new EntryLogMetadata(buffer.getLong());
+        meta.totalSize = buffer.getLong();
+        meta.remainingSize = buffer.getLong();
+        long numLedgers = buffer.getLong();
+        if (numLedgers < 0 || numLedgers * 2 * Long.BYTES != buffer.remaining()) {
+            throw new IOException("Invalid number of ledgers " + numLedgers + " in metadata of entry log "
+                    + meta.entryLogId);
+        }
+        for (long i = 0; i < numLedgers; i++) {
+            meta.ledgersMap.put(buffer.getLong(), buffer.getLong());
+        }
+        return meta;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
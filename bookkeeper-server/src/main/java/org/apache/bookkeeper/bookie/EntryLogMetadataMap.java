@@ -0,0 +1,59 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.function.BiConsumer;
+
+/**
+ * Map of the entry log id to the metadata of the entry logs, maintained by the garbage collector thread.
+ */
+interface EntryLogMetadataMap extends Closeable {
+
+    /**
+     * @return true if the map contains the metadata of the entry log
+     */
+    boolean containsKey(long entryLogId) throws IOException;
+
+    /**
+     * Add or replace the metadata of an entry log.
+     *
+     * <p>The metadata is not tracked by the map once added, so it must be put again after being updated.
+     */
+    void put(long entryLogId, EntryLogMetadata entryLogMeta) throws IOException;
+
+    /**
+     * @return the metadata of the entry log, or null if the map does not contain it
+     */
+    EntryLogMetadata get(long entryLogId) throws IOException;
+
+    /**
+     * Process the metadata of all the entry logs, one at a time.
+     */
+    void forEach(BiConsumer<Long, EntryLogMetadata> action) throws IOException;
+
+    /**
+     * Remove the metadata of an entry log.
+     */
+    void remove(long entryLogId) throws IOException;
+}
@@ -22,10 +22,15 @@
 package org.apache.bookkeeper.bookie;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.CATEGORY_SERVER;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ENTRYLOGGER_SCOPE;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ENTRY_LOGS_MOVED_TO_COLD_TIER;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ENTRY_LOG_BYTES_MOVED_TO_COLD_TIER;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ENTRY_LOG_COLD_TIER_READS;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ENTRY_LOG_PRIMARY_TIER_READS;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.MoreObjects;
-import com.google.common.collect.MapMaker;
 import com.google.common.collect.Sets;
 
 import io.netty.buffer.ByteBuf;
@@ -44,22 +49,33 @@ import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousCloseException;
 import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.bookkeeper.bookie.EntryLogChannelCache.CachedChannel;
 import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.Counter;
 import org.apache.bookkeeper.stats.NullStatsLogger;
 import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.bookkeeper.stats.annotations.StatsDoc;
 import org.apache.bookkeeper.util.DiskChecker;
 import org.apache.bookkeeper.util.IOUtils;
+import org.apache.bookkeeper.util.IoUring;
+import org.apache.bookkeeper.util.MathUtils;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashSet;
 import org.apache.bookkeeper.util.collections.ConcurrentLongLongHashMap;
 import org.apache.bookkeeper.util.collections.ConcurrentLongLongHashMap.BiConsumerLong;
 import org.slf4j.Logger;
@@ -207,6 +223,12 @@ public class EntryLogger {
     private final LedgerDirsManager ledgerDirsManager;
     private final boolean entryLogPerLedgerEnabled;
 
+    // The cold tier directory paired with each ledger directory, empty if the entry logs are never moved
+    private final Map<File, File> coldTierDirs = new HashMap<>();
+    // The ids of the entry logs in the cold tier
+    private final ConcurrentLongHashSet coldTierLogIds = new ConcurrentLongHashSet();
+    private final ColdTierStats coldTierStats;
+
     final RecentEntryLogsStatus recentlyCreatedEntryLogsStatus;
 
     /**
@@ -221,6 +243,10 @@ public class EntryLogger {
 
     private final CopyOnWriteArrayList<EntryLogListener> listeners = new CopyOnWriteArrayList<EntryLogListener>();
 
+    // Moving average of the latency of the entry reads, and time of the last one
+    private volatile long readLatencyNanos = 0;
+    private volatile long lastReadNanos = 0;
+
     private static final int HEADER_V0 = 0; // Old log file format (no ledgers map index)
     private static final int HEADER_V1 = 1; // Introduced ledger map index
     static final int HEADER_CURRENT_VERSION = HEADER_V1;
@@ -278,6 +304,14 @@ public class EntryLogger {
     static final long LEDGERS_MAP_ENTRY_ID = -2L;
 
     static final int MIN_SANE_ENTRY_SIZE = 8 + 8;
+    // Upper bound of a single read of the entry log when reading a sequence of adjacent entries
+    static final long MAX_COALESCED_READ_SIZE = 1024 * 1024;
+    // Upper bound of a single transfer of adjacent entries when relocating the entries of an entry log
+    static final int MAX_RELOCATED_RANGE_SIZE = 1024 * 1024;
+    // Weight of a new sample in the moving average of the read latency, as a power of 2
+    private static final int READ_LATENCY_SMOOTHING_SHIFT = 4;
+    // The read latency is only reported while the entry logs are being read
+    private static final long READ_LATENCY_VALIDITY_NANOS = TimeUnit.SECONDS.toNanos(1);
     static final long MB = 1024 * 1024;
 
     private final int maxSaneEntrySize;
@@ -313,6 +347,35 @@ public class EntryLogger {
         void process(long ledgerId, long offset, ByteBuf entry) throws IOException;
     }
 
+    /**
+     * Relocate entries of an entry log file.
+     */
+    interface EntryRelocator {
+        /**
+         * Tests whether the entries of the specified ledger should be relocated.
+         *
+         * @param ledgerId
+         *          Ledger ID.
+         * @return true if and only if the entries of the ledger should be relocated.
+         */
+        boolean accept(long ledgerId);
+
+        /**
+         * Called once an entry has been relocated.
+         *
+         * @param ledgerId
+         *          Ledger ID.
+         * @param entryId
+         *          Entry ID.
+         * @param entrySize
+         *          Size of the entry.
+         * @param location
+         *          New location of the entry.
+         * @throws IOException
+         */
+        void relocated(long ledgerId, long entryId, int entrySize, long location) throws IOException;
+    }
+
     /**
      * Entry Log Listener.
      */
@@ -346,6 +409,34 @@ public class EntryLogger {
         this.ledgerDirsManager = ledgerDirsManager;
         this.conf = conf;
         entryLogPerLedgerEnabled = conf.isEntryLogPerLedgerEnabled();
+        this.ioUring = conf.isIoUringEnabled() ? IoUring.createIfAvailable(conf.getIoUringQueueDepth()) : null;
+        this.readChannels = new EntryLogChannelCache(conf.getEntryLogReadChannelCacheSize(), this::findFile, ioUring,
+                statsLogger);
+        File[] coldTierRootDirs = conf.getEntryLogColdTierDirs();
+        if (coldTierRootDirs != null) {
+            File[] allLedgerDirs = Bookie.getCurrentDirectories(conf.getLedgerDirs());
+            File[] allColdTierDirs = Bookie.getCurrentDirectories(coldTierRootDirs);
+            for (File dir : ledgerDirsManager.getAllLedgerDirs()) {
+                for (int i = 0; i < allLedgerDirs.length && i < allColdTierDirs.length; i++) {
+                    if (allLedgerDirs[i].getAbsoluteFile().equals(dir.getAbsoluteFile())) {
+                        if (!allColdTierDirs[i].isDirectory() && !allColdTierDirs[i].mkdirs()) {
+                            throw new IOException("Unable to create cold tier directory " + allColdTierDirs[i]);
+                        }
+                        coldTierDirs.put(dir, allColdTierDirs[i]);
+                    }
+                }
+            }
+            for (File coldTierDir : coldTierDirs.values()) {
+                File[] logFiles = coldTierDir.listFiles(file -> file.getName().endsWith(".log"));
+                if (logFiles == null) {
+                    throw new IOException("Failed to get list of files in cold tier directory " + coldTierDir);
+                }
+                for (File logFile : logFiles) {
+                    coldTierLogIds.add(fileName2LogId(logFile.getName()));
+                }
+            }
+        }
+        this.coldTierStats = new ColdTierStats(statsLogger);
         if (listener != null) {
             addListener(listener);
         }
@@ -419,57 +510,19 @@ public class EntryLogger {
     }
 
     /**
-     * A thread-local variable that wraps a mapping of log ids to bufferedchannels
-     * These channels should be used only for reading. logChannel is the one
-     * that is used for writes.
-     */
-    private final ThreadLocal<Map<Long, BufferedReadChannel>> logid2Channel =
-            new ThreadLocal<Map<Long, BufferedReadChannel>>() {
-        @Override
-        public Map<Long, BufferedReadChannel> initialValue() {
-            // Since this is thread local there only one modifier
-            // We dont really need the concurrency, but we need to use
-            // the weak values. Therefore using the concurrency level of 1
-            return new MapMaker().concurrencyLevel(1)
-                .weakValues()
-                .makeMap();
-        }
-    };
-
-    /**
-     * Each thread local buffered read channel can share the same file handle because reads are not relative
-     * and don't cause a change in the channel's position. We use this map to store the file channels. Each
-     * file channel is mapped to a log id which represents an open log file.
-     */
-    private final ConcurrentMap<Long, FileChannel> logid2FileChannel = new ConcurrentHashMap<Long, FileChannel>();
-
-    /**
-     * Put the logId, bc pair in the map responsible for the current thread.
-     * @param logId
-     * @param bc
+     * The channels used to read the log files, shared by all the reading threads. logChannel is the one that is used
+     * for writes. When io_uring is enabled, the log files are read through the ring.
      */
-    public BufferedReadChannel putInReadChannels(long logId, BufferedReadChannel bc) {
-        Map<Long, BufferedReadChannel> threadMap = logid2Channel.get();
-        return threadMap.put(logId, bc);
-    }
+    private final IoUring ioUring;
+    private final EntryLogChannelCache readChannels;
 
     /**
-     * Remove all entries for this log file in each thread's cache.
+     * Remove the read channel of this log file from the cache. The channel is closed once the reads in flight are
+     * done with it.
      * @param logId
      */
     public void removeFromChannelsAndClose(long logId) {
-        FileChannel fileChannel = logid2FileChannel.remove(logId);
-        if (null != fileChannel) {
-            try {
-                fileChannel.close();
-            } catch (IOException e) {
-                LOG.warn("Exception while closing channel for log file:" + logId);
-            }
-        }
-    }
-
-    public BufferedReadChannel getFromChannels(long logId) {
-        return logid2Channel.get().get(logId);
+        readChannels.invalidate(logId);
     }
 
     /**
@@ -536,6 +589,7 @@ public class EntryLogger {
         if (!entryLogFile.delete()) {
             LOG.warn("Could not delete entry log file {}", entryLogFile);
         }
+        coldTierLogIds.remove(entryLogId);
         return true;
     }
 
@@ -756,14 +810,23 @@ public class EntryLogger {
         }
     }
 
-    private BufferedReadChannel getFCForEntryInternal(
+    private CachedChannel getFCForEntryInternal(
             long ledgerId, long entryId, long entryLogId, long pos)
             throws EntryLookupException, IOException {
+        CachedChannel fc;
         try {
-            return getChannelForLogId(entryLogId);
+            fc = readChannels.acquire(entryLogId);
         } catch (FileNotFoundException e) {
             throw new EntryLookupException.MissingLogFileException(ledgerId, entryId, entryLogId, pos);
         }
+        if (!coldTierDirs.isEmpty()) {
+            if (coldTierLogIds.contains(entryLogId)) {
+                coldTierStats.coldTierReads.inc();
+            } else {
+                coldTierStats.primaryTierReads.inc();
+            }
+        }
+        return fc;
     }
 
     private ByteBuf readEntrySize(long ledgerId, long entryId, long entryLogId, long pos, BufferedReadChannel fc)
@@ -786,9 +849,13 @@ public class EntryLogger {
     void checkEntry(long ledgerId, long entryId, long location) throws EntryLookupException, IOException {
         long entryLogId = logIdForOffset(location);
         long pos = posForOffset(location);
-        BufferedReadChannel fc = getFCForEntryInternal(ledgerId, entryId, entryLogId, pos);
-        ByteBuf sizeBuf = readEntrySize(ledgerId, entryId, entryLogId, pos, fc);
-        validateEntry(ledgerId, entryId, entryLogId, pos, sizeBuf);
+        CachedChannel fc = getFCForEntryInternal(ledgerId, entryId, entryLogId, pos);
+        try {
+            ByteBuf sizeBuf = readEntrySize(ledgerId, entryId, entryLogId, pos, fc);
+            validateEntry(ledgerId, entryId, entryLogId, pos, sizeBuf);
+        } finally {
+            fc.release();
+        }
     }
 
     private void validateEntry(long ledgerId, long entryId, long entryLogId, long pos, ByteBuf sizeBuff)
@@ -819,11 +886,23 @@ public class EntryLogger {
         long pos = posForOffset(location);
 
 
-        BufferedReadChannel fc = null;
-        int entrySize = -1;
+        CachedChannel fc;
         try {
             fc = getFCForEntryInternal(ledgerId, entryId, entryLogId, pos);
+        } catch (EntryLookupException e) {
+            throw new IOException(e.toString());
+        }
+        try {
+            return internalReadEntry(ledgerId, entryId, entryLogId, pos, fc, validateEntry);
+        } finally {
+            fc.release();
+        }
+    }
 
+    private ByteBuf internalReadEntry(long ledgerId, long entryId, long entryLogId, long pos, CachedChannel fc,
+            boolean validateEntry) throws IOException, Bookie.NoEntryException {
+        int entrySize = -1;
+        try {
             ByteBuf sizeBuff = readEntrySize(ledgerId, entryId, entryLogId, pos, fc);
             entrySize = sizeBuff.getInt(0);
             if (validateEntry) {
@@ -857,14 +936,262 @@ public class EntryLogger {
     }
 
     public ByteBuf readEntry(long ledgerId, long entryId, long location) throws IOException, Bookie.NoEntryException {
-        return internalReadEntry(ledgerId, entryId, location, true /* validateEntry */);
+        long startNanos = MathUtils.nowInNano();
+        ByteBuf entry = internalReadEntry(ledgerId, entryId, location, true /* validateEntry */);
+        recordReadLatency(startNanos);
+        return entry;
+    }
+
+    private void recordReadLatency(long startNanos) {
+        long now = MathUtils.nowInNano();
+        // Concurrent reads may overwrite each other's sample, which does not matter for a moving average
+        long average = readLatencyNanos;
+        readLatencyNanos = average + ((now - startNanos - average) >> READ_LATENCY_SMOOTHING_SHIFT);
+        lastReadNanos = now;
+    }
+
+    /**
+     * Get the moving average of the latency of the reads of entries from the entry logs, as served to the clients.
+     *
+     * @return the read latency in nanoseconds, or 0 if no entry was read recently
+     */
+    long getReadLatencyNanos() {
+        if (MathUtils.nowInNano() - lastReadNanos > READ_LATENCY_VALIDITY_NANOS) {
+            return 0;
+        }
+        return readLatencyNanos;
+    }
+
+    /**
+     * Read a sequence of entries of a ledger, given their locations.
+     *
+     * <p>Entries that were written one after the other in the same entry log are read with a single sequential read
+     * of the log and are returned as slices of the same buffer. The reads of all these runs of entries are issued
+     * before waiting for any of them, so that they are in flight together when the logs are read through io_uring.
+     * The caller must release the returned entries.
+     *
+     * @param locations the locations of the entries firstEntryId, firstEntryId + 1, ...
+     * @param count the number of locations to read
+     * @param maxSize stop reading once the total size of the entries read reaches this size
+     * @return the entries that were read, at least one
+     */
+    public List<ByteBuf> readEntries(long ledgerId, long firstEntryId, long[] locations, int count, long maxSize)
+            throws IOException, Bookie.NoEntryException {
+        long startNanos = MathUtils.nowInNano();
+        List<AdjacentEntries> runs = new ArrayList<>();
+        List<ByteBuf> entries = new ArrayList<>(count);
+        try {
+            // The size of the entries that are not part of a run is only known once they are read, estimate it
+            // from the entries of the runs
+            long plannedSize = 0;
+            int plannedEntries = 0;
+            int i = 0;
+            while (i < count && (i == 0 || plannedSize < maxSize)) {
+                long entryLogId = logIdForOffset(locations[i]);
+                long startPos = posForOffset(locations[i]);
+                long maxReadSize = Math.min(MAX_COALESCED_READ_SIZE, maxSize - plannedSize);
+
+                // Entry k ends where the header of entry k + 1 starts. The last entry of the run is not included
+                // since its size is not known before reading its header
+                int end = i + 1;
+                while (end < count
+                        && logIdForOffset(locations[end]) == entryLogId
+                        && posForOffset(locations[end]) > posForOffset(locations[end - 1])
+                        && posForOffset(locations[end]) - startPos <= maxReadSize) {
+                    end++;
+                }
+
+                if (end - i > 1) {
+                    runs.add(readAdjacentEntries(ledgerId, firstEntryId, locations, i, end - 1));
+                    plannedSize += posForOffset(locations[end - 1]) - startPos;
+                    plannedEntries += end - 1 - i;
+                    i = end - 1;
+                } else {
+                    runs.add(new AdjacentEntries(i));
+                    plannedSize += plannedEntries > 0 ? plannedSize / plannedEntries : 0;
+                    i++;
+                }
+            }
+
+            long size = 0;
+            for (AdjacentEntries run : runs) {
+                if (!entries.isEmpty() && size >= maxSize) {
+                    break;
+                }
+                size += run.complete(ledgerId, firstEntryId, locations, entries);
+            }
+        } catch (IOException | RuntimeException e) {
+            entries.forEach(ByteBuf::release);
+            throw e;
+        } finally {
+            for (AdjacentEntries run : runs) {
+                run.release();
+            }
+        }
+
+        recordReadLatency(startNanos);
+        return entries;
+    }
+
+    /**
+     * Start reading the entries between from (included) and to (excluded) with a single read, from the header of the
+     * first one to the header of the entry at index to.
+     */
+    private AdjacentEntries readAdjacentEntries(long ledgerId, long firstEntryId, long[] locations, int from, int to)
+            throws IOException {
+        long entryLogId = logIdForOffset(locations[from]);
+        long startPos = posForOffset(locations[from]) - 4;
+        int length = (int) (posForOffset(locations[to]) - 4 - startPos);
+
+        CachedChannel fc;
+        try {
+            fc = getFCForEntryInternal(ledgerId, firstEntryId + from, entryLogId, startPos);
+        } catch (EntryLookupException e) {
+            throw new IOException(e.toString());
+        }
+
+        ByteBuf data = allocator.directBuffer(length, length);
+        CompletableFuture<Integer> read;
+        if (entryLogManager.getCurrentLogIfPresent(entryLogId) != null) {
+            // The log is being written, part of the data might still be in its write buffer
+            read = new CompletableFuture<>();
+            try {
+                read.complete(readFromLogChannel(entryLogId, fc, data, startPos));
+            } catch (IOException e) {
+                read.completeExceptionally(e);
+            } finally {
+                fc.release();
+            }
+        } else {
+            // The channel must stay open until the read is done
+            read = fc.readAsync(data, startPos, length).whenComplete((rc, cause) -> fc.release());
+        }
+        return new AdjacentEntries(from, to, startPos, data, read);
+    }
+
+    /**
+     * A run of entries that are adjacent in an entry log, and the pending read of their data. A run without data is a
+     * single entry that is read on its own.
+     */
+    private class AdjacentEntries {
+        final int from;
+        final int to;
+        final long startPos;
+        final ByteBuf data;
+        final CompletableFuture<Integer> read;
+
+        AdjacentEntries(int index) {
+            this(index, index + 1, -1, null, null);
+        }
+
+        AdjacentEntries(int from, int to, long startPos, ByteBuf data, CompletableFuture<Integer> read) {
+            this.from = from;
+            this.to = to;
+            this.startPos = startPos;
+            this.data = data;
+            this.read = read;
+        }
+
+        /**
+         * Wait for the data and add the entries to the list.
+         *
+         * @return the size of the entries added
+         */
+        long complete(long ledgerId, long firstEntryId, long[] locations, List<ByteBuf> entries)
+                throws IOException {
+            if (data == null) {
+                ByteBuf entry = readEntry(ledgerId, firstEntryId + from, locations[from]);
+                entries.add(entry);
+                return entry.readableBytes();
+            }
+
+            int rc = IoUring.await(read);
+            long size = 0;
+            for (int k = from; k < to; k++) {
+                long entryId = firstEntryId + k;
+                int offset = (int) (posForOffset(locations[k]) - 4 - startPos);
+                int entrySize = (int) (posForOffset(locations[k + 1]) - posForOffset(locations[k])) - 4;
+
+                ByteBuf entry;
+                if (rc == data.capacity() && isEntryAt(data, offset, entrySize, ledgerId, entryId)) {
+                    entry = data.retainedSlice(offset + 4, entrySize);
+                } else {
+                    // The entry is not followed by the next one in the log, read it on its own
+                    entry = readEntry(ledgerId, entryId, locations[k]);
+                }
+                entries.add(entry);
+                size += entry.readableBytes();
+            }
+            return size;
+        }
+
+        void release() {
+            if (data != null) {
+                // The buffer must not be reused while the read is still writing to it
+                read.handle((rc, cause) -> null).join();
+                data.release();
+            }
+        }
+    }
+
+    /**
+     * Read the consecutive entries of a ledger that were written one after the other in an entry log, with a single
+     * read of up to length bytes from the location of the first one.
+     *
+     * <p>The entries are checked against the expected ledger and entry ids, and the read stops at the first entry that
+     * does not match or that does not fit in the bytes read. The entries are slices of the same buffer, the caller
+     * must release them.
+     *
+     * @param location the location of the entry firstEntryId
+     * @param length the number of bytes to read, from the size header of the first entry
+     * @return the entries firstEntryId, firstEntryId + 1, ... that were found, possibly none
+     */
+    public List<ByteBuf> readExtent(long ledgerId, long firstEntryId, long location, int length) throws IOException {
+        long entryLogId = logIdForOffset(location);
+        long startPos = posForOffset(location) - 4;
+        List<ByteBuf> entries = new ArrayList<>();
+
+        CachedChannel fc;
+        try {
+            fc = readChannels.acquire(entryLogId);
+        } catch (FileNotFoundException e) {
+            // The entry log was removed after its entries were moved by the compaction
+            return entries;
+        }
+
+        ByteBuf data = allocator.directBuffer(length, length);
+        try {
+            int rc = readFromLogChannel(entryLogId, fc, data, startPos);
+            int offset = 0;
+            long entryId = firstEntryId;
+            while (rc - offset >= 4) {
+                int entrySize = data.getInt(offset);
+                if ((long) offset + 4 + entrySize > rc || !isEntryAt(data, offset, entrySize, ledgerId, entryId)) {
+                    break;
+                }
+                entries.add(data.retainedSlice(offset + 4, entrySize));
+                offset += 4 + entrySize;
+                entryId++;
+            }
+        } finally {
+            data.release();
+            fc.release();
+        }
+        return entries;
+    }
+
+    private static boolean isEntryAt(ByteBuf data, int offset, int entrySize, long ledgerId, long entryId) {
+        return entrySize >= MIN_SANE_ENTRY_SIZE
+                && data.getInt(offset) == entrySize
+                && data.getLong(offset + 4) == ledgerId
+                && data.getLong(offset + 12) == entryId;
     }
 
     /**
      * Read the header of an entry log.
      */
     private Header getHeaderForLogId(long entryLogId) throws IOException {
-        BufferedReadChannel bc = getChannelForLogId(entryLogId);
+        CachedChannel bc = readChannels.acquire(entryLogId);
 
         // Allocate buffer to read (version, ledgersMapOffset, ledgerCount)
         ByteBuf headers = allocator.directBuffer(LOGFILE_HEADER_SIZE);
@@ -884,41 +1211,28 @@ public class EntryLogger {
             return new Header(headerVersion, ledgersMapOffset, ledgersCount);
         } finally {
             headers.release();
+            bc.release();
         }
     }
 
-    private BufferedReadChannel getChannelForLogId(long entryLogId) throws IOException {
-        BufferedReadChannel fc = getFromChannels(entryLogId);
-        if (fc != null) {
-            return fc;
-        }
-        File file = findFile(entryLogId);
-        // get channel is used to open an existing entry log file
-        // it would be better to open using read mode
-        FileChannel newFc = new RandomAccessFile(file, "r").getChannel();
-        FileChannel oldFc = logid2FileChannel.putIfAbsent(entryLogId, newFc);
-        if (null != oldFc) {
-            newFc.close();
-            newFc = oldFc;
-        }
-        // We set the position of the write buffer of this buffered channel to Long.MAX_VALUE
-        // so that there are no overlaps with the write buffer while reading
-        fc = new BufferedReadChannel(newFc, conf.getReadBufferBytes());
-        putInReadChannels(entryLogId, fc);
-        return fc;
+    /**
+     * Get a buffered channel to read sequentially an entry log, over the channel of the entry log in the cache.
+     * The caller must release the channel of the entry log once done.
+     */
+    private BufferedReadChannel newSequentialReadChannel(CachedChannel channel) {
+        return new BufferedReadChannel(channel.getFileChannel(), conf.getReadBufferBytes());
     }
 
     /**
      * Whether the log file exists or not.
      */
     boolean logExists(long logId) {
-        for (File d : ledgerDirsManager.getAllLedgerDirs()) {
-            File f = new File(d, Long.toHexString(logId) + ".log");
-            if (f.exists()) {
-                return true;
-            }
+        try {
+            findFile(logId);
+            return true;
+        } catch (FileNotFoundException e) {
+            return false;
         }
-        return false;
     }
 
     /**
@@ -936,7 +1250,9 @@ public class EntryLogger {
             }
         };
 
-        for (File d : ledgerDirsManager.getAllLedgerDirs()) {
+        List<File> dirs = new ArrayList<>(ledgerDirsManager.getAllLedgerDirs());
+        dirs.addAll(coldTierDirs.values());
+        for (File d : dirs) {
             File[] files = d.listFiles(logFileFilter);
             if (files == null) {
                 throw new IOException("Failed to get list of files in directory " + d);
@@ -950,6 +1266,25 @@ public class EntryLogger {
         return entryLogs;
     }
 
+    /**
+     * @return the ledger directory holding the entry log, or the ledger directory paired with the cold tier directory
+     *         holding it, or null if the entry log does not exist
+     */
+    File getLedgerDirForLog(long logId) {
+        File dir;
+        try {
+            dir = findFile(logId).getParentFile();
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+        for (Map.Entry<File, File> e : coldTierDirs.entrySet()) {
+            if (e.getValue().equals(dir)) {
+                return e.getKey();
+            }
+        }
+        return dir;
+    }
+
     private File findFile(long logId) throws FileNotFoundException {
         for (File d : ledgerDirsManager.getAllLedgerDirs()) {
             File f = new File(d, Long.toHexString(logId) + ".log");
@@ -957,9 +1292,143 @@ public class EntryLogger {
                 return f;
             }
         }
+        // The entry log might have been moved to the cold tier
+        for (File d : coldTierDirs.values()) {
+            File f = new File(d, Long.toHexString(logId) + ".log");
+            if (f.exists()) {
+                return f;
+            }
+        }
         throw new FileNotFoundException("No file for log " + Long.toHexString(logId));
     }
 
+    /**
+     * Whether the entry logs are moved to a cold tier once they get old.
+     */
+    boolean hasColdTier() {
+        return !coldTierDirs.isEmpty();
+    }
+
+    /**
+     * Move an entry log to the cold tier, if it is no longer written and was not modified for the given time.
+     *
+     * <p>The entry log is copied to the cold tier directory paired with its ledger directory, then removed from the
+     * ledger directory. It keeps its id, so the locations of its entries stay valid. The reads in flight go on with the
+     * channel they already opened, the next reads open the entry log in the cold tier. The entry log is not moved while
+     * the cold tier directory is full or fails the disk checks. Must not run concurrently with the removal of the entry
+     * log.
+     *
+     * @return true if the entry log was moved
+     */
+    boolean moveToColdTier(long logId, long minAgeMillis) throws IOException {
+        File file;
+        try {
+            file = findFile(logId);
+        } catch (FileNotFoundException e) {
+            return false;
+        }
+        File coldTierDir = coldTierDirs.get(file.getParentFile());
+        if (coldTierDir == null // already in the cold tier
+                || logId >= getLeastUnflushedLogId()
+                || entryLogManager.getCurrentLogIfPresent(logId) != null
+                || System.currentTimeMillis() - file.lastModified() < minAgeMillis) {
+            return false;
+        }
+        // The cold tier directory is checked with the same thresholds as the ledger directories
+        try {
+            ledgerDirsManager.getDiskChecker().checkDir(coldTierDir);
+        } catch (DiskChecker.DiskWarnThresholdException e) {
+            // still room for the entry log
+        } catch (DiskChecker.DiskOutOfSpaceException e) {
+            LOG.warn("Not moving entry log {} to the cold tier directory {}, which is full : usage {}",
+                    logId, coldTierDir, e.getUsage());
+            return false;
+        } catch (DiskChecker.DiskErrorException e) {
+            LOG.error("Not moving entry log {} to the cold tier directory {}, which failed on disk checking : ",
+                    logId, coldTierDir, e);
+            return false;
+        }
+
+        File tmpFile = new File(coldTierDir, file.getName() + ".tmp");
+        long size;
+        try (FileChannel src = new RandomAccessFile(file, "r").getChannel();
+             FileChannel dst = new RandomAccessFile(tmpFile, "rw").getChannel()) {
+            // Overwrite what a previous attempt might have left
+            dst.truncate(0);
+            size = src.size();
+            long pos = 0;
+            while (pos < size) {
+                long n = src.transferTo(pos, size - pos, dst);
+                if (n <= 0) {
+                    throw new IOException("Short transfer of entry log " + file + " at " + pos);
+                }
+                pos += n;
+            }
+            dst.force(true);
+        } catch (IOException e) {
+            if (!tmpFile.delete()) {
+                LOG.warn("Could not delete {}", tmpFile);
+            }
+            throw e;
+        }
+        Files.move(tmpFile.toPath(), new File(coldTierDir, file.getName()).toPath(), StandardCopyOption.ATOMIC_MOVE);
+        // The rename must be durable before the only other copy of the entry log is deleted
+        syncDirectory(coldTierDir);
+        coldTierLogIds.add(logId);
+
+        // From now on the entry log is found in the cold tier
+        if (!file.delete()) {
+            LOG.warn("Could not delete entry log file {} after moving it to the cold tier", file);
+        }
+        removeFromChannelsAndClose(logId);
+
+        coldTierStats.entryLogsMoved.inc();
+        coldTierStats.bytesMoved.add(size);
+        LOG.info("Moved entry log {} to the cold tier directory {}", logId, coldTierDir);
+        return true;
+    }
+
+    private static void syncDirectory(File dir) throws IOException {
+        try (FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    @StatsDoc(
+        name = ENTRYLOGGER_SCOPE,
+        category = CATEGORY_SERVER,
+        help = "EntryLogger related stats"
+    )
+    static class ColdTierStats {
+        @StatsDoc(
+            name = ENTRY_LOG_PRIMARY_TIER_READS,
+            help = "Number of entry reads served from the ledger directories, when a cold tier is configured"
+        )
+        final Counter primaryTierReads;
+        @StatsDoc(
+            name = ENTRY_LOG_COLD_TIER_READS,
+            help = "Number of entry reads served from the cold tier directories"
+        )
+        final Counter coldTierReads;
+        @StatsDoc(
+            name = ENTRY_LOGS_MOVED_TO_COLD_TIER,
+            help = "Number of entry logs moved to the cold tier"
+        )
+        final Counter entryLogsMoved;
+        @StatsDoc(
+            name = ENTRY_LOG_BYTES_MOVED_TO_COLD_TIER,
+            help = "Number of bytes of entry logs moved to the cold tier"
+        )
+        final Counter bytesMoved;
+
+        ColdTierStats(StatsLogger statsLogger) {
+            primaryTierReads = statsLogger.getCounter(ENTRY_LOG_PRIMARY_TIER_READS);
+            coldTierReads = statsLogger.getCounter(ENTRY_LOG_COLD_TIER_READS);
+            entryLogsMoved = statsLogger.getCounter(ENTRY_LOGS_MOVED_TO_COLD_TIER);
+            bytesMoved = statsLogger.getCounter(ENTRY_LOG_BYTES_MOVED_TO_COLD_TIER);
+        }
+    }
+
     /**
      * Scan entry log.
      *
@@ -970,14 +1439,15 @@ public class EntryLogger {
     public void scanEntryLog(long entryLogId, EntryLogScanner scanner) throws IOException {
         // Buffer where to read the entrySize (4 bytes) and the ledgerId (8 bytes)
         ByteBuf headerBuffer = Unpooled.buffer(4 + 8);
-        BufferedReadChannel bc;
+        CachedChannel channel;
         // Get the BufferedChannel for the current entry log file
         try {
-            bc = getChannelForLogId(entryLogId);
+            channel = readChannels.acquire(entryLogId);
         } catch (IOException e) {
             LOG.warn("Failed to get channel to scan entry log: " + entryLogId + ".log");
             throw e;
         }
+        BufferedReadChannel bc = newSequentialReadChannel(channel);
         // Start the read position in the current entry log file to be after
         // the header where all of the ledger entries are.
         long pos = LOGFILE_HEADER_SIZE;
@@ -1026,6 +1496,98 @@ public class EntryLogger {
             }
         } finally {
             data.release();
+            channel.release();
+        }
+    }
+
+    /**
+     * Relocate the entries of the accepted ledgers of an entry log file to the current entry logs.
+     *
+     * <p>Only the headers of the entries are read. Ranges of adjacent entries of the same ledger are then appended to
+     * the current entry log of the ledger with {@link FileChannel#transferTo}, so that their content is moved by the
+     * kernel without being copied through the memory of the bookie.
+     *
+     * @param entryLogId
+     *          Entry Log File Id.
+     * @param relocator
+     *          Entry relocator.
+     * @throws IOException
+     */
+    void relocateEntries(long entryLogId, EntryRelocator relocator) throws IOException {
+        // Buffer where to read the entrySize (4 bytes), the ledgerId (8 bytes) and the entryId (8 bytes)
+        ByteBuf headerBuffer = Unpooled.buffer(4 + 8 + 8);
+        CachedChannel channel = readChannels.acquire(entryLogId);
+        try {
+            BufferedReadChannel bc = newSequentialReadChannel(channel);
+            FileChannel src = channel.getFileChannel();
+
+            // The range of adjacent entries of the same ledger to transfer, and the ids and offsets of its entries
+            long rangeLedgerId = INVALID_LID;
+            long rangeStart = 0;
+            int rangeLength = 0;
+            int numEntries = 0;
+            long[] entryIds = new long[64];
+            int[] entryOffsets = new int[64];
+
+            long pos = LOGFILE_HEADER_SIZE;
+            long size = bc.size();
+            while (pos < size) {
+                if (readFromLogChannel(entryLogId, bc, headerBuffer, pos) != headerBuffer.capacity()) {
+                    LOG.warn("Short read for entry header from entrylog {}", entryLogId);
+                    break;
+                }
+                int entrySize = headerBuffer.readInt();
+                long ledgerId = headerBuffer.readLong();
+                long entryId = headerBuffer.readLong();
+                headerBuffer.clear();
+                if (entrySize < MIN_SANE_ENTRY_SIZE) {
+                    throw new IOException("Invalid entry size " + entrySize + " at position " + pos + " of entrylog "
+                            + entryLogId);
+                } else if (pos + 4 + entrySize > size) {
+                    LOG.warn("Short entry at position {} of entrylog {}", pos, entryLogId);
+                    break;
+                }
+
+                boolean accepted = ledgerId != INVALID_LID && relocator.accept(ledgerId);
+                if (numEntries > 0 && (!accepted || ledgerId != rangeLedgerId || rangeStart + rangeLength != pos
+                        || rangeLength + 4 + entrySize > MAX_RELOCATED_RANGE_SIZE)) {
+                    transferEntries(rangeLedgerId, src, rangeStart, rangeLength, numEntries, entryIds, entryOffsets,
+                            relocator);
+                    numEntries = 0;
+                }
+
+                if (accepted) {
+                    if (numEntries == 0) {
+                        rangeLedgerId = ledgerId;
+                        rangeStart = pos;
+                        rangeLength = 0;
+                    } else if (numEntries == entryIds.length) {
+                        entryIds = Arrays.copyOf(entryIds, numEntries * 2);
+                        entryOffsets = Arrays.copyOf(entryOffsets, numEntries * 2);
+                    }
+                    entryIds[numEntries] = entryId;
+                    entryOffsets[numEntries] = rangeLength + 4;
+                    numEntries++;
+                    rangeLength += 4 + entrySize;
+                }
+                pos += 4 + entrySize;
+            }
+
+            if (numEntries > 0) {
+                transferEntries(rangeLedgerId, src, rangeStart, rangeLength, numEntries, entryIds, entryOffsets,
+                        relocator);
+            }
+        } finally {
+            channel.release();
+        }
+    }
+
+    private void transferEntries(long ledgerId, FileChannel src, long rangeStart, int rangeLength, int numEntries,
+            long[] entryIds, int[] entryOffsets, EntryRelocator relocator) throws IOException {
+        long location = entryLogManager.transferEntries(ledgerId, src, rangeStart, rangeLength);
+        for (int i = 0; i < numEntries; i++) {
+            int end = i + 1 < numEntries ? entryOffsets[i + 1] - 4 : rangeLength;
+            relocator.relocated(ledgerId, entryIds[i], end - entryOffsets[i], location + entryOffsets[i]);
         }
     }
 
@@ -1058,7 +1620,7 @@ public class EntryLogger {
             LOG.debug("Recovering ledgers maps for log {} at offset: {}", entryLogId, header.ledgersMapOffset);
         }
 
-        BufferedReadChannel bc = getChannelForLogId(entryLogId);
+        CachedChannel bc = readChannels.acquire(entryLogId);
 
         // There can be multiple entries containing the various components of the serialized ledgers map
         long offset = header.ledgersMapOffset;
@@ -1115,6 +1677,7 @@ public class EntryLogger {
             throw new IOException(e);
         } finally {
             ledgersMap.release();
+            bc.release();
         }
 
         if (meta.getLedgersMap().size() != header.ledgersCount) {
@@ -1156,11 +1719,6 @@ public class EntryLogger {
         LOG.info("Stopping EntryLogger");
         try {
             flush();
-            for (FileChannel fc : logid2FileChannel.values()) {
-                fc.close();
-            }
-            // clear the mapping, so we don't need to go through the channels again in finally block in normal case.
-            logid2FileChannel.clear();
             entryLogManager.close();
             synchronized (compactionLogLock) {
                 if (compactionLogChannel != null) {
@@ -1172,14 +1730,13 @@ public class EntryLogger {
             // we have no idea how to avoid io exception during shutting down, so just ignore it
             LOG.error("Error flush entry log during shutting down, which may cause entry log corrupted.", ie);
         } finally {
-            for (FileChannel fc : logid2FileChannel.values()) {
-                IOUtils.close(LOG, fc);
-            }
+            readChannels.invalidateAll();
 
             entryLogManager.forceClose();
             synchronized (compactionLogLock) {
                 IOUtils.close(LOG, compactionLogChannel);
             }
+            IOUtils.close(LOG, ioUring);
         }
         // shutdown the pre-allocation thread
         entryLoggerAllocator.stop();
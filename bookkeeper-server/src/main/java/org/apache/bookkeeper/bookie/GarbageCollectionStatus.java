@@ -44,4 +44,9 @@ public class GarbageCollectionStatus {
     private long lastMinorCompactionTime;
     private long majorCompactionCounter;
     private long minorCompactionCounter;
+
+    // current rate of the compaction throttler, in bytes or entries per second.
+    private double compactionRate;
+    // the entry logs picked by the last compaction run.
+    private CompactionPlan compactionPlan;
 }
@@ -24,21 +24,25 @@ package org.apache.bookkeeper.bookie;
 import com.google.common.annotations.VisibleForTesting;
 import io.netty.util.concurrent.DefaultThreadFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+
 import org.apache.bookkeeper.bookie.GarbageCollector.GarbageCleaner;
 import org.apache.bookkeeper.bookie.stats.GarbageCollectorStats;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorageRocksDB;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.meta.LedgerManager;
 import org.apache.bookkeeper.stats.StatsLogger;
@@ -54,9 +58,11 @@ import org.slf4j.LoggerFactory;
 public class GarbageCollectorThread extends SafeRunnable {
     private static final Logger LOG = LoggerFactory.getLogger(GarbageCollectorThread.class);
     private static final int SECOND = 1000;
+    private static final int SHUTDOWN_TIMEOUT_SECONDS = 10;
+    private static final String ENTRYLOG_METADATA_DB = "entrylogs-metadata";
 
     // Maps entry log files to the set of ledgers that comprise the file and the size usage per ledger
-    private Map<Long, EntryLogMetadata> entryLogMetaMap = new ConcurrentHashMap<Long, EntryLogMetadata>();
+    private final EntryLogMetadataMap entryLogMetaMap;
 
     private final ScheduledExecutorService gcExecutor;
     Future<?> scheduledFuture = null;
@@ -75,11 +81,20 @@ public class GarbageCollectorThread extends SafeRunnable {
     final long majorCompactionInterval;
     long lastMajorCompactionTime;
 
+    // Maximum number of bytes rewritten by a compaction run, unless forced
+    final long compactionMaxBytesPerRun;
+    // The entry logs picked by the last compaction run
+    private volatile CompactionPlan compactionPlan = null;
+
     final boolean isForceGCAllowWhenNoSpace;
 
     // Entry Logger Handle
     final EntryLogger entryLogger;
     final AbstractLogCompactor compactor;
+    // One compactor per ledger directory when compacting the directories in parallel. The live entries are all
+    // rewritten to the current entry log, so each compactor is limited to a share of the compaction rate
+    final Map<File, AbstractLogCompactor> directoryCompactors = new LinkedHashMap<>();
+    private final ExecutorService compactionExecutor;
 
     // Stats loggers for garbage collection operations
     private final GarbageCollectorStats gcStats;
@@ -146,6 +161,7 @@ public class GarbageCollectorThread extends SafeRunnable {
         this.entryLogger = ledgerStorage.getEntryLogger();
         this.ledgerStorage = ledgerStorage;
         this.gcWaitTime = conf.getGcWaitTime();
+        this.entryLogMetaMap = createEntryLogMetadataMap();
 
         this.numActiveEntryLogs = 0;
         this.totalEntryLogSize = 0L;
@@ -175,6 +191,7 @@ public class GarbageCollectorThread extends SafeRunnable {
         majorCompactionThreshold = conf.getMajorCompactionThreshold();
         majorCompactionInterval = conf.getMajorCompactionInterval() * SECOND;
         isForceGCAllowWhenNoSpace = conf.getIsForceGCAllowWhenNoSpace();
+        compactionMaxBytesPerRun = conf.getCompactionMaxBytesPerRun();
 
         AbstractLogCompactor.LogRemovalListener remover = new AbstractLogCompactor.LogRemovalListener() {
             @Override
@@ -188,6 +205,21 @@ public class GarbageCollectorThread extends SafeRunnable {
             this.compactor = new EntryLogCompactor(conf, entryLogger, ledgerStorage, remover);
         }
 
+        // The transactional compactor writes to a single compaction log, so it can't run in parallel
+        List<File> ledgerDirs = entryLogger.getLedgerDirsManager().getAllLedgerDirs();
+        if (conf.isPerDirectoryCompactionEnabled() && !conf.getUseTransactionalCompaction()
+                && ledgerDirs.size() > 1) {
+            double rateShare = 1.0 / ledgerDirs.size();
+            for (File ledgerDir : ledgerDirs) {
+                directoryCompactors.put(ledgerDir,
+                        new EntryLogCompactor(conf, entryLogger, ledgerStorage, remover, rateShare));
+            }
+            this.compactionExecutor = Executors.newFixedThreadPool(ledgerDirs.size(),
+                    new DefaultThreadFactory("GarbageCollectorThread-compaction"));
+        } else {
+            this.compactionExecutor = null;
+        }
+
         if (minorCompactionInterval > 0 && minorCompactionThreshold > 0) {
             if (minorCompactionThreshold > 1.0f) {
                 throw new IOException("Invalid minor compaction threshold "
@@ -230,6 +262,16 @@ public class GarbageCollectorThread extends SafeRunnable {
         lastMinorCompactionTime = lastMajorCompactionTime = System.currentTimeMillis();
     }
 
+    private EntryLogMetadataMap createEntryLogMetadataMap() throws IOException {
+        if (!conf.isGcEntryLogMetadataCacheEnabled()) {
+            return new InMemoryEntryLogMetadataMap();
+        }
+        // Each entry logger has its own table, in the directory of its first entry logs
+        File baseDir = entryLogger.getLedgerDirsManager().getAllLedgerDirs().get(0);
+        return new PersistentEntryLogMetadataMap(KeyValueStorageRocksDB.factory,
+                new File(baseDir, ENTRYLOG_METADATA_DB).getPath(), conf);
+    }
+
     public void enableForceGC() {
         if (forceGarbageCollection.compareAndSet(false, true)) {
             LOG.info("Forced garbage collection triggered by thread: {}", Thread.currentThread().getName());
@@ -325,7 +367,7 @@ public class GarbageCollectorThread extends SafeRunnable {
 
         // Extract all of the ledger ID's that comprise all of the entry logs
         // (except for the current new one which is still being written to).
-        entryLogMetaMap = extractMetaFromEntryLogs(entryLogMetaMap);
+        extractMetaFromEntryLogs(entryLogMetaMap);
 
         // gc inactive/deleted ledgers
         doGcLedgers();
@@ -333,6 +375,11 @@ public class GarbageCollectorThread extends SafeRunnable {
         // gc entry logs
         doGcEntryLogs();
 
+        // move the old entry logs to the cold tier
+        if (entryLogger.hasColdTier()) {
+            doMoveEntryLogsToColdTier();
+        }
+
         if (suspendMajor) {
             LOG.info("Disk almost full, suspend major compaction to slow down filling disk.");
         }
@@ -346,7 +393,7 @@ public class GarbageCollectorThread extends SafeRunnable {
             // enter major compaction
             LOG.info("Enter major compaction, suspendMajor {}", suspendMajor);
             majorCompacting.set(true);
-            doCompactEntryLogs(majorCompactionThreshold);
+            doCompactEntryLogs(majorCompactionThreshold, force ? 0 : compactionMaxBytesPerRun);
             lastMajorCompactionTime = System.currentTimeMillis();
             // and also move minor compaction time
             lastMinorCompactionTime = lastMajorCompactionTime;
@@ -357,7 +404,7 @@ public class GarbageCollectorThread extends SafeRunnable {
             // enter minor compaction
             LOG.info("Enter minor compaction, suspendMinor {}", suspendMinor);
             minorCompacting.set(true);
-            doCompactEntryLogs(minorCompactionThreshold);
+            doCompactEntryLogs(minorCompactionThreshold, force ? 0 : compactionMaxBytesPerRun);
             lastMinorCompactionTime = System.currentTimeMillis();
             gcStats.getMinorCompactionCounter().inc();
             minorCompacting.set(false);
@@ -386,26 +433,69 @@ public class GarbageCollectorThread extends SafeRunnable {
     private void doGcEntryLogs() {
         // Get a cumulative count, don't update until complete
         AtomicLong totalEntryLogSizeAcc = new AtomicLong(0L);
+        AtomicInteger numActiveEntryLogsAcc = new AtomicInteger(0);
 
-        // Loop through all of the entry logs and remove the non-active ledgers.
-        entryLogMetaMap.forEach((entryLogId, meta) -> {
-           removeIfLedgerNotExists(meta);
-           if (meta.isEmpty()) {
-               // This means the entry log is not associated with any active ledgers anymore.
-               // We can remove this entry log file now.
-               LOG.info("Deleting entryLogId " + entryLogId + " as it has no active ledgers!");
-               removeEntryLog(entryLogId);
-               gcStats.getReclaimedSpaceViaDeletes().add(meta.getTotalSize());
-           }
-
-           totalEntryLogSizeAcc.getAndAdd(meta.getRemainingSize());
-        });
+        try {
+            // Loop through all of the entry logs and remove the non-active ledgers.
+            entryLogMetaMap.forEach((entryLogId, meta) -> {
+               boolean modified = removeIfLedgerNotExists(meta);
+               if (meta.isEmpty()) {
+                   // This means the entry log is not associated with any active ledgers anymore.
+                   // We can remove this entry log file now.
+                   LOG.info("Deleting entryLogId " + entryLogId + " as it has no active ledgers!");
+                   removeEntryLog(entryLogId);
+                   gcStats.getReclaimedSpaceViaDeletes().add(meta.getTotalSize());
+               } else {
+                   if (modified) {
+                       putEntryLogMetadata(meta);
+                   }
+                   numActiveEntryLogsAcc.incrementAndGet();
+               }
+
+               totalEntryLogSizeAcc.getAndAdd(meta.getRemainingSize());
+            });
+        } catch (IOException e) {
+            LOG.error("Failed to read the entry log metadata", e);
+            return;
+        }
 
         this.totalEntryLogSize = totalEntryLogSizeAcc.get();
-        this.numActiveEntryLogs = entryLogMetaMap.keySet().size();
+        this.numActiveEntryLogs = numActiveEntryLogsAcc.get();
+    }
+
+    /**
+     * Move the entry logs that were not modified for the cold tier age to the cold tier.
+     */
+    private void doMoveEntryLogsToColdTier() {
+        long minAgeMillis = conf.getEntryLogColdTierAgeSeconds() * SECOND;
+        try {
+            entryLogMetaMap.forEach((entryLogId, meta) -> {
+                try {
+                    entryLogger.moveToColdTier(entryLogId, minAgeMillis);
+                } catch (IOException e) {
+                    LOG.error("Failed to move entry log {} to the cold tier", entryLogId, e);
+                }
+            });
+        } catch (IOException e) {
+            LOG.error("Failed to read the entry log metadata", e);
+        }
     }
 
-    private void removeIfLedgerNotExists(EntryLogMetadata meta) {
+    private void putEntryLogMetadata(EntryLogMetadata meta) {
+        try {
+            entryLogMetaMap.put(meta.getEntryLogId(), meta);
+        } catch (IOException e) {
+            LOG.error("Failed to update the metadata of entry log {}", meta.getEntryLogId(), e);
+        }
+    }
+
+    /**
+     * Remove the ledgers that no longer exist from the metadata of an entry log.
+     *
+     * @return true if some ledgers were removed
+     */
+    private boolean removeIfLedgerNotExists(EntryLogMetadata meta) {
+        long priorNumLedgers = meta.getLedgersMap().size();
         meta.removeLedgerIf((entryLogLedger) -> {
             // Remove the entry log ledger from the set if it isn't active.
             try {
@@ -415,36 +505,61 @@ public class GarbageCollectorThread extends SafeRunnable {
                 return false;
             }
         });
+        return meta.getLedgersMap().size() != priorNumLedgers;
     }
 
     /**
      * Compact entry logs if necessary.
      *
      * <p>
-     * Compaction will be executed from low unused space to high unused space.
-     * Those entry log files whose remaining size percentage is higher than threshold
-     * would not be compacted.
+     * Compaction will be executed from the entry logs that reclaim the most space per byte
+     * read and rewritten to the ones that reclaim the least, until the maximum number of
+     * bytes to rewrite is reached. Those entry log files whose remaining size percentage
+     * is higher than threshold would not be compacted.
      * </p>
      */
     @VisibleForTesting
-    void doCompactEntryLogs(double threshold) {
+    void doCompactEntryLogs(double threshold, long maxBytes) {
         LOG.info("Do compaction to compact those files lower than {}", threshold);
 
-        // sort the ledger meta by usage in ascending order.
-        List<EntryLogMetadata> logsToCompact = new ArrayList<EntryLogMetadata>();
-        logsToCompact.addAll(entryLogMetaMap.values());
-        logsToCompact.sort(Comparator.comparing(EntryLogMetadata::getUsage));
-
         final int numBuckets = 10;
         int[] entryLogUsageBuckets = new int[numBuckets];
 
-        for (EntryLogMetadata meta : logsToCompact) {
-            int bucketIndex = Math.min(
-                    numBuckets - 1,
-                    (int) Math.ceil(meta.getUsage() * numBuckets));
-            entryLogUsageBuckets[bucketIndex]++;
+        // only keep the sizes of the candidate logs on the heap.
+        List<CompactionPlan.Candidate> candidates = new ArrayList<>();
+        try {
+            entryLogMetaMap.forEach((entryLogId, meta) -> {
+                int bucketIndex = Math.min(
+                        numBuckets - 1,
+                        (int) Math.ceil(meta.getUsage() * numBuckets));
+                entryLogUsageBuckets[bucketIndex]++;
+
+                if (meta.getUsage() < threshold) {
+                    candidates.add(new CompactionPlan.Candidate(entryLogId, meta.getTotalSize(),
+                            meta.getRemainingSize()));
+                }
+            });
+        } catch (IOException e) {
+            LOG.error("Failed to read the entry log metadata", e);
+            return;
+        }
+        LOG.info(
+                "Compaction: entry log usage buckets[10% 20% 30% 40% 50% 60% 70% 80% 90% 100%] = {}",
+                entryLogUsageBuckets);
+
+        CompactionPlan plan = CompactionPlan.create(threshold, maxBytes, candidates);
+        compactionPlan = plan;
+        LOG.info("Compaction plan: {} of {} entry logs below threshold, reclaiming {} bytes and rewriting {} bytes",
+                plan.getCandidates().size(), candidates.size(), plan.getReclaimableSize(), plan.getRewriteSize());
+
+        if (compactionExecutor != null) {
+            compactPerDirectory(plan, threshold);
+            return;
+        }
 
-            if (meta.getUsage() >= threshold) {
+        for (CompactionPlan.Candidate candidate : plan.getCandidates()) {
+            EntryLogMetadata meta = getEntryLogMetadata(candidate.getEntryLogId());
+            if (meta == null) {
                 continue;
             }
             if (LOG.isDebugEnabled()) {
@@ -459,9 +574,71 @@ public class GarbageCollectorThread extends SafeRunnable {
                 return;
             }
         }
-        LOG.info(
-                "Compaction: entry log usage buckets[10% 20% 30% 40% 50% 60% 70% 80% 90% 100%] = {}",
-                entryLogUsageBuckets);
+    }
+
+    /**
+     * Compact the entry logs of each ledger directory in parallel, in the order of the plan within a directory.
+     */
+    private void compactPerDirectory(CompactionPlan plan, double threshold) {
+        Map<File, List<CompactionPlan.Candidate>> candidatesByDir = new LinkedHashMap<>();
+        for (CompactionPlan.Candidate candidate : plan.getCandidates()) {
+            File dir = entryLogger.getLedgerDirForLog(candidate.getEntryLogId());
+            if (dir != null && directoryCompactors.containsKey(dir)) {
+                candidatesByDir.computeIfAbsent(dir, d -> new ArrayList<>()).add(candidate);
+            }
+        }
+
+        // Hold the compacting flag for the whole run, so that shutdown waits for all the directories
+        if (!compacting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<Future<?>> futures = new ArrayList<>(candidatesByDir.size());
+            candidatesByDir.forEach((dir, candidates) -> {
+                AbstractLogCompactor dirCompactor = directoryCompactors.get(dir);
+                futures.add(compactionExecutor.submit(() -> {
+                    for (CompactionPlan.Candidate candidate : candidates) {
+                        if (!running) { // if gc thread is not running, stop compaction
+                            return;
+                        }
+                        EntryLogMetadata meta = getEntryLogMetadata(candidate.getEntryLogId());
+                        if (meta == null) {
+                            continue;
+                        }
+                        if (LOG.isDebugEnabled()) {
+                            LOG.debug("Compacting entry log {} of {} below threshold {}",
+                                    meta.getEntryLogId(), dir, threshold);
+                        }
+
+                        long priorRemainingSize = meta.getRemainingSize();
+                        doCompactEntryLog(dirCompactor, meta);
+                        gcStats.getReclaimedSpaceViaCompaction().add(meta.getTotalSize() - priorRemainingSize);
+                    }
+                }));
+            });
+
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    LOG.error("Failed to compact the entry logs of a ledger directory", e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.warn("Interrupted while waiting for the compaction of the ledger directories");
+        } finally {
+            compacting.set(false);
+        }
+    }
+
+    private EntryLogMetadata getEntryLogMetadata(long entryLogId) {
+        try {
+            return entryLogMetaMap.get(entryLogId);
+        } catch (IOException e) {
+            LOG.error("Failed to read the metadata of entry log {}", entryLogId, e);
+            return null;
+        }
     }
 
     /**
@@ -480,6 +657,20 @@ public class GarbageCollectorThread extends SafeRunnable {
 
         // Interrupt GC executor thread
         gcExecutor.shutdownNow();
+        if (compactionExecutor != null) {
+            compactionExecutor.shutdownNow();
+        }
+
+        // The entry log metadata can only be closed once the gc executor thread is done with it
+        if (gcExecutor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            try {
+                entryLogMetaMap.close();
+            } catch (IOException e) {
+                LOG.warn("Failed to close the entry log metadata", e);
+            }
+        } else {
+            LOG.warn("GarbageCollectorThread did not stop, leaving the entry log metadata open");
+        }
     }
 
     /**
@@ -489,10 +680,14 @@ public class GarbageCollectorThread extends SafeRunnable {
      *          Entry Log File Id
      */
     protected void removeEntryLog(long entryLogId) {
-        // remove entry log file successfully
-        if (entryLogger.removeEntryLog(entryLogId)) {
+        // remove entry log file successfully, or drop the metadata of a file that was already removed
+        if (entryLogger.removeEntryLog(entryLogId) || !entryLogger.logExists(entryLogId)) {
             LOG.info("Removing entry log metadata for {}", entryLogId);
-            entryLogMetaMap.remove(entryLogId);
+            try {
+                entryLogMetaMap.remove(entryLogId);
+            } catch (IOException e) {
+                LOG.error("Failed to remove the metadata of entry log {}", entryLogId, e);
+            }
         }
     }
 
@@ -515,44 +710,49 @@ public class GarbageCollectorThread extends SafeRunnable {
 
         try {
             // Do the actual compaction
-            compactor.compact(entryLogMeta);
-        } catch (Exception e) {
-            LOG.error("Failed to compact entry log {} due to unexpected error", entryLogMeta.getEntryLogId(), e);
+            doCompactEntryLog(compactor, entryLogMeta);
         } finally {
             // Mark compaction done
             compacting.set(false);
         }
     }
 
+    private void doCompactEntryLog(AbstractLogCompactor logCompactor, EntryLogMetadata entryLogMeta) {
+        try {
+            logCompactor.compact(entryLogMeta);
+        } catch (Exception e) {
+            LOG.error("Failed to compact entry log {} due to unexpected error", entryLogMeta.getEntryLogId(), e);
+        }
+    }
+
     /**
      * Method to read in all of the entry logs (those that we haven't done so yet),
      * and find the set of ledger ID's that make up each entry log file.
      *
      * @param entryLogMetaMap
      *          Existing EntryLogs to Meta
-     * @throws IOException
      */
-    protected Map<Long, EntryLogMetadata> extractMetaFromEntryLogs(Map<Long, EntryLogMetadata> entryLogMetaMap) {
+    protected void extractMetaFromEntryLogs(EntryLogMetadataMap entryLogMetaMap) {
         // Extract it for every entry log except for the current one.
         // Entry Log ID's are just a long value that starts at 0 and increments
         // by 1 when the log fills up and we roll to a new one.
         long curLogId = entryLogger.getLeastUnflushedLogId();
         boolean hasExceptionWhenScan = false;
         for (long entryLogId = scannedLogId; entryLogId < curLogId; entryLogId++) {
-            // Comb the current entry log file if it has not already been extracted.
-            if (entryLogMetaMap.containsKey(entryLogId)) {
-                continue;
-            }
+            try {
+                // Comb the current entry log file if it has not already been extracted.
+                if (entryLogMetaMap.containsKey(entryLogId)) {
+                    continue;
+                }
 
-            // check whether log file exists or not
-            // if it doesn't exist, this log file might have been garbage collected.
-            if (!entryLogger.logExists(entryLogId)) {
-                continue;
-            }
+                // check whether log file exists or not
+                // if it doesn't exist, this log file might have been garbage collected.
+                if (!entryLogger.logExists(entryLogId)) {
+                    continue;
+                }
 
-            LOG.info("Extracting entry log meta from entryLogId: {}", entryLogId);
+                LOG.info("Extracting entry log meta from entryLogId: {}", entryLogId);
 
-            try {
                 // Read through the entry log file and extract the entry log meta
                 EntryLogMetadata entryLogMeta = entryLogger.getEntryLogMetadata(entryLogId);
                 removeIfLedgerNotExists(entryLogMeta);
@@ -574,7 +774,6 @@ public class GarbageCollectorThread extends SafeRunnable {
                 ++scannedLogId;
             }
         }
-        return entryLogMetaMap;
     }
 
     CompactableLedgerStorage getLedgerStorage() {
@@ -590,6 +789,9 @@ public class GarbageCollectorThread extends SafeRunnable {
             .lastMinorCompactionTime(lastMinorCompactionTime)
             .majorCompactionCounter(gcStats.getMajorCompactionCounter().get())
             .minorCompactionCounter(gcStats.getMinorCompactionCounter().get())
+            .compactionRate(directoryCompactors.isEmpty() ? compactor.throttler.getRate()
+                : directoryCompactors.values().stream().mapToDouble(c -> c.throttler.getRate()).sum())
+            .compactionPlan(compactionPlan)
             .build();
     }
 }
@@ -28,17 +28,13 @@ import static org.apache.bookkeeper.bookie.BookKeeperServerStats.NUM_INDEX_PAGES
 
 import com.google.common.base.Stopwatch;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.bookkeeper.bookie.stats.IndexInMemPageMgrStats;
@@ -48,28 +44,53 @@ import org.apache.bookkeeper.stats.Gauge;
 import org.apache.bookkeeper.stats.OpStatsLogger;
 import org.apache.bookkeeper.stats.StatsLogger;
 import org.apache.bookkeeper.util.DirectMemoryUtils;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 class IndexInMemPageMgr {
     private static final Logger LOG = LoggerFactory.getLogger(IndexInMemPageMgr.class);
-    private static final ConcurrentHashMap<Long, LedgerEntryPage> EMPTY_PAGE_MAP =
-            new ConcurrentHashMap<Long, LedgerEntryPage>();
 
+    /**
+     * The index pages in memory.
+     *
+     * <p>The pages are slices of large direct memory slabs, allocated up to the page limit and then reused. They are
+     * indexed by ledger id and first entry in primitive-keyed maps, and tracked in an array of slots that is swept by
+     * a CLOCK eviction: using a page sets its reference bit, and the sweep gives referenced pages a second chance
+     * before reclaiming the first clean page that is not in use.
+     */
     private static class InMemPageCollection implements LEPStateChangeCallback {
 
-        final ConcurrentMap<Long, ConcurrentMap<Long, LedgerEntryPage>> pages;
-        final Map<EntryKey, LedgerEntryPage> lruCleanPageMap;
+        // Size of the direct memory slabs holding the pages
+        private static final int SLAB_SIZE = 8 * 1024 * 1024;
+        private static final int INITIAL_SLOTS = 1024;
+
+        final ConcurrentLongHashMap<ConcurrentLongHashMap<LedgerEntryPage>> pages;
         final ConcurrentLinkedQueue<LedgerEntryPage> listOfFreePages;
 
+        private final int pageSize;
+        private final int entriesPerPage;
+        private final int pageLimit;
+        private final int pagesPerSlab;
+
+        // All the allocated pages, swept by the clock hand. The slots are published before the page count.
+        private volatile LedgerEntryPage[] slots;
+        private volatile int numPages = 0;
+        private final AtomicInteger clockHand = new AtomicInteger(0);
+        // Remaining space of the last allocated slab, guarded by this
+        private ByteBuffer slab = null;
+
         // Stats
         private final IndexInMemPageMgrStats inMemPageMgrStats;
 
-        public InMemPageCollection(StatsLogger statsLogger) {
-            pages = new ConcurrentHashMap<>();
-            lruCleanPageMap =
-                    Collections.synchronizedMap(new LinkedHashMap<EntryKey, LedgerEntryPage>(16, 0.75f, true));
+        public InMemPageCollection(int pageSize, int entriesPerPage, int pageLimit, StatsLogger statsLogger) {
+            pages = new ConcurrentLongHashMap<>();
             listOfFreePages = new ConcurrentLinkedQueue<LedgerEntryPage>();
+            this.pageSize = pageSize;
+            this.entriesPerPage = entriesPerPage;
+            this.pageLimit = pageLimit;
+            this.pagesPerSlab = Math.max(1, Math.min(pageLimit, SLAB_SIZE / pageSize));
+            this.slots = new LedgerEntryPage[Math.max(1, Math.min(pageLimit, INITIAL_SLOTS))];
             inMemPageMgrStats = new IndexInMemPageMgrStats(statsLogger);
         }
 
@@ -81,37 +102,60 @@ class IndexInMemPageMgr {
          * @returns LedgerEntryPage if present
          */
         private LedgerEntryPage getPage(long ledgerId, long firstEntry) {
-            ConcurrentMap<Long, LedgerEntryPage> map = pages.get(ledgerId);
+            ConcurrentLongHashMap<LedgerEntryPage> map = pages.get(ledgerId);
             if (null != map) {
                 return map.get(firstEntry);
             }
             return null;
         }
 
+        /**
+         * Retrieve the LedgerEntryPage corresponding to the ledger and firstEntry, and mark it in use.
+         *
+         * @param ledgerId Ledger id
+         * @param firstEntry Id of the first entry in the page
+         * @param onlyDirty whether to only return the page if it is dirty
+         * @returns LedgerEntryPage if present
+         */
+        private LedgerEntryPage usePage(long ledgerId, long firstEntry, boolean onlyDirty) {
+            while (true) {
+                LedgerEntryPage lep = getPage(ledgerId, firstEntry);
+                if (null == lep || (onlyDirty && lep.isClean())) {
+                    return null;
+                }
+                lep.usePage();
+                // The page might have been reclaimed for another ledger before we marked it in use
+                if (getPage(ledgerId, firstEntry) == lep) {
+                    return lep;
+                }
+                lep.releasePage();
+            }
+        }
+
         /**
          * Add a LedgerEntryPage to the page map.
          *
          * @param lep Ledger Entry Page object
          */
         private LedgerEntryPage putPage(LedgerEntryPage lep) {
-            // Do a get here to avoid too many new ConcurrentHashMaps() as putIntoTable is called frequently.
-            ConcurrentMap<Long, LedgerEntryPage> map = pages.get(lep.getLedger());
-            if (null == map) {
-                ConcurrentMap<Long, LedgerEntryPage> mapToPut = new ConcurrentHashMap<Long, LedgerEntryPage>();
-                map = pages.putIfAbsent(lep.getLedger(), mapToPut);
+            while (true) {
+                // Do a get here to avoid too many new maps as putIntoTable is called frequently.
+                ConcurrentLongHashMap<LedgerEntryPage> map = pages.get(lep.getLedger());
                 if (null == map) {
-                    map = mapToPut;
+                    ConcurrentLongHashMap<LedgerEntryPage> mapToPut = new ConcurrentLongHashMap<>(16, 1);
+                    map = pages.putIfAbsent(lep.getLedger(), mapToPut);
+                    if (null == map) {
+                        map = mapToPut;
+                    }
                 }
+                LedgerEntryPage oldPage = map.putIfAbsent(lep.getFirstEntry(), lep);
+                if (null == oldPage && pages.get(lep.getLedger()) != map) {
+                    // The map was removed from the page table when it became empty, try again with a new one
+                    map.remove(lep.getFirstEntry(), lep);
+                    continue;
+                }
+                return null == oldPage ? lep : oldPage;
             }
-            LedgerEntryPage oldPage = map.putIfAbsent(lep.getFirstEntry(), lep);
-            if (null == oldPage) {
-                oldPage = lep;
-                // Also include this in the clean page map if it qualifies.
-                // Note: This is done for symmetry and correctness, however it should never
-                // get exercised since we shouldn't attempt a put without the page being in use
-                addToCleanPagesList(lep);
-            }
-            return oldPage;
         }
 
         /**
@@ -123,13 +167,16 @@ class IndexInMemPageMgr {
         private long getLastEntryInMem(long ledgerId) {
             long lastEntry = 0;
             // Find the last entry in the cache
-            ConcurrentMap<Long, LedgerEntryPage> map = pages.get(ledgerId);
+            ConcurrentLongHashMap<LedgerEntryPage> map = pages.get(ledgerId);
             if (map != null) {
-                for (LedgerEntryPage lep: map.values()) {
-                    if (lep.getMaxPossibleEntry() < lastEntry) {
+                for (long firstEntry: map.keys()) {
+                    if (firstEntry + entriesPerPage < lastEntry) {
+                        continue;
+                    }
+                    LedgerEntryPage lep = usePage(ledgerId, firstEntry, false);
+                    if (null == lep) {
                         continue;
                     }
-                    lep.usePage();
                     long highest = lep.getLastEntry();
                     if (highest > lastEntry) {
                         lastEntry = highest;
@@ -148,10 +195,9 @@ class IndexInMemPageMgr {
          */
         private void removeEntriesForALedger(long ledgerId) {
             // remove pages first to avoid page flushed when deleting file info
-            ConcurrentMap<Long, LedgerEntryPage> lPages = pages.remove(ledgerId);
+            ConcurrentLongHashMap<LedgerEntryPage> lPages = pages.remove(ledgerId);
             if (null != lPages) {
-                for (Map.Entry<Long, LedgerEntryPage> pageEntry: lPages.entrySet()) {
-                    LedgerEntryPage lep = pageEntry.getValue();
+                for (LedgerEntryPage lep: lPages.values()) {
                     lep.usePage();
                     lep.markDeleted();
                     lep.releasePage();
@@ -167,60 +213,77 @@ class IndexInMemPageMgr {
          * @returns last entry in the in memory pages.
          */
         private LinkedList<Long> getFirstEntryListToBeFlushed(long ledgerId) {
-            ConcurrentMap<Long, LedgerEntryPage> pageMap = pages.get(ledgerId);
+            ConcurrentLongHashMap<LedgerEntryPage> pageMap = pages.get(ledgerId);
             if (pageMap == null || pageMap.isEmpty()) {
                 return null;
             }
 
             LinkedList<Long> firstEntryList = new LinkedList<Long>();
-            for (ConcurrentMap.Entry<Long, LedgerEntryPage> entry: pageMap.entrySet()) {
-                LedgerEntryPage lep = entry.getValue();
+            pageMap.forEach((firstEntry, lep) -> {
                 if (lep.isClean()) {
-                    if (!lep.inUse()) {
-                        addToCleanPagesList(lep);
-                    }
                     if (LOG.isTraceEnabled()) {
                         LOG.trace("Page is clean " + lep);
                     }
                 } else {
-                    firstEntryList.add(lep.getFirstEntry());
+                    firstEntryList.add(firstEntry);
                 }
-            }
+            });
             return firstEntryList;
         }
 
         /**
-         * Add the LedgerEntryPage to the clean page LRU map.
+         * Get the list of active ledgers.
          *
-         * @param lep Ledger Entry Page object
          */
-        private void addToCleanPagesList(LedgerEntryPage lep) {
-            synchronized (lruCleanPageMap) {
-                if (lep.isClean() && !lep.inUse()) {
-                    lruCleanPageMap.put(lep.getEntryKey(), lep);
-                }
-            }
+        List<Long> getActiveLedgers() {
+            return pages.keys();
         }
 
         /**
-         * Remove the LedgerEntryPage from the clean page LRU map.
-         *
-         * @param lep Ledger Entry Page object
+         * @return the number of pages allocated so far
          */
-        private void removeFromCleanPageList(LedgerEntryPage lep) {
-            synchronized (lruCleanPageMap) {
-                if (!lep.isClean() || lep.inUse()) {
-                    lruCleanPageMap.remove(lep.getEntryKey());
-                }
-            }
+        int getNumPages() {
+            return numPages;
         }
 
         /**
-         * Get the set of active ledgers.
+         * Allocate a new page for the specified ledger and firstEntry within the ledger, unless the page limit has
+         * been reached.
          *
+         * @param ledgerId Ledger id
+         * @param firstEntry Id of the first entry in the page
+         * @returns the new LedgerEntryPage, or null if the page limit has been reached
          */
-        Set<Long> getActiveLedgers() {
-            return pages.keySet();
+        LedgerEntryPage allocatePage(long ledgerId, long firstEntry) {
+            if (numPages >= pageLimit) {
+                return null;
+            }
+
+            LedgerEntryPage lep;
+            synchronized (this) {
+                int n = numPages;
+                if (n >= pageLimit) {
+                    return null;
+                }
+                if (null == slab || !slab.hasRemaining()) {
+                    slab = ByteBuffer.allocateDirect(Math.min(pagesPerSlab, pageLimit - n) * pageSize);
+                }
+                // Slice the slab twice so that the capacity of the page is its size
+                ByteBuffer page = slab.slice();
+                page.limit(pageSize);
+                page = page.slice();
+                slab.position(slab.position() + pageSize);
+
+                lep = new LedgerEntryPage(page, entriesPerPage, this);
+                if (n == slots.length) {
+                    slots = Arrays.copyOf(slots, (int) Math.min(pageLimit, 2L * n));
+                }
+                slots[n] = lep;
+                numPages = n + 1;
+            }
+            lep.setLedgerAndFirstEntry(ledgerId, firstEntry);
+            lep.usePage();
+            return lep;
         }
 
         /**
@@ -238,55 +301,56 @@ class IndexInMemPageMgr {
                 lep.usePage();
                 return lep;
             }
-            while (lruCleanPageMap.size() > 0) {
-                lep = null;
-                synchronized (lruCleanPageMap) {
-                    Iterator<Map.Entry<EntryKey, LedgerEntryPage>> iterator = lruCleanPageMap.entrySet().iterator();
-
-                    Map.Entry<EntryKey, LedgerEntryPage> entry = null;
-                    while (iterator.hasNext()) {
-                        entry = iterator.next();
-                        iterator.remove();
-                        if (entry.getValue().isClean() && !entry.getValue().inUse()) {
-                            lep = entry.getValue();
-                            break;
-                        }
-                    }
 
-                    if (null == lep) {
-                        if (LOG.isDebugEnabled()) {
-                            LOG.debug("Did not find eligible page in the first pass");
-                        }
-                        return null;
-                    }
+            // Read the page count before the slots, which are published first
+            int n = numPages;
+            LedgerEntryPage[] slots = this.slots;
+            // Two turns of the clock are enough to clear the reference bits and come back to the cleared pages
+            for (long i = 0; i < 2L * n; i++) {
+                lep = slots[(clockHand.getAndIncrement() & Integer.MAX_VALUE) % n];
+                if (!lep.isClean() || lep.inUse() || lep.isDeleted() || lep.clearReferenced()) {
+                    continue;
                 }
 
-                // We found a candidate page, lets see if we can reclaim it before its re-used
-                ConcurrentMap<Long, LedgerEntryPage> pageMap = pages.get(lep.getLedger());
+                // We found a candidate page, lets see if we can reclaim it before its re-used.
+                // Marking it in use first prevents other threads from reclaiming it at the same time.
+                if (!lep.tryUsePage()) {
+                    continue;
+                }
+                EntryKey key = lep.getEntryKey();
+                ConcurrentLongHashMap<LedgerEntryPage> pageMap = pages.get(key.getLedgerId());
                 // Remove from map only if nothing has changed since we checked this lep.
                 // Its possible for the ledger to have been deleted or the page to have already
                 // been reclaimed. The page map is the definitive source of information, if anything
                 // has changed we should leave this page along and continue iterating to find
-                // another suitable page.
-                if ((null != pageMap) && (pageMap.remove(lep.getFirstEntry(), lep))) {
-                    if (!lep.isClean()) {
-                        // Someone wrote to this page while we were reclaiming it.
-                        pageMap.put(lep.getFirstEntry(), lep);
-                        lep = null;
+                // another suitable page. The map compares the pages by ledger and first entry, so
+                // check that it holds this very page before removing it.
+                if ((null != pageMap) && (pageMap.get(key.getEntryId()) == lep)
+                        && (pageMap.remove(key.getEntryId(), lep))) {
+                    if (!lep.isClean() || lep.getUseCount() > 1) {
+                        // Someone used this page while we were reclaiming it.
+                        pageMap.put(key.getEntryId(), lep);
                     } else {
                         // Do some bookkeeping on the page table
-                        pages.remove(lep.getLedger(), EMPTY_PAGE_MAP);
+                        if (pageMap.isEmpty() && pages.remove(key.getLedgerId(), pageMap) && !pageMap.isEmpty()) {
+                            // Pages were added while removing the map, put them back in the page table
+                            for (LedgerEntryPage addedPage : pageMap.values()) {
+                                putPage(addedPage);
+                            }
+                        }
                         // We can now safely reset this lep and return it.
-                        lep.usePage();
                         lep.zeroPage();
                         lep.setLedgerAndFirstEntry(ledgerId, firstEntry);
                         return lep;
                     }
-                } else {
-                    lep = null;
                 }
+                lep.releasePage();
             }
-            return lep;
+
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Did not find eligible page in two turns of the clock");
+            }
+            return null;
         }
 
         public void addToListOfFreePages(LedgerEntryPage lep) {
@@ -300,26 +364,24 @@ class IndexInMemPageMgr {
 
         @Override
         public void onSetInUse(LedgerEntryPage lep) {
-            removeFromCleanPageList(lep);
+            lep.setReferenced();
         }
 
         @Override
         public void onResetInUse(LedgerEntryPage lep) {
-            if (!lep.isDeleted()) {
-                addToCleanPagesList(lep);
-            } else {
+            if (lep.isDeleted()) {
                 addToListOfFreePages(lep);
             }
         }
 
         @Override
         public void onSetClean(LedgerEntryPage lep) {
-            addToCleanPagesList(lep);
+            // Clean pages are found by the clock sweep
         }
 
         @Override
         public void onSetDirty(LedgerEntryPage lep) {
-            removeFromCleanPageList(lep);
+            // Dirty pages are skipped by the clock sweep
         }
     }
 
@@ -328,9 +390,6 @@ class IndexInMemPageMgr {
     final int pageLimit;
     final InMemPageCollection pageMapAndList;
 
-    // The number of pages that have actually been used
-    private final AtomicInteger pageCount = new AtomicInteger(0);
-
     // The persistence manager that this page manager uses to
     // flush and read pages
     private final IndexPersistenceMgr indexPersistenceManager;
@@ -348,7 +407,6 @@ class IndexInMemPageMgr {
         this.pageSize = pageSize;
         this.entriesPerPage = entriesPerPage;
         this.indexPersistenceManager = indexPersistenceManager;
-        this.pageMapAndList = new InMemPageCollection(statsLogger);
 
         long maxDirectMemory = DirectMemoryUtils.maxDirectMemory();
 
@@ -358,6 +416,7 @@ class IndexInMemPageMgr {
         } else {
             this.pageLimit = conf.getPageLimit();
         }
+        this.pageMapAndList = new InMemPageCollection(pageSize, entriesPerPage, pageLimit, statsLogger);
         LOG.info("maxDirectMemory = {}, pageSize = {}, pageLimit = {}",
                 maxDirectMemory, pageSize, pageLimit);
         // Expose Stats
@@ -391,7 +450,7 @@ class IndexInMemPageMgr {
      * @return number of page used in ledger cache
      */
     private int getNumUsedPages() {
-        return pageCount.get();
+        return pageMapAndList.getNumPages();
     }
 
         /**
@@ -419,14 +478,7 @@ class IndexInMemPageMgr {
     LedgerEntryPage getLedgerEntryPageFromCache(long ledger,
                                                        long firstEntry,
                                                        boolean onlyDirty) {
-        LedgerEntryPage lep = pageMapAndList.getPage(ledger, firstEntry);
-        if (onlyDirty && null != lep && lep.isClean()) {
-            return null;
-        }
-        if (null != lep) {
-            lep.usePage();
-        }
-        return lep;
+        return pageMapAndList.usePage(ledger, firstEntry, onlyDirty);
     }
 
     /**
@@ -438,38 +490,41 @@ class IndexInMemPageMgr {
      * @param pageEntry Start entry of this entry page.
      */
     private LedgerEntryPage grabLedgerEntryPage(long ledger, long pageEntry) throws IOException {
-        LedgerEntryPage lep = grabCleanPage(ledger, pageEntry);
-        try {
-            // should get the up to date page from the persistence manager
-            // before we put it into table otherwise we would put
-            // an empty page in it
-            Stopwatch readPageStopwatch = Stopwatch.createStarted();
-            boolean isNewPage = indexPersistenceManager.updatePage(lep);
-            if (!isNewPage) {
-                ledgerCacheReadPageStats.registerSuccessfulEvent(
-                        readPageStopwatch.elapsed(TimeUnit.MICROSECONDS),
-                        TimeUnit.MICROSECONDS);
+        while (true) {
+            LedgerEntryPage lep = grabCleanPage(ledger, pageEntry);
+            try {
+                // should get the up to date page from the persistence manager
+                // before we put it into table otherwise we would put
+                // an empty page in it
+                Stopwatch readPageStopwatch = Stopwatch.createStarted();
+                boolean isNewPage = indexPersistenceManager.updatePage(lep);
+                if (!isNewPage) {
+                    ledgerCacheReadPageStats.registerSuccessfulEvent(
+                            readPageStopwatch.elapsed(TimeUnit.MICROSECONDS),
+                            TimeUnit.MICROSECONDS);
+                }
+            } catch (IOException ie) {
+                // if we grab a clean page, but failed to update the page
+                // we should put this page in the free page list so that it
+                // can be reassigned to the next grabPage request
+                lep.releasePageNoCallback();
+                pageMapAndList.addToListOfFreePages(lep);
+                throw ie;
+            }
+            if (lep == pageMapAndList.putPage(lep)) {
+                return lep;
             }
-        } catch (IOException ie) {
-            // if we grab a clean page, but failed to update the page
-            // we should put this page in the free page list so that it
-            // can be reassigned to the next grabPage request
-            lep.releasePageNoCallback();
-            pageMapAndList.addToListOfFreePages(lep);
-            throw ie;
-        }
-        LedgerEntryPage oldLep;
-        if (lep != (oldLep = pageMapAndList.putPage(lep))) {
             // if we grab a clean page, but failed to put it in the cache
             // we should put this page in the free page list so that it
             // can be reassigned to the next grabPage request
             lep.releasePageNoCallback();
             pageMapAndList.addToListOfFreePages(lep);
-            // Increment the use count of the old lep because this is unexpected
-            oldLep.usePage();
-            lep = oldLep;
+            // Use the page that was put in the cache instead, unless it has been reclaimed in the meantime
+            lep = pageMapAndList.usePage(ledger, pageEntry, false);
+            if (null != lep) {
+                return lep;
+            }
         }
-        return lep;
     }
 
     void removePagesForLedger(long ledgerId) {
@@ -486,21 +541,12 @@ class IndexInMemPageMgr {
         }
 
         while (true) {
-            boolean canAllocate = false;
-            if (pageCount.incrementAndGet() <= pageLimit) {
-                canAllocate = true;
-            } else {
-                pageCount.decrementAndGet();
-            }
-
-            if (canAllocate) {
-                LedgerEntryPage lep = new LedgerEntryPage(pageSize, entriesPerPage, pageMapAndList);
-                lep.setLedgerAndFirstEntry(ledger, entry);
-                lep.usePage();
+            LedgerEntryPage lep = pageMapAndList.allocatePage(ledger, entry);
+            if (null != lep) {
                 return lep;
             }
 
-            LedgerEntryPage lep = pageMapAndList.grabCleanPage(ledger, entry);
+            lep = pageMapAndList.grabCleanPage(ledger, entry);
             if (null != lep) {
                 return lep;
             }
@@ -511,7 +557,7 @@ class IndexInMemPageMgr {
     }
 
     void flushOneOrMoreLedgers(boolean doAll) throws IOException {
-        List<Long> ledgersToFlush = new ArrayList<>(pageMapAndList.getActiveLedgers());
+        List<Long> ledgersToFlush = pageMapAndList.getActiveLedgers();
         for (Long potentiallyDirtyLedger : ledgersToFlush) {
             try {
                 flushSpecificLedger(potentiallyDirtyLedger);
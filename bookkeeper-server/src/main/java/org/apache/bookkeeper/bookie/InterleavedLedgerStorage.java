@@ -420,6 +420,51 @@ public class InterleavedLedgerStorage implements CompactableLedgerStorage, Entry
         }
     }
 
+    @Override
+    public List<ByteBuf> getEntries(long ledgerId, long startEntryId, int maxCount, long maxSize)
+            throws IOException {
+        // Get the offsets of the entries, the index pages are looked up once per page in the ledger cache
+        long startTimeNanos = MathUtils.nowInNano();
+        long[] offsets = new long[maxCount];
+        int count = 0;
+        try {
+            while (count < maxCount) {
+                long offset = ledgerCache.getEntryOffset(ledgerId, startEntryId + count);
+                if (offset == 0) {
+                    break;
+                }
+                offsets[count++] = offset;
+            }
+        } catch (Bookie.NoEntryException e) {
+            // The entries past the end of the ledger index are not stored on this bookie
+        } finally {
+            if (count > 0) {
+                getOffsetStats.registerSuccessfulEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+            } else {
+                getOffsetStats.registerFailedEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+            }
+        }
+
+        if (count == 0) {
+            throw new Bookie.NoEntryException(ledgerId, startEntryId);
+        }
+
+        // Read the entries, adjacent entries in the entry log are read together
+        startTimeNanos = MathUtils.nowInNano();
+        boolean success = false;
+        try {
+            List<ByteBuf> entries = entryLogger.readEntries(ledgerId, startEntryId, offsets, count, maxSize);
+            success = true;
+            return entries;
+        } finally {
+            if (success) {
+                getEntryStats.registerSuccessfulEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+            } else {
+                getEntryStats.registerFailedEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
     private void flushOrCheckpoint(boolean isCheckpointFlush)
             throws IOException {
 
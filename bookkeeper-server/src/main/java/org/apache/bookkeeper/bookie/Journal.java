@@ -39,19 +39,18 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.bookkeeper.bookie.LedgerDirsManager.NoWritableLedgerDirException;
 import org.apache.bookkeeper.bookie.stats.JournalStats;
-import org.apache.bookkeeper.common.collections.BlockingMpscQueue;
 import org.apache.bookkeeper.common.collections.RecyclableArrayList;
+import org.apache.bookkeeper.common.collections.StripedMpscQueue;
 import org.apache.bookkeeper.common.util.affinity.CpuAffinity;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
@@ -60,6 +59,7 @@ import org.apache.bookkeeper.stats.NullStatsLogger;
 import org.apache.bookkeeper.stats.OpStatsLogger;
 import org.apache.bookkeeper.stats.StatsLogger;
 import org.apache.bookkeeper.util.IOUtils;
+import org.apache.bookkeeper.util.IoUring;
 import org.apache.bookkeeper.util.MathUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -91,6 +91,13 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
                 int capacity) -> new BufferedChannel(UnpooledByteBufAllocator.DEFAULT, fc, capacity);
 
         BufferedChannel create(FileChannel fc, int capacity) throws IOException;
+
+        /**
+         * Create a buffered channel for a journal file, given the file descriptor of the channel.
+         */
+        default BufferedChannel create(FileChannel fc, int fd, int capacity) throws IOException {
+            return create(fc, capacity);
+        }
     }
 
 
@@ -379,8 +386,11 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
                 if (shouldForceWrite) {
                     long startTime = MathUtils.nowInNano();
                     this.logFile.forceWrite(false);
-                    journalStats.getJournalSyncStats()
-                        .registerSuccessfulEvent(MathUtils.elapsedNanos(startTime), TimeUnit.NANOSECONDS);
+                    long syncNanos = MathUtils.elapsedNanos(startTime);
+                    journalStats.getJournalSyncStats().registerSuccessfulEvent(syncNanos, TimeUnit.NANOSECONDS);
+                    if (groupCommitController != null) {
+                        groupCommitController.onSync(syncNanos);
+                    }
                 }
                 lastLogMark.setCurLogMark(this.logId, this.lastFlushedPosition);
 
@@ -584,6 +594,8 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
 
     static final long MB = 1024 * 1024L;
     static final int KB = 1024;
+    // max entries taken from the journal queue at once
+    static final int MAX_DRAINED_ENTRIES = 1024;
     // max journal file size
     final long maxJournalSize;
     // pre-allocation size for the journal files
@@ -604,6 +616,8 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
     private final long bufferedWritesThreshold;
     // should we flush if the queue is empty
     private final boolean flushWhenQueueEmpty;
+    // When set, tunes the group wait and the flush when the queue is empty
+    private final JournalGroupCommitController groupCommitController;
     // should we hint the filesystem to remove pages from cache after force write
     private final boolean removePagesFromCache;
     private final int journalFormatVersionToWrite;
@@ -626,12 +640,16 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
     private final ExecutorService cbThreadPool;
 
     // journal entry queue to commit
-    final BlockingQueue<QueueEntry> queue;
-    final BlockingQueue<ForceWriteRequest> forceWriteRequests;
+    final StripedMpscQueue<QueueEntry> queue;
+    final StripedMpscQueue<ForceWriteRequest> forceWriteRequests;
 
     volatile boolean running = true;
     private final LedgerDirsManager ledgerDirsManager;
     private final ByteBufAllocator allocator;
+    // When set, the journal files are written and force written through io_uring
+    private final IoUring ioUring;
+    // When set, the journal files are written with direct I/O from the buffers of this pool
+    private final AlignedBufferPool directIOBufferPool;
 
     // Expose Stats
     private final JournalStats journalStats;
@@ -647,14 +665,10 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
         super("BookieJournal-" + conf.getBookiePort());
         this.allocator = allocator;
 
-        if (conf.isBusyWaitEnabled()) {
-            // To achieve lower latency, use busy-wait blocking queue implementation
-            queue = new BlockingMpscQueue<>(conf.getJournalQueueSize());
-            forceWriteRequests = new BlockingMpscQueue<>(conf.getJournalQueueSize());
-        } else {
-            queue = new ArrayBlockingQueue<>(conf.getJournalQueueSize());
-            forceWriteRequests = new ArrayBlockingQueue<>(conf.getJournalQueueSize());
-        }
+        // To achieve lower latency, the queues never park their consumer when busy wait is enabled
+        queue = new StripedMpscQueue<>(conf.getJournalQueueSize(), conf.isBusyWaitEnabled());
+        // The force write thread relies on the order of the requests and its markers, so it uses a single stripe
+        forceWriteRequests = new StripedMpscQueue<>(conf.getJournalQueueSize(), 1, conf.isBusyWaitEnabled());
 
         this.ledgerDirsManager = ledgerDirsManager;
         this.conf = conf;
@@ -682,7 +696,18 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
         // we cannot skip flushing for queue empty
         this.flushWhenQueueEmpty = maxGroupWaitInNanos <= 0 || conf.getJournalFlushWhenQueueEmpty();
 
-        this.removePagesFromCache = conf.getJournalRemovePagesFromCache();
+        this.ioUring = conf.isIoUringEnabled() ? IoUring.createIfAvailable(conf.getIoUringQueueDepth()) : null;
+        if (isDirectIOEnabled(conf, journalDirectory)) {
+            LOG.info("Journal files of {} are written with direct I/O", journalDirectory);
+            // A journal file may still be closing in the force write thread when the next one is opened
+            this.directIOBufferPool = new AlignedBufferPool(allocator, journalAlignmentSize, journalWriteBufferSize,
+                    2);
+            // Nothing to remove from the page cache
+            this.removePagesFromCache = false;
+        } else {
+            this.directIOBufferPool = null;
+            this.removePagesFromCache = conf.getJournalRemovePagesFromCache();
+        }
         // read last log mark
         if (conf.getJournalDirs().length == 1) {
             lastMarkFileName = LAST_MARK_DEFAULT_NAME;
@@ -696,6 +721,25 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
 
         // Expose Stats
         this.journalStats = new JournalStats(statsLogger);
+
+        if (conf.getJournalGroupCommitTargetLatencyMSec() > 0) {
+            this.groupCommitController = new JournalGroupCommitController(
+                    conf.getJournalGroupCommitTargetLatencyMSec(), syncData, journalStats);
+        } else {
+            this.groupCommitController = null;
+        }
+    }
+
+    private static boolean isDirectIOEnabled(ServerConfiguration conf, File journalDirectory) {
+        // The journal directory is usually the current directory of a configured journal directory
+        File dir = journalDirectory.getAbsoluteFile();
+        for (String name : conf.getJournalDirectIODirNames()) {
+            File directIODir = new File(name).getAbsoluteFile();
+            if (directIODir.equals(dir) || directIODir.equals(dir.getParentFile())) {
+                return true;
+            }
+        }
+        return false;
     }
 
     JournalStats getJournalStats() {
@@ -918,6 +962,8 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
 
         RecyclableArrayList<QueueEntry> toFlush = entryListRecycler.newInstance();
         int numEntriesToFlush = 0;
+        // Entries drained from the queue and not processed yet
+        ArrayDeque<QueueEntry> drainedEntries = new ArrayDeque<>(MAX_DRAINED_ENTRIES);
         ByteBuf lenBuff = Unpooled.buffer(4);
         ByteBuf paddingBuff = Unpooled.buffer(2 * conf.getJournalAlignmentSize());
         paddingBuff.writeZero(paddingBuff.capacity());
@@ -936,6 +982,12 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
             long logId = journalIds.isEmpty() ? System.currentTimeMillis() : journalIds.get(journalIds.size() - 1);
             long lastFlushPosition = 0;
             boolean groupWhenTimeout = false;
+            long maxGroupWaitNanos = maxGroupWaitInNanos;
+            boolean flushWhenEmpty = flushWhenQueueEmpty;
+            if (groupCommitController != null) {
+                maxGroupWaitNanos = groupCommitController.getMaxGroupWaitNanos();
+                flushWhenEmpty = groupCommitController.shouldFlushWhenQueueEmpty();
+            }
 
             long dequeueStartTime = 0L;
             long lastFlushTimeMs = System.currentTimeMillis();
@@ -950,7 +1002,7 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
                     journalCreationWatcher.reset().start();
                     logFile = new JournalChannel(journalDirectory, logId, journalPreAllocSize, journalWriteBufferSize,
                                         journalAlignmentSize, removePagesFromCache,
-                                        journalFormatVersionToWrite, getBufferedChannelBuilder());
+                                        journalFormatVersionToWrite, getBufferedChannelBuilder(), directIOBufferPool);
 
                     journalStats.getJournalCreationStats().registerSuccessfulEvent(
                             journalCreationWatcher.stop().elapsed(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
@@ -967,33 +1019,46 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
                     }
 
                     if (numEntriesToFlush == 0) {
-                        qe = queue.take();
+                        if (drainedEntries.isEmpty()) {
+                            queue.take(drainedEntries::add, MAX_DRAINED_ENTRIES);
+                        }
+                        qe = drainedEntries.poll();
                         dequeueStartTime = MathUtils.nowInNano();
                         journalStats.getJournalQueueStats()
                             .registerSuccessfulEvent(MathUtils.elapsedNanos(qe.enqueueTime), TimeUnit.NANOSECONDS);
+                        if (groupCommitController != null) {
+                            groupCommitController.onArrival(qe.enqueueTime);
+                        }
                     } else {
-                        long pollWaitTimeNanos = maxGroupWaitInNanos
+                        long pollWaitTimeNanos = maxGroupWaitNanos
                                 - MathUtils.elapsedNanos(toFlush.get(0).enqueueTime);
-                        if (flushWhenQueueEmpty || pollWaitTimeNanos < 0) {
+                        if (flushWhenEmpty || pollWaitTimeNanos < 0) {
                             pollWaitTimeNanos = 0;
                         }
-                        qe = queue.poll(pollWaitTimeNanos, TimeUnit.NANOSECONDS);
+                        if (drainedEntries.isEmpty()) {
+                            queue.poll(drainedEntries::add, MAX_DRAINED_ENTRIES, pollWaitTimeNanos,
+                                    TimeUnit.NANOSECONDS);
+                        }
+                        qe = drainedEntries.poll();
                         dequeueStartTime = MathUtils.nowInNano();
 
                         if (qe != null) {
                             journalStats.getJournalQueueStats()
                                 .registerSuccessfulEvent(MathUtils.elapsedNanos(qe.enqueueTime), TimeUnit.NANOSECONDS);
+                            if (groupCommitController != null) {
+                                groupCommitController.onArrival(qe.enqueueTime);
+                            }
                         }
 
                         boolean shouldFlush = false;
                         // We should issue a forceWrite if any of the three conditions below holds good
                         // 1. If the oldest pending entry has been pending for longer than the max wait time
-                        if (maxGroupWaitInNanos > 0 && !groupWhenTimeout && (MathUtils
-                                .elapsedNanos(toFlush.get(0).enqueueTime) > maxGroupWaitInNanos)) {
+                        if (maxGroupWaitNanos > 0 && !groupWhenTimeout && (MathUtils
+                                .elapsedNanos(toFlush.get(0).enqueueTime) > maxGroupWaitNanos)) {
                             groupWhenTimeout = true;
-                        } else if (maxGroupWaitInNanos > 0 && groupWhenTimeout
+                        } else if (maxGroupWaitNanos > 0 && groupWhenTimeout
                             && (qe == null // no entry to group
-                                || MathUtils.elapsedNanos(qe.enqueueTime) < maxGroupWaitInNanos)) {
+                                || MathUtils.elapsedNanos(qe.enqueueTime) < maxGroupWaitNanos)) {
                             // when group timeout, it would be better to look forward, as there might be lots of
                             // entries already timeout
                             // due to a previous slow write (writing to filesystem which impacted by force write).
@@ -1010,7 +1075,7 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
                             groupWhenTimeout = false;
                             shouldFlush = true;
                             journalStats.getFlushMaxOutstandingBytesCounter().inc();
-                        } else if (qe == null && flushWhenQueueEmpty) {
+                        } else if (qe == null && flushWhenEmpty) {
                             // We should get here only if we flushWhenQueueEmpty is true else we would wait
                             // for timeout that would put is past the maxWait threshold
                             // 3. If the queue is empty i.e. no benefit of grouping. This happens when we have one
@@ -1028,9 +1093,16 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
                             journalFlushWatcher.reset().start();
                             bc.flush();
 
+                            boolean flushedWritesAwaited = false;
                             for (int i = 0; i < toFlush.size(); i++) {
                                 QueueEntry entry = toFlush.get(i);
                                 if (entry != null && (!syncData || entry.ackBeforeSync)) {
+                                    if (!flushedWritesAwaited) {
+                                        // With io_uring the flush only submits the writes, the entries are
+                                        // acknowledged once they reach the file
+                                        bc.awaitFlushedWrites();
+                                        flushedWritesAwaited = true;
+                                    }
                                     toFlush.set(i, null);
                                     numEntriesToFlush--;
                                     cbThreadPool.execute(entry);
@@ -1038,8 +1110,14 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
                             }
 
                             lastFlushPosition = bc.position();
-                            journalStats.getJournalFlushStats().registerSuccessfulEvent(
-                                    journalFlushWatcher.stop().elapsed(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+                            long flushNanos = journalFlushWatcher.stop().elapsed(TimeUnit.NANOSECONDS);
+                            journalStats.getJournalFlushStats().registerSuccessfulEvent(flushNanos,
+                                    TimeUnit.NANOSECONDS);
+                            if (groupCommitController != null) {
+                                groupCommitController.onFlush(flushNanos);
+                                maxGroupWaitNanos = groupCommitController.getMaxGroupWaitNanos();
+                                flushWhenEmpty = groupCommitController.shouldFlushWhenQueueEmpty();
+                            }
 
                             // Trace the lifetime of entries through persistence
                             if (LOG.isDebugEnabled()) {
@@ -1145,7 +1223,20 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
     }
 
     public BufferedChannelBuilder getBufferedChannelBuilder() {
-        return (FileChannel fc, int capacity) -> new BufferedChannel(allocator, fc, capacity);
+        return new BufferedChannelBuilder() {
+            @Override
+            public BufferedChannel create(FileChannel fc, int capacity) throws IOException {
+                return new BufferedChannel(allocator, fc, capacity);
+            }
+
+            @Override
+            public BufferedChannel create(FileChannel fc, int fd, int capacity) throws IOException {
+                if (ioUring == null || fd < 0) {
+                    return create(fc, capacity);
+                }
+                return new BufferedChannel(allocator, fc, capacity, capacity, 0L, ioUring, fd);
+            }
+        };
     }
 
     /**
@@ -1167,10 +1258,18 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
             running = false;
             this.interrupt();
             this.join();
+            if (ioUring != null) {
+                ioUring.close();
+            }
+            if (directIOBufferPool != null) {
+                directIOBufferPool.close();
+            }
             LOG.info("Finished Shutting down Journal thread");
         } catch (InterruptedException ie) {
             Thread.currentThread().interrupt();
             LOG.warn("Interrupted during shutting down journal : ", ie);
+        } catch (IOException ioe) {
+            LOG.warn("Failed to close io_uring of journal : ", ioe);
         }
     }
 
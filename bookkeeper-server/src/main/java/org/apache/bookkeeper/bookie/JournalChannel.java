@@ -50,6 +50,8 @@ class JournalChannel implements Closeable {
     final FileChannel fc;
     final BufferedChannel bc;
     final int formatVersion;
+    // Whether the journal is written with direct I/O
+    final boolean directIO;
     long nextPrealloc = 0;
 
     final byte[] magicWord = "BKLG".getBytes(UTF_8);
@@ -99,7 +101,7 @@ class JournalChannel implements Closeable {
     JournalChannel(File journalDirectory, long logId,
                    long preAllocSize, int writeBufferSize, long position) throws IOException {
          this(journalDirectory, logId, preAllocSize, writeBufferSize, SECTOR_SIZE,
-                 position, false, V5, Journal.BufferedChannelBuilder.DEFAULT_BCBUILDER);
+                 position, false, V5, Journal.BufferedChannelBuilder.DEFAULT_BCBUILDER, null);
     }
 
     // Open journal to write
@@ -115,7 +117,16 @@ class JournalChannel implements Closeable {
                    boolean fRemoveFromPageCache, int formatVersionToWrite,
                    Journal.BufferedChannelBuilder bcBuilder) throws IOException {
         this(journalDirectory, logId, preAllocSize, writeBufferSize, journalAlignSize,
-                START_OF_FILE, fRemoveFromPageCache, formatVersionToWrite, bcBuilder);
+                START_OF_FILE, fRemoveFromPageCache, formatVersionToWrite, bcBuilder, null);
+    }
+
+    // Open journal to write, with direct I/O if a buffer pool is given
+    JournalChannel(File journalDirectory, long logId,
+                   long preAllocSize, int writeBufferSize, int journalAlignSize,
+                   boolean fRemoveFromPageCache, int formatVersionToWrite,
+                   Journal.BufferedChannelBuilder bcBuilder, AlignedBufferPool directIOBufferPool) throws IOException {
+        this(journalDirectory, logId, preAllocSize, writeBufferSize, journalAlignSize,
+                START_OF_FILE, fRemoveFromPageCache, formatVersionToWrite, bcBuilder, directIOBufferPool);
     }
 
     /**
@@ -138,12 +149,15 @@ class JournalChannel implements Closeable {
      *          whether to remove cached pages from page cache.
      * @param formatVersionToWrite
      *          format version to write
+     * @param directIOBufferPool
+     *          pool of aligned buffers to write the journal with direct I/O, or null to write through the page cache
      * @throws IOException
      */
     private JournalChannel(File journalDirectory, long logId,
                            long preAllocSize, int writeBufferSize, int journalAlignSize,
                            long position, boolean fRemoveFromPageCache,
-                           int formatVersionToWrite, Journal.BufferedChannelBuilder bcBuilder) throws IOException {
+                           int formatVersionToWrite, Journal.BufferedChannelBuilder bcBuilder,
+                           AlignedBufferPool directIOBufferPool) throws IOException {
         this.journalAlignSize = journalAlignSize;
         this.zeros = ByteBuffer.allocate(journalAlignSize);
         this.preAllocSize = preAllocSize - preAllocSize % journalAlignSize;
@@ -175,14 +189,26 @@ class JournalChannel implements Closeable {
             bb.clear();
             fc.write(bb);
 
-            bc = bcBuilder.create(fc, writeBufferSize);
+            BufferedChannel directChannel = null;
+            if (directIOBufferPool != null) {
+                try {
+                    directChannel = new DirectBufferedChannel(fc, fn, directIOBufferPool, writeBufferSize);
+                } catch (IOException e) {
+                    LOG.warn("Unable to open journal {} with direct I/O, falling back to buffered I/O : {}",
+                            fn, e.getMessage());
+                }
+            }
+            directIO = directChannel != null;
+            bc = directIO ? directChannel
+                    : bcBuilder.create(fc, NativeIO.getSysFileDescriptor(randomAccessFile.getFD()), writeBufferSize);
             forceWrite(true);
             nextPrealloc = this.preAllocSize;
-            fc.write(zeros, nextPrealloc - journalAlignSize);
+            preAllocate();
         } else {  // open an existing file
             randomAccessFile = new RandomAccessFile(fn, "r");
             fc = openFileChannel(randomAccessFile);
             bc = null; // readonly
+            directIO = false;
 
             ByteBuffer bb = ByteBuffer.allocate(VERSION_HEADER_SIZE);
             int c = fc.read(bb);
@@ -251,9 +277,22 @@ class JournalChannel implements Closeable {
     void preAllocIfNeeded(long size) throws IOException {
         if (bc.position() + size > nextPrealloc) {
             nextPrealloc += preAllocSize;
-            zeros.clear();
-            fc.write(zeros, nextPrealloc - journalAlignSize);
+            preAllocate();
+        }
+    }
+
+    private void preAllocate() throws IOException {
+        // With direct I/O the blocks are allocated up front, or the zeros are written with direct I/O as well, the
+        // file must not be written through the page cache
+        if (directIO) {
+            if (!NativeIO.fallocateIfPossible(NativeIO.getSysFileDescriptor(randomAccessFile.getFD()),
+                    nextPrealloc - preAllocSize, preAllocSize)) {
+                ((DirectBufferedChannel) bc).preallocate(nextPrealloc);
+            }
+            return;
         }
+        zeros.clear();
+        fc.write(zeros, nextPrealloc - journalAlignSize);
     }
 
     int read(ByteBuffer dst)
@@ -0,0 +1,149 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.bookkeeper.bookie.stats.JournalStats;
+
+/**
+ * Adaptive group commit of the {@link Journal}.
+ *
+ * <p>The latency of an add is roughly the time the entry waits to be grouped with other entries, plus the time to
+ * flush the group to the journal file and the time to fsync it. An entry flushed while a fsync is in progress also
+ * waits for that fsync to complete, so the fsync latency is counted twice. The controller estimates the high
+ * percentile of the flush and fsync latencies as their mean plus four times their mean deviation, and lets the entries
+ * wait for what remains of the target latency.
+ *
+ * <p>Waiting is only useful if other entries arrive in the meantime. When the entries arrive more slowly than one
+ * per group wait, the journal flushes as soon as its queue is empty instead.
+ *
+ * <p>The samples are recorded by the journal thread, except for the fsync latency which is recorded by the force
+ * write thread.
+ */
+class JournalGroupCommitController {
+
+    private static final int DEVIATION_FACTOR = 4;
+
+    private final long targetLatencyNanos;
+    private final boolean syncData;
+    private final JournalStats journalStats;
+
+    private final LatencyEstimator flushLatency = new LatencyEstimator();
+    private final LatencyEstimator syncLatency = new LatencyEstimator();
+
+    private long lastArrivalNanos = -1;
+    private long interArrivalNanos;
+
+    private long maxGroupWaitNanos = 0;
+    private boolean flushWhenQueueEmpty = true;
+
+    JournalGroupCommitController(long targetLatencyMSec, boolean syncData, JournalStats journalStats) {
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMSec);
+        this.syncData = syncData;
+        this.journalStats = journalStats;
+        this.interArrivalNanos = targetLatencyNanos;
+    }
+
+    /**
+     * Record the arrival of an entry in the journal queue.
+     *
+     * @param enqueueTimeNanos the time at which the entry was added to the queue
+     */
+    void onArrival(long enqueueTimeNanos) {
+        if (lastArrivalNanos >= 0) {
+            // Entries that are further apart than the target latency can't be grouped anyway, bounding the samples
+            // lets the average react quickly when the load picks up after an idle period
+            long sample = Math.max(0, Math.min(enqueueTimeNanos - lastArrivalNanos, targetLatencyNanos));
+            interArrivalNanos += (sample - interArrivalNanos) >> 3;
+        }
+        lastArrivalNanos = Math.max(lastArrivalNanos, enqueueTimeNanos);
+    }
+
+    /**
+     * Record the fsync of the journal file.
+     */
+    void onSync(long latencyNanos) {
+        syncLatency.add(latencyNanos);
+    }
+
+    /**
+     * Record a flush of the journal and compute the group wait for the next flushes.
+     */
+    void onFlush(long latencyNanos) {
+        flushLatency.add(latencyNanos);
+
+        long commitLatencyNanos = flushLatency.getEstimate() + (syncData ? 2 * syncLatency.getEstimate() : 0);
+        long budgetNanos = targetLatencyNanos - commitLatencyNanos;
+        if (budgetNanos <= 0) {
+            journalStats.getGroupCommitOverTargetCounter().inc();
+            maxGroupWaitNanos = 0;
+            flushWhenQueueEmpty = true;
+        } else if (interArrivalNanos >= budgetNanos) {
+            journalStats.getGroupCommitNoWaitCounter().inc();
+            maxGroupWaitNanos = 0;
+            flushWhenQueueEmpty = true;
+        } else {
+            maxGroupWaitNanos = budgetNanos;
+            flushWhenQueueEmpty = false;
+        }
+        journalStats.getGroupCommitWaitStats().registerSuccessfulEvent(maxGroupWaitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the maximum time the oldest entry of a group may wait before the group is flushed
+     */
+    long getMaxGroupWaitNanos() {
+        return maxGroupWaitNanos;
+    }
+
+    /**
+     * @return whether the journal should be flushed when its queue becomes empty
+     */
+    boolean shouldFlushWhenQueueEmpty() {
+        return flushWhenQueueEmpty;
+    }
+
+    /**
+     * Moving average and mean deviation of a latency, updated by a single thread.
+     */
+    private static class LatencyEstimator {
+        private volatile long meanNanos = -1;
+        private volatile long deviationNanos = 0;
+
+        void add(long sampleNanos) {
+            if (meanNanos < 0) {
+                meanNanos = sampleNanos;
+                deviationNanos = sampleNanos / 2;
+                return;
+            }
+            long error = sampleNanos - meanNanos;
+            meanNanos += error >> 3;
+            deviationNanos += (Math.abs(error) - deviationNanos) >> 2;
+        }
+
+        long getEstimate() {
+            long mean = meanNanos;
+            return mean < 0 ? 0 : mean + DEVIATION_FACTOR * deviationNanos;
+        }
+    }
+}
@@ -27,6 +27,7 @@ import com.google.common.util.concurrent.SettableFuture;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import java.io.IOException;
+import java.util.List;
 import java.util.PrimitiveIterator.OfLong;
 
 import org.apache.bookkeeper.common.util.Watcher;
@@ -77,6 +78,7 @@ public abstract class LedgerDescriptor {
 
     abstract long addEntry(ByteBuf entry) throws IOException, BookieException;
     abstract ByteBuf readEntry(long entryId) throws IOException;
+    abstract List<ByteBuf> readEntries(long startEntryId, int maxCount, long maxSize) throws IOException;
 
     abstract long getLastAddConfirmed() throws IOException;
     abstract boolean waitForLastAddConfirmedUpdate(long previousLAC,
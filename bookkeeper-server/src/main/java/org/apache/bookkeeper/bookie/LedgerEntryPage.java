@@ -50,6 +50,8 @@ public class LedgerEntryPage implements AutoCloseable {
     private volatile int last = -1; // Last update position
     private final LEPStateChangeCallback callback;
     private boolean deleted;
+    // Reference bit of the clock eviction of the page cache
+    private volatile boolean referenced = false;
 
     public static int getIndexEntrySize() {
         return indexEntrySize;
@@ -60,9 +62,16 @@ public class LedgerEntryPage implements AutoCloseable {
     }
 
     public LedgerEntryPage(int pageSize, int entriesPerPage, LEPStateChangeCallback callback) {
-        this.pageSize = pageSize;
+        this(ByteBuffer.allocateDirect(pageSize), entriesPerPage, callback);
+    }
+
+    /**
+     * Create a page backed by the given buffer, such as a slice of a larger buffer shared by several pages.
+     */
+    public LedgerEntryPage(ByteBuffer page, int entriesPerPage, LEPStateChangeCallback callback) {
+        this.pageSize = page.capacity();
         this.entriesPerPage = entriesPerPage;
-        page = ByteBuffer.allocateDirect(pageSize);
+        this.page = page;
         this.callback = callback;
         if (null != this.callback) {
             callback.onResetInUse(this);
@@ -70,14 +79,14 @@ public class LedgerEntryPage implements AutoCloseable {
     }
 
     // Except for not allocating a new direct byte buffer; this should do everything that
-    // the constructor does
+    // the constructor does. The use count is left alone: pages are only reset once released,
+    // and the page cache may briefly mark a free page in use while looking for a page to reclaim.
     public void resetPage() {
         page.clear();
         ZeroBuffer.put(page);
         last = -1;
         entryKey = new EntryKey(-1, BookieProtocol.INVALID_ENTRY_ID);
         clean = true;
-        useCount.set(0);
         deleted = false;
         if (null != this.callback) {
             callback.onResetInUse(this);
@@ -93,6 +102,25 @@ public class LedgerEntryPage implements AutoCloseable {
         return deleted;
     }
 
+    void setReferenced() {
+        if (!referenced) {
+            referenced = true;
+        }
+    }
+
+    /**
+     * Clear the reference bit of the page.
+     *
+     * @return whether the page was referenced
+     */
+    boolean clearReferenced() {
+        if (referenced) {
+            referenced = false;
+            return true;
+        }
+        return false;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
@@ -111,6 +139,19 @@ public class LedgerEntryPage implements AutoCloseable {
         }
     }
 
+    /**
+     * Mark the page in use if no one else uses it, without callback.
+     *
+     * @return whether the page has been marked in use
+     */
+    boolean tryUsePage() {
+        return useCount.compareAndSet(0, 1);
+    }
+
+    int getUseCount() {
+        return useCount.get();
+    }
+
     public void releasePageNoCallback() {
         releasePageInternal(false);
     }
@@ -117,6 +117,44 @@ public interface LedgerStorage {
      */
     ByteBuf getEntry(long ledgerId, long entryId) throws IOException;
 
+    /**
+     * Read a sequence of contiguous entries from storage, starting at startEntryId.
+     *
+     * <p>Reading stops at the first entry that is not in the storage, after maxCount entries, or once the total size
+     * of the entries read reaches maxSize. The caller must release the returned entries.
+     *
+     * <p>The default implementation reads the entries one by one, implementations should override it to read the
+     * range more efficiently.
+     *
+     * @return the entries read, at least one
+     * @throws Bookie.NoEntryException if the first entry is not in the storage
+     */
+    default List<ByteBuf> getEntries(long ledgerId, long startEntryId, int maxCount, long maxSize)
+            throws IOException {
+        List<ByteBuf> entries = new ArrayList<>();
+        long size = 0;
+        try {
+            for (long entryId = startEntryId; entries.size() < maxCount && (entries.isEmpty() || size < maxSize);
+                 entryId++) {
+                ByteBuf entry;
+                try {
+                    entry = getEntry(ledgerId, entryId);
+                } catch (Bookie.NoEntryException e) {
+                    if (entries.isEmpty()) {
+                        throw e;
+                    }
+                    break;
+                }
+                entries.add(entry);
+                size += entry.readableBytes();
+            }
+        } catch (IOException | RuntimeException e) {
+            entries.forEach(ByteBuf::release);
+            throw e;
+        }
+        return entries;
+    }
+
     /**
      * Get last add confirmed.
      *
@@ -0,0 +1,105 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import java.io.IOException;
+import java.util.Map.Entry;
+import java.util.function.BiConsumer;
+
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.CloseableIterator;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorageFactory;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorageFactory.DbConfigType;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Entry log metadata map stored in a key-value storage.
+ *
+ * <p>The metadata of an entry log is stored when the log is first scanned after being rolled, and updated as its
+ * ledgers are deleted, so that the bookie does not have to scan all its entry logs again when it restarts, and only
+ * holds the metadata of the entry log being processed on the heap.
+ *
+ * <p>The key is the entry log id, in big endian so that the logs are iterated in order, and the value is the
+ * metadata serialized by {@link EntryLogMetadata#serialize()}. The updates are not synced: an update lost in a crash
+ * either makes the garbage collector scan an entry log again, or keep ledgers that it removes again at its next run.
+ */
+class PersistentEntryLogMetadataMap implements EntryLogMetadataMap {
+    private static final Logger LOG = LoggerFactory.getLogger(PersistentEntryLogMetadataMap.class);
+
+    private final KeyValueStorage metadataDb;
+
+    PersistentEntryLogMetadataMap(KeyValueStorageFactory storageFactory, String path, ServerConfiguration conf)
+            throws IOException {
+        LOG.info("Loading entry log metadata from {}", path);
+        this.metadataDb = storageFactory.newKeyValueStorage(path, DbConfigType.Small, conf);
+    }
+
+    private static byte[] toKey(long entryLogId) {
+        byte[] key = new byte[Long.BYTES];
+        for (int i = Long.BYTES - 1; i >= 0; i--) {
+            key[i] = (byte) entryLogId;
+            entryLogId >>>= Byte.SIZE;
+        }
+        return key;
+    }
+
+    @Override
+    public boolean containsKey(long entryLogId) throws IOException {
+        return metadataDb.get(toKey(entryLogId)) != null;
+    }
+
+    @Override
+    public void put(long entryLogId, EntryLogMetadata entryLogMeta) throws IOException {
+        metadataDb.put(toKey(entryLogId), entryLogMeta.serialize());
+    }
+
+    @Override
+    public EntryLogMetadata get(long entryLogId) throws IOException {
+        byte[] value = metadataDb.get(toKey(entryLogId));
+        return value == null ? null : EntryLogMetadata.deserialize(value);
+    }
+
+    @Override
+    public void forEach(BiConsumer<Long, EntryLogMetadata> action) throws IOException {
+        CloseableIterator<Entry<byte[], byte[]>> iterator = metadataDb.iterator();
+        try {
+            while (iterator.hasNext()) {
+                EntryLogMetadata entryLogMeta = EntryLogMetadata.deserialize(iterator.next().getValue());
+                action.accept(entryLogMeta.getEntryLogId(), entryLogMeta);
+            }
+        } finally {
+            iterator.close();
+        }
+    }
+
+    @Override
+    public void remove(long entryLogId) throws IOException {
+        metadataDb.delete(toKey(entryLogId));
+    }
+
+    @Override
+    public void close() throws IOException {
+        metadataDb.close();
+    }
+}
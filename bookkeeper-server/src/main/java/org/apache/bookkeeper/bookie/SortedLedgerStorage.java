@@ -28,6 +28,7 @@ import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.PrimitiveIterator;
@@ -218,6 +219,45 @@ public class SortedLedgerStorage
         return buffToRet;
     }
 
+    @Override
+    public List<ByteBuf> getEntries(long ledgerId, long startEntryId, int maxCount, long maxSize)
+            throws IOException {
+        // Read the entries that were already flushed from the entry logs in one go, then look for the following ones
+        // in the memtable
+        List<ByteBuf> entries;
+        try {
+            entries = interleavedLedgerStorage.getEntries(ledgerId, startEntryId, maxCount, maxSize);
+        } catch (Bookie.NoEntryException nee) {
+            entries = new ArrayList<>();
+        }
+
+        long size = 0;
+        for (ByteBuf entry : entries) {
+            size += entry.readableBytes();
+        }
+
+        try {
+            for (long entryId = startEntryId + entries.size();
+                 entries.size() < maxCount && (entries.isEmpty() || size < maxSize); entryId++) {
+                ByteBuf entry;
+                try {
+                    entry = getEntry(ledgerId, entryId);
+                } catch (Bookie.NoEntryException nee) {
+                    if (entries.isEmpty()) {
+                        throw nee;
+                    }
+                    break;
+                }
+                entries.add(entry);
+                size += entry.readableBytes();
+            }
+        } catch (IOException | RuntimeException e) {
+            entries.forEach(ByteBuf::release);
+            throw e;
+        }
+        return entries;
+    }
+
     @Override
     public long getLastAddConfirmed(long ledgerId) throws IOException {
         return interleavedLedgerStorage.getLastAddConfirmed(ledgerId);
@@ -59,7 +59,7 @@ public class TransactionalEntryLogCompactor extends AbstractLogCompactor {
             EntryLogger entryLogger,
             CompactableLedgerStorage ledgerStorage,
             LogRemovalListener logRemover) {
-        super(conf, logRemover);
+        super(conf, logRemover, entryLogger::getReadLatencyNanos);
         this.entryLogger = entryLogger;
         this.ledgerStorage = ledgerStorage;
     }
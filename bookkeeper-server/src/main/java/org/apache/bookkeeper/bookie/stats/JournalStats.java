@@ -32,9 +32,12 @@ import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_FORCE_W
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_FORCE_WRITE_ENQUEUE;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_FORCE_WRITE_GROUPING_COUNT;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_FORCE_WRITE_QUEUE_SIZE;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_GROUP_COMMIT_WAIT;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_NUM_FLUSH_EMPTY_QUEUE;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_NUM_FLUSH_MAX_OUTSTANDING_BYTES;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_NUM_FLUSH_MAX_WAIT;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_NUM_GROUP_COMMIT_NO_WAIT;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_NUM_GROUP_COMMIT_OVER_TARGET;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_PROCESS_TIME_LATENCY;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_QUEUE_LATENCY;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_QUEUE_SIZE;
@@ -127,6 +130,11 @@ public class JournalStats {
         help = "The distribution of number of bytes grouped together into a force write request"
     )
     private final OpStatsLogger forceWriteBatchBytesStats;
+    @StatsDoc(
+        name = JOURNAL_GROUP_COMMIT_WAIT,
+        help = "The group wait picked by the adaptive group commit at each journal flush"
+    )
+    private final OpStatsLogger groupCommitWaitStats;
     @StatsDoc(
         name = JOURNAL_QUEUE_SIZE,
         help = "The journal queue size"
@@ -157,6 +165,18 @@ public class JournalStats {
         help = "The number of journal flushes triggered when journal queue becomes empty"
     )
     private final Counter flushEmptyQueueCounter;
+    @StatsDoc(
+        name = JOURNAL_NUM_GROUP_COMMIT_NO_WAIT,
+        help = "The number of times the adaptive group commit decided not to wait, as entries arrive too slowly"
+            + " to be grouped within the target latency"
+    )
+    private final Counter groupCommitNoWaitCounter;
+    @StatsDoc(
+        name = JOURNAL_NUM_GROUP_COMMIT_OVER_TARGET,
+        help = "The number of times the estimated flush and fsync latency alone exceeded the target add latency"
+            + " of the adaptive group commit"
+    )
+    private final Counter groupCommitOverTargetCounter;
     @StatsDoc(
         name = JOURNAL_WRITE_BYTES,
         help = "The number of bytes appended to the journal"
@@ -177,6 +197,7 @@ public class JournalStats {
         forceWriteBatchEntriesStats =
                 statsLogger.getOpStatsLogger(BookKeeperServerStats.JOURNAL_FORCE_WRITE_BATCH_ENTRIES);
         forceWriteBatchBytesStats = statsLogger.getOpStatsLogger(BookKeeperServerStats.JOURNAL_FORCE_WRITE_BATCH_BYTES);
+        groupCommitWaitStats = statsLogger.getOpStatsLogger(BookKeeperServerStats.JOURNAL_GROUP_COMMIT_WAIT);
         journalQueueSize = statsLogger.getCounter(BookKeeperServerStats.JOURNAL_QUEUE_SIZE);
         forceWriteQueueSize = statsLogger.getCounter(BookKeeperServerStats.JOURNAL_FORCE_WRITE_QUEUE_SIZE);
         journalCbQueueSize = statsLogger.getCounter(BookKeeperServerStats.JOURNAL_CB_QUEUE_SIZE);
@@ -184,6 +205,9 @@ public class JournalStats {
         flushMaxOutstandingBytesCounter =
                 statsLogger.getCounter(BookKeeperServerStats.JOURNAL_NUM_FLUSH_MAX_OUTSTANDING_BYTES);
         flushEmptyQueueCounter = statsLogger.getCounter(BookKeeperServerStats.JOURNAL_NUM_FLUSH_EMPTY_QUEUE);
+        groupCommitNoWaitCounter = statsLogger.getCounter(BookKeeperServerStats.JOURNAL_NUM_GROUP_COMMIT_NO_WAIT);
+        groupCommitOverTargetCounter =
+                statsLogger.getCounter(BookKeeperServerStats.JOURNAL_NUM_GROUP_COMMIT_OVER_TARGET);
         journalWriteBytes = statsLogger.getCounter(BookKeeperServerStats.JOURNAL_WRITE_BYTES);
     }
 
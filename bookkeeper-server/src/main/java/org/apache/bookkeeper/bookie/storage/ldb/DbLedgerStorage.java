@@ -87,8 +87,6 @@ public class DbLedgerStorage implements LedgerStorage {
     private int numberOfDirs;
     private List<SingleDirectoryDbLedgerStorage> ledgerStorageList;
 
-    // Keep 1 single Bookie GC thread so the the compactions from multiple individual directories are serialized
-    private ScheduledExecutorService gcExecutor;
     private DbLedgerStorageStats stats;
 
     protected ByteBufAllocator allocator;
@@ -117,10 +115,13 @@ public class DbLedgerStorage implements LedgerStorage {
         long perDirectoryWriteCacheSize = writeCacheMaxSize / numberOfDirs;
         long perDirectoryReadCacheSize = readCacheMaxSize / numberOfDirs;
 
-        gcExecutor = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("GarbageCollector"));
-
         ledgerStorageList = Lists.newArrayList();
         for (File ledgerDir : ledgerDirsManager.getAllLedgerDirs()) {
+            // Each directory has its own entry logs on its own disk, so it is garbage collected and compacted on a
+            // thread of its own, in parallel with the other directories
+            ScheduledExecutorService gcExecutor = Executors.newSingleThreadScheduledExecutor(
+                    new DefaultThreadFactory("GarbageCollector-" + ledgerStorageList.size()));
+
             // Create a ledger dirs manager for the single directory
             File[] dirs = new File[1];
             // Remove the `/current` suffix which will be appended again by LedgersDirManager
@@ -136,7 +137,9 @@ public class DbLedgerStorage implements LedgerStorage {
             () -> ledgerStorageList.stream().mapToLong(SingleDirectoryDbLedgerStorage::getWriteCacheSize).sum(),
             () -> ledgerStorageList.stream().mapToLong(SingleDirectoryDbLedgerStorage::getWriteCacheCount).sum(),
             () -> ledgerStorageList.stream().mapToLong(SingleDirectoryDbLedgerStorage::getReadCacheSize).sum(),
-            () -> ledgerStorageList.stream().mapToLong(SingleDirectoryDbLedgerStorage::getReadCacheCount).sum()
+            () -> ledgerStorageList.stream().mapToLong(SingleDirectoryDbLedgerStorage::getReadCacheCount).sum(),
+            () -> ledgerStorageList.stream().mapToLong(SingleDirectoryDbLedgerStorage::getReadCacheDetachedSize).sum(),
+            () -> ledgerStorageList.stream().mapToLong(SingleDirectoryDbLedgerStorage::getReadCacheDetachedCount).sum()
         );
     }
 
@@ -199,6 +202,12 @@ public class DbLedgerStorage implements LedgerStorage {
         return getLedgerSorage(ledgerId).getEntry(ledgerId, entryId);
     }
 
+    @Override
+    public List<ByteBuf> getEntries(long ledgerId, long startEntryId, int maxCount, long maxSize)
+            throws IOException {
+        return getLedgerSorage(ledgerId).getEntries(ledgerId, startEntryId, maxCount, maxSize);
+    }
+
     @Override
     public long getLastAddConfirmed(long ledgerId) throws IOException {
         return getLedgerSorage(ledgerId).getLastAddConfirmed(ledgerId);
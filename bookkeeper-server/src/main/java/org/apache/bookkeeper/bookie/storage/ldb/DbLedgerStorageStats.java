@@ -48,6 +48,12 @@ class DbLedgerStorageStats {
     private static final String READ_CACHE_MISSES = "read-cache-misses";
     private static final String READAHEAD_BATCH_COUNT = "readahead-batch-count";
     private static final String READAHEAD_BATCH_SIZE = "readahead-batch-size";
+    private static final String READAHEAD_HITS = "readahead-hits";
+    private static final String READAHEAD_WASTED_BYTES = "readahead-wasted-bytes";
+    private static final String READAHEAD_SKIPPED = "readahead-skipped";
+    private static final String READAHEAD_THROTTLED = "readahead-throttled";
+    private static final String LAST_ENTRY_FILTER_NEGATIVES = "last-entry-filter-negatives";
+    private static final String LAST_ENTRY_FILTER_FALSE_POSITIVES = "last-entry-filter-false-positives";
     private static final String FLUSH = "flush";
     private static final String FLUSH_SIZE = "flush-size";
     private static final String THROTTLED_WRITE_REQUESTS = "throttled-write-requests";
@@ -56,6 +62,8 @@ class DbLedgerStorageStats {
     private static final String WRITE_CACHE_COUNT = "write-cache-count";
     private static final String READ_CACHE_SIZE = "read-cache-size";
     private static final String READ_CACHE_COUNT = "read-cache-count";
+    private static final String READ_CACHE_DETACHED_SIZE = "read-cache-detached-size";
+    private static final String READ_CACHE_DETACHED_COUNT = "read-cache-detached-count";
 
     @StatsDoc(
         name = ADD_ENTRY,
@@ -91,6 +99,41 @@ class DbLedgerStorageStats {
         help = "the distribution of num of bytes to read in one readahead batch"
     )
     private final OpStatsLogger readAheadBatchSizeStats;
+    @StatsDoc(
+        name = READAHEAD_HITS,
+        help = "The number of reads served by entries loaded in read cache by readahead. The readahead hit ratio"
+            + " is this number divided by the total num of entries read in readahead batches. Only tracked with"
+            + " adaptive readahead"
+    )
+    private final Counter readAheadHits;
+    @StatsDoc(
+        name = READAHEAD_WASTED_BYTES,
+        help = "The number of bytes loaded in read cache by readahead that were never read. Only tracked with"
+            + " adaptive readahead"
+    )
+    private final Counter readAheadWastedBytes;
+    @StatsDoc(
+        name = READAHEAD_SKIPPED,
+        help = "The number of read cache misses for which readahead was skipped because of random access"
+    )
+    private final Counter readAheadSkipped;
+    @StatsDoc(
+        name = READAHEAD_THROTTLED,
+        help = "The number of background readahead batches dropped because too many bytes were already being read"
+            + " ahead"
+    )
+    private final Counter readAheadThrottled;
+    @StatsDoc(
+        name = LAST_ENTRY_FILTER_NEGATIVES,
+        help = "The number of reads of entries beyond the last entry of a ledger, rejected without looking up the"
+            + " entry location index"
+    )
+    private final Counter lastEntryFilterNegatives;
+    @StatsDoc(
+        name = LAST_ENTRY_FILTER_FALSE_POSITIVES,
+        help = "The number of reads that passed the last entry filter but were not found in the entry location index"
+    )
+    private final Counter lastEntryFilterFalsePositives;
     @StatsDoc(
         name = FLUSH,
         help = "operation stats of flushing write cache to entry log files"
@@ -132,12 +175,24 @@ class DbLedgerStorageStats {
         help = "Current number of entries in read cache"
     )
     private final Gauge<Long> readCacheCountGauge;
+    @StatsDoc(
+        name = READ_CACHE_DETACHED_SIZE,
+        help = "Current number of bytes of the read cache segments rotated out but still referenced by readers"
+    )
+    private final Gauge<Long> readCacheDetachedSizeGauge;
+    @StatsDoc(
+        name = READ_CACHE_DETACHED_COUNT,
+        help = "Current number of read cache segments rotated out but still referenced by readers"
+    )
+    private final Gauge<Long> readCacheDetachedCountGauge;
 
     DbLedgerStorageStats(StatsLogger stats,
                          Supplier<Long> writeCacheSizeSupplier,
                          Supplier<Long> writeCacheCountSupplier,
                          Supplier<Long> readCacheSizeSupplier,
-                         Supplier<Long> readCacheCountSupplier) {
+                         Supplier<Long> readCacheCountSupplier,
+                         Supplier<Long> readCacheDetachedSizeSupplier,
+                         Supplier<Long> readCacheDetachedCountSupplier) {
         addEntryStats = stats.getOpStatsLogger(ADD_ENTRY);
         readEntryStats = stats.getOpStatsLogger(READ_ENTRY);
         readCacheHitStats = stats.getOpStatsLogger(READ_CACHE_HITS);
@@ -149,6 +204,12 @@ class DbLedgerStorageStats {
 
         throttledWriteRequests = stats.getCounter(THROTTLED_WRITE_REQUESTS);
         rejectedWriteRequests = stats.getCounter(REJECTED_WRITE_REQUESTS);
+        readAheadHits = stats.getCounter(READAHEAD_HITS);
+        readAheadWastedBytes = stats.getCounter(READAHEAD_WASTED_BYTES);
+        readAheadSkipped = stats.getCounter(READAHEAD_SKIPPED);
+        readAheadThrottled = stats.getCounter(READAHEAD_THROTTLED);
+        lastEntryFilterNegatives = stats.getCounter(LAST_ENTRY_FILTER_NEGATIVES);
+        lastEntryFilterFalsePositives = stats.getCounter(LAST_ENTRY_FILTER_FALSE_POSITIVES);
 
         writeCacheSizeGauge = new Gauge<Long>() {
             @Override
@@ -199,6 +260,30 @@ class DbLedgerStorageStats {
             }
         };
         stats.registerGauge(READ_CACHE_COUNT, readCacheCountGauge);
+        readCacheDetachedSizeGauge = new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return readCacheDetachedSizeSupplier.get();
+            }
+        };
+        stats.registerGauge(READ_CACHE_DETACHED_SIZE, readCacheDetachedSizeGauge);
+        readCacheDetachedCountGauge = new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return readCacheDetachedCountSupplier.get();
+            }
+        };
+        stats.registerGauge(READ_CACHE_DETACHED_COUNT, readCacheDetachedCountGauge);
     }
 
 }
@@ -28,10 +28,12 @@ import java.nio.file.FileSystems;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
 
 import org.apache.bookkeeper.bookie.Bookie;
 import org.apache.bookkeeper.bookie.EntryLocation;
 import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.Batch;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.CloseableIterator;
 import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorageFactory.DbConfigType;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.stats.StatsLogger;
@@ -92,6 +94,70 @@ public class EntryLocationIndex implements Closeable {
         }
     }
 
+    /**
+     * Get the locations of a sequence of entries of a ledger with a single scan of the index.
+     *
+     * <p>The scan stops at the first entry that is not in the index.
+     *
+     * @param locations array filled with the locations of the entries firstEntryId, firstEntryId + 1, ...
+     * @return the number of contiguous entries that were found
+     */
+    public int getLocations(long ledgerId, long firstEntryId, long[] locations) throws IOException {
+        if (locations.length == 0) {
+            return 0;
+        }
+
+        LongPairWrapper firstKey = LongPairWrapper.get(ledgerId, firstEntryId);
+        LongPairWrapper lastKey = LongPairWrapper.get(ledgerId, firstEntryId + locations.length);
+        int count = 0;
+
+        try (CloseableIterator<Entry<byte[], byte[]>> iterator = locationsDb.iterator(firstKey.array, lastKey.array)) {
+            while (iterator.hasNext()) {
+                Entry<byte[], byte[]> entry = iterator.next();
+                long entryId = ArrayUtil.getLong(entry.getKey(), 8);
+                if (entryId != firstEntryId + count) {
+                    break;
+                }
+
+                locations[count++] = ArrayUtil.getLong(entry.getValue(), 0);
+            }
+        } finally {
+            firstKey.recycle();
+            lastKey.recycle();
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Found {} locations from {}@{} in db index", count, ledgerId, firstEntryId);
+        }
+        return count;
+    }
+
+    /**
+     * Get the ids of the entries of a ledger within a range with a single scan of the index keys.
+     *
+     * @param consumer called with the id of each entry of the ledger from firstEntryId included to lastEntryId
+     *            excluded, in ascending order
+     */
+    public void forEachEntryId(long ledgerId, long firstEntryId, long lastEntryId, LongConsumer consumer)
+            throws IOException {
+        if (deletedLedgers.contains(ledgerId)) {
+            // Ledger already deleted
+            return;
+        }
+
+        LongPairWrapper firstKey = LongPairWrapper.get(ledgerId, firstEntryId);
+        LongPairWrapper lastKey = LongPairWrapper.get(ledgerId, lastEntryId);
+
+        try (CloseableIterator<byte[]> keys = locationsDb.keys(firstKey.array, lastKey.array)) {
+            while (keys.hasNext()) {
+                consumer.accept(ArrayUtil.getLong(keys.next(), 8));
+            }
+        } finally {
+            firstKey.recycle();
+            lastKey.recycle();
+        }
+    }
+
     public long getLastEntryInLedger(long ledgerId) throws IOException {
         if (deletedLedgers.contains(ledgerId)) {
             // Ledger already deleted
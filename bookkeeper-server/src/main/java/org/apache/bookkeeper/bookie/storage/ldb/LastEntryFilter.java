@@ -0,0 +1,233 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.bookkeeper.bookie.Bookie;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashMap;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongHashMap;
+
+/**
+ * Answers from memory that an entry was never stored, for the reads of entries that are not in this bookie.
+ *
+ * <p>The first time a ledger is looked up, the filter builds a bitmap of its entries from a scan of its range of the
+ * entry location index. The entries added afterwards are set in the bitmap as they are added. Reads of the entries
+ * missing from the bitmap, like the entries past the last one read by speculative reads, long polls and ledger
+ * recovery, or the entries stored on the other bookies of the ensemble, are rejected without looking up the index.
+ *
+ * <p>The entries added before the ledger was registered in the filter may still be in the write caches during the
+ * scan. They are committed to the index by the next two flushes at the latest, so until the ledger has been scanned
+ * again after these flushes, the reads below the largest entry id added before the registration still go to the
+ * index.
+ *
+ * <p>A bitmap takes one bit per entry id up to the last entry of the ledger. The ledgers with entry ids beyond
+ * {@link #MAX_BITMAP_ENTRIES} only keep an upper bound of their entry ids: the largest entry id added since the bookie
+ * started, and the last entry in the index. Only the reads past the bound are rejected for them.
+ */
+class LastEntryFilter {
+
+    // Upper bound of the entry ids kept in the bitmap of a ledger, so that a bitmap takes at most 1MB
+    static final long MAX_BITMAP_ENTRIES = 8 * 1024 * 1024;
+
+    private final EntryLocationIndex entryLocationIndex;
+    private final DbLedgerStorageStats stats;
+
+    // Ledger id -> largest entry id added since the bookie started, plus one
+    private final ConcurrentLongLongHashMap addedLimits;
+    // Ledgers looked up since the bookie started
+    private final ConcurrentLongHashMap<LedgerEntries> ledgers;
+    // Number of flushes of the write cache committed to the entry location index
+    private final AtomicLong flushGeneration = new AtomicLong();
+
+    LastEntryFilter(EntryLocationIndex entryLocationIndex, DbLedgerStorageStats stats) {
+        this.entryLocationIndex = entryLocationIndex;
+        this.stats = stats;
+        this.addedLimits = new ConcurrentLongLongHashMap(16 * 1024, Runtime.getRuntime().availableProcessors() * 2);
+        this.ledgers = new ConcurrentLongHashMap<>(16 * 1024, Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    /**
+     * Record an entry added to the storage. Must be called before the entry can be found in the write cache.
+     */
+    void onAdd(long ledgerId, long entryId) {
+        if (entryId < 0) {
+            return;
+        }
+
+        long limit = entryId + 1;
+        while (true) {
+            long current = addedLimits.get(ledgerId);
+            if (current >= limit || addedLimits.compareAndSet(ledgerId, current, limit)) {
+                break;
+            }
+        }
+
+        // Updated after the limit, so that an entry is either set in the bitmap, or below the limit read when the
+        // ledger is registered
+        LedgerEntries ledger = ledgers.get(ledgerId);
+        if (ledger != null) {
+            ledger.add(entryId);
+        }
+    }
+
+    /**
+     * Record that the entries of the write cache being flushed were committed to the entry location index.
+     */
+    void onFlush() {
+        flushGeneration.incrementAndGet();
+    }
+
+    /**
+     * Check whether an entry that is not in the caches might be in the entry location index.
+     *
+     * @return false if the entry was never stored in this bookie
+     */
+    boolean mightContain(long ledgerId, long entryId) throws IOException {
+        if (entryId < 0) {
+            return true;
+        }
+
+        LedgerEntries ledger = ledgers.get(ledgerId);
+        if (ledger == null) {
+            LedgerEntries newLedger = new LedgerEntries(ledgerId);
+            ledger = ledgers.putIfAbsent(ledgerId, newLedger);
+            if (ledger == null) {
+                newLedger.register(addedLimits.get(ledgerId), flushGeneration.get());
+                ledger = newLedger;
+            }
+        }
+
+        if (ledger.mightContain(entryId)) {
+            return true;
+        }
+
+        stats.getLastEntryFilterNegatives().inc();
+        return false;
+    }
+
+    /**
+     * Record an entry that passed the filter but was not found in the entry location index.
+     */
+    void onFalsePositive() {
+        stats.getLastEntryFilterFalsePositives().inc();
+    }
+
+    void deleteLedger(long ledgerId) {
+        addedLimits.remove(ledgerId);
+        ledgers.remove(ledgerId);
+    }
+
+    /**
+     * The entries of a ledger stored in this bookie.
+     */
+    private final class LedgerEntries {
+        private final long ledgerId;
+
+        // Guarded by this
+        private boolean registered = false;
+        // Entries added before the ledger was registered have lower ids
+        private long preRegistrationLimit = Long.MAX_VALUE;
+        // Number of flushes committed when the ledger was registered, and when the index was last scanned
+        private long registeredGeneration = -1;
+        private long scannedGeneration = -1;
+        // Null once the ledger has entries beyond MAX_BITMAP_ENTRIES
+        private BitSet entries = new BitSet();
+        // Last entry in the index when it was last scanned, plus one
+        private long storedLimit = 0;
+
+        LedgerEntries(long ledgerId) {
+            this.ledgerId = ledgerId;
+        }
+
+        synchronized void register(long preRegistrationLimit, long generation) {
+            this.registered = true;
+            this.preRegistrationLimit = preRegistrationLimit;
+            this.registeredGeneration = generation;
+        }
+
+        synchronized void add(long entryId) {
+            if (entries == null) {
+                return;
+            }
+            if (entryId < MAX_BITMAP_ENTRIES) {
+                entries.set((int) entryId);
+            } else {
+                entries = null;
+            }
+        }
+
+        boolean mightContain(long entryId) throws IOException {
+            long generation;
+            synchronized (this) {
+                if (isStored(entryId)) {
+                    return true;
+                }
+
+                generation = flushGeneration.get();
+                if (isSettled() || generation <= scannedGeneration) {
+                    return isUncertain(entryId);
+                }
+            }
+
+            // Scan the index without holding the lock, so that the adds of the ledger are not blocked
+            BitSet scanned = new BitSet();
+            entryLocationIndex.forEachEntryId(ledgerId, 0, MAX_BITMAP_ENTRIES, id -> scanned.set((int) id));
+            long lastEntryId;
+            try {
+                lastEntryId = entryLocationIndex.getLastEntryInLedger(ledgerId);
+            } catch (Bookie.NoEntryException e) {
+                lastEntryId = -1;
+            }
+
+            synchronized (this) {
+                storedLimit = Math.max(storedLimit, lastEntryId + 1);
+                if (lastEntryId >= MAX_BITMAP_ENTRIES) {
+                    entries = null;
+                } else if (entries != null) {
+                    entries.or(scanned);
+                }
+                scannedGeneration = Math.max(scannedGeneration, generation);
+
+                return isStored(entryId) || isUncertain(entryId);
+            }
+        }
+
+        private boolean isStored(long entryId) {
+            return entries != null && entryId < MAX_BITMAP_ENTRIES && entries.get((int) entryId);
+        }
+
+        // Whether all the entries added before the registration were committed to the index before the last scan
+        private boolean isSettled() {
+            return registered && scannedGeneration >= registeredGeneration + 2;
+        }
+
+        // Whether an entry missing from the bitmap might still be in the index
+        private boolean isUncertain(long entryId) {
+            if (entries == null) {
+                return entryId < Math.max(addedLimits.get(ledgerId), storedLimit);
+            }
+            return !isSettled() && entryId < preRegistrationLimit;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.Batch;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorageFactory.DbConfigType;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Maintains an index of the extents of the ledgers in the entry logs.
+ *
+ * <p>An extent is a run of consecutive entries of a ledger that were written one after the other in an entry log. The
+ * write cache is flushed sorted by ledger, so each flush writes one extent per ledger, unless the entry log is rolled
+ * in the middle of it. The extents let the read-ahead read the next entries of a ledger with a few large reads, one per
+ * extent, without looking up the location of every entry.
+ *
+ * <p>The extents are only hints: their entries might have been moved since by the compaction, so the entries read from
+ * an extent must be validated.
+ */
+public class LedgerExtentIndex implements Closeable {
+
+    private final KeyValueStorage extentsDb;
+    private final ConcurrentLongHashSet deletedLedgers = new ConcurrentLongHashSet();
+
+    public LedgerExtentIndex(ServerConfiguration conf, KeyValueStorageFactory storageFactory, String basePath)
+            throws IOException {
+        String extentsDbPath = FileSystems.getDefault().getPath(basePath, "extents").toFile().toString();
+        extentsDb = storageFactory.newKeyValueStorage(extentsDbPath, DbConfigType.Small, conf);
+    }
+
+    @Override
+    public void close() throws IOException {
+        extentsDb.close();
+    }
+
+    /**
+     * A run of consecutive entries of a ledger, stored one after the other in an entry log.
+     */
+    public static class Extent {
+        final long firstEntryId;
+        final long lastEntryId;
+        // location of the first entry, as in the entry location index
+        final long location;
+        // size of the extent, including the size header of each entry
+        final long length;
+
+        Extent(long firstEntryId, long lastEntryId, long location, long length) {
+            this.firstEntryId = firstEntryId;
+            this.lastEntryId = lastEntryId;
+            this.location = location;
+            this.length = length;
+        }
+
+        /**
+         * Get the location where the extent ends, after its last entry.
+         */
+        long getEndLocation() {
+            return location - 4 + length;
+        }
+    }
+
+    /**
+     * Get the extent that contains an entry.
+     *
+     * @return the extent, or null if the entry is not part of an extent
+     */
+    public Extent getExtent(long ledgerId, long entryId) throws IOException {
+        if (deletedLedgers.contains(ledgerId)) {
+            return null;
+        }
+
+        // The floor key is exclusive, look up the last extent that starts at or before the entry
+        LongPairWrapper key = LongPairWrapper.get(ledgerId, entryId + 1);
+        try {
+            Entry<byte[], byte[]> entry = extentsDb.getFloor(key.array);
+            if (entry == null || ArrayUtil.getLong(entry.getKey(), 0) != ledgerId) {
+                return null;
+            }
+
+            long firstEntryId = ArrayUtil.getLong(entry.getKey(), 8);
+            long lastEntryId = ArrayUtil.getLong(entry.getValue(), 0);
+            if (entryId > lastEntryId) {
+                return null;
+            }
+            return new Extent(firstEntryId, lastEntryId, ArrayUtil.getLong(entry.getValue(), 8),
+                    ArrayUtil.getLong(entry.getValue(), 16));
+        } finally {
+            key.recycle();
+        }
+    }
+
+    public Batch newBatch() {
+        return extentsDb.newBatch();
+    }
+
+    /**
+     * Get a writer that collects the extents of a flush, from the locations of the entries in the order they are
+     * written to the entry logs.
+     */
+    ExtentWriter newWriter(Batch batch) {
+        return new ExtentWriter(batch);
+    }
+
+    /**
+     * Collects the extents of a sequence of entries written one after the other.
+     */
+    class ExtentWriter {
+        private final Batch batch;
+        private final byte[] value = new byte[24];
+
+        private long ledgerId = -1;
+        private long firstEntryId = -1;
+        private long lastEntryId = -1;
+        private long location = -1;
+        private long endLocation = -1;
+
+        ExtentWriter(Batch batch) {
+            this.batch = batch;
+        }
+
+        /**
+         * Add the next entry written to the entry logs.
+         *
+         * @param location the location of the entry
+         * @param entrySize the size of the entry, without its size header
+         */
+        void add(long ledgerId, long entryId, long location, int entrySize) throws IOException {
+            if (ledgerId != this.ledgerId || entryId != lastEntryId + 1 || location - 4 != endLocation) {
+                finish();
+                this.ledgerId = ledgerId;
+                this.firstEntryId = entryId;
+                this.location = location;
+            }
+            this.lastEntryId = entryId;
+            this.endLocation = location + entrySize;
+        }
+
+        /**
+         * Add the current extent to the batch.
+         */
+        void finish() throws IOException {
+            if (ledgerId == -1) {
+                return;
+            }
+
+            LongPairWrapper key = LongPairWrapper.get(ledgerId, firstEntryId);
+            ArrayUtil.setLong(value, 0, lastEntryId);
+            ArrayUtil.setLong(value, 8, location);
+            ArrayUtil.setLong(value, 16, endLocation - location + 4);
+            try {
+                batch.put(key.array, value);
+            } finally {
+                key.recycle();
+            }
+
+            if (log.isDebugEnabled()) {
+                log.debug("Add extent - ledger: {} -- entries: {} -> {} -- location: {}", ledgerId, firstEntryId,
+                        lastEntryId, location);
+            }
+            ledgerId = -1;
+        }
+    }
+
+    public void delete(long ledgerId) {
+        deletedLedgers.add(ledgerId);
+    }
+
+    public void removeDeletedLedgers() throws IOException {
+        Set<Long> ledgersToDelete = deletedLedgers.items();
+        if (ledgersToDelete.isEmpty()) {
+            return;
+        }
+
+        LongPairWrapper firstKey = LongPairWrapper.get(-1, -1);
+        LongPairWrapper lastKey = LongPairWrapper.get(-1, -1);
+        Batch batch = extentsDb.newBatch();
+        try {
+            for (long ledgerId : ledgersToDelete) {
+                firstKey.set(ledgerId, 0);
+                lastKey.set(ledgerId, Long.MAX_VALUE);
+                batch.deleteRange(firstKey.array, lastKey.array);
+            }
+            batch.flush();
+        } finally {
+            firstKey.recycle();
+            lastKey.recycle();
+            batch.close();
+        }
+
+        for (long ledgerId : ledgersToDelete) {
+            deletedLedgers.remove(ledgerId);
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerExtentIndex.class);
+}
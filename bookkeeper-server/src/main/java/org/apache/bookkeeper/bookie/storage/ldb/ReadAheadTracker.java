@@ -0,0 +1,250 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashMap;
+
+/**
+ * Tracks the read access pattern of each ledger to decide how much to read ahead after a read cache miss.
+ *
+ * <p>A ledger that is read sequentially gets a read-ahead window that doubles every time the previous batch was
+ * fully consumed, up to the configured batch size, and is halved when read-ahead entries were left unread. Read-ahead
+ * is skipped for ledgers that are accessed randomly. The byte budget of a batch follows the window, based on the entry
+ * size observed for the ledger.
+ *
+ * <p>The tracker is only used when adaptive read-ahead is enabled. Otherwise every miss reads ahead the configured
+ * batch size, without keeping any per-ledger state.
+ */
+class ReadAheadTracker {
+
+    // Entries that are this close to the previous read of the ledger are considered part of a sequential stream. This
+    // tolerates the gaps left by entries stored on other bookies of the ensemble and slightly reordered requests.
+    private static final long MAX_SEQUENTIAL_GAP = 16;
+
+    private static final int MIN_WINDOW = 4;
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final DbLedgerStorageStats stats;
+
+    private final ConcurrentLongHashMap<LedgerReadState> ledgers;
+
+    ReadAheadTracker(int maxEntries, long maxBytes, DbLedgerStorageStats stats) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.stats = stats;
+        this.ledgers = new ConcurrentLongHashMap<>(16 * 1024, Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    /**
+     * Record a read that was served from the read cache.
+     */
+    void onCacheHit(long ledgerId, long entryId) {
+        LedgerReadState state = ledgers.get(ledgerId);
+        if (state != null) {
+            state.onAccess(entryId, true);
+        }
+    }
+
+    /**
+     * Record a read cache miss and compute how much to read ahead after it.
+     *
+     * @param entrySize the size of the entry that was read from the entry log
+     * @return the read-ahead batch to read, or null if read-ahead should be skipped
+     */
+    ReadAheadBatch onCacheMiss(long ledgerId, long entryId, int entrySize) {
+        LedgerReadState state = ledgers.computeIfAbsent(ledgerId, k -> new LedgerReadState());
+        return state.onMiss(entryId, entrySize);
+    }
+
+    /**
+     * Record a read-ahead batch before it is read, so that the reads which follow are accounted against it even if
+     * the batch is filled in background.
+     *
+     * @return the id of the batch, to pass to {@link #onReadAhead(long, long, long, long, int, long)}
+     */
+    long onReadAheadStarted(long ledgerId, long firstEntryId, ReadAheadBatch batch) {
+        LedgerReadState state = ledgers.get(ledgerId);
+        return state != null ? state.onReadAheadStarted(firstEntryId, batch) : -1;
+    }
+
+    /**
+     * Record the entries that were actually loaded in the read cache by a read-ahead batch. This is ignored if the
+     * batch was already settled by a later cache miss.
+     */
+    void onReadAhead(long ledgerId, long batchId, long firstEntryId, long lastEntryId, int count, long size) {
+        LedgerReadState state = ledgers.get(ledgerId);
+        if (state != null) {
+            state.onReadAhead(batchId, firstEntryId, lastEntryId, count, size);
+        }
+    }
+
+    void deleteLedger(long ledgerId) {
+        ledgers.remove(ledgerId);
+    }
+
+    /**
+     * Evict the state of the ledgers that were not read recently.
+     */
+    void cleanupStaleLedgers(long maxIdleTimeMillis) {
+        long now = System.nanoTime();
+        long maxIdleNanos = TimeUnit.MILLISECONDS.toNanos(maxIdleTimeMillis);
+        ledgers.removeIf((ledgerId, state) -> state.evictIfIdle(now, maxIdleNanos));
+    }
+
+    /**
+     * Limits for a read-ahead batch.
+     */
+    static class ReadAheadBatch {
+        final int maxEntries;
+        final long maxBytes;
+
+        ReadAheadBatch(int maxEntries, long maxBytes) {
+            this.maxEntries = maxEntries;
+            this.maxBytes = maxBytes;
+        }
+    }
+
+    private class LedgerReadState {
+        private long lastEntryId = -1;
+        private int sequentialReads = 0;
+        private int window = MIN_WINDOW;
+        private long avgEntrySize = 0;
+
+        // Range of the last read-ahead batch and the highest entry that was read from it
+        private long readAheadFirstEntryId = -1;
+        private long readAheadLastEntryId = -1;
+        private long readAheadConsumedEntryId = -1;
+        private long readAheadBytes = 0;
+        private long readAheadBatchId = 0;
+
+        private long lastAccessNanos = System.nanoTime();
+
+        synchronized void onAccess(long entryId, boolean cacheHit) {
+            long delta = entryId - lastEntryId;
+            if (lastEntryId >= 0 && delta != 0 && Math.abs(delta) <= MAX_SEQUENTIAL_GAP) {
+                sequentialReads++;
+            } else if (delta != 0) {
+                sequentialReads = 0;
+            }
+            lastEntryId = entryId;
+            lastAccessNanos = System.nanoTime();
+
+            if (cacheHit && entryId >= readAheadFirstEntryId && entryId <= readAheadLastEntryId) {
+                stats.getReadAheadHits().inc();
+                readAheadConsumedEntryId = Math.max(readAheadConsumedEntryId, entryId);
+            }
+        }
+
+        synchronized ReadAheadBatch onMiss(long entryId, int entrySize) {
+            onAccess(entryId, false);
+            avgEntrySize = avgEntrySize == 0 ? entrySize : (avgEntrySize * 7 + entrySize) / 8;
+
+            boolean previousBatchConsumed = settleReadAhead();
+
+            if (sequentialReads == 0) {
+                // Random access, reading ahead would only evict useful entries from the cache
+                stats.getReadAheadSkipped().inc();
+                return null;
+            }
+
+            if (previousBatchConsumed) {
+                window = Math.min(maxEntries, window * 2);
+            }
+
+            int entries = Math.min(maxEntries, window);
+            long bytes = entries * avgEntrySize;
+            return new ReadAheadBatch(entries, maxBytes > 0 ? Math.min(bytes, maxBytes) : bytes);
+        }
+
+        synchronized long onReadAheadStarted(long firstEntryId, ReadAheadBatch batch) {
+            // Until the batch is read, assume it fills its whole budget
+            readAheadFirstEntryId = firstEntryId;
+            readAheadLastEntryId = firstEntryId + batch.maxEntries - 1;
+            readAheadConsumedEntryId = firstEntryId - 1;
+            readAheadBytes = batch.maxBytes > 0 ? batch.maxBytes : batch.maxEntries * avgEntrySize;
+            return ++readAheadBatchId;
+        }
+
+        synchronized void onReadAhead(long batchId, long firstEntryId, long lastEntryId, int count, long size) {
+            if (batchId != readAheadBatchId || readAheadLastEntryId < 0) {
+                // The batch was settled while it was being read
+                return;
+            }
+
+            if (count == 0) {
+                readAheadFirstEntryId = -1;
+                readAheadLastEntryId = -1;
+                readAheadConsumedEntryId = -1;
+                readAheadBytes = 0;
+                return;
+            }
+
+            // Keep the entries of the batch that were already read while it was being filled
+            readAheadConsumedEntryId = Math.max(readAheadConsumedEntryId, firstEntryId - 1);
+            readAheadFirstEntryId = firstEntryId;
+            readAheadLastEntryId = lastEntryId;
+            readAheadBytes = size;
+            avgEntrySize = size / count;
+        }
+
+        synchronized boolean evictIfIdle(long now, long maxIdleNanos) {
+            if (now - lastAccessNanos < maxIdleNanos) {
+                return false;
+            }
+
+            settleReadAhead();
+            return true;
+        }
+
+        /**
+         * Account for the entries of the previous read-ahead batch that were never read, and shrink the window if
+         * there were any.
+         *
+         * @return true if there was a previous batch and it was fully consumed
+         */
+        private boolean settleReadAhead() {
+            if (readAheadLastEntryId < 0) {
+                return false;
+            }
+
+            // The batch only contains the entries stored on this bookie, so its entry ids might not be contiguous.
+            // Estimate the unread bytes from the portion of the entry id range that was not read.
+            long rangeSize = readAheadLastEntryId - readAheadFirstEntryId + 1;
+            long unreadEntries = readAheadLastEntryId - Math.max(readAheadConsumedEntryId, readAheadFirstEntryId - 1);
+            long unreadBytes = readAheadBytes * unreadEntries / rangeSize;
+            readAheadFirstEntryId = -1;
+            readAheadLastEntryId = -1;
+            readAheadConsumedEntryId = -1;
+            readAheadBytes = 0;
+
+            if (unreadEntries > 0) {
+                stats.getReadAheadWastedBytes().add(unreadBytes);
+                window = Math.max(MIN_WINDOW, window / 2);
+                return false;
+            }
+
+            return true;
+        }
+    }
+}
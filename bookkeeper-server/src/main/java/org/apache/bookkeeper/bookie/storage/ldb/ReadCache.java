@@ -24,13 +24,14 @@ import static org.apache.bookkeeper.bookie.storage.ldb.WriteCache.align64;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
-import io.netty.buffer.Unpooled;
+import io.netty.util.IllegalReferenceCountException;
 
 import java.io.Closeable;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap;
 import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap.LongPair;
@@ -44,21 +45,49 @@ import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap.Long
  * ring-buffer fashion. When the read cache is full, the oldest segment
  * is cleared and rotated to make space for new entries to be added to
  * the read cache.
+ *
+ * <p>Each rotation starts a new epoch and the segment for an epoch lives
+ * in the ring slot {@code epoch % segmentsCount}. A single index maps each
+ * (ledgerId, entryId) to the epoch, offset and size of the entry, so a
+ * lookup is one hashmap access regardless of the number of segments. The
+ * cache does not use locks: an index entry pointing to an epoch that was
+ * rotated out is treated as a miss and removed on lookup. Each entry is
+ * stored after a small header with its key, so that the index entries of
+ * an evicted segment are removed one by one by walking the segment, without
+ * ever scanning or locking the whole index.
+ *
+ * <p>Entries are returned as retained read-only slices of the cache segments,
+ * so a cache hit does not copy the entry payload. A segment that still has
+ * outstanding slices when it is rotated is detached from the cache and its
+ * memory is freed when the last slice is released. At most
+ * {@link #MAX_DETACHED_SEGMENTS} segments are detached at a time: beyond that,
+ * the rotation is deferred and new entries are not cached until the readers
+ * release their slices, so the memory used never exceeds the cache size by
+ * more than that number of segments.
  */
 public class ReadCache implements Closeable {
 
     private static final int DEFAULT_MAX_SEGMENT_SIZE = 1 * 1024 * 1024 * 1024;
 
-    private final List<ByteBuf> cacheSegments;
-    private final List<ConcurrentLongLongPairHashMap> cacheIndexes;
+    // ledgerId, entryId and size of the entry stored before its payload in the segment
+    private static final int ENTRY_HEADER_SIZE = 8 + 8 + 4;
+
+    // Number of rotated out segments whose memory can still be held by readers, on top of the cache size
+    static final int MAX_DETACHED_SEGMENTS = 1;
 
-    private int currentSegmentIdx;
-    private final AtomicInteger currentSegmentOffset = new AtomicInteger(0);
+    private final AtomicReferenceArray<Segment> segments;
+    private volatile Segment currentSegment;
+
+    // (ledgerId, entryId) -> (epoch, offset << 32 | size)
+    private final ConcurrentLongLongPairHashMap index;
 
     private final int segmentSize;
 
-    private ByteBufAllocator allocator;
-    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Buffers of the segments rotated out while they still had outstanding slices. The cache keeps its reference
+    // on them, and releases it on a later rollover once the readers have released all the slices.
+    private final Queue<ByteBuf> detachedBuffers = new ConcurrentLinkedQueue<>();
+
+    private final ByteBufAllocator allocator;
 
     public ReadCache(ByteBufAllocator allocator, long maxCacheSize) {
         this(allocator, maxCacheSize, DEFAULT_MAX_SEGMENT_SIZE);
@@ -69,131 +98,277 @@ public class ReadCache implements Closeable {
         int segmentsCount = Math.max(2, (int) (maxCacheSize / maxSegmentSize));
         segmentSize = (int) (maxCacheSize / segmentsCount);
 
-        cacheSegments = new ArrayList<>();
-        cacheIndexes = new ArrayList<>();
+        segments = new AtomicReferenceArray<>(segmentsCount);
+        index = new ConcurrentLongLongPairHashMap(4096 * segmentsCount, 2 * Runtime.getRuntime().availableProcessors());
 
+        // Slots other than the first one start with a negative epoch, which no index entry can refer to
         for (int i = 0; i < segmentsCount; i++) {
-            cacheSegments.add(Unpooled.directBuffer(segmentSize, segmentSize));
-            cacheIndexes.add(new ConcurrentLongLongPairHashMap(4096, 2 * Runtime.getRuntime().availableProcessors()));
+            long epoch = i == 0 ? 0 : i - segmentsCount;
+            segments.set(i, new Segment(epoch, allocator.directBuffer(segmentSize, segmentSize)));
         }
+
+        currentSegment = segments.get(0);
     }
 
     @Override
     public void close() {
-        cacheSegments.forEach(ByteBuf::release);
+        for (int i = 0; i < segments.length(); i++) {
+            Segment segment = segments.getAndSet(i, null);
+            if (segment != null) {
+                segment.buffer.release();
+            }
+        }
+
+        ByteBuf buffer;
+        while ((buffer = detachedBuffers.poll()) != null) {
+            buffer.release();
+        }
     }
 
     public void put(long ledgerId, long entryId, ByteBuf entry) {
         int entrySize = entry.readableBytes();
-        int alignedSize = align64(entrySize);
+        int alignedSize = align64(ENTRY_HEADER_SIZE + entrySize);
 
-        lock.readLock().lock();
+        if (ENTRY_HEADER_SIZE + entrySize > segmentSize) {
+            // The entry would not fit in any segment
+            return;
+        }
 
-        try {
-            int offset = currentSegmentOffset.getAndAdd(alignedSize);
-            if (offset + entrySize > segmentSize) {
-                // Roll-over the segment (outside the read-lock)
-            } else {
+        while (true) {
+            Segment segment = currentSegment;
+            int offset = reserve(segment, entrySize, alignedSize);
+
+            if (offset < 0) {
+                if (segment.sealed.compareAndSet(false, true)) {
+                    if (!rollover(segment)) {
+                        // The next segment is still pinned by readers, try again with the next put
+                        segment.sealed.set(false);
+                        return;
+                    }
+                } else if (currentSegment == segment) {
+                    // Another thread is rolling over the segment. Rather than waiting for it, skip caching this entry
+                    return;
+                }
+                continue;
+            }
+
+            if (!tryRetain(segment)) {
+                // The segment was rotated out in the meantime
+                continue;
+            }
+
+            try {
                 // Copy entry into read cache segment
-                cacheSegments.get(currentSegmentIdx).setBytes(offset, entry, entry.readerIndex(),
-                        entry.readableBytes());
-                cacheIndexes.get(currentSegmentIdx).put(ledgerId, entryId, offset, entrySize);
-                return;
+                segment.buffer.setLong(offset, ledgerId);
+                segment.buffer.setLong(offset + 8, entryId);
+                segment.buffer.setInt(offset + 16, entrySize);
+                segment.buffer.setBytes(offset + ENTRY_HEADER_SIZE, entry, entry.readerIndex(), entrySize);
+                index.put(ledgerId, entryId, segment.epoch,
+                        ((long) (offset + ENTRY_HEADER_SIZE) << 32) | entrySize);
+                segment.entries.incrementAndGet();
+            } finally {
+                segment.buffer.release();
             }
-        } finally {
-            lock.readLock().unlock();
+            return;
         }
+    }
 
-        // We could not insert in segment, we to get the write lock and roll-over to
-        // next segment
-        lock.writeLock().lock();
+    public ByteBuf get(long ledgerId, long entryId) {
+        LongPair location = index.get(ledgerId, entryId);
+        if (location == null) {
+            return null;
+        }
 
-        try {
-            int offset = currentSegmentOffset.getAndAdd(entrySize);
-            if (offset + entrySize > segmentSize) {
-                // Rollover to next segment
-                currentSegmentIdx = (currentSegmentIdx + 1) % cacheSegments.size();
-                currentSegmentOffset.set(alignedSize);
-                cacheIndexes.get(currentSegmentIdx).clear();
-                offset = 0;
+        long epoch = location.first;
+        Segment segment = segments.get(slot(epoch));
+        if (segment == null || segment.epoch != epoch) {
+            // The entry belongs to a segment that was already rotated out
+            index.remove(ledgerId, entryId, location.first, location.second);
+            return null;
+        }
+
+        if (!tryRetain(segment)) {
+            // The segment is being rotated out
+            return null;
+        }
+
+        int entryOffset = (int) (location.second >>> 32);
+        int entryLen = (int) location.second;
+
+        // Share the segment memory with the caller. The slice keeps the reference we have acquired on the segment,
+        // so its content is not overwritten until the caller releases it.
+        return segment.buffer.slice(entryOffset, entryLen).asReadOnly();
+    }
+
+    /**
+     * Reserve room for an entry at the end of the segment.
+     *
+     * @return the offset of the entry in the segment, or -1 if the segment is full
+     */
+    private int reserve(Segment segment, int entrySize, int alignedSize) {
+        while (true) {
+            int offset = segment.offset.get();
+            if (offset + ENTRY_HEADER_SIZE + entrySize > segmentSize) {
+                return -1;
             }
+            if (segment.offset.compareAndSet(offset, offset + alignedSize)) {
+                return offset;
+            }
+        }
+    }
+
+    /**
+     * Rotate to the next segment in the ring, evicting the oldest one.
+     *
+     * <p>Only the thread that sealed {@code fullSegment} gets here, so there is a single rollover at a time.
+     *
+     * @return false if the rotation was deferred, because the oldest segment still has outstanding slices and
+     *         there are already {@link #MAX_DETACHED_SEGMENTS} detached segments
+     */
+    private boolean rollover(Segment fullSegment) {
+        long newEpoch = fullSegment.epoch + 1;
+        int slot = slot(newEpoch);
+
+        detachedBuffers.removeIf(buffer -> buffer.refCnt() == 1 && buffer.release());
+        boolean canDetach = detachedBuffers.size() < MAX_DETACHED_SEGMENTS;
+        if (!canDetach && segments.get(slot).buffer.refCnt() > 1) {
+            return false;
+        }
+
+        // Remove the evicted segment from the ring before checking whether it is still referenced. Readers validate
+        // the ring slot after retaining the segment, so either they see the segment gone, or we see their reference.
+        Segment evicted = segments.getAndSet(slot, null);
+
+        ByteBuf buffer = evicted.buffer;
+        if (buffer.refCnt() > 1 && !canDetach) {
+            // A reader got a slice in the meantime. The segment was not modified, so put it back.
+            segments.set(slot, evicted);
+            return false;
+        }
+
+        if (evicted.epoch >= 0) {
+            // Purge the index entries of the evicted segment before its memory can be reused
+            purgeIndex(evicted);
+        }
 
-            // Copy entry into read cache segment
-            cacheSegments.get(currentSegmentIdx).setBytes(offset, entry, entry.readerIndex(), entry.readableBytes());
-            cacheIndexes.get(currentSegmentIdx).put(ledgerId, entryId, offset, entrySize);
-        } finally {
-            lock.writeLock().unlock();
+        if (buffer.refCnt() > 1) {
+            // There are still slices of this segment referenced by readers. We cannot overwrite the memory, so we
+            // keep it aside until the readers release it and use a new buffer.
+            detachedBuffers.add(buffer);
+            buffer = allocator.directBuffer(segmentSize, segmentSize);
         }
+
+        Segment newSegment = new Segment(newEpoch, buffer);
+        segments.set(slot, newSegment);
+        currentSegment = newSegment;
+        return true;
     }
 
-    public ByteBuf get(long ledgerId, long entryId) {
-        lock.readLock().lock();
+    /**
+     * Remove from the index the entries stored in an evicted segment, walking the entry headers of the segment.
+     *
+     * <p>Each index entry is only removed if it still points to the evicted segment, and the walk stops at the
+     * first header that is not consistent, such as the space reserved by a put that did not complete. Index
+     * entries that are missed are removed when they are looked up.
+     */
+    private void purgeIndex(Segment evicted) {
+        ByteBuf buffer = evicted.buffer;
+        int end = Math.min(evicted.offset.get(), segmentSize);
+        int offset = 0;
+        while (offset + ENTRY_HEADER_SIZE <= end) {
+            long ledgerId = buffer.getLong(offset);
+            long entryId = buffer.getLong(offset + 8);
+            int entrySize = buffer.getInt(offset + 16);
+            if (ledgerId < 0 || entrySize < 0 || offset + ENTRY_HEADER_SIZE + entrySize > end) {
+                break;
+            }
+
+            index.remove(ledgerId, entryId, evicted.epoch, ((long) (offset + ENTRY_HEADER_SIZE) << 32) | entrySize);
+            offset += align64(ENTRY_HEADER_SIZE + entrySize);
+        }
+    }
 
+    /**
+     * Acquire a reference on the segment memory.
+     *
+     * @return false if the segment was rotated out of the ring, in which case no reference is held
+     */
+    private boolean tryRetain(Segment segment) {
         try {
-            // We need to check all the segments, starting from the current one and looking
-            // backward to minimize the
-            // checks for recently inserted entries
-            int size = cacheSegments.size();
-            for (int i = 0; i < size; i++) {
-                int segmentIdx = (currentSegmentIdx + (size - i)) % size;
-
-                LongPair res = cacheIndexes.get(segmentIdx).get(ledgerId, entryId);
-                if (res != null) {
-                    int entryOffset = (int) res.first;
-                    int entryLen = (int) res.second;
-
-                    ByteBuf entry = allocator.directBuffer(entryLen, entryLen);
-                    entry.writeBytes(cacheSegments.get(segmentIdx), entryOffset, entryLen);
-                    return entry;
-                }
-            }
-        } finally {
-            lock.readLock().unlock();
+            segment.buffer.retain();
+        } catch (IllegalReferenceCountException e) {
+            // The segment was detached and all its slices were already released
+            return false;
         }
 
-        // Entry not found in any segment
-        return null;
+        if (segments.get(slot(segment.epoch)) != segment) {
+            segment.buffer.release();
+            return false;
+        }
+
+        return true;
+    }
+
+    private int slot(long epoch) {
+        return (int) (epoch % segments.length());
     }
 
     /**
      * @return the total size of cached entries
      */
     public long size() {
-        lock.readLock().lock();
-
-        try {
-            long size = 0;
-            for (int i = 0; i < cacheIndexes.size(); i++) {
-                if (i == currentSegmentIdx) {
-                    size += currentSegmentOffset.get();
-                } else if (!cacheIndexes.get(i).isEmpty()) {
-                    size += segmentSize;
-                } else {
-                    // the segment is empty
-                }
+        long size = 0;
+        for (int i = 0; i < segments.length(); i++) {
+            Segment segment = segments.get(i);
+            if (segment != null && segment.epoch >= 0) {
+                size += Math.min(segment.offset.get(), segmentSize);
             }
-
-            return size;
-        } finally {
-            lock.readLock().unlock();
         }
+
+        return size;
+    }
+
+    /**
+     * @return the number of segments rotated out of the cache whose memory is still held by readers
+     */
+    public long detachedCount() {
+        return detachedBuffers.size();
+    }
+
+    /**
+     * @return the memory of the segments rotated out of the cache that is still held by readers
+     */
+    public long detachedSize() {
+        return detachedCount() * segmentSize;
     }
 
     /**
      * @return the total number of cached entries
      */
     public long count() {
-        lock.readLock().lock();
-
-        try {
-            long count = 0;
-            for (int i = 0; i < cacheIndexes.size(); i++) {
-                count += cacheIndexes.get(i).size();
+        long count = 0;
+        for (int i = 0; i < segments.length(); i++) {
+            Segment segment = segments.get(i);
+            if (segment != null) {
+                count += segment.entries.get();
             }
+        }
+
+        return count;
+    }
+
+    private static final class Segment {
+        final long epoch;
+        final ByteBuf buffer;
+        final AtomicInteger offset = new AtomicInteger(0);
+        final AtomicInteger entries = new AtomicInteger(0);
+
+        // Set by the thread that rolls the cache over to the next segment, once this one is full
+        final AtomicBoolean sealed = new AtomicBoolean(false);
 
-            return count;
-        } finally {
-            lock.readLock().unlock();
+        Segment(long epoch, ByteBuf buffer) {
+            this.epoch = epoch;
+            this.buffer = buffer;
         }
     }
 }
@@ -31,15 +31,18 @@ import io.netty.buffer.ByteBufAllocator;
 import io.netty.util.concurrent.DefaultThreadFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.PrimitiveIterator.OfLong;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.StampedLock;
 
@@ -62,6 +65,9 @@ import org.apache.bookkeeper.bookie.LedgerEntryPage;
 import org.apache.bookkeeper.bookie.StateManager;
 import org.apache.bookkeeper.bookie.storage.ldb.DbLedgerStorageDataFormats.LedgerData;
 import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.Batch;
+import org.apache.bookkeeper.bookie.storage.ldb.LedgerExtentIndex.Extent;
+import org.apache.bookkeeper.bookie.storage.ldb.LedgerExtentIndex.ExtentWriter;
+import org.apache.bookkeeper.bookie.storage.ldb.ReadAheadTracker.ReadAheadBatch;
 import org.apache.bookkeeper.common.util.Watcher;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.meta.LedgerManager;
@@ -70,6 +76,7 @@ import org.apache.bookkeeper.stats.OpStatsLogger;
 import org.apache.bookkeeper.stats.StatsLogger;
 import org.apache.bookkeeper.util.MathUtils;
 import org.apache.bookkeeper.util.collections.ConcurrentLongHashMap;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashSet;
 import org.apache.commons.lang.mutable.MutableLong;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -85,6 +92,8 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
     private final LedgerMetadataIndex ledgerIndex;
     private final EntryLocationIndex entryLocationIndex;
+    // Null unless the extents of the ledgers are tracked at flush
+    private final LedgerExtentIndex ledgerExtentIndex;
 
     private final ConcurrentLongHashMap<TransientLedgerInfo> transientLedgerInfoCache;
 
@@ -108,6 +117,12 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
     private final ExecutorService executor = Executors.newSingleThreadExecutor(new DefaultThreadFactory("db-storage"));
 
+    // Executor used to fill the read cache in background, if read-ahead is asynchronous
+    private final ExecutorService readAheadExecutor;
+    private volatile boolean readAheadStopped = false;
+    private final ConcurrentLongHashSet pendingReadAheadLedgers = new ConcurrentLongHashSet();
+    private final AtomicLong readAheadInflightBytes = new AtomicLong(0);
+
     // Executor used to for db index cleanup
     private final ScheduledExecutorService cleanupExecutor = Executors
             .newSingleThreadScheduledExecutor(new DefaultThreadFactory("db-storage-cleanup"));
@@ -121,6 +136,14 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
     private final long writeCacheMaxSize;
     private final long readCacheMaxSize;
     private final int readAheadCacheBatchSize;
+    private final long readAheadCacheBatchBytesSize;
+    // Only set when adaptive read-ahead is enabled, otherwise every miss reads ahead the default batch
+    private final ReadAheadTracker readAheadTracker;
+    private final ReadAheadBatch defaultReadAheadBatch;
+
+    // Null if disabled
+    private final LastEntryFilter lastEntryFilter;
+    private final long readAheadAsyncMaxInflightBytes;
 
     private final long maxThrottleTimeNanos;
 
@@ -128,6 +151,21 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
     static final String READ_AHEAD_CACHE_BATCH_SIZE = "dbStorage_readAheadCacheBatchSize";
     private static final int DEFAULT_READ_AHEAD_CACHE_BATCH_SIZE = 100;
+    static final String READ_AHEAD_CACHE_BATCH_BYTES_SIZE = "dbStorage_readAheadCacheBatchBytesSize";
+    private static final long DEFAULT_READ_AHEAD_CACHE_BATCH_BYTES_SIZE = -1;
+    static final String READ_AHEAD_ADAPTIVE_ENABLED = "dbStorage_readAheadAdaptiveEnabled";
+    private static final boolean DEFAULT_READ_AHEAD_ADAPTIVE_ENABLED = false;
+    static final String READ_AHEAD_ASYNC_ENABLED = "dbStorage_readAheadAsyncEnabled";
+    private static final boolean DEFAULT_READ_AHEAD_ASYNC_ENABLED = false;
+    static final String READ_AHEAD_ASYNC_MAX_INFLIGHT_BYTES = "dbStorage_readAheadAsyncMaxInflightBytes";
+    private static final long DEFAULT_READ_AHEAD_ASYNC_MAX_INFLIGHT_BYTES = 64 * 1024 * 1024;
+    static final String LEDGER_EXTENTS_ENABLED = "dbStorage_ledgerExtentsEnabled";
+    private static final boolean DEFAULT_LEDGER_EXTENTS_ENABLED = false;
+    static final String LAST_ENTRY_FILTER_ENABLED = "dbStorage_lastEntryFilterEnabled";
+    private static final boolean DEFAULT_LAST_ENTRY_FILTER_ENABLED = false;
+
+    // Upper bound of a single read of a ledger extent by the read-ahead
+    private static final int MAX_EXTENT_READ_SIZE = 1024 * 1024;
 
     private static final long DEFAULT_MAX_THROTTLE_TIME_MILLIS = TimeUnit.SECONDS.toMillis(10);
 
@@ -151,6 +189,15 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
         readCacheMaxSize = readCacheSize;
         readAheadCacheBatchSize = conf.getInt(READ_AHEAD_CACHE_BATCH_SIZE, DEFAULT_READ_AHEAD_CACHE_BATCH_SIZE);
+        readAheadCacheBatchBytesSize = conf.getLong(READ_AHEAD_CACHE_BATCH_BYTES_SIZE,
+                DEFAULT_READ_AHEAD_CACHE_BATCH_BYTES_SIZE);
+        readAheadAsyncMaxInflightBytes = conf.getLong(READ_AHEAD_ASYNC_MAX_INFLIGHT_BYTES,
+                DEFAULT_READ_AHEAD_ASYNC_MAX_INFLIGHT_BYTES);
+        if (conf.getBoolean(READ_AHEAD_ASYNC_ENABLED, DEFAULT_READ_AHEAD_ASYNC_ENABLED)) {
+            readAheadExecutor = Executors.newSingleThreadExecutor(new DefaultThreadFactory("db-storage-readahead"));
+        } else {
+            readAheadExecutor = null;
+        }
 
         long maxThrottleTimeMillis = conf.getLong(DbLedgerStorage.MAX_THROTTLE_TIME_MILLIS,
                 DEFAULT_MAX_THROTTLE_TIME_MILLIS);
@@ -160,6 +207,11 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
         ledgerIndex = new LedgerMetadataIndex(conf, KeyValueStorageRocksDB.factory, baseDir, statsLogger);
         entryLocationIndex = new EntryLocationIndex(conf, KeyValueStorageRocksDB.factory, baseDir, statsLogger);
+        if (conf.getBoolean(LEDGER_EXTENTS_ENABLED, DEFAULT_LEDGER_EXTENTS_ENABLED)) {
+            ledgerExtentIndex = new LedgerExtentIndex(conf, KeyValueStorageRocksDB.factory, baseDir);
+        } else {
+            ledgerExtentIndex = null;
+        }
 
         transientLedgerInfoCache = new ConcurrentLongHashMap<>(16 * 1024,
                 Runtime.getRuntime().availableProcessors() * 2);
@@ -168,15 +220,32 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
                 TransientLedgerInfo.LEDGER_INFO_CACHING_TIME_MINUTES, TimeUnit.MINUTES);
 
         entryLogger = new EntryLogger(conf, ledgerDirsManager, null, statsLogger, allocator);
-        gcThread = new GarbageCollectorThread(conf, ledgerManager, this, statsLogger);
+        gcThread = gcExecutor != null
+                ? new GarbageCollectorThread(conf, ledgerManager, this, statsLogger, gcExecutor)
+                : new GarbageCollectorThread(conf, ledgerManager, this, statsLogger);
 
         dbLedgerStorageStats = new DbLedgerStorageStats(
             statsLogger,
             () -> writeCache.size() + writeCacheBeingFlushed.size(),
             () -> writeCache.count() + writeCacheBeingFlushed.count(),
             () -> readCache.size(),
-            () -> readCache.count()
+            () -> readCache.count(),
+            () -> readCache.detachedSize(),
+            () -> readCache.detachedCount()
         );
+
+        defaultReadAheadBatch = new ReadAheadBatch(readAheadCacheBatchSize, readAheadCacheBatchBytesSize);
+        if (conf.getBoolean(READ_AHEAD_ADAPTIVE_ENABLED, DEFAULT_READ_AHEAD_ADAPTIVE_ENABLED)) {
+            readAheadTracker = new ReadAheadTracker(readAheadCacheBatchSize, readAheadCacheBatchBytesSize,
+                    dbLedgerStorageStats);
+        } else {
+            readAheadTracker = null;
+        }
+        if (conf.getBoolean(LAST_ENTRY_FILTER_ENABLED, DEFAULT_LAST_ENTRY_FILTER_ENABLED)) {
+            lastEntryFilter = new LastEntryFilter(entryLocationIndex, dbLedgerStorageStats);
+        } else {
+            lastEntryFilter = null;
+        }
     }
 
     @Override
@@ -199,6 +268,10 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
             return isStale;
         });
+        if (readAheadTracker != null) {
+            readAheadTracker.cleanupStaleLedgers(
+                    TimeUnit.MINUTES.toMillis(TransientLedgerInfo.LEDGER_INFO_CACHING_TIME_MINUTES));
+        }
     }
 
     @Override
@@ -221,6 +294,15 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         try {
             flush();
 
+            if (readAheadExecutor != null) {
+                // Drop the batches that did not start yet and wait for the running one, before closing the entry
+                // logger it reads from
+                readAheadStopped = true;
+                readAheadExecutor.shutdown();
+                while (!readAheadExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+                    log.info("Waiting for the running read-ahead to complete");
+                }
+            }
             gcThread.shutdown();
             entryLogger.shutdown();
 
@@ -229,6 +311,9 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
             ledgerIndex.close();
             entryLocationIndex.close();
+            if (ledgerExtentIndex != null) {
+                ledgerExtentIndex.close();
+            }
 
             writeCache.close();
             writeCacheBeingFlushed.close();
@@ -306,6 +391,10 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             log.debug("Add entry. {}@{}, lac = {}", ledgerId, entryId, lac);
         }
 
+        if (lastEntryFilter != null) {
+            lastEntryFilter.onAdd(ledgerId, entryId);
+        }
+
         // First we try to do an optimistic locking to get access to the current write cache.
         // This is based on the fact that the write cache is only being rotated (swapped) every 1 minute. During the
         // rest of the time, we can have multiple thread using the optimistic lock here without interfering.
@@ -392,6 +481,60 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             return getLastEntry(ledgerId);
         }
 
+        ByteBuf entry = getFromCaches(ledgerId, entryId);
+        if (entry != null) {
+            recordSuccessfulEvent(dbLedgerStorageStats.getReadCacheHitStats(), startTime);
+            recordSuccessfulEvent(dbLedgerStorageStats.getReadEntryStats(), startTime);
+            return entry;
+        }
+
+        // Read from main storage
+        long entryLocation;
+        try {
+            if (lastEntryFilter != null && !lastEntryFilter.mightContain(ledgerId, entryId)) {
+                throw new NoEntryException(ledgerId, entryId);
+            }
+            entryLocation = entryLocationIndex.getLocation(ledgerId, entryId);
+            if (entryLocation == 0) {
+                if (lastEntryFilter != null) {
+                    lastEntryFilter.onFalsePositive();
+                }
+                throw new NoEntryException(ledgerId, entryId);
+            }
+            entry = entryLogger.readEntry(ledgerId, entryId, entryLocation);
+        } catch (NoEntryException e) {
+            recordFailedEvent(dbLedgerStorageStats.getReadEntryStats(), startTime);
+            throw e;
+        }
+
+        readCache.put(ledgerId, entryId, entry);
+
+        // Try to read more entries, depending on the access pattern of the ledger
+        ReadAheadBatch readAheadBatch = readAheadTracker != null
+                ? readAheadTracker.onCacheMiss(ledgerId, entryId, entry.readableBytes())
+                : defaultReadAheadBatch;
+        if (readAheadBatch != null) {
+            long nextEntryLocation = entryLocation + 4 /* size header */ + entry.readableBytes();
+            if (readAheadExecutor != null) {
+                scheduleReadAhead(ledgerId, entryId + 1, nextEntryLocation, readAheadBatch, entry.readableBytes());
+            } else {
+                long batchId = readAheadTracker != null
+                        ? readAheadTracker.onReadAheadStarted(ledgerId, entryId + 1, readAheadBatch) : -1;
+                fillReadAheadCache(ledgerId, entryId + 1, nextEntryLocation, readAheadBatch, batchId);
+            }
+        }
+
+        recordSuccessfulEvent(dbLedgerStorageStats.getReadCacheMissStats(), startTime);
+        recordSuccessfulEvent(dbLedgerStorageStats.getReadEntryStats(), startTime);
+        return entry;
+    }
+
+    /**
+     * Look up an entry in the write caches and in the read cache.
+     *
+     * @return the entry, or null if it is not cached
+     */
+    private ByteBuf getFromCaches(long ledgerId, long entryId) {
         // We need to try to read from both write caches, since recent entries could be found in either of the two. The
         // write caches are already thread safe on their own, here we just need to make sure we get references to both
         // of them. Using an optimistic lock since the read lock is always free, unless we're swapping the caches.
@@ -412,60 +555,190 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         // First try to read from the write cache of recent entries
         ByteBuf entry = localWriteCache.get(ledgerId, entryId);
         if (entry != null) {
-            recordSuccessfulEvent(dbLedgerStorageStats.getReadCacheHitStats(), startTime);
-            recordSuccessfulEvent(dbLedgerStorageStats.getReadEntryStats(), startTime);
             return entry;
         }
 
         // If there's a flush going on, the entry might be in the flush buffer
         entry = localWriteCacheBeingFlushed.get(ledgerId, entryId);
         if (entry != null) {
-            recordSuccessfulEvent(dbLedgerStorageStats.getReadCacheHitStats(), startTime);
-            recordSuccessfulEvent(dbLedgerStorageStats.getReadEntryStats(), startTime);
             return entry;
         }
 
         // Try reading from read-ahead cache
         entry = readCache.get(ledgerId, entryId);
-        if (entry != null) {
-            recordSuccessfulEvent(dbLedgerStorageStats.getReadCacheHitStats(), startTime);
-            recordSuccessfulEvent(dbLedgerStorageStats.getReadEntryStats(), startTime);
-            return entry;
+        if (entry != null && readAheadTracker != null) {
+            readAheadTracker.onCacheHit(ledgerId, entryId);
         }
+        return entry;
+    }
 
-        // Read from main storage
-        long entryLocation;
+    @Override
+    public List<ByteBuf> getEntries(long ledgerId, long startEntryId, int maxCount, long maxSize)
+            throws IOException {
+        long startTime = MathUtils.nowInNano();
+        if (log.isDebugEnabled()) {
+            log.debug("Get Entries: {}@{} -- max count: {}", ledgerId, startEntryId, maxCount);
+        }
+
+        List<ByteBuf> entries = new ArrayList<>();
+        long size = 0;
+        long entryId = startEntryId;
         try {
-            entryLocation = entryLocationIndex.getLocation(ledgerId, entryId);
-            if (entryLocation == 0) {
-                throw new NoEntryException(ledgerId, entryId);
+            while (entries.size() < maxCount && (entries.isEmpty() || size < maxSize)) {
+                ByteBuf entry = getFromCaches(ledgerId, entryId);
+                if (entry != null) {
+                    entries.add(entry);
+                    size += entry.readableBytes();
+                    entryId++;
+                    continue;
+                }
+
+                if (lastEntryFilter != null && !lastEntryFilter.mightContain(ledgerId, entryId)) {
+                    if (entries.isEmpty()) {
+                        throw new NoEntryException(ledgerId, entryId);
+                    }
+                    break;
+                }
+
+                // Get the locations of the following entries with a single scan of the index, and read them from the
+                // entry logs with as few reads as possible
+                long[] locations = new long[maxCount - entries.size()];
+                int count = entryLocationIndex.getLocations(ledgerId, entryId, locations);
+                if (count == 0) {
+                    if (lastEntryFilter != null) {
+                        lastEntryFilter.onFalsePositive();
+                    }
+                    if (entries.isEmpty()) {
+                        throw new NoEntryException(ledgerId, entryId);
+                    }
+                    break;
+                }
+
+                List<ByteBuf> readEntries = entryLogger.readEntries(ledgerId, entryId, locations, count,
+                        maxSize - size);
+                for (ByteBuf readEntry : readEntries) {
+                    readCache.put(ledgerId, entryId++, readEntry);
+                    entries.add(readEntry);
+                    size += readEntry.readableBytes();
+                }
             }
-            entry = entryLogger.readEntry(ledgerId, entryId, entryLocation);
-        } catch (NoEntryException e) {
+        } catch (IOException | RuntimeException e) {
+            entries.forEach(ByteBuf::release);
             recordFailedEvent(dbLedgerStorageStats.getReadEntryStats(), startTime);
             throw e;
         }
 
-        readCache.put(ledgerId, entryId, entry);
+        recordSuccessfulEvent(dbLedgerStorageStats.getReadEntryStats(), startTime);
+        return entries;
+    }
 
-        // Try to read more entries
-        long nextEntryLocation = entryLocation + 4 /* size header */ + entry.readableBytes();
-        fillReadAheadCache(ledgerId, entryId + 1, nextEntryLocation);
+    /**
+     * Fill the read cache in background, so that the entry that was requested can be returned right away.
+     *
+     * <p>The bytes of the scheduled read-ahead batches are bounded, so that a few catch-up readers cannot hog the disk
+     * and delay the reads of the other ledgers.
+     */
+    private void scheduleReadAhead(long ledgerId, long firstEntryId, long firstEntryLocation, ReadAheadBatch batch,
+            int entrySize) {
+        if (!pendingReadAheadLedgers.add(ledgerId)) {
+            // There is already a read-ahead in progress for this ledger
+            return;
+        }
 
-        recordSuccessfulEvent(dbLedgerStorageStats.getReadCacheMissStats(), startTime);
-        recordSuccessfulEvent(dbLedgerStorageStats.getReadEntryStats(), startTime);
-        return entry;
+        long reservedBytes = batch.maxBytes > 0 ? batch.maxBytes : (long) batch.maxEntries * entrySize;
+        long inflightBytes = readAheadInflightBytes.addAndGet(reservedBytes);
+        if (inflightBytes > readAheadAsyncMaxInflightBytes && inflightBytes != reservedBytes) {
+            readAheadInflightBytes.addAndGet(-reservedBytes);
+            pendingReadAheadLedgers.remove(ledgerId);
+            dbLedgerStorageStats.getReadAheadThrottled().inc();
+            return;
+        }
+
+        // Record the batch from the reading thread, so that the next reads of the ledger are accounted against it in
+        // order, whenever the background read happens
+        long batchId = readAheadTracker != null
+                ? readAheadTracker.onReadAheadStarted(ledgerId, firstEntryId, batch) : -1;
+        try {
+            readAheadExecutor.execute(() -> {
+                try {
+                    if (!readAheadStopped) {
+                        fillReadAheadCache(ledgerId, firstEntryId, firstEntryLocation, batch, batchId);
+                    }
+                } finally {
+                    readAheadInflightBytes.addAndGet(-reservedBytes);
+                    pendingReadAheadLedgers.remove(ledgerId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The storage is shutting down
+            readAheadInflightBytes.addAndGet(-reservedBytes);
+            pendingReadAheadLedgers.remove(ledgerId);
+        }
     }
 
-    private void fillReadAheadCache(long orginalLedgerId, long firstEntryId, long firstEntryLocation) {
+    private void fillReadAheadCache(long orginalLedgerId, long firstEntryId, long firstEntryLocation,
+            ReadAheadBatch batch, long batchId) {
+        long firstReadAheadEntryId = -1;
+        long lastReadAheadEntryId = -1;
+        int count = 0;
+        long size = 0;
+
         try {
-            long firstEntryLogId = (firstEntryLocation >> 32);
-            long currentEntryLogId = firstEntryLogId;
             long currentEntryLocation = firstEntryLocation;
-            int count = 0;
-            long size = 0;
 
-            while (count < readAheadCacheBatchSize && currentEntryLogId == firstEntryLogId) {
+            if (ledgerExtentIndex != null) {
+                // Read the entries extent by extent, with one large read for each, following the ledger across the
+                // flushes and the entry logs
+                while (count < batch.maxEntries && (batch.maxBytes <= 0 || size < batch.maxBytes)) {
+                    Extent extent = ledgerExtentIndex.getExtent(orginalLedgerId, firstEntryId);
+                    if (extent == null) {
+                        break;
+                    }
+
+                    // Unless the extent starts with this entry, the previous entry was read from the same extent
+                    long readLocation = extent.firstEntryId == firstEntryId ? extent.location : currentEntryLocation;
+                    long readSize = Math.min(extent.getEndLocation() - readLocation + 4, MAX_EXTENT_READ_SIZE);
+                    if (batch.maxBytes > 0) {
+                        readSize = Math.min(readSize, batch.maxBytes - size);
+                    } else {
+                        long averageSize = extent.length / (extent.lastEntryId - extent.firstEntryId + 1);
+                        readSize = Math.min(readSize, averageSize * (batch.maxEntries - count));
+                    }
+
+                    List<ByteBuf> entries = entryLogger.readExtent(orginalLedgerId, firstEntryId, readLocation,
+                            (int) readSize);
+                    if (entries.isEmpty()) {
+                        // The extent is stale or the next entry is larger than the read, go on entry by entry
+                        break;
+                    }
+
+                    currentEntryLocation = readLocation;
+                    for (ByteBuf entry : entries) {
+                        try {
+                            if (count < batch.maxEntries && (batch.maxBytes <= 0 || size < batch.maxBytes)) {
+                                readCache.put(orginalLedgerId, firstEntryId, entry);
+                                if (count == 0) {
+                                    firstReadAheadEntryId = firstEntryId;
+                                }
+                                lastReadAheadEntryId = firstEntryId;
+
+                                count++;
+                                firstEntryId++;
+                                size += entry.readableBytes();
+                                currentEntryLocation += 4 + entry.readableBytes();
+                            }
+                        } finally {
+                            entry.release();
+                        }
+                    }
+                }
+            }
+
+            long firstEntryLogId = (currentEntryLocation >> 32);
+            long currentEntryLogId = firstEntryLogId;
+
+            while (count < batch.maxEntries && (batch.maxBytes <= 0 || size < batch.maxBytes)
+                    && currentEntryLogId == firstEntryLogId) {
                 ByteBuf entry = entryLogger.internalReadEntry(orginalLedgerId, firstEntryId, currentEntryLocation,
                         false /* validateEntry */);
 
@@ -475,11 +748,15 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
                     if (currentEntryLedgerId != orginalLedgerId) {
                         // Found an entry belonging to a different ledger, stopping read-ahead
-                        return;
+                        break;
                     }
 
                     // Insert entry in read cache
                     readCache.put(orginalLedgerId, currentEntryId, entry);
+                    if (count == 0) {
+                        firstReadAheadEntryId = currentEntryId;
+                    }
+                    lastReadAheadEntryId = currentEntryId;
 
                     count++;
                     firstEntryId++;
@@ -491,14 +768,18 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
                     entry.release();
                 }
             }
-
-            dbLedgerStorageStats.getReadAheadBatchCountStats().registerSuccessfulValue(count);
-            dbLedgerStorageStats.getReadAheadBatchSizeStats().registerSuccessfulValue(size);
         } catch (Exception e) {
             if (log.isDebugEnabled()) {
                 log.debug("Exception during read ahead for ledger: {}: e", orginalLedgerId, e);
             }
         }
+
+        dbLedgerStorageStats.getReadAheadBatchCountStats().registerSuccessfulValue(count);
+        dbLedgerStorageStats.getReadAheadBatchSizeStats().registerSuccessfulValue(size);
+        if (readAheadTracker != null) {
+            readAheadTracker.onReadAhead(orginalLedgerId, batchId, firstReadAheadEntryId, lastReadAheadEntryId,
+                    count, size);
+        }
     }
 
     public ByteBuf getLastEntry(long ledgerId) throws IOException {
@@ -595,10 +876,17 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             // position for each entry
 
             Batch batch = entryLocationIndex.newBatch();
+            // The entries are flushed sorted by ledger, record the extents of each ledger along the way
+            Batch extentsBatch = ledgerExtentIndex != null ? ledgerExtentIndex.newBatch() : null;
+            ExtentWriter extentWriter = extentsBatch != null ? ledgerExtentIndex.newWriter(extentsBatch) : null;
             writeCacheBeingFlushed.forEach((ledgerId, entryId, entry) -> {
                 try {
+                    int entrySize = entry.readableBytes();
                     long location = entryLogger.addEntry(ledgerId, entry, true);
                     entryLocationIndex.addLocation(batch, ledgerId, entryId, location);
+                    if (extentWriter != null) {
+                        extentWriter.add(ledgerId, entryId, location, entrySize);
+                    }
                 } catch (IOException e) {
                     throw new RuntimeException(e);
                 }
@@ -609,6 +897,14 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             long batchFlushStarTime = System.nanoTime();
             batch.flush();
             batch.close();
+            if (extentsBatch != null) {
+                extentWriter.finish();
+                extentsBatch.flush();
+                extentsBatch.close();
+            }
+            if (lastEntryFilter != null) {
+                lastEntryFilter.onFlush();
+            }
             if (log.isDebugEnabled()) {
                 log.debug("DB batch flushed time : {} s",
                         MathUtils.elapsedNanos(batchFlushStarTime) / (double) TimeUnit.SECONDS.toNanos(1));
@@ -626,6 +922,9 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
                     entryLocationIndex.removeOffsetFromDeletedLedgers();
                     ledgerIndex.removeDeletedLedgers();
+                    if (ledgerExtentIndex != null) {
+                        ledgerExtentIndex.removeDeletedLedgers();
+                    }
                 } catch (Throwable t) {
                     log.warn("Failed to cleanup db indexes", t);
                 }
@@ -706,12 +1005,21 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
         entryLocationIndex.delete(ledgerId);
         ledgerIndex.delete(ledgerId);
+        if (ledgerExtentIndex != null) {
+            ledgerExtentIndex.delete(ledgerId);
+        }
 
         for (int i = 0, size = ledgerDeletionListeners.size(); i < size; i++) {
             LedgerDeletionListener listener = ledgerDeletionListeners.get(i);
             listener.ledgerDeleted(ledgerId);
         }
 
+        if (readAheadTracker != null) {
+            readAheadTracker.deleteLedger(ledgerId);
+        }
+        if (lastEntryFilter != null) {
+            lastEntryFilter.deleteLedger(ledgerId);
+        }
         TransientLedgerInfo tli = transientLedgerInfoCache.remove(ledgerId);
         if (tli != null) {
             tli.close();
@@ -878,6 +1186,14 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         return readCache.count();
     }
 
+    long getReadCacheDetachedSize() {
+        return readCache.detachedSize();
+    }
+
+    long getReadCacheDetachedCount() {
+        return readCache.detachedCount();
+    }
+
     @Override
     public List<GarbageCollectionStatus> getGarbageCollectionStatus() {
         return Collections.singletonList(gcThread.getGarbageCollectionStatus());
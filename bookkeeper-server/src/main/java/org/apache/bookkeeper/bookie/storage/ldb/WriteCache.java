@@ -27,15 +27,15 @@ import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.Unpooled;
 
 import java.io.Closeable;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.LongAdder;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
 
 import org.apache.bookkeeper.common.util.MathUtils;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashMap;
 import org.apache.bookkeeper.util.collections.ConcurrentLongHashSet;
-import org.apache.bookkeeper.util.collections.ConcurrentLongLongHashMap;
-import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap;
-import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap.LongPair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,11 +45,13 @@ import org.slf4j.LoggerFactory;
  * <p>The write cache will allocate the requested size from direct memory and it
  * will break it down into multiple segments.
  *
- * <p>The entries are appended in a common buffer and indexed though a hashmap,
- * until the cache is cleared.
+ * <p>The entries are appended in a common buffer and indexed per ledger, in the
+ * order they were added, until the cache is cleared.
  *
  * <p>There is the possibility to iterate through the stored entries in an ordered
- * way, by (ledgerId, entry).
+ * way, by (ledgerId, entry). Since the entries of a ledger are normally added in
+ * order, the iteration only sorts the ledger ids, and the entries of the few ledgers
+ * that were added out of order.
  */
 public class WriteCache implements Closeable {
 
@@ -60,11 +62,8 @@ public class WriteCache implements Closeable {
         void accept(long ledgerId, long entryId, ByteBuf entry);
     }
 
-    private final ConcurrentLongLongPairHashMap index =
-            new ConcurrentLongLongPairHashMap(4096, 2 * Runtime.getRuntime().availableProcessors());
-
-    private final ConcurrentLongLongHashMap lastEntryMap =
-            new ConcurrentLongLongHashMap(4096, 2 * Runtime.getRuntime().availableProcessors());
+    private final ConcurrentLongHashMap<LedgerEntries> ledgers =
+            new ConcurrentLongHashMap<>(4096, 2 * Runtime.getRuntime().availableProcessors());
 
     private final ByteBuf[] cacheSegments;
     private final int segmentsCount;
@@ -116,8 +115,7 @@ public class WriteCache implements Closeable {
         cacheSize.set(0L);
         cacheOffset.set(0L);
         cacheCount.reset();
-        index.clear();
-        lastEntryMap.clear();
+        ledgers.clear();
         deletedLedgers.clear();
     }
 
@@ -159,35 +157,42 @@ public class WriteCache implements Closeable {
 
         cacheSegments[segmentIdx].setBytes(localOffset, entry, entry.readerIndex(), entry.readableBytes());
 
-        // Update last entryId for ledger. This logic is to handle writes for the same
-        // ledger coming out of order and from different thread, though in practice it
-        // should not happen and the compareAndSet should be always uncontended.
-        while (true) {
-            long currentLastEntryId = lastEntryMap.get(ledgerId);
-            if (currentLastEntryId > entryId) {
-                // A newer entry is already there
-                break;
-            }
-
-            if (lastEntryMap.compareAndSet(ledgerId, currentLastEntryId, entryId)) {
-                break;
-            }
-        }
-
-        index.put(ledgerId, entryId, offset, size);
+        ledgers.computeIfAbsent(ledgerId, k -> new LedgerEntries()).append(entryId, offset, size);
         cacheCount.increment();
         cacheSize.addAndGet(size);
         return true;
     }
 
     public ByteBuf get(long ledgerId, long entryId) {
-        LongPair result = index.get(ledgerId, entryId);
-        if (result == null) {
+        LedgerEntries ledger = ledgers.get(ledgerId);
+        if (ledger == null) {
+            return null;
+        }
+
+        // The entries of a ledger are only appended, the positions below the count never change once written. So
+        // we only need a consistent snapshot of the array and of the count to search it without holding the lock.
+        long stamp = ledger.lock.tryOptimisticRead();
+        long[] entries = ledger.entries;
+        int count = ledger.count;
+        boolean ordered = ledger.ordered;
+        if (!ledger.lock.validate(stamp)) {
+            stamp = ledger.lock.readLock();
+            try {
+                entries = ledger.entries;
+                count = ledger.count;
+                ordered = ledger.ordered;
+            } finally {
+                ledger.lock.unlockRead(stamp);
+            }
+        }
+
+        int idx = find(entries, count, ordered, entryId);
+        if (idx < 0) {
             return null;
         }
 
-        long offset = result.first;
-        int size = (int) result.second;
+        long offset = entries[idx + 1];
+        int size = (int) entries[idx + 2];
         ByteBuf entry = allocator.buffer(size, size);
 
         int localOffset = (int) (offset & segmentOffsetMask);
@@ -197,69 +202,78 @@ public class WriteCache implements Closeable {
     }
 
     public ByteBuf getLastEntry(long ledgerId) {
-        long lastEntryId = lastEntryMap.get(ledgerId);
-        if (lastEntryId == -1) {
+        LedgerEntries ledger = ledgers.get(ledgerId);
+        if (ledger == null) {
             // Ledger not found in write cache
             return null;
-        } else {
-            return get(ledgerId, lastEntryId);
         }
+
+        long stamp = ledger.lock.readLock();
+        long lastEntryId;
+        try {
+            lastEntryId = ledger.lastEntryId;
+        } finally {
+            ledger.lock.unlockRead(stamp);
+        }
+        return get(ledgerId, lastEntryId);
     }
 
     public void deleteLedger(long ledgerId) {
         deletedLedgers.add(ledgerId);
     }
 
-    private static final ArrayGroupSort groupSorter = new ArrayGroupSort(2, 4);
+    private static final ArrayGroupSort entriesSorter = new ArrayGroupSort(2, 3);
 
     public void forEach(EntryConsumer consumer) {
-        sortedEntriesLock.lock();
+        long startTime = MathUtils.nowInNano();
 
-        try {
-            int entriesToSort = (int) index.size();
-            int arrayLen = entriesToSort * 4;
-            if (sortedEntries == null || sortedEntries.length < arrayLen) {
-                sortedEntries = new long[(int) (arrayLen * 2)];
-            }
-
-            long startTime = MathUtils.nowInNano();
-
-            sortedEntriesIdx = 0;
-            index.forEach((ledgerId, entryId, offset, length) -> {
-                if (deletedLedgers.contains(ledgerId)) {
-                    // Ignore deleted ledgers
-                    return;
-                }
+        List<Long> ledgerIdsList = ledgers.keys();
+        long[] ledgerIds = new long[ledgerIdsList.size()];
+        for (int i = 0; i < ledgerIds.length; i++) {
+            ledgerIds[i] = ledgerIdsList.get(i);
+        }
+        Arrays.sort(ledgerIds);
 
-                sortedEntries[sortedEntriesIdx] = ledgerId;
-                sortedEntries[sortedEntriesIdx + 1] = entryId;
-                sortedEntries[sortedEntriesIdx + 2] = offset;
-                sortedEntries[sortedEntriesIdx + 3] = length;
-                sortedEntriesIdx += 4;
-            });
+        if (log.isDebugEnabled()) {
+            log.debug("sorting {} ledgers {} ms", ledgerIds.length, MathUtils.elapsedNanos(startTime) / 1e6);
+        }
+        startTime = MathUtils.nowInNano();
 
-            if (log.isDebugEnabled()) {
-                log.debug("iteration took {} ms", MathUtils.elapsedNanos(startTime) / 1e6);
-            }
-            startTime = MathUtils.nowInNano();
+        ByteBuf[] entrySegments = new ByteBuf[segmentsCount];
+        for (int i = 0; i < segmentsCount; i++) {
+            entrySegments[i] = cacheSegments[i].slice(0, cacheSegments[i].capacity());
+        }
 
-            // Sort entries by (ledgerId, entryId) maintaining the 4 items groups
-            groupSorter.sort(sortedEntries, 0, sortedEntriesIdx);
-            if (log.isDebugEnabled()) {
-                log.debug("sorting {} ms", (MathUtils.elapsedNanos(startTime) / 1e6));
+        for (long ledgerId : ledgerIds) {
+            if (deletedLedgers.contains(ledgerId)) {
+                // Ignore deleted ledgers
+                continue;
             }
-            startTime = MathUtils.nowInNano();
 
-            ByteBuf[] entrySegments = new ByteBuf[segmentsCount];
-            for (int i = 0; i < segmentsCount; i++) {
-                entrySegments[i] = cacheSegments[i].slice(0, cacheSegments[i].capacity());
+            LedgerEntries ledger = ledgers.get(ledgerId);
+            long[] entries;
+            int count;
+            long stamp = ledger.lock.readLock();
+            try {
+                entries = ledger.entries;
+                count = ledger.count;
+                if (!ledger.ordered) {
+                    // Sort by (entryId, offset), so that the latest copy of an entry added more than once comes last
+                    entries = Arrays.copyOf(entries, count);
+                    entriesSorter.sort(entries, 0, count);
+                }
+            } finally {
+                ledger.lock.unlockRead(stamp);
             }
 
-            for (int i = 0; i < sortedEntriesIdx; i += 4) {
-                long ledgerId = sortedEntries[i];
-                long entryId = sortedEntries[i + 1];
-                long offset = sortedEntries[i + 2];
-                long length = sortedEntries[i + 3];
+            for (int i = 0; i < count; i += 3) {
+                long entryId = entries[i];
+                if (i + 3 < count && entries[i + 3] == entryId) {
+                    // Skip the older copies of the entry
+                    continue;
+                }
+                long offset = entries[i + 1];
+                long length = entries[i + 2];
 
                 int localOffset = (int) (offset & segmentOffsetMask);
                 int segmentIdx = (int) (offset >>> segmentOffsetBits);
@@ -267,12 +281,10 @@ public class WriteCache implements Closeable {
                 entry.setIndex(localOffset, localOffset + (int) length);
                 consumer.accept(ledgerId, entryId, entry);
             }
+        }
 
-            if (log.isDebugEnabled()) {
-                log.debug("entry log adding {} ms", MathUtils.elapsedNanos(startTime) / 1e6);
-            }
-        } finally {
-            sortedEntriesLock.unlock();
+        if (log.isDebugEnabled()) {
+            log.debug("entry log adding {} ms", MathUtils.elapsedNanos(startTime) / 1e6);
         }
     }
 
@@ -288,6 +300,37 @@ public class WriteCache implements Closeable {
         return cacheSize.get() == 0L;
     }
 
+    /**
+     * Find an entry in the (entryId, offset, size) triples of a ledger.
+     *
+     * @return the position of the latest copy of the entry, or -1 if the entry is not in the cache
+     */
+    private static int find(long[] entries, int count, boolean ordered, long entryId) {
+        if (!ordered) {
+            for (int i = count - 3; i >= 0; i -= 3) {
+                if (entries[i] == entryId) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        int low = 0;
+        int high = count / 3 - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midEntryId = entries[mid * 3];
+            if (midEntryId < entryId) {
+                low = mid + 1;
+            } else if (midEntryId > entryId) {
+                high = mid - 1;
+            } else {
+                return mid * 3;
+            }
+        }
+        return -1;
+    }
+
     private static final int ALIGN_64_MASK = ~(64 - 1);
 
     static int align64(int size) {
@@ -298,9 +341,43 @@ public class WriteCache implements Closeable {
         return (long) Math.pow(2, 64 - Long.numberOfLeadingZeros(n - 1));
     }
 
-    private final ReentrantLock sortedEntriesLock = new ReentrantLock();
-    private long[] sortedEntries;
-    private int sortedEntriesIdx;
+    /**
+     * The entries of a ledger in the write cache, as (entryId, offset, size) triples in the order they were added.
+     */
+    private static final class LedgerEntries {
+        // Most ledgers only have a few entries in the cache, the array doubles as more entries are added
+        private static final int INITIAL_CAPACITY = 4;
+
+        private final StampedLock lock = new StampedLock();
+        private long[] entries = new long[INITIAL_CAPACITY * 3];
+        private int count = 0;
+        private long lastEntryId = -1;
+        // Whether the entries were added in strictly increasing entry id order
+        private boolean ordered = true;
+
+        void append(long entryId, long offset, int size) {
+            long stamp = lock.writeLock();
+            try {
+                if (count == entries.length) {
+                    entries = Arrays.copyOf(entries, entries.length * 2);
+                }
+                entries[count] = entryId;
+                entries[count + 1] = offset;
+                entries[count + 2] = size;
+                count += 3;
+
+                if (entryId > lastEntryId) {
+                    lastEntryId = entryId;
+                } else {
+                    // Writes for the same ledger coming out of order and from different threads, though in practice
+                    // it should not happen
+                    ordered = false;
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+    }
 
     private static final Logger log = LoggerFactory.getLogger(WriteCache.class);
 }
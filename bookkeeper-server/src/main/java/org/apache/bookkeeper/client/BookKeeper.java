@@ -121,6 +121,7 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
 
     final OrderedExecutor mainWorkerPool;
     final OrderedScheduler scheduler;
+    final ParallelDigestVerifier digestVerifier;
     final HashedWheelTimer requestTimer;
     final boolean ownTimer;
     final FeatureProvider featureProvider;
@@ -426,6 +427,8 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
                 .traceTaskWarnTimeMicroSec(conf.getTaskExecutionWarnTimeMicros())
                 .enableBusyWait(conf.isBusyWaitEnabled())
                 .build();
+        this.digestVerifier = conf.isParallelDigestVerificationEnabled()
+                ? new ParallelDigestVerifier(conf.getParallelDigestVerificationThreads()) : null;
 
         // initialize stats logger
         this.statsLogger = rootStatsLogger.scope(BookKeeperClientStats.CLIENT_SCOPE);
@@ -540,6 +543,7 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
         placementPolicy = null;
         ownTimer = false;
         mainWorkerPool = null;
+        digestVerifier = null;
         ledgerManagerFactory = null;
         ledgerManager = null;
         ledgerIdGenerator = null;
@@ -1418,6 +1422,12 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
         if (!scheduler.awaitTermination(10, TimeUnit.SECONDS)) {
             LOG.warn("The scheduler did not shutdown cleanly");
         }
+        if (digestVerifier != null) {
+            digestVerifier.shutdown();
+            if (!digestVerifier.awaitTermination(10, TimeUnit.SECONDS)) {
+                LOG.warn("The digestVerifier did not shutdown cleanly");
+            }
+        }
         mainWorkerPool.shutdown();
         if (!mainWorkerPool.awaitTermination(10, TimeUnit.SECONDS)) {
             LOG.warn("The mainWorkerPool did not shutdown cleanly");
@@ -1494,6 +1504,11 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
                 return clientStats;
             }
 
+            @Override
+            public ParallelDigestVerifier getDigestVerifier() {
+                return digestVerifier;
+            }
+
             @Override
             public boolean isClientClosed() {
                 return BookKeeper.this.isClosed();
@@ -53,6 +53,8 @@ public interface BookKeeperClientStats {
     String READ_OP = "READ_ENTRY";
     // Corrupted entry (Digest Mismatch/ Under Replication) detected during ReadEntry
     String READ_OP_DM = "READ_ENTRY_DM";
+    // Time spent verifying the digests of the entries returned by a batch read
+    String READ_OP_BATCH_DIGEST_VERIFY = "READ_ENTRY_BATCH_DIGEST_VERIFY";
     String WRITE_LAC_OP = "WRITE_LAC";
     String READ_LAC_OP = "READ_LAC";
     String READ_LAST_CONFIRMED_AND_ENTRY = "READ_LAST_CONFIRMED_AND_ENTRY";
@@ -71,8 +73,12 @@ public interface BookKeeperClientStats {
 
     String CHANNEL_READ_OP = "READ_ENTRY";
     String CHANNEL_TIMEOUT_READ = "TIMEOUT_READ_ENTRY";
+    String CHANNEL_BATCH_READ_OP = "BATCH_READ_ENTRY";
+    String CHANNEL_TIMEOUT_BATCH_READ = "TIMEOUT_BATCH_READ_ENTRY";
     String CHANNEL_ADD_OP = "ADD_ENTRY";
     String CHANNEL_TIMEOUT_ADD = "TIMEOUT_ADD_ENTRY";
+    String CHANNEL_BATCH_ADD_OP = "BATCH_ADD_ENTRY";
+    String CHANNEL_TIMEOUT_BATCH_ADD = "TIMEOUT_BATCH_ADD_ENTRY";
     String CHANNEL_WRITE_LAC_OP = "WRITE_LAC";
     String CHANNEL_FORCE_OP = "FORCE";
     String CHANNEL_TIMEOUT_WRITE_LAC = "TIMEOUT_WRITE_LAC";
@@ -90,6 +96,7 @@ public interface BookKeeperClientStats {
     String ADD_OP_OUTSTANDING = "ADD_OP_OUTSTANDING";
     String READ_OP_OUTSTANDING = "READ_OP_OUTSTANDING";
     String NETTY_OPS = "NETTY_OPS";
+    String CHANNEL_TIMEOUT_SCHEDULE = "TIMEOUT_SCHEDULE";
     String ACTIVE_NON_TLS_CHANNEL_COUNTER = "ACTIVE_NON_TLS_CHANNEL_COUNTER";
     String ACTIVE_TLS_CHANNEL_COUNTER = "ACTIVE_TLS_CHANNEL_COUNTER";
     String FAILED_CONNECTION_COUNTER = "FAILED_CONNECTION_COUNTER";
@@ -117,6 +124,7 @@ public interface BookKeeperClientStats {
     OpStatsLogger getRecoverAddCountLogger();
     OpStatsLogger getRecoverReadCountLogger();
     Counter getReadOpDmCounter();
+    OpStatsLogger getReadOpBatchDigestVerifyLogger();
     Counter getAddOpUrCounter();
     Counter getSpeculativeReadCounter();
     Counter getEnsembleBookieDistributionCounter(String bookie);
@@ -43,5 +43,7 @@ interface ClientContext {
     OrderedExecutor getMainWorkerPool();
     OrderedScheduler getScheduler();
     BookKeeperClientStats getClientStats();
+    // null if the digests of batch reads are not verified in parallel
+    ParallelDigestVerifier getDigestVerifier();
     boolean isClientClosed();
 }
@@ -41,6 +41,11 @@ class ClientInternalConf {
     final boolean enableParallelRecoveryRead;
     final boolean enableReorderReadSequence;
     final boolean enableStickyReads;
+    final boolean enableBatchReads;
+    final int batchReadMaxCount;
+    final int batchReadMaxSize;
+    final boolean enableParallelDigestVerification;
+    final int parallelDigestVerificationMinEntries;
     final int recoveryReadBatchSize;
     final int throttleValue;
     final int bookieFailureHistoryExpirationMSec;
@@ -82,6 +87,11 @@ class ClientInternalConf {
         this.enableBookieFailureTracking = conf.getEnableBookieFailureTracking();
         this.useV2WireProtocol = conf.getUseV2WireProtocol();
         this.enableStickyReads = conf.isStickyReadsEnabled();
+        this.enableBatchReads = conf.isBatchReadEnabled() && !conf.getUseV2WireProtocol();
+        this.batchReadMaxCount = conf.getBatchReadMaxCount();
+        this.batchReadMaxSize = conf.getNettyMaxFrameSizeBytes();
+        this.enableParallelDigestVerification = conf.isParallelDigestVerificationEnabled();
+        this.parallelDigestVerificationMinEntries = conf.getParallelDigestVerificationMinEntries();
         this.enforceMinNumFaultDomainsForWrite = conf.getEnforceMinNumFaultDomainsForWrite();
 
         if (conf.getFirstSpeculativeReadTimeout() > 0) {
@@ -52,6 +52,7 @@ import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import org.apache.bookkeeper.client.AsyncCallback.AddCallback;
 import org.apache.bookkeeper.client.AsyncCallback.AddCallbackWithLatency;
 import org.apache.bookkeeper.client.AsyncCallback.CloseCallback;
@@ -102,7 +103,12 @@ public class LedgerHandle implements WriteHandle {
     final byte[] ledgerKey;
     private Versioned<LedgerMetadata> versionedMetadata;
     final long ledgerId;
-    long lastAddPushed;
+
+    /**
+     * Last entryId handed out to an add. Adds are given their entry id on the ordered executor of the
+     * ledger, which is also where the handle gets closed, so the add path does not need to lock the handle.
+     */
+    volatile long lastAddPushed;
 
     private enum HandleState {
         OPEN,
@@ -136,7 +142,7 @@ public class LedgerHandle implements WriteHandle {
      */
     private int stickyBookieIndex;
 
-    long length;
+    volatile long length;
     final DigestManager macManager;
     final DistributionSchedule distributionSchedule;
     final RateLimiter throttler;
@@ -162,6 +168,13 @@ public class LedgerHandle implements WriteHandle {
      */
     public static final long INVALID_LEDGER_ID = -0xABCDABCDL;
 
+    private static final AtomicLongFieldUpdater<LedgerHandle> LAST_ADD_PUSHED_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(LedgerHandle.class, "lastAddPushed");
+    private static final AtomicLongFieldUpdater<LedgerHandle> LAST_ADD_CONFIRMED_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(LedgerHandle.class, "lastAddConfirmed");
+    private static final AtomicLongFieldUpdater<LedgerHandle> LENGTH_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(LedgerHandle.class, "length");
+
     final Object metadataLock = new Object();
     boolean changingEnsemble = false;
     final AtomicInteger numEnsembleChanges = new AtomicInteger(0);
@@ -324,11 +337,11 @@ public class LedgerHandle implements WriteHandle {
      * {@inheritDoc}
      */
     @Override
-    public synchronized long getLastAddConfirmed() {
+    public long getLastAddConfirmed() {
         return lastAddConfirmed;
     }
 
-    synchronized void setLastAddConfirmed(long lac) {
+    void setLastAddConfirmed(long lac) {
         this.lastAddConfirmed = lac;
     }
 
@@ -336,7 +349,7 @@ public class LedgerHandle implements WriteHandle {
      * {@inheritDoc}
      */
     @Override
-    public synchronized long getLastAddPushed() {
+    public long getLastAddPushed() {
         return lastAddPushed;
     }
 
@@ -426,9 +439,8 @@ public class LedgerHandle implements WriteHandle {
      * @param delta
      * @return the length of the ledger after the addition
      */
-    synchronized long addToLength(long delta) {
-        this.length += delta;
-        return this.length;
+    long addToLength(long delta) {
+        return LENGTH_UPDATER.addAndGet(this, delta);
     }
 
     /**
@@ -437,7 +449,7 @@ public class LedgerHandle implements WriteHandle {
      * @return the length of the ledger in bytes
      */
     @Override
-    public synchronized long getLength() {
+    public long getLength() {
         return this.length;
     }
 
@@ -1298,57 +1310,74 @@ public class LedgerHandle implements WriteHandle {
             throttler.acquire();
         }
 
-        boolean wasClosed = false;
-        synchronized (this) {
-            // synchronized on this to ensure that
-            // the ledger isn't closed between checking and
-            // updating lastAddPushed
-            if (isHandleWritable()) {
-                long entryId = ++lastAddPushed;
-                long currentLedgerLength = addToLength(op.payload.readableBytes());
-                op.setEntryId(entryId);
-                op.setLedgerLength(currentLedgerLength);
-                pendingAddOps.add(op);
-            } else {
-                wasClosed = true;
+        if (op.isRecoveryAdd) {
+            // ledger recovery checks the entry id the next recovery add will get before adding it,
+            // so recovery adds are pushed right away
+            boolean pushed;
+            synchronized (this) {
+                pushed = pushPendingAdd(op);
             }
+            if (!pushed) {
+                failAddToClosedLedger(op);
+                return;
+            }
+            waitForWritable(op, op.getEntryId());
+            submitAdd(op, op);
+            return;
         }
 
-        if (wasClosed) {
-            // make sure the callback is triggered in main worker pool
-            try {
-                clientCtx.getMainWorkerPool().executeOrdered(ledgerId, new SafeRunnable() {
-                    @Override
-                    public void safeRun() {
-                        LOG.warn("Attempt to add to closed ledger: {}", ledgerId);
-                        op.cb.addCompleteWithLatency(BKException.Code.LedgerClosedException,
-                                LedgerHandle.this, INVALID_ENTRY_ID, 0, op.ctx);
-                    }
+        // The entry id is only known once the add runs on the ordered executor,
+        // the writability of the bookies is checked against the next entry id
+        waitForWritable(op, lastAddPushed + 1);
+        submitAdd(op, new SafeRunnable() {
+            @Override
+            public void safeRun() {
+                if (pushPendingAdd(op)) {
+                    op.run();
+                } else {
+                    LOG.warn("Attempt to add to closed ledger: {}", ledgerId);
+                    op.cb.addCompleteWithLatency(BKException.Code.LedgerClosedException,
+                            LedgerHandle.this, INVALID_ENTRY_ID, 0, op.ctx);
+                }
+            }
 
-                    @Override
-                    public String toString() {
-                        return String.format("AsyncAddEntryToClosedLedger(lid=%d)", ledgerId);
-                    }
-                });
-            } catch (RejectedExecutionException e) {
-                op.cb.addCompleteWithLatency(BookKeeper.getReturnRc(clientCtx.getBookieClient(),
-                                                                    BKException.Code.InterruptedException),
-                        LedgerHandle.this, INVALID_ENTRY_ID, 0, op.ctx);
+            @Override
+            public String toString() {
+                return String.format("AsyncAddEntry(lid=%d)", ledgerId);
             }
-            return;
+        });
+    }
+
+    /**
+     * Give the op the next entry id and the ledger length including its payload, and queue it
+     * as pending.
+     *
+     * @return false if the handle is not writable anymore
+     */
+    private boolean pushPendingAdd(PendingAddOp op) {
+        if (!isHandleWritable()) {
+            return false;
         }
+        op.setEntryId(LAST_ADD_PUSHED_UPDATER.incrementAndGet(this));
+        op.setLedgerLength(addToLength(op.payload.readableBytes()));
+        pendingAddOps.add(op);
+        return true;
+    }
 
-        DistributionSchedule.WriteSet ws = distributionSchedule.getWriteSet(op.getEntryId());
+    private void waitForWritable(PendingAddOp op, long entryId) {
+        DistributionSchedule.WriteSet ws = distributionSchedule.getWriteSet(entryId);
         try {
-            if (!waitForWritable(ws, op.getEntryId(), 0, clientCtx.getConf().waitForWriteSetMs)) {
+            if (!waitForWritable(ws, entryId, 0, clientCtx.getConf().waitForWriteSetMs)) {
                 op.allowFailFastOnUnwritableChannel();
             }
         } finally {
             ws.recycle();
         }
+    }
 
+    private void submitAdd(PendingAddOp op, SafeRunnable task) {
         try {
-            clientCtx.getMainWorkerPool().executeOrdered(ledgerId, op);
+            clientCtx.getMainWorkerPool().executeOrdered(ledgerId, task);
         } catch (RejectedExecutionException e) {
             op.cb.addCompleteWithLatency(
                     BookKeeper.getReturnRc(clientCtx.getBookieClient(), BKException.Code.InterruptedException),
@@ -1356,15 +1385,53 @@ public class LedgerHandle implements WriteHandle {
         }
     }
 
-    synchronized void updateLastConfirmed(long lac, long len) {
-        if (lac > lastAddConfirmed) {
-            lastAddConfirmed = lac;
+    private void failAddToClosedLedger(PendingAddOp op) {
+        // make sure the callback is triggered in main worker pool
+        try {
+            clientCtx.getMainWorkerPool().executeOrdered(ledgerId, new SafeRunnable() {
+                @Override
+                public void safeRun() {
+                    LOG.warn("Attempt to add to closed ledger: {}", ledgerId);
+                    op.cb.addCompleteWithLatency(BKException.Code.LedgerClosedException,
+                            LedgerHandle.this, INVALID_ENTRY_ID, 0, op.ctx);
+                }
+
+                @Override
+                public String toString() {
+                    return String.format("AsyncAddEntryToClosedLedger(lid=%d)", ledgerId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            op.cb.addCompleteWithLatency(BookKeeper.getReturnRc(clientCtx.getBookieClient(),
+                                                                BKException.Code.InterruptedException),
+                    LedgerHandle.this, INVALID_ENTRY_ID, 0, op.ctx);
+        }
+    }
+
+    void updateLastConfirmed(long lac, long len) {
+        if (advance(LAST_ADD_CONFIRMED_UPDATER, lac)) {
             lacUpdateHitsCounter.inc();
         } else {
             lacUpdateMissesCounter.inc();
         }
-        lastAddPushed = Math.max(lastAddPushed, lac);
-        length = Math.max(length, len);
+        advance(LAST_ADD_PUSHED_UPDATER, lac);
+        advance(LENGTH_UPDATER, len);
+    }
+
+    /**
+     * Raise the field to the given value if it is lower.
+     *
+     * @return true if the field was raised
+     */
+    private boolean advance(AtomicLongFieldUpdater<LedgerHandle> updater, long value) {
+        long current;
+        do {
+            current = updater.get(this);
+            if (value <= current) {
+                return false;
+            }
+        } while (!updater.compareAndSet(this, current, value));
+        return true;
     }
 
     /**
@@ -0,0 +1,86 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+/**
+ * Verifies the digests of the entries returned by a batch read on a dedicated pool of threads, each thread
+ * verifying a contiguous range of the entries.
+ */
+class ParallelDigestVerifier {
+
+    private final ExecutorService pool;
+    private final int numThreads;
+
+    ParallelDigestVerifier(int numThreads) {
+        this.numThreads = numThreads;
+        this.pool = Executors.newFixedThreadPool(numThreads,
+                new DefaultThreadFactory("BookKeeperClientDigestVerifier", true));
+    }
+
+    /**
+     * Verify the entries <i>0</i> to <i>numEntries - 1</i>.
+     *
+     * @param numEntries
+     *          the number of entries to verify
+     * @param verifyEntry
+     *          verifies the entry at the given index
+     * @return a future completed once all the ranges of entries are done, exceptionally if the verification of
+     *         any of them failed or if the pool is shut down. The entries of a failed range after the one that
+     *         failed are not verified.
+     */
+    CompletableFuture<Void> verify(int numEntries, IntConsumer verifyEntry) {
+        int numTasks = Math.min(numThreads, numEntries);
+        CompletableFuture<?>[] tasks = new CompletableFuture<?>[numTasks];
+        for (int t = 0; t < numTasks; t++) {
+            final int start = (int) ((long) numEntries * t / numTasks);
+            final int end = (int) ((long) numEntries * (t + 1) / numTasks);
+            try {
+                tasks[t] = CompletableFuture.runAsync(() -> {
+                    for (int i = start; i < end; i++) {
+                        verifyEntry.accept(i);
+                    }
+                }, pool);
+            } catch (RejectedExecutionException e) {
+                // the ranges already submitted still run, the future completes once they are done
+                CompletableFuture<Void> rejected = new CompletableFuture<>();
+                rejected.completeExceptionally(e);
+                tasks[t] = rejected;
+            }
+        }
+        return CompletableFuture.allOf(tasks);
+    }
+
+    void shutdown() {
+        pool.shutdown();
+    }
+
+    boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return pool.awaitTermination(timeout, unit);
+    }
+}
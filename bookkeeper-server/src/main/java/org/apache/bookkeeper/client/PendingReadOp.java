@@ -30,6 +30,7 @@ import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -41,6 +42,7 @@ import org.apache.bookkeeper.client.impl.LedgerEntryImpl;
 import org.apache.bookkeeper.common.util.SafeRunnable;
 import org.apache.bookkeeper.net.BookieSocketAddress;
 import org.apache.bookkeeper.proto.BookieProtocol;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.BatchReadEntriesCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntryCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntryCallbackCtx;
 import org.apache.bookkeeper.proto.checksum.DigestManager;
@@ -55,7 +57,7 @@ import org.slf4j.LoggerFactory;
  * application as soon as it arrives rather than waiting for the whole thing.
  *
  */
-class PendingReadOp implements ReadEntryCallback, SafeRunnable {
+class PendingReadOp implements ReadEntryCallback, BatchReadEntriesCallback, SafeRunnable {
     private static final Logger LOG = LoggerFactory.getLogger(PendingReadOp.class);
 
     private ScheduledFuture<?> speculativeTask = null;
@@ -131,13 +133,47 @@ class PendingReadOp implements ReadEntryCallback, SafeRunnable {
          *         otherwise return false if the read entry is not complete or it is already completed before
          */
         boolean complete(int bookieIndex, BookieSocketAddress host, final ByteBuf buffer) {
-            ByteBuf content;
             if (isComplete()) {
                 return false;
             }
+            return complete(bookieIndex, host, buffer, verifyDigest(buffer));
+        }
+
+        /**
+         * Verify the digest of the entry read in <i>buffer</i>. This doesn't change the state of the
+         * request, so it can be called from any thread.
+         *
+         * @param buffer
+         *          the data buffer
+         * @return the data of the entry, or null if the digest doesn't match
+         */
+        ByteBuf verifyDigest(ByteBuf buffer) {
             try {
-                content = lh.macManager.verifyDigestAndReturnData(eId, buffer);
+                return lh.macManager.verifyDigestAndReturnData(eId, buffer);
             } catch (BKDigestMatchException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Complete the read request from <i>host</i> with an entry whose digest was already verified.
+         *
+         * @param bookieIndex
+         *          bookie index
+         * @param host
+         *          host that respond the read
+         * @param buffer
+         *          the data buffer
+         * @param content
+         *          the data of the entry returned by {@link #verifyDigest(ByteBuf)}
+         * @return return true if we managed to complete the entry;
+         *         otherwise return false if the read entry is not complete or it is already completed before
+         */
+        boolean complete(int bookieIndex, BookieSocketAddress host, ByteBuf buffer, ByteBuf content) {
+            if (isComplete()) {
+                return false;
+            }
+            if (content == null) {
                 clientCtx.getClientStats().getReadOpDmCounter().inc();
                 logErrorAndReattemptRead(bookieIndex, host, "Mac mismatch", BKException.Code.DigestMatchException);
                 return false;
@@ -386,6 +422,19 @@ class PendingReadOp implements ReadEntryCallback, SafeRunnable {
             sendNextRead();
         }
 
+        /**
+         * Record that this entry is read from <i>bookieIndex</i> as part of a batch read, as if it was
+         * the first replica we sent the read to.
+         */
+        synchronized void markBatchRead(int bookieIndex) {
+            int replica = writeSet.indexOf(bookieIndex);
+            if (replica > 0) {
+                writeSet.moveAndShift(replica, 0);
+            }
+            sentReplicas.set(0);
+            nextReplicaIndexToReadFrom = 1;
+        }
+
         synchronized BookieSocketAddress sendNextRead() {
             if (nextReplicaIndexToReadFrom >= getLedgerMetadata().getWriteQuorumSize()) {
                 // we are done, the read has failed from all replicas, just fail the
@@ -438,8 +487,8 @@ class PendingReadOp implements ReadEntryCallback, SafeRunnable {
         }
 
         @Override
-        boolean complete(int bookieIndex, BookieSocketAddress host, ByteBuf buffer) {
-            boolean completed = super.complete(bookieIndex, host, buffer);
+        boolean complete(int bookieIndex, BookieSocketAddress host, ByteBuf buffer, ByteBuf content) {
+            boolean completed = super.complete(bookieIndex, host, buffer, content);
             if (completed) {
                 int numReplicasTried = getNextReplicaIndexToReadFrom();
                 // Check if any speculative reads were issued and mark any slow bookies before
@@ -526,12 +575,57 @@ class PendingReadOp implements ReadEntryCallback, SafeRunnable {
             i++;
         } while (i <= endEntryId);
         // read the entries.
+        if (canBatchRead()) {
+            initiateBatchReads();
+            return;
+        }
         for (LedgerEntryRequest entry : seq) {
             entry.read();
-            if (!parallelRead && clientCtx.getConf().readSpeculativeRequestPolicy.isPresent()) {
-                speculativeTask = clientCtx.getConf().readSpeculativeRequestPolicy.get()
-                    .initiateSpeculativeRequest(clientCtx.getScheduler(), entry);
+            maybeInitiateSpeculativeRead(entry);
+        }
+    }
+
+    private void maybeInitiateSpeculativeRead(LedgerEntryRequest entry) {
+        if (!parallelRead && clientCtx.getConf().readSpeculativeRequestPolicy.isPresent()) {
+            speculativeTask = clientCtx.getConf().readSpeculativeRequestPolicy.get()
+                .initiateSpeculativeRequest(clientCtx.getScheduler(), entry);
+        }
+    }
+
+    private boolean canBatchRead() {
+        return clientCtx.getConf().enableBatchReads && !parallelRead && !isRecoveryRead && seq.size() > 1;
+    }
+
+    /**
+     * Read the entries in batches of contiguous entries. Only the entries of the ensembles in which every
+     * bookie stores all the entries can be read in batches; the other entries are read one by one.
+     */
+    private void initiateBatchReads() {
+        int writeQuorumSize = getLedgerMetadata().getWriteQuorumSize();
+        int maxCount = clientCtx.getConf().batchReadMaxCount;
+        if (LOG.isDebugEnabled() && getLedgerMetadata().getEnsembleSize() > writeQuorumSize) {
+            LOG.debug("Ledger {} is striped over {} bookies with a write quorum of {}, its entries are read one by one",
+                    lh.ledgerId, getLedgerMetadata().getEnsembleSize(), writeQuorumSize);
+        }
+        int i = 0;
+        while (i < seq.size()) {
+            LedgerEntryRequest first = seq.get(i);
+            int end = i + 1;
+            if (first.ensemble.size() == writeQuorumSize) {
+                while (end < seq.size() && end - i < maxCount && seq.get(end).ensemble == first.ensemble) {
+                    end++;
+                }
             }
+
+            if (end - i > 1) {
+                sendBatchReadTo(first.writeSet.get(0), first.ensemble, seq.subList(i, end));
+            } else {
+                first.read();
+            }
+            for (int j = i; j < end; j++) {
+                maybeInitiateSpeculativeRead(seq.get(j));
+            }
+            i = end;
         }
     }
 
@@ -573,6 +667,171 @@ class PendingReadOp implements ReadEntryCallback, SafeRunnable {
                                               this, new ReadContext(bookieIndex, to, entry), flags);
     }
 
+    private static class BatchReadContext implements ReadEntryCallbackCtx {
+        final int bookieIndex;
+        final BookieSocketAddress to;
+        final List<LedgerEntryRequest> entries;
+        long lac = LedgerHandle.INVALID_ENTRY_ID;
+
+        BatchReadContext(int bookieIndex, BookieSocketAddress to, List<LedgerEntryRequest> entries) {
+            this.bookieIndex = bookieIndex;
+            this.to = to;
+            this.entries = entries;
+        }
+
+        @Override
+        public void setLastAddConfirmed(long lac) {
+            this.lac = lac;
+        }
+
+        @Override
+        public long getLastAddConfirmed() {
+            return lac;
+        }
+    }
+
+    void sendBatchReadTo(int bookieIndex, List<BookieSocketAddress> ensemble, List<LedgerEntryRequest> entries) {
+        if (lh.throttler != null) {
+            lh.throttler.acquire(entries.size());
+        }
+
+        BookieSocketAddress to = ensemble.get(bookieIndex);
+        for (LedgerEntryRequest entry : entries) {
+            if (!entry.isComplete()) {
+                ((SequenceReadRequest) entry).markBatchRead(bookieIndex);
+            }
+        }
+        sentToHosts.add(to);
+        clientCtx.getBookieClient().batchReadEntries(to, lh.ledgerId, entries.get(0).eId, entries.size(),
+                                                     clientCtx.getConf().batchReadMaxSize, this,
+                                                     new BatchReadContext(bookieIndex, to, entries),
+                                                     BookieProtocol.FLAG_NONE);
+    }
+
+    @Override
+    public void readEntriesComplete(int rc, long ledgerId, long startEntryId, List<ByteBuf> buffers, Object ctx) {
+        final BatchReadContext rctx = (BatchReadContext) ctx;
+        int numRead = 0;
+        if (rc == BKException.Code.OK) {
+            numRead = Math.min(buffers.size(), rctx.entries.size());
+            if (numRead == 0) {
+                // the bookie has the first entry but didn't return it
+                rc = BKException.Code.ReadException;
+            }
+        }
+
+        if (numRead > 0) {
+            heardFromHosts.add(rctx.to);
+            heardFromHostsBitSet.set(rctx.bookieIndex, true);
+            if (!isRecoveryRead) {
+                lh.updateLastConfirmed(rctx.getLastAddConfirmed(), 0L);
+            }
+        }
+
+        final ByteBuf[] contents = new ByteBuf[numRead];
+        final boolean[] verified = new boolean[numRead];
+        final int batchRc = rc;
+        final ParallelDigestVerifier digestVerifier = clientCtx.getDigestVerifier();
+        if (digestVerifier != null && canVerifyDigestsInParallel(numRead)) {
+            // verify the digests on the digest verifier threads, and complete the entries back on the ordered thread
+            final long startTimeNanos = MathUtils.nowInNano();
+            digestVerifier.verify(numRead, i -> verifyDigest(rctx, buffers, contents, verified, i))
+                .whenComplete((ignored, cause) -> {
+                    try {
+                        clientCtx.getMainWorkerPool().executeOrdered(lh.ledgerId, () -> {
+                            if (cause != null) {
+                                LOG.warn("Failed to verify the digests of L{} E{}-E{} in parallel, verifying them"
+                                        + " inline", lh.ledgerId, startEntryId,
+                                        startEntryId + contents.length - 1, cause);
+                                verifyDigests(rctx, buffers, contents, verified);
+                            } else {
+                                clientCtx.getClientStats().getReadOpBatchDigestVerifyLogger().registerSuccessfulEvent(
+                                        MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+                            }
+                            completeBatchRead(batchRc, startEntryId, buffers, rctx, contents);
+                        });
+                    } catch (RejectedExecutionException e) {
+                        // the client is closed, none of the entries will be completed
+                        LOG.warn("Failed to complete the batch read of L{} E{}-E{}", lh.ledgerId, startEntryId,
+                                startEntryId + contents.length - 1, e);
+                        buffers.forEach(ByteBuf::release);
+                    }
+                });
+        } else {
+            verifyDigests(rctx, buffers, contents, verified);
+            completeBatchRead(batchRc, startEntryId, buffers, rctx, contents);
+        }
+    }
+
+    private boolean canVerifyDigestsInParallel(int numRead) {
+        return clientCtx.getConf().enableParallelDigestVerification
+            && numRead >= Math.max(2, clientCtx.getConf().parallelDigestVerificationMinEntries)
+            && !complete.get();
+    }
+
+    /**
+     * Verify the digests of the first <i>contents.length</i> entries returned by a batch read which were not
+     * verified yet, skipping the entries which are already complete.
+     */
+    private void verifyDigests(BatchReadContext rctx, List<ByteBuf> buffers, ByteBuf[] contents,
+                               boolean[] verified) {
+        if (contents.length == 0) {
+            return;
+        }
+        long startTimeNanos = MathUtils.nowInNano();
+        for (int i = 0; i < contents.length; i++) {
+            if (!verified[i]) {
+                verifyDigest(rctx, buffers, contents, verified, i);
+            }
+        }
+        clientCtx.getClientStats().getReadOpBatchDigestVerifyLogger()
+            .registerSuccessfulEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+    }
+
+    private void verifyDigest(BatchReadContext rctx, List<ByteBuf> buffers, ByteBuf[] contents,
+                              boolean[] verified, int i) {
+        LedgerEntryRequest entry = rctx.entries.get(i);
+        if (!entry.isComplete()) {
+            contents[i] = entry.verifyDigest(buffers.get(i));
+        }
+        verified[i] = true;
+    }
+
+    private void completeBatchRead(int rc, long startEntryId, List<ByteBuf> buffers, BatchReadContext rctx,
+                                   ByteBuf[] contents) {
+        final int numRead = contents.length;
+        for (int i = 0; i < buffers.size(); i++) {
+            ByteBuf buffer = buffers.get(i);
+            if (i < numRead && rctx.entries.get(i).complete(rctx.bookieIndex, rctx.to, buffer, contents[i])) {
+                submitCallback(BKException.Code.OK);
+            } else {
+                buffer.release();
+            }
+        }
+
+        List<LedgerEntryRequest> remaining = rctx.entries.subList(numRead, rctx.entries.size());
+        if (remaining.isEmpty() || complete.get()) {
+            return;
+        }
+
+        if (numRead > 0) {
+            // the batch was truncated to fit in a response, read the rest of the entries from the same bookie
+            sendBatchReadTo(rctx.bookieIndex, rctx.entries.get(0).ensemble, remaining);
+        } else {
+            // failed to read the batch, read the entries one by one from the next replicas
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Batch read of L{} E{}-E{} failed on bookie {} : {}", lh.ledgerId, startEntryId,
+                        startEntryId + remaining.size() - 1, rctx.to, BKException.getMessage(rc));
+            }
+            for (LedgerEntryRequest entry : remaining) {
+                if (!entry.isComplete()) {
+                    entry.logErrorAndReattemptRead(rctx.bookieIndex, rctx.to,
+                            "Error: " + BKException.getMessage(rc), rc);
+                }
+            }
+        }
+    }
+
     @Override
     public void readEntryComplete(int rc, long ledgerId, final long entryId, final ByteBuf buffer, Object ctx) {
         final ReadContext rctx = (ReadContext) ctx;
@@ -115,9 +115,18 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
     protected static final String RECOVERY_READ_BATCH_SIZE = "recoveryReadBatchSize";
     protected static final String REORDER_READ_SEQUENCE_ENABLED = "reorderReadSequenceEnabled";
     protected static final String STICKY_READS_ENABLED = "stickyReadSEnabled";
+    protected static final String BATCH_READ_ENABLED = "batchReadEnabled";
+    protected static final String BATCH_READ_MAX_COUNT = "batchReadMaxCount";
+    protected static final String PARALLEL_DIGEST_VERIFICATION_ENABLED = "parallelDigestVerificationEnabled";
+    protected static final String PARALLEL_DIGEST_VERIFICATION_MIN_ENTRIES = "parallelDigestVerificationMinEntries";
+    protected static final String PARALLEL_DIGEST_VERIFICATION_THREADS = "parallelDigestVerificationThreads";
     // Add Parameters
     protected static final String DELAY_ENSEMBLE_CHANGE = "delayEnsembleChange";
     protected static final String MAX_ALLOWED_ENSEMBLE_CHANGES = "maxNumEnsembleChanges";
+    protected static final String BATCH_ADD_ENABLED = "batchAddEnabled";
+    protected static final String BATCH_ADD_MAX_COUNT = "batchAddMaxCount";
+    protected static final String BATCH_ADD_MAX_SIZE = "batchAddMaxSize";
+    protected static final String BATCH_ADD_MAX_DELAY_MICROS = "batchAddMaxDelayMicros";
     // Timeout Setting
     protected static final String ADD_ENTRY_TIMEOUT_SEC = "addEntryTimeoutSec";
     protected static final String ADD_ENTRY_QUORUM_TIMEOUT_SEC = "addEntryQuorumTimeoutSec";
@@ -125,6 +134,7 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
     protected static final String TIMEOUT_MONITOR_INTERVAL_SEC = "timeoutMonitorIntervalSec";
     protected static final String TIMEOUT_TASK_INTERVAL_MILLIS = "timeoutTaskIntervalMillis";
     protected static final String EXPLICIT_LAC_INTERVAL = "explicitLacInterval";
+    protected static final String PCBC_TIMEOUT_TIMER_ENABLED = "pcbcTimeoutTimerEnabled";
     protected static final String PCBC_TIMEOUT_TIMER_TICK_DURATION_MS = "pcbcTimeoutTimerTickDurationMs";
     protected static final String PCBC_TIMEOUT_TIMER_NUM_TICKS = "pcbcTimeoutTimerNumTicks";
     protected static final String TIMEOUT_TIMER_TICK_DURATION_MS = "timeoutTimerTickDurationMs";
@@ -738,6 +748,32 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return this;
     }
 
+    /**
+     * Whether the requests of PCBC are timed out by a HashedWheelTimer.
+     *
+     * @return true if the requests are timed out by a HashedWheelTimer
+     */
+    public boolean isPCBCTimeoutTimerEnabled() {
+        return getBoolean(PCBC_TIMEOUT_TIMER_ENABLED, false);
+    }
+
+    /**
+     * Enable timing out the requests of PCBC with a HashedWheelTimer.
+     *
+     * <p>By default, the timeout monitor scans all the outstanding requests of each channel every
+     * {@link #getTimeoutMonitorIntervalSec()} seconds, which gets expensive with many outstanding requests and only
+     * detects the timeouts at the granularity of the interval. When enabled, each request is registered in a
+     * HashedWheelTimer shared by all the channels, and expires within one tick of its timeout.
+     *
+     * @param enabled
+     *          flag to enable the timeout timer
+     * @return client configuration.
+     */
+    public ClientConfiguration setPCBCTimeoutTimerEnabled(boolean enabled) {
+        setProperty(PCBC_TIMEOUT_TIMER_ENABLED, enabled);
+        return this;
+    }
+
     /**
      * Get the tick duration in milliseconds that used for the
      * HashedWheelTimer that used by PCBC to timeout
@@ -745,7 +781,6 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
      *
      * @return tick duration in milliseconds
      */
-    @Deprecated
     public long getPCBCTimeoutTimerTickDurationMs() {
         return getLong(PCBC_TIMEOUT_TIMER_TICK_DURATION_MS, 100);
     }
@@ -762,7 +797,6 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
      *          tick duration in milliseconds.
      * @return client configuration.
      */
-    @Deprecated
     public ClientConfiguration setPCBCTimeoutTimerTickDurationMs(long tickDuration) {
         setProperty(PCBC_TIMEOUT_TIMER_TICK_DURATION_MS, tickDuration);
         return this;
@@ -775,7 +809,6 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
      *
      * @return number of ticks that used for timeout timer.
      */
-    @Deprecated
     public int getPCBCTimeoutTimerNumTicks() {
         return getInt(PCBC_TIMEOUT_TIMER_NUM_TICKS, 1024);
     }
@@ -792,7 +825,6 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
      *          number of ticks that used for timeout timer.
      * @return client configuration.
      */
-    @Deprecated
     public ClientConfiguration setPCBCTimeoutTimerNumTicks(int numTicks) {
         setProperty(PCBC_TIMEOUT_TIMER_NUM_TICKS, numTicks);
         return this;
@@ -1165,6 +1197,224 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return this;
     }
 
+    /**
+     * If sequential reads should fetch multiple entries from a bookie in a single request.
+     *
+     * <p>Note that batch reads only apply to the ledgers (or the ensembles of a ledger) whose ensemble size is
+     * equal to their write quorum size. When entries are striped across a larger ensemble, no bookie stores a
+     * contiguous range of entries and the reads are sent one entry at a time, even if this flag is enabled.
+     *
+     * @return true if batch reads are enabled, otherwise false.
+     */
+    public boolean isBatchReadEnabled() {
+        return getBoolean(BATCH_READ_ENABLED, false);
+    }
+
+    /**
+     * Enable/disable batch reads.
+     *
+     * <p>If this flag is enabled, a read of a range of entries of a ledger whose ensemble size
+     * is equal to its write quorum size (so that every bookie stores all the entries) is sent as
+     * batch read requests instead of one request per entry. Striped ledgers, whose ensemble is
+     * larger than their write quorum, are always read one entry at a time. The entries that are not returned by
+     * a batch read, for instance because the bookie does not support batch reads or failed the
+     * request, are read one by one as usual.
+     *
+     * <p>Batch reads are only available with the v3 wire protocol, and are not used for recovery
+     * reads.
+     *
+     * @param enabled the flag to enable/disable batch reads.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setBatchReadEnabled(boolean enabled) {
+        setProperty(BATCH_READ_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the max number of entries requested in a single batch read request.
+     *
+     * @return max number of entries in a batch read.
+     */
+    public int getBatchReadMaxCount() {
+        return getInt(BATCH_READ_MAX_COUNT, 100);
+    }
+
+    /**
+     * Set the max number of entries requested in a single batch read request.
+     * The total size of a batch is also bounded by the netty max frame size.
+     *
+     * @param maxCount max number of entries in a batch read.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setBatchReadMaxCount(int maxCount) {
+        setProperty(BATCH_READ_MAX_COUNT, maxCount);
+        return this;
+    }
+
+    /**
+     * If the digests of the entries returned by a large batch read should be verified in parallel.
+     *
+     * @return true if parallel digest verification is enabled, otherwise false.
+     */
+    public boolean isParallelDigestVerificationEnabled() {
+        return getBoolean(PARALLEL_DIGEST_VERIFICATION_ENABLED, false);
+    }
+
+    /**
+     * Enable/disable parallel digest verification.
+     *
+     * <p>If this flag is enabled, the digests of the entries returned by a batch read of at least
+     * {@link #getParallelDigestVerificationMinEntries()} entries are verified on a dedicated pool of
+     * {@link #getParallelDigestVerificationThreads()} threads instead of the ordered thread of the ledger.
+     * The entries are still delivered to the application in order once the whole read completes.
+     *
+     * <p>This only applies to batch reads, see {@link #setBatchReadEnabled(boolean)}.
+     *
+     * @param enabled the flag to enable/disable parallel digest verification.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setParallelDigestVerificationEnabled(boolean enabled) {
+        setProperty(PARALLEL_DIGEST_VERIFICATION_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the min number of entries returned by a batch read for their digests to be verified in parallel.
+     *
+     * @return min number of entries of a batch read verified in parallel.
+     */
+    public int getParallelDigestVerificationMinEntries() {
+        return getInt(PARALLEL_DIGEST_VERIFICATION_MIN_ENTRIES, 32);
+    }
+
+    /**
+     * Set the min number of entries returned by a batch read for their digests to be verified in parallel.
+     * Smaller batches are verified on the ordered thread of the ledger, as handing them over to other
+     * threads costs more than verifying them.
+     *
+     * @param minEntries min number of entries of a batch read verified in parallel.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setParallelDigestVerificationMinEntries(int minEntries) {
+        setProperty(PARALLEL_DIGEST_VERIFICATION_MIN_ENTRIES, minEntries);
+        return this;
+    }
+
+    /**
+     * Get the number of threads used to verify the digests of batch reads in parallel.
+     *
+     * @return number of threads verifying digests in parallel.
+     */
+    public int getParallelDigestVerificationThreads() {
+        return getInt(PARALLEL_DIGEST_VERIFICATION_THREADS, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Set the number of threads used to verify the digests of batch reads in parallel. The threads are
+     * shared by all the ledgers of the client, and a batch is split in at most this number of ranges.
+     * Defaults to the number of available processors.
+     *
+     * @param numThreads number of threads verifying digests in parallel.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setParallelDigestVerificationThreads(int numThreads) {
+        setProperty(PARALLEL_DIGEST_VERIFICATION_THREADS, numThreads);
+        return this;
+    }
+
+    /**
+     * If small adds to the same ledger should be sent to a bookie in a single request.
+     *
+     * @return true if batch adds are enabled, otherwise false.
+     */
+    public boolean isBatchAddEnabled() {
+        return getBoolean(BATCH_ADD_ENABLED, false);
+    }
+
+    /**
+     * Enable/disable batch adds.
+     *
+     * <p>If this flag is enabled, the adds of a ledger sent to the same bookie within
+     * {@link #getBatchAddMaxDelayMicros()} are coalesced into a single batch add request, which
+     * the bookie appends to its journal at once. Each entry still completes with its own result.
+     * If the bookie does not support batch adds, the entries are sent one by one as usual and
+     * batching is turned off for that connection.
+     *
+     * <p>Batch adds are only available with the v3 wire protocol, and are not used for recovery
+     * adds nor for high priority adds.
+     *
+     * @param enabled the flag to enable/disable batch adds.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setBatchAddEnabled(boolean enabled) {
+        setProperty(BATCH_ADD_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the max number of entries sent in a single batch add request.
+     *
+     * @return max number of entries in a batch add.
+     */
+    public int getBatchAddMaxCount() {
+        return getInt(BATCH_ADD_MAX_COUNT, 64);
+    }
+
+    /**
+     * Set the max number of entries sent in a single batch add request.
+     *
+     * @param maxCount max number of entries in a batch add.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setBatchAddMaxCount(int maxCount) {
+        setProperty(BATCH_ADD_MAX_COUNT, maxCount);
+        return this;
+    }
+
+    /**
+     * Get the max total size, in bytes, of the entries sent in a single batch add request.
+     *
+     * @return max size of a batch add.
+     */
+    public int getBatchAddMaxSize() {
+        return getInt(BATCH_ADD_MAX_SIZE, 64 * 1024);
+    }
+
+    /**
+     * Set the max total size, in bytes, of the entries sent in a single batch add request.
+     * Entries larger than this size are sent on their own.
+     *
+     * @param maxSize max size of a batch add.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setBatchAddMaxSize(int maxSize) {
+        setProperty(BATCH_ADD_MAX_SIZE, maxSize);
+        return this;
+    }
+
+    /**
+     * Get the max time, in microseconds, an add waits for other adds to the same ledger
+     * before its batch is sent.
+     *
+     * @return max delay of a batch add in microseconds.
+     */
+    public long getBatchAddMaxDelayMicros() {
+        return getLong(BATCH_ADD_MAX_DELAY_MICROS, 500);
+    }
+
+    /**
+     * Set the max time, in microseconds, an add waits for other adds to the same ledger
+     * before its batch is sent. This delay is added to the latency of the first add of a batch.
+     *
+     * @param maxDelayMicros max delay of a batch add in microseconds.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setBatchAddMaxDelayMicros(long maxDelayMicros) {
+        setProperty(BATCH_ADD_MAX_DELAY_MICROS, maxDelayMicros);
+        return this;
+    }
+
     /**
      * Get Ensemble Placement Policy Class.
      *
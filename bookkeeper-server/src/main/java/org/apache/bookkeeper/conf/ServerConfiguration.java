@@ -98,13 +98,18 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String COMPACTION_RATE = "compactionRate";
     protected static final String COMPACTION_RATE_BY_ENTRIES = "compactionRateByEntries";
     protected static final String COMPACTION_RATE_BY_BYTES = "compactionRateByBytes";
+    protected static final String COMPACTION_READ_LATENCY_THRESHOLD_MS = "compactionReadLatencyThresholdMs";
+    protected static final String COMPACTION_MAX_BYTES_PER_RUN = "compactionMaxBytesPerRun";
+    protected static final String PER_DIRECTORY_COMPACTION_ENABLED = "perDirectoryCompactionEnabled";
 
     // Gc Parameters
     protected static final String GC_WAIT_TIME = "gcWaitTime";
     protected static final String IS_FORCE_GC_ALLOW_WHEN_NO_SPACE = "isForceGCAllowWhenNoSpace";
     protected static final String GC_OVERREPLICATED_LEDGER_WAIT_TIME = "gcOverreplicatedLedgerWaitTime";
     protected static final String USE_TRANSACTIONAL_COMPACTION = "useTransactionalCompaction";
+    protected static final String USE_ZERO_COPY_COMPACTION = "useZeroCopyCompaction";
     protected static final String VERIFY_METADATA_ON_GC = "verifyMetadataOnGC";
+    protected static final String GC_ENTRYLOG_METADATA_CACHE_ENABLED = "gcEntryLogMetadataCacheEnabled";
     // Scrub Parameters
     protected static final String LOCAL_SCRUB_PERIOD = "localScrubInterval";
     protected static final String LOCAL_SCRUB_RATE_LIMIT = "localScrubRateLimit";
@@ -129,7 +134,9 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String JOURNAL_BUFFERED_WRITES_THRESHOLD = "journalBufferedWritesThreshold";
     protected static final String JOURNAL_BUFFERED_ENTRIES_THRESHOLD = "journalBufferedEntriesThreshold";
     protected static final String JOURNAL_FLUSH_WHEN_QUEUE_EMPTY = "journalFlushWhenQueueEmpty";
+    protected static final String JOURNAL_GROUP_COMMIT_TARGET_LATENCY_MSEC = "journalGroupCommitTargetLatencyMSec";
     protected static final String JOURNAL_REMOVE_FROM_PAGE_CACHE = "journalRemoveFromPageCache";
+    protected static final String JOURNAL_DIRECT_IO_DIRS = "journalDirectIODirectories";
     protected static final String JOURNAL_PRE_ALLOC_SIZE = "journalPreAllocSizeMB";
     protected static final String JOURNAL_WRITE_BUFFER_SIZE = "journalWriteBufferSizeKB";
     protected static final String JOURNAL_ALIGNMENT_SIZE = "journalAlignmentSize";
@@ -155,6 +162,8 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String LEDGER_DIRS = "ledgerDirectories";
     protected static final String INDEX_DIRS = "indexDirectories";
     protected static final String ALLOW_STORAGE_EXPANSION = "allowStorageExpansion";
+    protected static final String ENTRY_LOG_COLD_TIER_DIRS = "entryLogColdTierDirectories";
+    protected static final String ENTRY_LOG_COLD_TIER_AGE_SECONDS = "entryLogColdTierAgeSeconds";
     // NIO and Netty Parameters
     protected static final String SERVER_TCP_NODELAY = "serverTcpNoDelay";
     protected static final String SERVER_SOCK_KEEPALIVE = "serverSockKeepalive";
@@ -206,7 +215,10 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String REQUEST_TIMER_NO_OF_TICKS = "requestTimerNumTicks";
 
     protected static final String READ_BUFFER_SIZE = "readBufferSizeBytes";
+    protected static final String ENTRY_LOG_READ_CHANNEL_CACHE_SIZE = "entryLogReadChannelCacheSize";
     protected static final String WRITE_BUFFER_SIZE = "writeBufferSizeBytes";
+    protected static final String IO_URING_ENABLED = "ioUringEnabled";
+    protected static final String IO_URING_QUEUE_DEPTH = "ioUringQueueDepth";
     // Whether the bookie should use its hostname or ipaddress for the
     // registration.
     protected static final String USE_HOST_NAME_AS_BOOKIE_ID = "useHostNameAsBookieID";
@@ -417,6 +429,30 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Get whether compaction moves the entries from file to file, without copying them through memory.
+     *
+     * @return use zero copy compaction
+     */
+    public boolean getUseZeroCopyCompaction() {
+        return this.getBoolean(USE_ZERO_COPY_COMPACTION, false);
+    }
+
+    /**
+     * Set whether compaction moves the entries from file to file, without copying them through memory.
+     *
+     * <p>Compaction then only reads the headers of the entries, and moves ranges of adjacent entries of the same
+     * ledger to the current entry log with {@link java.nio.channels.FileChannel#transferTo}. It does not apply to
+     * transactional compaction.
+     *
+     * @param useZeroCopyCompaction
+     * @return server configuration
+     */
+    public ServerConfiguration setUseZeroCopyCompaction(boolean useZeroCopyCompaction) {
+        this.setProperty(USE_ZERO_COPY_COMPACTION, useZeroCopyCompaction);
+        return this;
+    }
+
     /**
      * Get whether the bookie is configured to double check prior to gc.
      *
@@ -436,6 +472,27 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Get whether the garbage collector persists the metadata of the entry logs in a RocksDB table, in the first
+     * ledger directory of the entry logger, instead of keeping it on the heap and rebuilding it at startup.
+     *
+     * @return whether the entry log metadata is persisted
+     */
+    public boolean isGcEntryLogMetadataCacheEnabled() {
+        return this.getBoolean(GC_ENTRYLOG_METADATA_CACHE_ENABLED, false);
+    }
+
+    /**
+     * Set whether the garbage collector persists the metadata of the entry logs in a RocksDB table.
+     *
+     * @param gcEntryLogMetadataCacheEnabled
+     * @return server configuration
+     */
+    public ServerConfiguration setGcEntryLogMetadataCacheEnabled(boolean gcEntryLogMetadataCacheEnabled) {
+        this.setProperty(GC_ENTRYLOG_METADATA_CACHE_ENABLED, gcEntryLogMetadataCacheEnabled);
+        return this;
+    }
+
     /**
      * Get whether local scrub is enabled.
      *
@@ -1148,6 +1205,31 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Get the journal directories whose journal files are written with direct I/O.
+     *
+     * <p>Direct I/O bypasses the file system page cache: the journal is written in blocks of
+     * {@link #getJournalAlignmentSize()} bytes, which should then be a multiple of the logical block size of the
+     * journal device. The journal falls back to buffered I/O when direct I/O is not supported.
+     *
+     * @return journal dir names, among {@link #getJournalDirNames()}, that use direct I/O
+     */
+    public String[] getJournalDirectIODirNames() {
+        return this.getStringArray(JOURNAL_DIRECT_IO_DIRS);
+    }
+
+    /**
+     * Set the journal directories whose journal files are written with direct I/O.
+     *
+     * @param journalDirs
+     *          journal dirs that use direct I/O
+     * @return server configuration
+     */
+    public ServerConfiguration setJournalDirectIODirNames(String[] journalDirs) {
+        this.setProperty(JOURNAL_DIRECT_IO_DIRS, journalDirs);
+        return this;
+    }
+
     /**
      * Get dirs to store journal files.
      *
@@ -1214,6 +1296,76 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return ledgerDirs;
     }
 
+    /**
+     * Get the directories of the cold tier, where the entry logs are moved once they get old.
+     *
+     * @return cold tier dir names, or null if entry logs are never moved
+     */
+    public String[] getEntryLogColdTierDirNames() {
+        String[] coldTierDirs = this.getStringArray(ENTRY_LOG_COLD_TIER_DIRS);
+        if ((null == coldTierDirs) || (0 == coldTierDirs.length)) {
+            return null;
+        }
+        return coldTierDirs;
+    }
+
+    /**
+     * Set the directories of the cold tier, where the entry logs are moved once they get old.
+     *
+     * <p>There must be one cold tier directory for each ledger directory: the entry logs of the i-th ledger directory
+     * are moved to the i-th cold tier directory. The cold tier is typically on slower and cheaper disks. The entry logs
+     * keep their id when they are moved, so the locations of the entries stay valid and the entries are read from
+     * either tier.
+     *
+     * @param coldTierDirs
+     *          cold tier dir names
+     * @return server configuration
+     */
+    public ServerConfiguration setEntryLogColdTierDirNames(String[] coldTierDirs) {
+        this.setProperty(ENTRY_LOG_COLD_TIER_DIRS, coldTierDirs);
+        return this;
+    }
+
+    /**
+     * Get the directories of the cold tier.
+     *
+     * @return cold tier dirs, or null if entry logs are never moved
+     */
+    public File[] getEntryLogColdTierDirs() {
+        String[] coldTierDirNames = getEntryLogColdTierDirNames();
+        if (null == coldTierDirNames) {
+            return null;
+        }
+
+        File[] coldTierDirs = new File[coldTierDirNames.length];
+        for (int i = 0; i < coldTierDirNames.length; i++) {
+            coldTierDirs[i] = new File(coldTierDirNames[i]);
+        }
+        return coldTierDirs;
+    }
+
+    /**
+     * Get the age after which an entry log that is no longer written is moved to the cold tier.
+     *
+     * @return cold tier age in seconds
+     */
+    public long getEntryLogColdTierAgeSeconds() {
+        return this.getLong(ENTRY_LOG_COLD_TIER_AGE_SECONDS, TimeUnit.DAYS.toSeconds(7));
+    }
+
+    /**
+     * Set the age after which an entry log that is no longer written is moved to the cold tier. The entry logs are
+     * moved by the garbage collector thread.
+     *
+     * @param ageSeconds
+     *          cold tier age in seconds
+     * @return server configuration
+     */
+    public ServerConfiguration setEntryLogColdTierAgeSeconds(long ageSeconds) {
+        this.setProperty(ENTRY_LOG_COLD_TIER_AGE_SECONDS, ageSeconds);
+        return this;
+    }
+
     /**
      * Get dir name to store index files.
      *
@@ -1628,6 +1780,30 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Get the maximum number of entry log files kept open for reads.
+     *
+     * @return the maximum number of open entry log files
+     */
+    public int getEntryLogReadChannelCacheSize() {
+        return getInt(ENTRY_LOG_READ_CHANNEL_CACHE_SIZE, 4096);
+    }
+
+    /**
+     * Set the maximum number of entry log files kept open for reads.
+     *
+     * <p>The channels used to read the entry logs are shared by all the reading threads. Once this many entry logs
+     * are open, the least recently read ones are closed.
+     *
+     * @param cacheSize
+     *          maximum number of open entry log files
+     * @return server configuration
+     */
+    public ServerConfiguration setEntryLogReadChannelCacheSize(int cacheSize) {
+        setProperty(ENTRY_LOG_READ_CHANNEL_CACHE_SIZE, cacheSize);
+        return this;
+    }
+
     /**
      * Set the number of threads that would handle write requests.
      *
@@ -1820,6 +1996,51 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Whether the journal writes and force-writes, and the entry log reads, should go through io_uring.
+     *
+     * <p>When io_uring is not available on the running kernel, the bookie falls back to regular file channels.
+     * Default is false.
+     *
+     * @return whether io_uring is enabled
+     */
+    public boolean isIoUringEnabled() {
+        return getBoolean(IO_URING_ENABLED, false);
+    }
+
+    /**
+     * Set whether the journal writes and force-writes, and the entry log reads, should go through io_uring.
+     *
+     * @param enabled
+     *          whether io_uring is enabled
+     * @return server configuration
+     */
+    public ServerConfiguration setIoUringEnabled(boolean enabled) {
+        setProperty(IO_URING_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the maximum number of operations in flight on each io_uring instance. Default is 128.
+     *
+     * @return io_uring queue depth
+     */
+    public int getIoUringQueueDepth() {
+        return getInt(IO_URING_QUEUE_DEPTH, 128);
+    }
+
+    /**
+     * Set the maximum number of operations in flight on each io_uring instance.
+     *
+     * @param queueDepth
+     *          io_uring queue depth
+     * @return server configuration
+     */
+    public ServerConfiguration setIoUringQueueDepth(int queueDepth) {
+        setProperty(IO_URING_QUEUE_DEPTH, queueDepth);
+        return this;
+    }
+
     /**
      * Set the number of threads that would handle journal callbacks.
      *
@@ -2062,6 +2283,31 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return getBoolean(JOURNAL_FLUSH_WHEN_QUEUE_EMPTY, false);
     }
 
+    /**
+     * Get the add latency targeted by the adaptive journal group commit.
+     *
+     * <p>When set, the journal tunes how long it waits to group writes, based on the observed fsync latency and
+     * arrival rate of the entries, instead of using {@link #getJournalMaxGroupWaitMSec()} and
+     * {@link #getJournalFlushWhenQueueEmpty()}.
+     *
+     * @return the targeted add latency in milliseconds, 0 to disable the adaptive group commit
+     */
+    public long getJournalGroupCommitTargetLatencyMSec() {
+        return getLong(JOURNAL_GROUP_COMMIT_TARGET_LATENCY_MSEC, 0);
+    }
+
+    /**
+     * Set the add latency targeted by the adaptive journal group commit.
+     *
+     * @param targetLatencyMSec
+     *          targeted add latency in milliseconds, 0 to disable the adaptive group commit
+     * @return server configuration.
+     */
+    public ServerConfiguration setJournalGroupCommitTargetLatencyMSec(long targetLatencyMSec) {
+        setProperty(JOURNAL_GROUP_COMMIT_TARGET_LATENCY_MSEC, targetLatencyMSec);
+        return this;
+    }
+
     /**
      * Set whether the bookie is able to go into read-only mode.
      * If this is set to false, the bookie will shutdown on encountering
@@ -2533,6 +2779,80 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Get the latency of the reads from the entry logs above which compaction slows down. Default is 0, which
+     * disables the adjustment of the compaction rate to the read latency.
+     *
+     * @return read latency threshold in milliseconds
+     */
+    public long getCompactionReadLatencyThresholdMs() {
+        return getLong(COMPACTION_READ_LATENCY_THRESHOLD_MS, 0);
+    }
+
+    /**
+     * Set the latency of the reads from the entry logs above which compaction slows down.
+     *
+     * <p>While the average latency of the reads of the clients is above this threshold, the compaction rate is
+     * halved periodically, down to 1/16 of the configured rate, and it goes back to the configured rate once the
+     * latency is below the threshold.
+     *
+     * @param thresholdMs read latency threshold in milliseconds, 0 to disable
+     * @return ServerConfiguration
+     */
+    public ServerConfiguration setCompactionReadLatencyThresholdMs(long thresholdMs) {
+        setProperty(COMPACTION_READ_LATENCY_THRESHOLD_MS, thresholdMs);
+        return this;
+    }
+
+    /**
+     * Get the maximum number of live bytes rewritten by a compaction run. Default is 0, for no limit.
+     *
+     * @return maximum number of bytes rewritten by a compaction run
+     */
+    public long getCompactionMaxBytesPerRun() {
+        return getLong(COMPACTION_MAX_BYTES_PER_RUN, 0);
+    }
+
+    /**
+     * Set the maximum number of live bytes rewritten by a compaction run.
+     *
+     * <p>Each run compacts the entry logs that reclaim the most space per byte read and rewritten first, until this
+     * limit is reached. The limit does not apply to forced compactions, run when the disks are full.
+     *
+     * @param maxBytes maximum number of bytes rewritten by a compaction run, 0 for no limit
+     * @return ServerConfiguration
+     */
+    public ServerConfiguration setCompactionMaxBytesPerRun(long maxBytes) {
+        setProperty(COMPACTION_MAX_BYTES_PER_RUN, maxBytes);
+        return this;
+    }
+
+    /**
+     * Get whether the entry logs of the different ledger directories are compacted in parallel. Default is false.
+     *
+     * @return whether the ledger directories are compacted in parallel
+     */
+    public boolean isPerDirectoryCompactionEnabled() {
+        return getBoolean(PER_DIRECTORY_COMPACTION_ENABLED, false);
+    }
+
+    /**
+     * Set whether the entry logs of the different ledger directories are compacted in parallel.
+     *
+     * <p>When enabled, the garbage collector of an entry logger that spans several ledger directories compacts the
+     * entry logs of each directory with a thread of its own. The live entries of all the directories are rewritten to
+     * the current entry log, so the directories share the configured compaction rate. It does not apply to
+     * transactional compaction. The db ledger storage runs a garbage collector thread per ledger directory, each
+     * with its own entry logs and the full compaction rate, whatever this setting.
+     *
+     * @param enabled whether to compact the ledger directories in parallel
+     * @return ServerConfiguration
+     */
+    public ServerConfiguration setPerDirectoryCompactionEnabled(boolean enabled) {
+        setProperty(PER_DIRECTORY_COMPACTION_ENABLED, enabled);
+        return this;
+    }
+
     /**
      * Should we remove pages from page cache after force write.
      *
@@ -2741,6 +3061,10 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
             throw new ConfigurationException(
                     "When entryLogPerLedger is enabled , it is unnecessary to use transactional compaction");
         }
+        if (getEntryLogColdTierDirNames() != null
+                && getEntryLogColdTierDirNames().length != getLedgerDirNames().length) {
+            throw new ConfigurationException("There must be one entry log cold tier directory per ledger directory");
+        }
         if ((getJournalFormatVersionToWrite() >= 6) ^ (getFileInfoFormatVersionToWrite() >= 1)) {
             throw new ConfigurationException("For persisiting explicitLac, journalFormatVersionToWrite should be >= 6"
                     + "and FileInfoFormatVersionToWrite should be >= 1");
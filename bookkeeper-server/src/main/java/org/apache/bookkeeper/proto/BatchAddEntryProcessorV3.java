@@ -0,0 +1,218 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.bookkeeper.bookie.BookieException;
+import org.apache.bookkeeper.bookie.BookieException.OperationRejectedException;
+import org.apache.bookkeeper.client.api.WriteFlag;
+import org.apache.bookkeeper.net.BookieSocketAddress;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BatchAddRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BatchAddResponse;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Request;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Response;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.StatusCode;
+import org.apache.bookkeeper.stats.OpStatsLogger;
+import org.apache.bookkeeper.util.MathUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A processor class for v3 batch add packets.
+ *
+ * <p>The entries of the batch are handed to the bookie back to back from the same write thread, so they are
+ * appended to the journal together and acknowledged by the same journal flush. A single response carrying the
+ * status of each entry is sent once all of them have completed.
+ */
+class BatchAddEntryProcessorV3 extends PacketProcessorBaseV3 {
+    private static final Logger logger = LoggerFactory.getLogger(BatchAddEntryProcessorV3.class);
+
+    protected final BatchAddRequest batchAddRequest;
+    protected final long ledgerId;
+
+    public BatchAddEntryProcessorV3(Request request, Channel channel,
+                                    BookieRequestProcessor requestProcessor) {
+        super(request, channel, requestProcessor);
+        requestProcessor.onAddRequestStart(channel);
+
+        this.batchAddRequest = request.getBatchAddRequest();
+        this.ledgerId = batchAddRequest.getLedgerId();
+    }
+
+    private StatusCode addEntries() {
+        final long startTimeNanos = MathUtils.nowInNano();
+        final int numEntries = batchAddRequest.getEntryIdCount();
+        final StatusCode[] statuses = new StatusCode[numEntries];
+        final AtomicInteger pending = new AtomicInteger(numEntries);
+
+        if (numEntries == 0 || batchAddRequest.getBodyCount() != numEntries) {
+            logger.warn("Invalid batch add request: {}", this);
+            return StatusCode.EBADREQ;
+        }
+
+        if (requestProcessor.getBookie().isReadOnly()) {
+            logger.warn("BookieServer is running as readonly mode, so rejecting the request from the client!");
+            return StatusCode.EREADONLY;
+        }
+
+        final EnumSet<WriteFlag> writeFlags;
+        if (batchAddRequest.hasWriteFlags()) {
+            writeFlags = WriteFlag.getWriteFlags(batchAddRequest.getWriteFlags());
+        } else {
+            writeFlags = WriteFlag.NONE;
+        }
+        final boolean ackBeforeSync = writeFlags.contains(WriteFlag.DEFERRED_SYNC);
+        final byte[] masterKey = batchAddRequest.getMasterKey().toByteArray();
+
+        for (int i = 0; i < numEntries; i++) {
+            final int index = i;
+            final long entryId = batchAddRequest.getEntryId(i);
+            BookkeeperInternalCallbacks.WriteCallback wcb = new BookkeeperInternalCallbacks.WriteCallback() {
+                @Override
+                public void writeComplete(int rc, long ledgerId, long entryId,
+                                          BookieSocketAddress addr, Object ctx) {
+                    switch (rc) {
+                        case BookieProtocol.EOK:
+                            statuses[index] = StatusCode.EOK;
+                            break;
+                        case BookieProtocol.EIO:
+                            statuses[index] = StatusCode.EIO;
+                            break;
+                        default:
+                            statuses[index] = StatusCode.EUA;
+                            break;
+                    }
+                    if (pending.decrementAndGet() == 0) {
+                        sendResponse(startTimeNanos, statuses);
+                    }
+                }
+            };
+
+            StatusCode status;
+            ByteBuf entryToAdd = Unpooled.wrappedBuffer(batchAddRequest.getBody(i).asReadOnlyByteBuffer());
+            try {
+                requestProcessor.getBookie().addEntry(entryToAdd, ackBeforeSync, wcb, channel, masterKey);
+                status = StatusCode.EOK;
+            } catch (OperationRejectedException e) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Operation rejected while writing entry:{} to ledger:{}", entryId, ledgerId, e);
+                }
+                status = StatusCode.EIO;
+            } catch (IOException e) {
+                logger.error("Error writing entry:{} to ledger:{}", entryId, ledgerId, e);
+                status = StatusCode.EIO;
+            } catch (BookieException.LedgerFencedException e) {
+                logger.error("Ledger fenced while writing entry:{} to ledger:{}", entryId, ledgerId, e);
+                status = StatusCode.EFENCED;
+            } catch (BookieException e) {
+                logger.error("Unauthorized access to ledger:{} while writing entry:{}", ledgerId, entryId, e);
+                status = StatusCode.EUA;
+            } catch (Throwable t) {
+                logger.error("Unexpected exception while writing {}@{} : ", entryId, ledgerId, t);
+                status = StatusCode.EBADREQ;
+            }
+
+            // The write callback will not be invoked for an entry that was not accepted
+            if (status != StatusCode.EOK) {
+                statuses[index] = status;
+                if (pending.decrementAndGet() == 0) {
+                    sendResponse(startTimeNanos, statuses);
+                }
+            }
+        }
+        return StatusCode.EOK;
+    }
+
+    private void sendResponse(long startTimeNanos, StatusCode[] statuses) {
+        BatchAddResponse.Builder batchAddResponse = BatchAddResponse.newBuilder()
+                .setLedgerId(ledgerId)
+                .addAllEntryId(batchAddRequest.getEntryIdList());
+        StatusCode status = StatusCode.EOK;
+        for (StatusCode entryStatus : statuses) {
+            batchAddResponse.addEntryStatus(entryStatus);
+            if (status == StatusCode.EOK) {
+                status = entryStatus;
+            }
+        }
+
+        if (status == StatusCode.EOK) {
+            requestProcessor.getRequestStats().getBatchAddEntryStats()
+                    .registerSuccessfulEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+        } else {
+            requestProcessor.getRequestStats().getBatchAddEntryStats()
+                    .registerFailedEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+        }
+        batchAddResponse.setStatus(status);
+        sendResponse(batchAddResponse.build());
+    }
+
+    @Override
+    public void safeRun() {
+        StatusCode status;
+        if (!isVersionCompatible()) {
+            status = StatusCode.EBADVERSION;
+        } else {
+            status = addEntries();
+        }
+
+        if (status != StatusCode.EOK) {
+            // The whole batch was rejected before any of its entries was added
+            sendResponse(BatchAddResponse.newBuilder()
+                    .setLedgerId(ledgerId)
+                    .setStatus(status)
+                    .build());
+        }
+    }
+
+    protected void sendResponse(BatchAddResponse batchAddResponse) {
+        Response.Builder response = Response.newBuilder()
+                .setHeader(getHeader())
+                .setStatus(batchAddResponse.getStatus())
+                .setBatchAddResponse(batchAddResponse);
+        sendResponse(response.getStatus(),
+                     response.build(),
+                     requestProcessor.getRequestStats().getBatchAddRequestStats());
+    }
+
+    @Override
+    protected void sendResponse(StatusCode code, Object response, OpStatsLogger statsLogger) {
+        super.sendResponse(code, response, statsLogger);
+        requestProcessor.onAddRequestFinish();
+    }
+
+    /**
+     * this toString method filters out body and masterKey from the output.
+     * masterKey contains the password of the ledger and body is customer data,
+     * so it is not appropriate to have these in logs or system output.
+     */
+    @Override
+    public String toString() {
+        return RequestUtils.toSafeString(request);
+    }
+}
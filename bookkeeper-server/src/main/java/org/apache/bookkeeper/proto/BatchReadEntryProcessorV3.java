@@ -0,0 +1,184 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import com.google.protobuf.UnsafeByteOperations;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.util.ReferenceCountUtil;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.bookkeeper.bookie.Bookie;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BatchReadRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BatchReadResponse;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Request;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Response;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.StatusCode;
+import org.apache.bookkeeper.util.MathUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A processor class for v3 batch read packets.
+ *
+ * <p>Reads the contiguous entries of a ledger starting at the requested entry, until the requested count or size is
+ * reached or until the first entry that is not stored on this bookie, and returns them in a single response.
+ *
+ * <p>The entries are not copied into the response: its bodies wrap the buffers read from the storage, which are
+ * released once the response has been written to the channel.
+ */
+class BatchReadEntryProcessorV3 extends PacketProcessorBaseV3 {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BatchReadEntryProcessorV3.class);
+
+    // Room left in the response frame for the protobuf framing of the response and of each entry
+    private static final int FRAME_OVERHEAD = 1024;
+    private static final int ENTRY_OVERHEAD = 16;
+    // Upper bound of the entries read by a single request
+    private static final int MAX_ENTRIES = 10000;
+
+    protected final BatchReadRequest batchReadRequest;
+    protected final long ledgerId;
+    protected final long startEntryId;
+
+    // Entries referenced by the response, until it is written
+    private final List<ByteBuf> responseEntries = new ArrayList<>();
+
+    public BatchReadEntryProcessorV3(Request request,
+                                     Channel channel,
+                                     BookieRequestProcessor requestProcessor) {
+        super(request, channel, requestProcessor);
+        requestProcessor.onReadRequestStart(channel);
+
+        this.batchReadRequest = request.getBatchReadRequest();
+        this.ledgerId = batchReadRequest.getLedgerId();
+        this.startEntryId = batchReadRequest.getStartEntryId();
+    }
+
+    private long getMaxSize() {
+        // The response must fit in a single frame on both sides of the connection
+        long maxSize = requestProcessor.getServerCfg().getNettyMaxFrameSizeBytes();
+        if (batchReadRequest.hasMaxSize() && batchReadRequest.getMaxSize() > 0) {
+            maxSize = Math.min(maxSize, batchReadRequest.getMaxSize());
+        }
+        return maxSize - FRAME_OVERHEAD;
+    }
+
+    private BatchReadResponse getBatchReadResponse() {
+        long startTimeNanos = MathUtils.nowInNano();
+
+        BatchReadResponse.Builder batchReadResponse = BatchReadResponse.newBuilder()
+                .setLedgerId(ledgerId)
+                .setStartEntryId(startEntryId);
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Received new batch read request: {}", request);
+        }
+
+        StatusCode status = StatusCode.EOK;
+        int maxCount = Math.min(batchReadRequest.getMaxCount(), MAX_ENTRIES);
+        long maxSize = getMaxSize();
+        if (startEntryId < 0 || maxCount <= 0) {
+            status = StatusCode.EBADREQ;
+            LOG.warn("Invalid batch read request: {}", batchReadRequest);
+        } else {
+            try {
+                // The storage reads the whole range at once, but the last entry may overflow the size limit
+                List<ByteBuf> entries = requestProcessor.getBookie().readEntries(ledgerId, startEntryId, maxCount,
+                        maxSize);
+                long size = 0;
+                for (ByteBuf entryBody : entries) {
+                    size += entryBody.readableBytes() + ENTRY_OVERHEAD;
+                    if (size > maxSize && !responseEntries.isEmpty()) {
+                        // Release the entries that do not fit in the response
+                        ReferenceCountUtil.release(entryBody);
+                        continue;
+                    }
+                    responseEntries.add(entryBody);
+                    batchReadResponse.addBody(UnsafeByteOperations.unsafeWrap(entryBody.nioBuffer()));
+                }
+
+                batchReadResponse.setMaxLAC(requestProcessor.getBookie().readLastAddConfirmed(ledgerId));
+            } catch (Bookie.NoLedgerException e) {
+                status = StatusCode.ENOLEDGER;
+                LOG.info("No ledger found while reading entries from {} of ledger {}", startEntryId, ledgerId);
+            } catch (Bookie.NoEntryException e) {
+                status = StatusCode.ENOENTRY;
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("No entry found while reading entries from {} of ledger {}", startEntryId, ledgerId);
+                }
+            } catch (IOException e) {
+                status = StatusCode.EIO;
+                LOG.error("IOException while reading entries from {} of ledger {}", startEntryId, ledgerId, e);
+            }
+        }
+
+        if (status == StatusCode.EOK) {
+            requestProcessor.getRequestStats().getBatchReadEntryStats()
+                    .registerSuccessfulEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+        } else {
+            // Do not return a partial batch along with an error
+            batchReadResponse.clearBody();
+            releaseResponseEntries();
+            requestProcessor.getRequestStats().getBatchReadEntryStats()
+                    .registerFailedEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+        }
+        batchReadResponse.setStatus(status);
+        return batchReadResponse.build();
+    }
+
+    @Override
+    public void safeRun() {
+        requestProcessor.getRequestStats().getReadEntrySchedulingDelayStats().registerSuccessfulEvent(
+            MathUtils.elapsedNanos(enqueueNanos), TimeUnit.NANOSECONDS);
+
+        if (!isVersionCompatible()) {
+            sendResponse(BatchReadResponse.newBuilder()
+                    .setLedgerId(ledgerId)
+                    .setStartEntryId(startEntryId)
+                    .setStatus(StatusCode.EBADVERSION)
+                    .build());
+            return;
+        }
+
+        sendResponse(getBatchReadResponse());
+    }
+
+    protected void sendResponse(BatchReadResponse batchReadResponse) {
+        Response.Builder response = Response.newBuilder()
+                .setHeader(getHeader())
+                .setStatus(batchReadResponse.getStatus())
+                .setBatchReadResponse(batchReadResponse);
+        sendResponse(response.getStatus(),
+                     response.build(),
+                     requestProcessor.getRequestStats().getBatchReadRequestStats(),
+                     this::releaseResponseEntries);
+        requestProcessor.onReadRequestFinish();
+    }
+
+    private void releaseResponseEntries() {
+        responseEntries.forEach(ReferenceCountUtil::release);
+        responseEntries.clear();
+    }
+}
@@ -31,11 +31,13 @@ import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.util.HashedWheelTimer;
 import io.netty.util.Recycler;
 import io.netty.util.Recycler.Handle;
 import io.netty.util.concurrent.DefaultThreadFactory;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
@@ -56,6 +58,7 @@ import org.apache.bookkeeper.common.util.OrderedExecutor;
 import org.apache.bookkeeper.common.util.SafeRunnable;
 import org.apache.bookkeeper.conf.ClientConfiguration;
 import org.apache.bookkeeper.net.BookieSocketAddress;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.BatchReadEntriesCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ForceLedgerCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.FutureGetListOfEntriesOfLedger;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GenericCallback;
@@ -83,6 +86,8 @@ public class BookieClientImpl implements BookieClient, PerChannelBookieClientFac
     private final OrderedExecutor executor;
     private final ScheduledExecutorService scheduler;
     private final ScheduledFuture<?> timeoutFuture;
+    // Times out the requests of all the channels, null if they are timed out by the timeout monitor
+    private final HashedWheelTimer timeoutTimer;
 
     private final EventLoopGroup eventLoopGroup;
     private final ByteBufAllocator allocator;
@@ -124,7 +129,14 @@ public class BookieClientImpl implements BookieClient, PerChannelBookieClientFac
         this.bookieErrorThresholdPerInterval = conf.getBookieErrorThresholdPerInterval();
 
         this.scheduler = scheduler;
-        if (conf.getAddEntryTimeout() > 0 || conf.getReadEntryTimeout() > 0) {
+        if ((conf.getAddEntryTimeout() > 0 || conf.getReadEntryTimeout() > 0) && conf.isPCBCTimeoutTimerEnabled()) {
+            this.timeoutTimer = new HashedWheelTimer(
+                    new DefaultThreadFactory("BookieClientTimeoutTimer"),
+                    conf.getPCBCTimeoutTimerTickDurationMs(), TimeUnit.MILLISECONDS,
+                    conf.getPCBCTimeoutTimerNumTicks());
+            this.timeoutFuture = null;
+        } else if (conf.getAddEntryTimeout() > 0 || conf.getReadEntryTimeout() > 0) {
+            this.timeoutTimer = null;
             SafeRunnable monitor = safeRun(() -> {
                 monitorPendingOperations();
             });
@@ -133,6 +145,7 @@ public class BookieClientImpl implements BookieClient, PerChannelBookieClientFac
                                                                     conf.getTimeoutMonitorIntervalSec(),
                                                                     TimeUnit.SECONDS);
         } else {
+            this.timeoutTimer = null;
             this.timeoutFuture = null;
         }
     }
@@ -194,7 +207,8 @@ public class BookieClientImpl implements BookieClient, PerChannelBookieClientFac
             clientConfiguration = v3Conf;
         }
         return new PerChannelBookieClient(clientConfiguration, executor, eventLoopGroup, allocator, address,
-                                   statsLoggerForPCBC, authProviderFactory, registry, pcbcPool, shFactory);
+                                   statsLoggerForPCBC, authProviderFactory, registry, pcbcPool, shFactory,
+                                   timeoutTimer);
     }
 
     public PerChannelBookieClientPool lookupClient(BookieSocketAddress addr) {
@@ -512,6 +526,32 @@ public class BookieClientImpl implements BookieClient, PerChannelBookieClientFac
         }, ledgerId);
     }
 
+    @Override
+    public void batchReadEntries(final BookieSocketAddress addr, final long ledgerId, final long startEntryId,
+                                 final int maxCount, final long maxSize, final BatchReadEntriesCallback cb,
+                                 final Object ctx, final int flags) {
+        final PerChannelBookieClientPool client = lookupClient(addr);
+        if (client == null) {
+            cb.readEntriesComplete(getRc(BKException.Code.BookieHandleNotAvailableException),
+                                   ledgerId, startEntryId, Collections.emptyList(), ctx);
+            return;
+        }
+
+        client.obtain((rc, pcbc) -> {
+            if (rc != BKException.Code.OK) {
+                try {
+                    executor.executeOrdered(ledgerId, safeRun(() -> {
+                        cb.readEntriesComplete(rc, ledgerId, startEntryId, Collections.emptyList(), ctx);
+                    }));
+                } catch (RejectedExecutionException re) {
+                    cb.readEntriesComplete(getRc(BKException.Code.InterruptedException),
+                                           ledgerId, startEntryId, Collections.emptyList(), ctx);
+                }
+            } else {
+                pcbc.batchReadEntries(ledgerId, startEntryId, maxCount, maxSize, cb, ctx, flags);
+            }
+        }, ledgerId);
+    }
 
     @Override
     public void readEntryWaitForLACUpdate(final BookieSocketAddress addr,
@@ -589,6 +629,10 @@ public class BookieClientImpl implements BookieClient, PerChannelBookieClientFac
             if (timeoutFuture != null) {
                 timeoutFuture.cancel(false);
             }
+            if (timeoutTimer != null) {
+                // The outstanding requests were errored out when closing the channels
+                timeoutTimer.stop();
+            }
         } finally {
             closeLock.writeLock().unlock();
         }
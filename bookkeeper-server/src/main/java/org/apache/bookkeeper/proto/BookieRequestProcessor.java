@@ -342,6 +342,12 @@ public class BookieRequestProcessor implements RequestProcessor {
                     case GET_LIST_OF_ENTRIES_OF_LEDGER:
                         processGetListOfEntriesOfLedgerProcessorV3(r, c);
                         break;
+                    case RANGE_READ_ENTRY:
+                        processBatchReadRequestV3(r, c);
+                        break;
+                    case RANGE_ADD_ENTRY:
+                        processBatchAddRequestV3(r, c);
+                        break;
                     default:
                         LOG.info("Unknown operation type {}", header.getOperation());
                         BookkeeperProtocol.Response.Builder response =
@@ -451,6 +457,26 @@ public class BookieRequestProcessor implements RequestProcessor {
         }
     }
 
+    private void processBatchAddRequestV3(final BookkeeperProtocol.Request r, final Channel c) {
+        BatchAddEntryProcessorV3 write = new BatchAddEntryProcessorV3(r, c, this);
+        if (null == writeThreadPool) {
+            write.run();
+        } else {
+            try {
+                writeThreadPool.executeOrdered(r.getBatchAddRequest().getLedgerId(), write);
+            } catch (RejectedExecutionException e) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Failed to process request to add entries {} to ledger {}. Too many pending requests",
+                              r.getBatchAddRequest().getEntryIdList(), r.getBatchAddRequest().getLedgerId());
+                }
+                write.sendResponse(BookkeeperProtocol.BatchAddResponse.newBuilder()
+                    .setLedgerId(r.getBatchAddRequest().getLedgerId())
+                    .setStatus(BookkeeperProtocol.StatusCode.ETOOMANYREQUESTS)
+                    .build());
+            }
+        }
+    }
+
     private void processForceLedgerRequestV3(final BookkeeperProtocol.Request r, final Channel c) {
         ForceLedgerProcessorV3 forceLedger = new ForceLedgerProcessorV3(r, c, this);
 
@@ -538,6 +564,27 @@ public class BookieRequestProcessor implements RequestProcessor {
         }
     }
 
+    private void processBatchReadRequestV3(final BookkeeperProtocol.Request r, final Channel c) {
+        BatchReadEntryProcessorV3 read = new BatchReadEntryProcessorV3(r, c, this);
+        if (null == readThreadPool) {
+            read.run();
+        } else {
+            try {
+                readThreadPool.executeOrdered(r.getBatchReadRequest().getLedgerId(), read);
+            } catch (RejectedExecutionException e) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Failed to process request to read entries from {}:{}. Too many pending requests",
+                              r.getBatchReadRequest().getLedgerId(), r.getBatchReadRequest().getStartEntryId());
+                }
+                read.sendResponse(BookkeeperProtocol.BatchReadResponse.newBuilder()
+                    .setLedgerId(r.getBatchReadRequest().getLedgerId())
+                    .setStartEntryId(r.getBatchReadRequest().getStartEntryId())
+                    .setStatus(BookkeeperProtocol.StatusCode.ETOOMANYREQUESTS)
+                    .build());
+            }
+        }
+    }
+
     private void processStartTLSRequestV3(final BookkeeperProtocol.Request r, final Channel c) {
         BookkeeperProtocol.Response.Builder response = BookkeeperProtocol.Response.newBuilder();
         BookkeeperProtocol.BKPacketHeader.Builder header = BookkeeperProtocol.BKPacketHeader.newBuilder();
@@ -23,6 +23,7 @@ package org.apache.bookkeeper.proto;
 
 import io.netty.buffer.ByteBuf;
 
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -108,6 +109,18 @@ public class BookkeeperInternalCallbacks {
         void startTLSComplete(int rc, Object ctx);
     }
 
+    /**
+     * Declaration of a callback implementation for calls from BookieClient objects.
+     * Such calls are for replies of batch read operations (operations to read
+     * multiple contiguous entries from a ledger).
+     */
+    public interface BatchReadEntriesCallback {
+        /**
+         * @param entries the entries read, starting at startEntryId. It might contain less entries than requested.
+         */
+        void readEntriesComplete(int rc, long ledgerId, long startEntryId, List<ByteBuf> entries, Object ctx);
+    }
+
     /**
      * A callback interface for GetListOfEntriesOfLedger command.
      */
@@ -53,6 +53,15 @@ public abstract class PacketProcessorBaseV3 extends SafeRunnable {
     }
 
     protected void sendResponse(StatusCode code, Object response, OpStatsLogger statsLogger) {
+        sendResponse(code, response, statsLogger, null);
+    }
+
+    /**
+     * Send a response that references buffers which must stay valid until it is serialized.
+     *
+     * @param onComplete run once the response was written to the channel or dropped, may be null
+     */
+    protected void sendResponse(StatusCode code, Object response, OpStatsLogger statsLogger, Runnable onComplete) {
         final long writeNanos = MathUtils.nowInNano();
 
         final long timeOut = requestProcessor.getWaitTimeoutOnBackpressureMillis();
@@ -82,6 +91,9 @@ public abstract class PacketProcessorBaseV3 extends SafeRunnable {
                 requestProcessor.getRequestStats().getChannelWriteStats()
                         .registerFailedEvent(MathUtils.elapsedNanos(writeNanos), TimeUnit.NANOSECONDS);
                 statsLogger.registerFailedEvent(MathUtils.elapsedNanos(enqueueNanos), TimeUnit.NANOSECONDS);
+                if (onComplete != null) {
+                    onComplete.run();
+                }
                 return;
             } else {
                 requestProcessor.invalidateBlacklist(channel);
@@ -91,6 +103,9 @@ public abstract class PacketProcessorBaseV3 extends SafeRunnable {
         channel.writeAndFlush(response).addListener(new ChannelFutureListener() {
             @Override
             public void operationComplete(ChannelFuture future) throws Exception {
+                if (onComplete != null) {
+                    onComplete.run();
+                }
                 long writeElapsedNanos = MathUtils.elapsedNanos(writeNanos);
                 if (!future.isSuccess()) {
                     requestProcessor.getRequestStats().getChannelWriteStats()
@@ -55,8 +55,10 @@ import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 import io.netty.handler.codec.LengthFieldPrepender;
 import io.netty.handler.codec.TooLongFrameException;
 import io.netty.handler.ssl.SslHandler;
+import io.netty.util.HashedWheelTimer;
 import io.netty.util.Recycler;
 import io.netty.util.Recycler.Handle;
+import io.netty.util.Timeout;
 import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.GenericFutureListener;
 
@@ -70,11 +72,13 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -93,6 +97,7 @@ import org.apache.bookkeeper.common.util.MdcUtils;
 import org.apache.bookkeeper.common.util.OrderedExecutor;
 import org.apache.bookkeeper.conf.ClientConfiguration;
 import org.apache.bookkeeper.net.BookieSocketAddress;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.BatchReadEntriesCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ForceLedgerCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GenericCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GetBookieInfoCallback;
@@ -106,6 +111,10 @@ import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteLacCallback;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.AddRequest;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.AddResponse;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.BKPacketHeader;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BatchAddRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BatchAddResponse;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BatchReadRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BatchReadResponse;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.ForceLedgerRequest;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.ForceLedgerResponse;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.GetBookieInfoRequest;
@@ -185,6 +194,9 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     private final SynchronizedHashMultiMap<CompletionKey, CompletionValue> completionObjectsV2Conflicts =
         new SynchronizedHashMultiMap<>();
 
+    // Times out the outstanding requests, null if they are timed out by checkTimeoutOnPendingOperations
+    private final HashedWheelTimer timeoutTimer;
+
     private final StatsLogger statsLogger;
     @StatsDoc(
         name = BookKeeperClientStats.CHANNEL_READ_OP,
@@ -196,6 +208,16 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         help = "timeout stats of read entries requests"
     )
     private final OpStatsLogger readTimeoutOpLogger;
+    @StatsDoc(
+        name = BookKeeperClientStats.CHANNEL_BATCH_READ_OP,
+        help = "channel stats of batch read entries requests"
+    )
+    private final OpStatsLogger batchReadEntriesOpLogger;
+    @StatsDoc(
+        name = BookKeeperClientStats.CHANNEL_TIMEOUT_BATCH_READ,
+        help = "timeout stats of batch read entries requests"
+    )
+    private final OpStatsLogger batchReadTimeoutOpLogger;
     @StatsDoc(
         name = BookKeeperClientStats.CHANNEL_ADD_OP,
         help = "channel stats of add entries requests"
@@ -221,6 +243,16 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         help = "timeout stats of add entries requests"
     )
     private final OpStatsLogger addTimeoutOpLogger;
+    @StatsDoc(
+        name = BookKeeperClientStats.CHANNEL_BATCH_ADD_OP,
+        help = "channel stats of batch add entries requests"
+    )
+    private final OpStatsLogger batchAddEntryOpLogger;
+    @StatsDoc(
+        name = BookKeeperClientStats.CHANNEL_TIMEOUT_BATCH_ADD,
+        help = "timeout stats of batch add entries requests"
+    )
+    private final OpStatsLogger batchAddTimeoutOpLogger;
     @StatsDoc(
         name = BookKeeperClientStats.CHANNEL_TIMEOUT_WRITE_LAC,
         help = "timeout stats of write_lac requests"
@@ -284,6 +316,11 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         help = "channel stats for all operations flowing through netty pipeline"
     )
     private final OpStatsLogger nettyOpLogger;
+    @StatsDoc(
+        name = BookKeeperClientStats.CHANNEL_TIMEOUT_SCHEDULE,
+        help = "time spent registering requests in the timeout timer"
+    )
+    private final OpStatsLogger timeoutScheduleOpLogger;
     @StatsDoc(
         name = BookKeeperClientStats.ACTIVE_NON_TLS_CHANNEL_COUNTER,
         help = "the number of active non-tls channels"
@@ -308,6 +345,15 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     private final boolean useV2WireProtocol;
     private final boolean preserveMdcForTaskExecution;
 
+    // Turned off if the bookie does not support batch adds
+    private volatile boolean batchAddEnabled;
+    private final int batchAddMaxCount;
+    private final int batchAddMaxSize;
+    private final long batchAddMaxDelayMicros;
+    // Adds waiting to be sent in a batch, by ledger. Guarded by itself, a batch removed from it is no longer
+    // modified and is sent without holding the lock.
+    private final Map<Long, PendingAddBatch> pendingAddBatches = new HashMap<>();
+
     /**
      * The following member variables do not need to be concurrent, or volatile
      * because they are always updated under a lock.
@@ -363,6 +409,19 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                                   ExtensionRegistry extRegistry,
                                   PerChannelBookieClientPool pcbcPool,
                                   SecurityHandlerFactory shFactory) throws SecurityException {
+        this(conf, executor, eventLoopGroup, allocator, addr, parentStatsLogger, authProviderFactory, extRegistry,
+                pcbcPool, shFactory, null);
+    }
+
+    public PerChannelBookieClient(ClientConfiguration conf, OrderedExecutor executor,
+                                  EventLoopGroup eventLoopGroup,
+                                  ByteBufAllocator allocator,
+                                  BookieSocketAddress addr,
+                                  StatsLogger parentStatsLogger, ClientAuthProvider.Factory authProviderFactory,
+                                  ExtensionRegistry extRegistry,
+                                  PerChannelBookieClientPool pcbcPool,
+                                  SecurityHandlerFactory shFactory,
+                                  HashedWheelTimer timeoutTimer) throws SecurityException {
         this.maxFrameSize = conf.getNettyMaxFrameSizeBytes();
         this.conf = conf;
         this.addr = addr;
@@ -380,6 +439,11 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         this.startTLSTimeout = conf.getStartTLSTimeout();
         this.useV2WireProtocol = conf.getUseV2WireProtocol();
         this.preserveMdcForTaskExecution = conf.getPreserveMdcForTaskExecution();
+        this.timeoutTimer = timeoutTimer;
+        this.batchAddEnabled = conf.isBatchAddEnabled() && !useV2WireProtocol;
+        this.batchAddMaxCount = conf.getBatchAddMaxCount();
+        this.batchAddMaxSize = conf.getBatchAddMaxSize();
+        this.batchAddMaxDelayMicros = conf.getBatchAddMaxDelayMicros();
 
         this.authProviderFactory = authProviderFactory;
         this.extRegistry = extRegistry;
@@ -400,7 +464,11 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         getListOfEntriesOfLedgerCompletionOpLogger = statsLogger
                 .getOpStatsLogger(BookKeeperClientStats.GET_LIST_OF_ENTRIES_OF_LEDGER_OP);
         readTimeoutOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_TIMEOUT_READ);
+        batchReadEntriesOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_BATCH_READ_OP);
+        batchReadTimeoutOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_TIMEOUT_BATCH_READ);
         addTimeoutOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_TIMEOUT_ADD);
+        batchAddEntryOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_BATCH_ADD_OP);
+        batchAddTimeoutOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_TIMEOUT_BATCH_ADD);
         writeLacTimeoutOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_TIMEOUT_WRITE_LAC);
         forceLedgerTimeoutOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_TIMEOUT_FORCE);
         readLacTimeoutOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_TIMEOUT_READ_LAC);
@@ -414,6 +482,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         addEntryOutstanding = statsLogger.getCounter(BookKeeperClientStats.ADD_OP_OUTSTANDING);
         readEntryOutstanding = statsLogger.getCounter(BookKeeperClientStats.READ_OP_OUTSTANDING);
         nettyOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.NETTY_OPS);
+        timeoutScheduleOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_TIMEOUT_SCHEDULE);
         activeNonTlsChannelCounter = statsLogger.getCounter(BookKeeperClientStats.ACTIVE_NON_TLS_CHANNEL_COUNTER);
         activeTlsChannelCounter = statsLogger.getCounter(BookKeeperClientStats.ACTIVE_TLS_CHANNEL_COUNTER);
         failedConnectionCounter = statsLogger.getCounter(BookKeeperClientStats.FAILED_CONNECTION_COUNTER);
@@ -654,7 +723,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         final CompletionKey completionKey = new V3CompletionKey(txnId,
                                                                 OperationType.WRITE_LAC);
         // writeLac is mostly like addEntry hence uses addEntryTimeout
-        completionObjects.put(completionKey,
+        putCompletionKeyValue(completionKey,
                               new WriteLacCompletion(completionKey, cb,
                                                      ctx, lac));
 
@@ -696,7 +765,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         final CompletionKey completionKey = new V3CompletionKey(txnId,
                                                                 OperationType.FORCE_LEDGER);
         // force is mostly like addEntry hence uses addEntryTimeout
-        completionObjects.put(completionKey,
+        putCompletionKeyValue(completionKey,
                               new ForceLedgerCompletion(completionKey, cb,
                                                      ctx, ledgerId));
 
@@ -752,6 +821,10 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             request = BookieProtocol.AddRequest.create(
                     BookieProtocol.CURRENT_PROTOCOL_VERSION, ledgerId, entryId,
                     (short) options, masterKey, toSend);
+        } else if (batchAddEnabled && options == BookieProtocol.FLAG_NONE
+                   && toSend.readableBytes() < batchAddMaxSize) {
+            addEntryToBatch(ledgerId, masterKey, entryId, toSend, cb, ctx, allowFastFail, writeFlags);
+            return;
         } else {
             final long txnId = getTxnId();
             completionKey = new V3CompletionKey(txnId, OperationType.ADD_ENTRY);
@@ -765,21 +838,11 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                 headerBuilder.setPriority(DEFAULT_HIGH_PRIORITY_VALUE);
             }
 
-            ByteString body = null;
-            if (toSend.hasArray()) {
-                body = UnsafeByteOperations.unsafeWrap(toSend.array(), toSend.arrayOffset(), toSend.readableBytes());
-            } else {
-                for (int i = 0; i < toSend.size(); i++) {
-                    ByteString piece = UnsafeByteOperations.unsafeWrap(toSend.getBuffer(i).nioBuffer());
-                    // use ByteString.concat to avoid byte[] allocation when toSend has multiple ByteBufs
-                    body = (body == null) ? piece : body.concat(piece);
-                }
-            }
             AddRequest.Builder addBuilder = AddRequest.newBuilder()
                     .setLedgerId(ledgerId)
                     .setEntryId(entryId)
                     .setMasterKey(UnsafeByteOperations.unsafeWrap(masterKey))
-                    .setBody(body);
+                    .setBody(toByteString(toSend));
 
             if (((short) options & BookieProtocol.FLAG_RECOVERY_ADD) == BookieProtocol.FLAG_RECOVERY_ADD) {
                 addBuilder.setFlag(AddRequest.Flag.RECOVERY_ADD);
@@ -812,6 +875,116 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         }
     }
 
+    private static ByteString toByteString(ByteBufList toSend) {
+        ByteString body = null;
+        if (toSend.hasArray()) {
+            body = UnsafeByteOperations.unsafeWrap(toSend.array(), toSend.arrayOffset(), toSend.readableBytes());
+        } else {
+            for (int i = 0; i < toSend.size(); i++) {
+                ByteString piece = UnsafeByteOperations.unsafeWrap(toSend.getBuffer(i).nioBuffer());
+                // use ByteString.concat to avoid byte[] allocation when toSend has multiple ByteBufs
+                body = (body == null) ? piece : body.concat(piece);
+            }
+        }
+        return body;
+    }
+
+    /**
+     * Queue an add in the pending batch of its ledger. The batch is sent once it is full, when an add
+     * that cannot join it comes in, or after {@link ClientConfiguration#getBatchAddMaxDelayMicros()}.
+     */
+    private void addEntryToBatch(final long ledgerId, byte[] masterKey, final long entryId, ByteBufList toSend,
+                                 WriteCallback cb, Object ctx, boolean allowFastFail,
+                                 EnumSet<WriteFlag> writeFlags) {
+        // The batch holds on to the entry until it completes, as it may have to be sent again on its own
+        toSend.retain();
+        PendingAddBatch newBatch = null;
+        // The batches taken out of the map are built and written once the lock is released
+        PendingAddBatch previousBatch = null;
+        PendingAddBatch fullBatch = null;
+        synchronized (pendingAddBatches) {
+            PendingAddBatch batch = pendingAddBatches.get(ledgerId);
+            if (batch != null && (batch.allowFastFail != allowFastFail
+                                  || !batch.writeFlags.equals(writeFlags)
+                                  || batch.size + toSend.readableBytes() > batchAddMaxSize)) {
+                pendingAddBatches.remove(ledgerId);
+                previousBatch = batch;
+                batch = null;
+            }
+            if (batch == null) {
+                batch = new PendingAddBatch(ledgerId, masterKey, allowFastFail, writeFlags);
+                pendingAddBatches.put(ledgerId, batch);
+                newBatch = batch;
+            }
+            batch.add(entryId, toSend, cb, ctx);
+            if (batch.adds.size() >= batchAddMaxCount) {
+                pendingAddBatches.remove(ledgerId);
+                fullBatch = batch;
+                newBatch = null;
+            }
+        }
+        if (previousBatch != null) {
+            sendAddBatch(previousBatch);
+        }
+        if (fullBatch != null) {
+            sendAddBatch(fullBatch);
+        }
+
+        if (newBatch != null) {
+            final PendingAddBatch batch = newBatch;
+            final Channel c = channel;
+            try {
+                if (c == null) {
+                    flushAddBatch(batch);
+                } else {
+                    c.eventLoop().schedule(() -> flushAddBatch(batch), batchAddMaxDelayMicros, TimeUnit.MICROSECONDS);
+                }
+            } catch (RejectedExecutionException e) {
+                flushAddBatch(batch);
+            }
+        }
+    }
+
+    private void flushAddBatch(PendingAddBatch batch) {
+        boolean removed;
+        synchronized (pendingAddBatches) {
+            // the batch may already have been sent
+            removed = pendingAddBatches.remove(batch.ledgerId, batch);
+        }
+        if (removed) {
+            sendAddBatch(batch);
+        }
+    }
+
+    private void sendAddBatch(PendingAddBatch batch) {
+        final long txnId = getTxnId();
+        final CompletionKey completionKey = new V3CompletionKey(txnId, OperationType.RANGE_ADD_ENTRY);
+
+        BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
+                .setVersion(ProtocolVersion.VERSION_THREE)
+                .setOperation(OperationType.RANGE_ADD_ENTRY)
+                .setTxnId(txnId);
+
+        BatchAddRequest.Builder batchAddBuilder = BatchAddRequest.newBuilder()
+                .setLedgerId(batch.ledgerId)
+                .setMasterKey(UnsafeByteOperations.unsafeWrap(batch.masterKey));
+        for (PendingAdd add : batch.adds) {
+            batchAddBuilder.addEntryId(add.entryId);
+            batchAddBuilder.addBody(toByteString(add.toSend));
+        }
+        if (!batch.writeFlags.isEmpty()) {
+            batchAddBuilder.setWriteFlags(WriteFlag.getWriteFlagsValue(batch.writeFlags));
+        }
+
+        final Request request = withRequestContext(Request.newBuilder())
+                .setHeader(headerBuilder)
+                .setBatchAddRequest(batchAddBuilder)
+                .build();
+
+        putCompletionKeyValue(completionKey, new BatchAddCompletion(batch));
+        writeAndFlush(channel, completionKey, request, batch.allowFastFail);
+    }
+
     public void readLac(final long ledgerId, ReadLacCallback cb, Object ctx) {
         Object request = null;
         CompletionKey completionKey = null;
@@ -844,7 +1017,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     public void getListOfEntriesOfLedger(final long ledgerId, GetListOfEntriesOfLedgerCallback cb) {
         final long txnId = getTxnId();
         final CompletionKey completionKey = new V3CompletionKey(txnId, OperationType.GET_LIST_OF_ENTRIES_OF_LEDGER);
-        completionObjects.put(completionKey, new GetListOfEntriesOfLedgerCompletion(completionKey, cb, ledgerId));
+        putCompletionKeyValue(completionKey, new GetListOfEntriesOfLedgerCompletion(completionKey, cb, ledgerId));
 
         // Build the request.
         BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder().setVersion(ProtocolVersion.VERSION_THREE)
@@ -967,10 +1140,48 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         writeAndFlush(channel, completionKey, request, allowFastFail);
     }
 
+    /**
+     * Batch Reads.
+     */
+    public void batchReadEntries(final long ledgerId,
+                                 final long startEntryId,
+                                 final int maxCount,
+                                 final long maxSize,
+                                 BatchReadEntriesCallback cb,
+                                 Object ctx,
+                                 int flags) {
+        final long txnId = getTxnId();
+        final CompletionKey completionKey = new V3CompletionKey(txnId, OperationType.RANGE_READ_ENTRY);
+
+        // Build the request and calculate the total size to be included in the packet.
+        BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
+                .setVersion(ProtocolVersion.VERSION_THREE)
+                .setOperation(OperationType.RANGE_READ_ENTRY)
+                .setTxnId(txnId);
+        if (((short) flags & BookieProtocol.FLAG_HIGH_PRIORITY) == BookieProtocol.FLAG_HIGH_PRIORITY) {
+            headerBuilder.setPriority(DEFAULT_HIGH_PRIORITY_VALUE);
+        }
+
+        BatchReadRequest.Builder batchReadBuilder = BatchReadRequest.newBuilder()
+                .setLedgerId(ledgerId)
+                .setStartEntryId(startEntryId)
+                .setMaxCount(maxCount)
+                .setMaxSize(maxSize);
+
+        final Request request = withRequestContext(Request.newBuilder())
+                .setHeader(headerBuilder)
+                .setBatchReadRequest(batchReadBuilder)
+                .build();
+
+        putCompletionKeyValue(completionKey,
+                              new BatchReadCompletion(completionKey, cb, ctx, ledgerId, startEntryId));
+        writeAndFlush(channel, completionKey, request);
+    }
+
     public void getBookieInfo(final long requested, GetBookieInfoCallback cb, Object ctx) {
         final long txnId = getTxnId();
         final CompletionKey completionKey = new V3CompletionKey(txnId, OperationType.GET_BOOKIE_INFO);
-        completionObjects.put(completionKey,
+        putCompletionKeyValue(completionKey,
                               new GetBookieInfoCompletion(
                                       completionKey, cb, ctx));
 
@@ -996,6 +1207,11 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     };
 
     public void checkTimeoutOnPendingOperations() {
+        if (timeoutTimer != null) {
+            // The requests expire on their own
+            return;
+        }
+
         int timedOutOperations = completionObjects.removeIf(timeoutCheck);
 
         timedOutOperations += completionObjectsV2Conflicts.removeIf(timeoutCheck);
@@ -1139,12 +1355,9 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         if (LOG.isDebugEnabled()) {
             LOG.debug("Removing completion key: {}", key);
         }
-        CompletionValue completion = completionObjects.remove(key);
+        CompletionValue completion = getCompletionValue(key);
         if (completion != null) {
             completion.errorOut();
-        } else {
-            // If there's no completion object here, try in the multimap
-            completionObjectsV2Conflicts.removeAny(key).ifPresent(c -> c.errorOut());
         }
     }
 
@@ -1152,12 +1365,9 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         if (LOG.isDebugEnabled()) {
             LOG.debug("Removing completion key: {}", key);
         }
-        CompletionValue completion = completionObjects.remove(key);
+        CompletionValue completion = getCompletionValue(key);
         if (completion != null) {
             completion.errorOut(rc);
-        } else {
-            // If there's no completion object here, try in the multimap
-            completionObjectsV2Conflicts.removeAny(key).ifPresent(c -> c.errorOut(rc));
         }
     }
 
@@ -1438,6 +1648,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                         + header.getOperation() + " and txnId : " + header.getTxnId());
             }
         } else {
+            completionValue.cancelTimeout();
             long orderingKey = completionValue.ledgerId;
             executor.executeOrdered(orderingKey, new SafeRunnable() {
                 @Override
@@ -1549,6 +1760,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         protected long ledgerId;
         protected long entryId;
         protected long startTime;
+        // The expiration registered in the timeout timer, if any
+        private volatile Timeout timeout;
 
         public CompletionValue(String operationName,
                                Object ctx,
@@ -1582,8 +1795,12 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             }
         }
 
+        long timeoutNanos() {
+            return readEntryTimeoutNanos;
+        }
+
         boolean maybeTimeout() {
-            if (MathUtils.elapsedNanos(startTime) >= readEntryTimeoutNanos) {
+            if (MathUtils.elapsedNanos(startTime) >= timeoutNanos()) {
                 timeout();
                 return true;
             } else {
@@ -1591,6 +1808,14 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             }
         }
 
+        void cancelTimeout() {
+            Timeout t = timeout;
+            if (t != null) {
+                timeout = null;
+                t.cancel();
+            }
+        }
+
         void timeout() {
             errorOut(BKException.Code.TimeoutException);
             timeoutOpLogger.registerSuccessfulEvent(latency(),
@@ -1917,6 +2142,72 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         }
     }
 
+    // visible for testing
+    class BatchReadCompletion extends CompletionValue {
+        final BatchReadEntriesCallback cb;
+
+        public BatchReadCompletion(final CompletionKey key,
+                                   final BatchReadEntriesCallback originalCallback,
+                                   final Object originalCtx,
+                                   long ledgerId, final long startEntryId) {
+            super("BatchRead", originalCtx, ledgerId, startEntryId,
+                  batchReadEntriesOpLogger, batchReadTimeoutOpLogger);
+
+            this.cb = new BatchReadEntriesCallback() {
+                    @Override
+                    public void readEntriesComplete(int rc, long ledgerId,
+                                                    long startEntryId, List<ByteBuf> entries,
+                                                    Object ctx) {
+                        logOpResult(rc);
+                        originalCallback.readEntriesComplete(rc,
+                                                             ledgerId, startEntryId,
+                                                             entries, originalCtx);
+                        key.release();
+                    }
+                };
+        }
+
+        @Override
+        public void errorOut() {
+            errorOut(BKException.Code.BookieHandleNotAvailableException);
+        }
+
+        @Override
+        public void errorOut(final int rc) {
+            errorOutAndRunCallback(
+                    () -> cb.readEntriesComplete(rc, ledgerId,
+                                                 entryId, Collections.emptyList(), ctx));
+        }
+
+        @Override
+        public void setOutstanding() {
+            readEntryOutstanding.inc();
+        }
+
+        @Override
+        public void handleV3Response(BookkeeperProtocol.Response response) {
+            readEntryOutstanding.dec();
+            BatchReadResponse batchReadResponse = response.getBatchReadResponse();
+            StatusCode status = response.getStatus() == StatusCode.EOK
+                ? batchReadResponse.getStatus() : response.getStatus();
+
+            List<ByteBuf> entries = new ArrayList<>(batchReadResponse.getBodyCount());
+            for (ByteString body : batchReadResponse.getBodyList()) {
+                entries.add(Unpooled.wrappedBuffer(body.asReadOnlyByteBuffer()));
+            }
+
+            if (LOG.isDebugEnabled()) {
+                logResponse(status, "ledger", ledgerId, "startEntry", entryId, "entries", entries.size());
+            }
+
+            int rc = convertStatus(status, BKException.Code.ReadException);
+            if (batchReadResponse.hasMaxLAC() && (ctx instanceof ReadEntryCallbackCtx)) {
+                ((ReadEntryCallbackCtx) ctx).setLastAddConfirmed(batchReadResponse.getMaxLAC());
+            }
+            cb.readEntriesComplete(rc, ledgerId, entryId, entries, ctx);
+        }
+    }
+
     class StartTLSCompletion extends CompletionValue {
         final StartTLSCallback cb;
 
@@ -2090,6 +2381,113 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         return completion;
     }
 
+    private static final class PendingAdd {
+        final long entryId;
+        final ByteBufList toSend;
+        final WriteCallback cb;
+        final Object ctx;
+
+        PendingAdd(long entryId, ByteBufList toSend, WriteCallback cb, Object ctx) {
+            this.entryId = entryId;
+            this.toSend = toSend;
+            this.cb = cb;
+            this.ctx = ctx;
+        }
+    }
+
+    private static final class PendingAddBatch {
+        final long ledgerId;
+        final byte[] masterKey;
+        final boolean allowFastFail;
+        final EnumSet<WriteFlag> writeFlags;
+        final List<PendingAdd> adds = new ArrayList<>();
+        int size = 0;
+
+        PendingAddBatch(long ledgerId, byte[] masterKey, boolean allowFastFail, EnumSet<WriteFlag> writeFlags) {
+            this.ledgerId = ledgerId;
+            this.masterKey = masterKey;
+            this.allowFastFail = allowFastFail;
+            this.writeFlags = writeFlags;
+        }
+
+        void add(long entryId, ByteBufList toSend, WriteCallback cb, Object ctx) {
+            adds.add(new PendingAdd(entryId, toSend, cb, ctx));
+            size += toSend.readableBytes();
+        }
+    }
+
+    class BatchAddCompletion extends CompletionValue {
+        final PendingAddBatch batch;
+
+        public BatchAddCompletion(final PendingAddBatch batch) {
+            super("BatchAdd", null, batch.ledgerId, batch.adds.get(0).entryId,
+                  batchAddEntryOpLogger, batchAddTimeoutOpLogger);
+            this.batch = batch;
+        }
+
+        @Override
+        long timeoutNanos() {
+            return addEntryTimeoutNanos;
+        }
+
+        @Override
+        public void errorOut() {
+            errorOut(BKException.Code.BookieHandleNotAvailableException);
+        }
+
+        @Override
+        public void errorOut(final int rc) {
+            errorOutAndRunCallback(() -> complete(rc, null));
+        }
+
+        @Override
+        public void setOutstanding() {
+            addEntryOutstanding.inc();
+        }
+
+        @Override
+        public void handleV3Response(BookkeeperProtocol.Response response) {
+            addEntryOutstanding.dec();
+            if (!response.hasBatchAddResponse()) {
+                // The bookie does not know about batch adds, send the entries again one by one
+                if (batchAddEnabled) {
+                    LOG.warn("Bookie {} does not support batch adds, disabling them", addr);
+                    batchAddEnabled = false;
+                }
+                for (PendingAdd add : batch.adds) {
+                    addEntry(ledgerId, batch.masterKey, add.entryId, add.toSend, add.cb, add.ctx,
+                             BookieProtocol.FLAG_NONE, batch.allowFastFail, batch.writeFlags);
+                    add.toSend.release();
+                }
+                return;
+            }
+
+            BatchAddResponse batchAddResponse = response.getBatchAddResponse();
+            StatusCode status = response.getStatus() == StatusCode.EOK
+                ? batchAddResponse.getStatus() : response.getStatus();
+            if (LOG.isDebugEnabled()) {
+                logResponse(status, "ledger", ledgerId, "entries", batchAddResponse.getEntryIdList());
+            }
+            complete(convertStatus(status, BKException.Code.WriteException), batchAddResponse);
+        }
+
+        private void complete(int rc, BatchAddResponse batchAddResponse) {
+            logOpResult(rc);
+            for (int i = 0; i < batch.adds.size(); i++) {
+                PendingAdd add = batch.adds.get(i);
+                int entryRc = rc;
+                if (batchAddResponse != null && i < batchAddResponse.getEntryStatusCount()) {
+                    entryRc = convertStatus(batchAddResponse.getEntryStatus(i), BKException.Code.WriteException);
+                }
+                try {
+                    add.cb.writeComplete(entryRc, ledgerId, add.entryId, addr, add.ctx);
+                } finally {
+                    add.toSend.release();
+                }
+            }
+        }
+    }
+
     // visible for testing
     class AddCompletion extends CompletionValue implements WriteCallback {
         final Recycler.Handle<AddCompletion> handle;
@@ -2125,13 +2523,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         }
 
         @Override
-        boolean maybeTimeout() {
-            if (MathUtils.elapsedNanos(startTime) >= addEntryTimeoutNanos) {
-                timeout();
-                return true;
-            } else {
-                return false;
-            }
+        long timeoutNanos() {
+            return addEntryTimeoutNanos;
         }
 
         @Override
@@ -2257,6 +2650,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     }
 
     private void putCompletionKeyValue(CompletionKey key, CompletionValue value) {
+        // Registered before the request can complete, so that the completion always finds the timeout to cancel
+        scheduleTimeout(key, value);
         CompletionValue existingValue = completionObjects.putIfAbsent(key, value);
         if (existingValue != null) { // will only happen for V2 keys, as V3 have unique txnid
             // There's a pending read request on same ledger/entry. Use the multimap to track all of them
@@ -2270,9 +2665,42 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             // If there's no completion object here, try in the multimap
             completionValue = completionObjectsV2Conflicts.removeAny(key).orElse(null);
         }
+        if (completionValue != null) {
+            completionValue.cancelTimeout();
+        }
         return completionValue;
     }
 
+    /**
+     * Register a request in the timeout timer, so that it expires without scanning all the outstanding requests.
+     */
+    private void scheduleTimeout(CompletionKey key, CompletionValue value) {
+        long timeoutNanos = value.timeoutNanos();
+        if (timeoutTimer == null || timeoutNanos <= 0) {
+            return;
+        }
+
+        long startTime = MathUtils.nowInNano();
+        value.timeout = timeoutTimer.newTimeout(timeout -> expire(timeout, key, value), timeoutNanos,
+                TimeUnit.NANOSECONDS);
+        timeoutScheduleOpLogger.registerSuccessfulEvent(MathUtils.elapsedNanos(startTime), TimeUnit.NANOSECONDS);
+    }
+
+    private void expire(Timeout timeout, CompletionKey key, CompletionValue value) {
+        if (value.timeout != timeout) {
+            // The request completed, and its completion object might already be reused by another request
+            return;
+        }
+
+        if (completionObjects.remove(key, value) || completionObjectsV2Conflicts.remove(key, value)) {
+            value.timeout = null;
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Timed-out {} to channel {} for {}", key, channel, addr);
+            }
+            value.timeout();
+        }
+    }
+
     private long getTxnId() {
         return txnIdGenerator.incrementAndGet();
     }
@@ -2495,7 +2923,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         assert state == ConnectionState.CONNECTING;
         final long txnId = getTxnId();
         final CompletionKey completionKey = new V3CompletionKey(txnId, OperationType.START_TLS);
-        completionObjects.put(completionKey,
+        putCompletionKeyValue(completionKey,
                               new StartTLSCompletion(completionKey));
         BookkeeperProtocol.Request.Builder h = withRequestContext(BookkeeperProtocol.Request.newBuilder());
         BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
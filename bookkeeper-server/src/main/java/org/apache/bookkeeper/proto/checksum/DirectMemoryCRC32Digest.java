@@ -18,9 +18,11 @@
 package org.apache.bookkeeper.proto.checksum;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.util.internal.PlatformDependent;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 import java.util.zip.CRC32;
 
 import org.apache.bookkeeper.proto.checksum.CRC32DigestManager.CRC32Digest;
@@ -56,6 +58,11 @@ class DirectMemoryCRC32Digest implements CRC32Digest {
             } else if (buf.hasArray()) {
                 // Use the internal method to update from array based
                 crcValue = (int) updateBytes.invoke(null, crcValue, buf.array(), buf.arrayOffset() + index, length);
+            } else if (buf.nioBufferCount() > 1) {
+                // Go through each of the buffers backing a composite buffer, each of them is contiguous
+                for (ByteBuffer nioBuffer : buf.nioBuffers()) {
+                    update(nioBuffer);
+                }
             } else {
                 // Fallback to data copy if buffer is not contiguous
                 byte[] b = new byte[length];
@@ -67,6 +74,22 @@ class DirectMemoryCRC32Digest implements CRC32Digest {
         }
     }
 
+    private void update(ByteBuffer nioBuffer) throws IllegalAccessException, InvocationTargetException {
+        int position = nioBuffer.position();
+        int length = nioBuffer.remaining();
+        if (nioBuffer.hasArray()) {
+            crcValue = (int) updateBytes.invoke(null, crcValue, nioBuffer.array(), nioBuffer.arrayOffset() + position,
+                    length);
+        } else if (nioBuffer.isDirect() && PlatformDependent.hasUnsafe()) {
+            crcValue = (int) updateByteBuffer.invoke(null, crcValue, PlatformDependent.directBufferAddress(nioBuffer),
+                    position, length);
+        } else {
+            byte[] b = new byte[length];
+            nioBuffer.duplicate().get(b);
+            crcValue = (int) updateBytes.invoke(null, crcValue, b, 0, b.length);
+        }
+    }
+
     private static final Method updateByteBuffer;
     private static final Method updateBytes;
 
@@ -23,6 +23,7 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -98,7 +99,11 @@ public class MacDigestManager extends DigestManager {
 
     @Override
     void update(ByteBuf data) {
-        mac.get().update(data.nioBuffer());
+        Mac mac = this.mac.get();
+        // update from each of the buffers of a composite buffer rather than merging them
+        for (ByteBuffer nioBuffer : data.nioBuffers()) {
+            mac.update(nioBuffer);
+        }
     }
 
 
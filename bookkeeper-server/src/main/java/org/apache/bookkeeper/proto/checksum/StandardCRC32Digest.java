@@ -19,6 +19,7 @@ package org.apache.bookkeeper.proto.checksum;
 
 import io.netty.buffer.ByteBuf;
 
+import java.nio.ByteBuffer;
 import java.util.zip.CRC32;
 
 import org.apache.bookkeeper.proto.checksum.CRC32DigestManager.CRC32Digest;
@@ -39,6 +40,9 @@ class StandardCRC32Digest implements CRC32Digest {
 
     @Override
     public void update(ByteBuf buf) {
-        crc.update(buf.nioBuffer());
+        // update from each of the buffers of a composite buffer rather than merging them
+        for (ByteBuffer nioBuffer : buf.nioBuffers()) {
+            crc.update(nioBuffer);
+        }
     }
 }
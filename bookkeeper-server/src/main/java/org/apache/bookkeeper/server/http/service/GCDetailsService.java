@@ -43,8 +43,24 @@ import org.slf4j.LoggerFactory;
  *           "lastMajorCompactionTime" : 1544578144944,
  *           "lastMinorCompactionTime" : 1544578144944,
  *           "majorCompactionCounter" : 1,
- *           "minorCompactionCounter" : 0
+ *           "minorCompactionCounter" : 0,
+ *           "compactionRate" : 1000000.0,
+ *           "compactionPlan" : {
+ *             "threshold" : 0.8,
+ *             "maxBytes" : 0,
+ *             "reclaimableSize" : 1610612736,
+ *             "rewriteSize" : 536870912,
+ *             "candidates" : [ {
+ *               "entryLogId" : 12,
+ *               "totalSize" : 1073741824,
+ *               "remainingSize" : 107374182,
+ *               "reclaimableSize" : 966367642,
+ *               "score" : 0.8181818181818182
+ *             }, ... ]
+ *           }
  *         } ]
+ *
+ * <p>The compaction plan lists the entry logs picked by the last compaction run, in the order they are compacted.
  */
 public class GCDetailsService implements HttpEndpointService {
 
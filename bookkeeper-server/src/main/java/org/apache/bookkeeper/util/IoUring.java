@@ -0,0 +1,613 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.bookkeeper.util;
+
+import com.sun.jna.LastErrorException;
+import com.sun.jna.Native;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Asynchronous file I/O through a Linux io_uring instance.
+ *
+ * <p>Operations are submitted from any thread and return a future that is completed by a dedicated completion
+ * thread, so that a single thread can keep many disk operations in flight. The number of operations in flight is
+ * bounded by the queue depth, submitting more blocks until an operation completes.
+ *
+ * <p>The ring is accessed through JNA, like {@link NativeIO}. It is only supported on x86_64 and aarch64 Linux. Use
+ * {@link #isAvailable()} to check whether the running kernel and JVM support it, and fall back to regular file
+ * channels otherwise.
+ */
+public final class IoUring implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(IoUring.class);
+
+    // The syscall numbers and the mmap flags depend on the architecture, io_uring is only used on the architectures
+    // they are known for
+    private static final boolean SUPPORTED_ARCH;
+    private static final int SYS_IO_URING_SETUP;
+    private static final int SYS_IO_URING_ENTER;
+    private static final int MAP_POPULATE;
+
+    static {
+        switch (System.getProperty("os.arch", "")) {
+            case "amd64":
+            case "x86_64":
+            case "aarch64":
+                SUPPORTED_ARCH = true;
+                SYS_IO_URING_SETUP = 425;
+                SYS_IO_URING_ENTER = 426;
+                MAP_POPULATE = 0x8000;
+                break;
+            default:
+                SUPPORTED_ARCH = false;
+                SYS_IO_URING_SETUP = -1;
+                SYS_IO_URING_ENTER = -1;
+                MAP_POPULATE = 0;
+                break;
+        }
+    }
+
+    private static final int IORING_ENTER_GETEVENTS = 1;
+    private static final int IORING_FEAT_SINGLE_MMAP = 1;
+    private static final int IORING_FEAT_NODROP = 1 << 1;
+    private static final int IORING_FEAT_RW_CUR_POS = 1 << 3;
+
+    private static final long IORING_OFF_SQ_RING = 0L;
+    private static final long IORING_OFF_CQ_RING = 0x8000000L;
+    private static final long IORING_OFF_SQES = 0x10000000L;
+
+    private static final byte IORING_OP_NOP = 0;
+    private static final byte IORING_OP_FSYNC = 3;
+    private static final byte IORING_OP_READ = 22;
+    private static final byte IORING_OP_WRITE = 23;
+    private static final int IORING_FSYNC_DATASYNC = 1;
+
+    private static final int PROT_READ_WRITE = 0x1 | 0x2;
+    private static final int MAP_SHARED_POPULATE = 0x01 | MAP_POPULATE;
+
+    private static final int EINTR = 4;
+    private static final int EAGAIN = 11;
+    private static final int EBUSY = 16;
+
+    // struct io_uring_params and the offsets of its fields
+    private static final int PARAMS_SIZE = 120;
+    private static final int PARAMS_SQ_ENTRIES = 0;
+    private static final int PARAMS_CQ_ENTRIES = 4;
+    private static final int PARAMS_FEATURES = 20;
+    private static final int PARAMS_SQ_OFF = 40;
+    private static final int PARAMS_CQ_OFF = 80;
+
+    private static final int SQE_SIZE = 64;
+    private static final int CQE_SIZE = 16;
+
+    private static final long SHUTDOWN_USER_DATA = -1L;
+
+    private static final boolean initialized;
+    // Raw memory accessors, bound to sun.misc.Unsafe
+    private static final MethodHandle ALLOCATE_MEMORY;
+    private static final MethodHandle FREE_MEMORY;
+    private static final MethodHandle SET_MEMORY;
+    private static final MethodHandle GET_INT;
+    private static final MethodHandle PUT_INT;
+    private static final MethodHandle GET_LONG;
+    private static final MethodHandle PUT_LONG;
+    private static final MethodHandle PUT_BYTE;
+    private static final MethodHandle LOAD_FENCE;
+    private static final MethodHandle STORE_FENCE;
+    private static volatile Boolean available = null;
+
+    static {
+        boolean registered = false;
+        try {
+            Native.register("c");
+            registered = true;
+        } catch (NoClassDefFoundError e) {
+            LOG.info("JNA not found. io_uring will be disabled.");
+        } catch (UnsatisfiedLinkError e) {
+            LOG.info("Unable to link C library. io_uring will be disabled.");
+        } catch (NoSuchMethodError e) {
+            LOG.warn("Obsolete version of JNA present; unable to register C library");
+        }
+        initialized = registered;
+
+        // The rings are shared with the kernel, they are accessed through raw memory and the accesses to the head and
+        // tail indexes need to be ordered
+        MethodHandle[] handles = new MethodHandle[10];
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Object unsafe = field.get(null);
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            handles[0] = lookup.findVirtual(unsafeClass, "allocateMemory",
+                    MethodType.methodType(long.class, long.class)).bindTo(unsafe);
+            handles[1] = lookup.findVirtual(unsafeClass, "freeMemory",
+                    MethodType.methodType(void.class, long.class)).bindTo(unsafe);
+            handles[2] = lookup.findVirtual(unsafeClass, "setMemory",
+                    MethodType.methodType(void.class, long.class, long.class, byte.class)).bindTo(unsafe);
+            handles[3] = lookup.findVirtual(unsafeClass, "getInt",
+                    MethodType.methodType(int.class, long.class)).bindTo(unsafe);
+            handles[4] = lookup.findVirtual(unsafeClass, "putInt",
+                    MethodType.methodType(void.class, long.class, int.class)).bindTo(unsafe);
+            handles[5] = lookup.findVirtual(unsafeClass, "getLong",
+                    MethodType.methodType(long.class, long.class)).bindTo(unsafe);
+            handles[6] = lookup.findVirtual(unsafeClass, "putLong",
+                    MethodType.methodType(void.class, long.class, long.class)).bindTo(unsafe);
+            handles[7] = lookup.findVirtual(unsafeClass, "putByte",
+                    MethodType.methodType(void.class, long.class, byte.class)).bindTo(unsafe);
+            handles[8] = lookup.findVirtual(unsafeClass, "loadFence",
+                    MethodType.methodType(void.class)).bindTo(unsafe);
+            handles[9] = lookup.findVirtual(unsafeClass, "storeFence",
+                    MethodType.methodType(void.class)).bindTo(unsafe);
+        } catch (Throwable t) {
+            LOG.info("sun.misc.Unsafe is not available. io_uring will be disabled.");
+            handles = new MethodHandle[10];
+        }
+        ALLOCATE_MEMORY = handles[0];
+        FREE_MEMORY = handles[1];
+        SET_MEMORY = handles[2];
+        GET_INT = handles[3];
+        PUT_INT = handles[4];
+        GET_LONG = handles[5];
+        PUT_LONG = handles[6];
+        PUT_BYTE = handles[7];
+        LOAD_FENCE = handles[8];
+        STORE_FENCE = handles[9];
+    }
+
+    private static native long syscall(long number, long arg1, long arg2) throws LastErrorException;
+
+    private static native long syscall(long number, long arg1, long arg2, long arg3, long arg4, long arg5,
+                                       long arg6) throws LastErrorException;
+
+    private static native long mmap(long addr, long length, int prot, int flags, int fd, long offset)
+            throws LastErrorException;
+
+    private static native int munmap(long addr, long length) throws LastErrorException;
+
+    private static native int close(int fd) throws LastErrorException;
+
+    /**
+     * Check whether io_uring can be used by this process.
+     */
+    public static boolean isAvailable() {
+        if (available == null) {
+            synchronized (IoUring.class) {
+                if (available == null) {
+                    available = probe();
+                }
+            }
+        }
+        return available;
+    }
+
+    /**
+     * Create a ring if io_uring is available.
+     *
+     * @return the ring, or null if the caller should fall back to regular file channels
+     */
+    public static IoUring createIfAvailable(int queueDepth) {
+        if (!isAvailable()) {
+            LOG.warn("io_uring is not available, falling back to regular file channels");
+            return null;
+        }
+
+        try {
+            return new IoUring(queueDepth);
+        } catch (IOException e) {
+            LOG.warn("Failed to create io_uring, falling back to regular file channels", e);
+            return null;
+        }
+    }
+
+    private static boolean probe() {
+        if (!initialized || STORE_FENCE == null || !SUPPORTED_ARCH
+                || !System.getProperty("os.name", "").toLowerCase().startsWith("linux")) {
+            return false;
+        }
+
+        try {
+            new IoUring(2).close();
+            return true;
+        } catch (Throwable t) {
+            LOG.info("io_uring is not available: {}", t.getMessage());
+            return false;
+        }
+    }
+
+    private final int ringFd;
+    private final long sqRingAddress;
+    private final long sqRingSize;
+    private final long cqRingAddress;
+    private final long cqRingSize;
+    private final long sqesAddress;
+    private final long sqesSize;
+
+    private final long sqTailAddress;
+    private final long sqArrayAddress;
+    private final int sqMask;
+    private final long cqHeadAddress;
+    private final long cqTailAddress;
+    private final long cqesAddress;
+    private final int cqMask;
+
+    // Futures of the operations in flight, indexed by the user data of their submission
+    private final AtomicReferenceArray<CompletableFuture<Integer>> operations;
+    private final BlockingQueue<Integer> freeSlots;
+    private final Thread completionThread;
+
+    private int sqTail;
+    private volatile boolean closed = false;
+
+    /**
+     * Create a ring and start its completion thread.
+     *
+     * @param queueDepth maximum number of operations in flight
+     */
+    public IoUring(int queueDepth) throws IOException {
+        if (!initialized || STORE_FENCE == null || !SUPPORTED_ARCH) {
+            throw new IOException("io_uring is not supported");
+        }
+
+        long params = allocateMemory(PARAMS_SIZE);
+        int fd = -1;
+        try {
+            setMemory(params, PARAMS_SIZE, (byte) 0);
+            fd = (int) syscall(SYS_IO_URING_SETUP, queueDepth, params);
+
+            int features = getInt(params + PARAMS_FEATURES);
+            if ((features & IORING_FEAT_NODROP) == 0 || (features & IORING_FEAT_RW_CUR_POS) == 0) {
+                throw new IOException("io_uring is too old, features: " + features);
+            }
+
+            int sqEntries = getInt(params + PARAMS_SQ_ENTRIES);
+            int cqEntries = getInt(params + PARAMS_CQ_ENTRIES);
+            long sqOff = params + PARAMS_SQ_OFF;
+            long cqOff = params + PARAMS_CQ_OFF;
+
+            // io_sqring_offsets: head, tail, ring_mask, ring_entries, flags, dropped, array
+            // io_cqring_offsets: head, tail, ring_mask, ring_entries, overflow, cqes
+            long sqSize = getInt(sqOff + 24) + 4L * sqEntries;
+            long cqSize = getInt(cqOff + 20) + (long) CQE_SIZE * cqEntries;
+            if ((features & IORING_FEAT_SINGLE_MMAP) != 0) {
+                sqSize = Math.max(sqSize, cqSize);
+                cqSize = 0;
+            }
+
+            this.sqRingSize = sqSize;
+            this.sqRingAddress = mmap(0, sqSize, PROT_READ_WRITE, MAP_SHARED_POPULATE, fd, IORING_OFF_SQ_RING);
+            this.cqRingSize = cqSize;
+            this.cqRingAddress = cqSize == 0 ? sqRingAddress
+                    : mmap(0, cqSize, PROT_READ_WRITE, MAP_SHARED_POPULATE, fd, IORING_OFF_CQ_RING);
+            this.sqesSize = (long) SQE_SIZE * sqEntries;
+            this.sqesAddress = mmap(0, sqesSize, PROT_READ_WRITE, MAP_SHARED_POPULATE, fd, IORING_OFF_SQES);
+
+            this.sqTailAddress = sqRingAddress + getInt(sqOff + 4);
+            this.sqMask = getInt(sqRingAddress + getInt(sqOff + 8));
+            this.sqArrayAddress = sqRingAddress + getInt(sqOff + 24);
+            this.cqHeadAddress = cqRingAddress + getInt(cqOff);
+            this.cqTailAddress = cqRingAddress + getInt(cqOff + 4);
+            this.cqMask = getInt(cqRingAddress + getInt(cqOff + 8));
+            this.cqesAddress = cqRingAddress + getInt(cqOff + 20);
+            this.sqTail = getInt(sqTailAddress);
+            this.ringFd = fd;
+
+            // One slot is kept for the shutdown marker. The completion queue is larger than the submission queue,
+            // so it cannot overflow.
+            this.operations = new AtomicReferenceArray<>(sqEntries);
+            this.freeSlots = new ArrayBlockingQueue<>(sqEntries);
+            for (int i = 0; i < sqEntries - 1; i++) {
+                freeSlots.add(i);
+            }
+        } catch (LastErrorException e) {
+            if (fd >= 0) {
+                close(fd);
+            }
+            throw new IOException("Failed to setup io_uring: errno " + e.getErrorCode());
+        } finally {
+            freeMemory(params);
+        }
+
+        this.completionThread = new DefaultThreadFactory("io-uring-completion", true).newThread(this::reapCompletions);
+        this.completionThread.start();
+    }
+
+    /**
+     * Read up to length bytes of the file at the given position into the memory at address.
+     *
+     * @return a future completed with the number of bytes read, 0 at the end of the file
+     */
+    public CompletableFuture<Integer> read(int fd, long address, int length, long position) {
+        return submit(IORING_OP_READ, fd, address, length, position, 0);
+    }
+
+    /**
+     * Write length bytes from the memory at address to the file at the given position.
+     *
+     * @return a future completed with the number of bytes written
+     */
+    public CompletableFuture<Integer> write(int fd, long address, int length, long position) {
+        return submit(IORING_OP_WRITE, fd, address, length, position, 0);
+    }
+
+    /**
+     * Force the changes to the file to the storage device.
+     *
+     * @param forceMetadata whether the metadata of the file needs to be forced as well
+     */
+    public CompletableFuture<Integer> fsync(int fd, boolean forceMetadata) {
+        return submit(IORING_OP_FSYNC, fd, 0, 0, 0, forceMetadata ? 0 : IORING_FSYNC_DATASYNC);
+    }
+
+    /**
+     * Wait for an operation and return its result, unwrapping the failure.
+     */
+    public static int await(CompletableFuture<Integer> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for io_uring operation", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private CompletableFuture<Integer> submit(byte opcode, int fd, long address, int length, long position,
+                                              int opFlags) {
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        int slot;
+        try {
+            slot = freeSlots.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(new IOException("Interrupted while submitting io_uring operation", e));
+            return future;
+        }
+
+        operations.set(slot, future);
+        boolean submitted = false;
+        try {
+            synchronized (this) {
+                if (closed) {
+                    throw new IOException("io_uring is closed");
+                }
+                pushSubmission(opcode, fd, address, length, position, opFlags, slot);
+                submitted = true;
+            }
+        } catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+        } finally {
+            if (!submitted) {
+                // The kernel never saw the operation, no completion will release the slot
+                operations.set(slot, null);
+                freeSlots.add(slot);
+            }
+        }
+        return future;
+    }
+
+    private void pushSubmission(byte opcode, int fd, long address, int length, long position, int opFlags,
+                                long userData) throws IOException {
+        int index = sqTail & sqMask;
+        long sqe = sqesAddress + (long) SQE_SIZE * index;
+        setMemory(sqe, SQE_SIZE, (byte) 0);
+        putByte(sqe, opcode);
+        putInt(sqe + 4, fd);
+        putLong(sqe + 8, position);
+        putLong(sqe + 16, address);
+        putInt(sqe + 24, length);
+        putInt(sqe + 28, opFlags);
+        putLong(sqe + 32, userData);
+        putInt(sqArrayAddress + 4L * index, index);
+
+        storeFence();
+        putInt(sqTailAddress, ++sqTail);
+
+        // Without a polling thread on the kernel side, the entry is consumed before the syscall returns
+        while (true) {
+            try {
+                syscall(SYS_IO_URING_ENTER, ringFd, 1, 0, 0, 0, 0);
+                return;
+            } catch (LastErrorException e) {
+                if (e.getErrorCode() != EINTR && e.getErrorCode() != EAGAIN && e.getErrorCode() != EBUSY) {
+                    // The entry was not consumed, take it back so that the next submission does not pick it up
+                    putInt(sqTailAddress, --sqTail);
+                    throw new IOException("io_uring submission failed: errno " + e.getErrorCode());
+                }
+                Thread.yield();
+            }
+        }
+    }
+
+    private void reapCompletions() {
+        int head = getInt(cqHeadAddress);
+        boolean shutdown = false;
+        while (!shutdown || freeSlots.remainingCapacity() > 1) {
+            int tail = getInt(cqTailAddress);
+            loadFence();
+
+            if (head == tail) {
+                try {
+                    syscall(SYS_IO_URING_ENTER, ringFd, 0, 1, IORING_ENTER_GETEVENTS, 0, 0);
+                } catch (LastErrorException e) {
+                    if (e.getErrorCode() != EINTR) {
+                        LOG.error("Failed to wait for io_uring completions: errno {}", e.getErrorCode());
+                    }
+                }
+                continue;
+            }
+
+            while (head != tail) {
+                long cqe = cqesAddress + (long) CQE_SIZE * (head & cqMask);
+                long userData = getLong(cqe);
+                int res = getInt(cqe + 8);
+                head++;
+
+                if (userData == SHUTDOWN_USER_DATA) {
+                    shutdown = true;
+                    continue;
+                }
+
+                int slot = (int) userData;
+                CompletableFuture<Integer> future = operations.getAndSet(slot, null);
+                freeSlots.add(slot);
+                if (res < 0) {
+                    future.completeExceptionally(new IOException("io_uring operation failed: errno " + (-res)));
+                } else {
+                    future.complete(res);
+                }
+            }
+
+            // Make sure the entries were read before handing them back to the kernel
+            storeFence();
+            putInt(cqHeadAddress, head);
+        }
+    }
+
+    private static long allocateMemory(long size) {
+        try {
+            return (long) ALLOCATE_MEMORY.invokeExact(size);
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    private static void freeMemory(long address) {
+        try {
+            FREE_MEMORY.invokeExact(address);
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    private static void setMemory(long address, long size, byte value) {
+        try {
+            SET_MEMORY.invokeExact(address, size, value);
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    private static int getInt(long address) {
+        try {
+            return (int) GET_INT.invokeExact(address);
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    private static void putInt(long address, int value) {
+        try {
+            PUT_INT.invokeExact(address, value);
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    private static long getLong(long address) {
+        try {
+            return (long) GET_LONG.invokeExact(address);
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    private static void putLong(long address, long value) {
+        try {
+            PUT_LONG.invokeExact(address, value);
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    private static void putByte(long address, byte value) {
+        try {
+            PUT_BYTE.invokeExact(address, value);
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    private static void loadFence() {
+        try {
+            LOAD_FENCE.invokeExact();
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    private static void storeFence() {
+        try {
+            STORE_FENCE.invokeExact();
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    /**
+     * Wait for the operations in flight to complete, and release the ring.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            pushSubmission(IORING_OP_NOP, -1, 0, 0, 0, 0, SHUTDOWN_USER_DATA);
+        }
+
+        try {
+            completionThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing io_uring", e);
+        }
+
+        try {
+            munmap(sqesAddress, sqesSize);
+            if (cqRingSize > 0) {
+                munmap(cqRingAddress, cqRingSize);
+            }
+            munmap(sqRingAddress, sqRingSize);
+            close(ringFd);
+        } catch (LastErrorException e) {
+            throw new IOException("Failed to close io_uring: errno " + e.getErrorCode());
+        }
+    }
+}
@@ -21,7 +21,9 @@ package org.apache.bookkeeper.util;
 import com.sun.jna.LastErrorException;
 import com.sun.jna.Native;
 
+import java.io.File;
 import java.io.FileDescriptor;
+import java.io.IOException;
 import java.lang.reflect.Field;
 
 import org.slf4j.Logger;
@@ -35,8 +37,14 @@ public final class NativeIO {
 
     private static final int POSIX_FADV_DONTNEED = 4; /* fadvise.h */
 
+    private static final int O_WRONLY = 1; /* fcntl.h */
+    private static final int O_DIRECT = getODirectFlag();
+    private static final int EINTR = 4;
+    private static final int EOPNOTSUPP = 95;
+
     private static boolean initialized = false;
     private static boolean fadvisePossible = true;
+    private static boolean fallocatePossible = true;
 
     static {
         try {
@@ -54,6 +62,32 @@ public final class NativeIO {
     // fadvice
     public static native int posix_fadvise(int fd, long offset, long len, int flag) throws LastErrorException;
 
+    private static native int open(String pathname, int flags, int mode) throws LastErrorException;
+
+    private static native long pwrite(int fd, long buf, long count, long offset) throws LastErrorException;
+
+    private static native int fallocate(int fd, int mode, long offset, long len) throws LastErrorException;
+
+    private static native int fsync(int fd) throws LastErrorException;
+
+    private static native int fdatasync(int fd) throws LastErrorException;
+
+    private static native int close(int fd) throws LastErrorException;
+
+    private static int getODirectFlag() {
+        // O_DIRECT is architecture dependent
+        String arch = System.getProperty("os.arch", "");
+        if (!System.getProperty("os.name", "").toLowerCase().startsWith("linux")) {
+            return -1;
+        } else if ("amd64".equals(arch) || "x86_64".equals(arch) || "x86".equals(arch) || "i386".equals(arch)) {
+            return 0x4000;
+        } else if ("aarch64".equals(arch) || arch.startsWith("arm")) {
+            return 0x10000;
+        } else {
+            return -1;
+        }
+    }
+
     private NativeIO() {}
 
     private static Field getFieldByReflection(Class cls, String fieldName) {
@@ -118,4 +152,109 @@ public final class NativeIO {
         }
     }
 
+    /**
+     * Open an existing file for writing with direct I/O, bypassing the file system page cache. The writes to the
+     * returned file descriptor must be aligned to the logical block size of the device, both in file position and
+     * in memory, and must be done with {@link #pwriteFully(int, long, int, long)}.
+     *
+     * @param file the file to open
+     * @return the file descriptor, to be closed with {@link #closeFd(int)}
+     * @throws IOException if direct I/O is not supported on this platform or by the file system of the file
+     */
+    public static int openDirect(File file) throws IOException {
+        if (!initialized || O_DIRECT < 0) {
+            throw new IOException("Direct I/O is not supported on this platform");
+        }
+        try {
+            return open(file.getAbsolutePath(), O_WRONLY | O_DIRECT, 0);
+        } catch (LastErrorException e) {
+            throw new IOException("Failed to open " + file + " for direct I/O: errno " + e.getErrorCode(), e);
+        }
+    }
+
+    /**
+     * Write the given memory region to a file descriptor at the given position.
+     *
+     * @param fd       The file descriptor of the file.
+     * @param address  The memory address of the data to write.
+     * @param length   The number of bytes to write.
+     * @param position The position in the file to write to.
+     */
+    public static void pwriteFully(int fd, long address, int length, long position) throws IOException {
+        int written = 0;
+        while (written < length) {
+            try {
+                long rc = pwrite(fd, address + written, length - written, position + written);
+                if (rc <= 0) {
+                    throw new IOException("Short write on file descriptor " + fd + " at position "
+                            + (position + written));
+                }
+                written += rc;
+            } catch (LastErrorException e) {
+                if (e.getErrorCode() != EINTR) {
+                    throw new IOException("pwrite failed on file descriptor " + fd + ": errno "
+                            + e.getErrorCode(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Flush the data of the file to the disk.
+     *
+     * @param fd            The file descriptor of the file.
+     * @param forceMetadata Whether the file metadata should be flushed too.
+     */
+    public static void fsync(int fd, boolean forceMetadata) throws IOException {
+        try {
+            if (forceMetadata) {
+                fsync(fd);
+            } else {
+                fdatasync(fd);
+            }
+        } catch (LastErrorException e) {
+            throw new IOException("fsync failed on file descriptor " + fd + ": errno " + e.getErrorCode(), e);
+        }
+    }
+
+    /**
+     * Close a file descriptor opened with {@link #openDirect(File)}.
+     */
+    public static void closeFd(int fd) throws IOException {
+        try {
+            close(fd);
+        } catch (LastErrorException e) {
+            throw new IOException("Failed to close file descriptor " + fd + ": errno " + e.getErrorCode(), e);
+        }
+    }
+
+    /**
+     * Allocate the disk space of a range of a file, extending the file if needed.
+     *
+     * @param fd     The file descriptor of the file.
+     * @param offset The offset within the file.
+     * @param len    The length of the range to allocate.
+     * @return true if the space was allocated, false if fallocate is not supported and the caller should fall back
+     *         to writing zeros.
+     */
+    public static boolean fallocateIfPossible(int fd, long offset, long len) throws IOException {
+        if (!initialized || !fallocatePossible || fd < 0) {
+            return false;
+        }
+        try {
+            fallocate(fd, 0, offset, len);
+            return true;
+        } catch (LastErrorException e) {
+            if (e.getErrorCode() == EOPNOTSUPP) {
+                LOG.info("fallocate is not supported by the file system, falling back to writing zeros");
+                fallocatePossible = false;
+                return false;
+            }
+            throw new IOException("fallocate failed on file descriptor " + fd + ": errno " + e.getErrorCode(), e);
+        } catch (UnsatisfiedLinkError ule) {
+            LOG.warn("Unsatisfied Link error: fallocate failed on file descriptor {} : ", fd, ule);
+            fallocatePossible = false;
+            return false;
+        }
+    }
 }
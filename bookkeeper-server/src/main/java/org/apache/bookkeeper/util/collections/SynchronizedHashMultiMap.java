@@ -62,6 +62,23 @@ public class SynchronizedHashMultiMap<K, V> {
         return pair.map(p -> p.getRight());
     }
 
+    /**
+     * Remove the given value of the given key, comparing the values by reference.
+     *
+     * @return true if the value was removed
+     */
+    public synchronized boolean remove(K k, V v) {
+        Set<Pair<K, V>> set = map.get(k.hashCode());
+        if (set == null) {
+            return false;
+        }
+        boolean removed = set.removeIf(p -> p.getRight() == v && p.getLeft().equals(k));
+        if (set.isEmpty()) {
+            map.remove(k.hashCode());
+        }
+        return removed;
+    }
+
     public synchronized int removeIf(BiPredicate<K, V> predicate) {
         int removedSum = map.values().stream().mapToInt(
                 pairs -> {
@@ -0,0 +1,117 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test for the garbage collection of entry logs by {@link GarbageCollectorThread}.
+ */
+public class GarbageCollectorThreadTest {
+
+    private static final long ACTIVE_LEDGER_ID = 12L;
+    private static final long NUM_ENTRY_LOGS = 4L;
+
+    private EntryLogger entryLogger;
+    private CompactableLedgerStorage ledgerStorage;
+    private final Set<Long> activeLedgers = ConcurrentHashMap.newKeySet();
+    private final Set<Long> removedLogs = ConcurrentHashMap.newKeySet();
+
+    @Before
+    public void setup() throws Exception {
+        LedgerDirsManager ledgerDirsManager = mock(LedgerDirsManager.class);
+        when(ledgerDirsManager.getAllLedgerDirs()).thenReturn(Collections.singletonList(new File("ledgers")));
+
+        entryLogger = mock(EntryLogger.class);
+        when(entryLogger.getLedgerDirsManager()).thenReturn(ledgerDirsManager);
+        when(entryLogger.getLeastUnflushedLogId()).thenReturn(NUM_ENTRY_LOGS);
+        when(entryLogger.logExists(anyLong())).thenAnswer(invocation -> {
+            long entryLogId = invocation.getArgument(0);
+            return !removedLogs.contains(entryLogId);
+        });
+        when(entryLogger.removeEntryLog(anyLong())).thenAnswer(invocation -> {
+            long entryLogId = invocation.getArgument(0);
+            return removedLogs.add(entryLogId);
+        });
+        when(entryLogger.getEntryLogMetadata(anyLong())).thenAnswer(invocation -> {
+            // Each log holds its own ledger, and the log 2 also holds a ledger that stays active
+            long entryLogId = invocation.getArgument(0);
+            EntryLogMetadata meta = new EntryLogMetadata(entryLogId);
+            meta.addLedgerSize(entryLogId + 20, 100);
+            if (entryLogId == 2L) {
+                meta.addLedgerSize(ACTIVE_LEDGER_ID, 100);
+            }
+            return meta;
+        });
+
+        ledgerStorage = mock(CompactableLedgerStorage.class);
+        when(ledgerStorage.getEntryLogger()).thenReturn(entryLogger);
+        when(ledgerStorage.ledgerExists(anyLong())).thenAnswer(
+                invocation -> activeLedgers.contains(invocation.<Long>getArgument(0)));
+        activeLedgers.add(ACTIVE_LEDGER_ID);
+        for (long entryLogId = 0; entryLogId < NUM_ENTRY_LOGS; entryLogId++) {
+            activeLedgers.add(entryLogId + 20);
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testRemoveSeveralEntryLogsInOnePass() throws Exception {
+        GarbageCollectorThread gcThread = new GarbageCollectorThread(new ServerConfiguration(), null,
+                ledgerStorage, NullStatsLogger.INSTANCE, mock(ScheduledExecutorService.class));
+
+        // The metadata of all the logs is extracted, none of them can be removed yet
+        gcThread.runWithFlags(true, true, true);
+        verify(entryLogger, never()).removeEntryLog(anyLong());
+
+        // The metadata of the logs is removed and updated while the collector iterates over it
+        for (long entryLogId = 0; entryLogId < NUM_ENTRY_LOGS; entryLogId++) {
+            activeLedgers.remove(entryLogId + 20);
+        }
+        gcThread.runWithFlags(true, true, true);
+
+        verify(entryLogger, times(1)).removeEntryLog(0L);
+        verify(entryLogger, times(1)).removeEntryLog(1L);
+        verify(entryLogger, never()).removeEntryLog(2L);
+        verify(entryLogger, times(1)).removeEntryLog(3L);
+
+        // The removed logs are not collected again, and the log still in use is not scanned again
+        gcThread.runWithFlags(true, true, true);
+
+        verify(entryLogger, times(3)).removeEntryLog(anyLong());
+        verify(entryLogger, times(1)).getEntryLogMetadata(2L);
+    }
+}
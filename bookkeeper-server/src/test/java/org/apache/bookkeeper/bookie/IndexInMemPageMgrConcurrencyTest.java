@@ -0,0 +1,163 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.util.DiskChecker;
+import org.apache.bookkeeper.util.IOUtils;
+import org.apache.bookkeeper.util.SnapshotMap;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Stress test of the index pages of {@link IndexInMemPageMgr}, with concurrent writers and readers over many more
+ * ledgers than pages, so that pages are constantly reclaimed and reused for other ledgers while they are read.
+ */
+public class IndexInMemPageMgrConcurrencyTest {
+
+    private static final int PAGE_LIMIT = 50;
+    // 128 entries per page, 2 pages per ledger
+    private static final int PAGE_SIZE = 1024;
+    private static final int ENTRIES_PER_LEDGER = 256;
+    private static final int NUM_LEDGERS = 200;
+    private static final int NUM_WRITERS = 4;
+    private static final int NUM_READERS = 4;
+    private static final int READS_PER_READER = 200000;
+
+    private File indexDir;
+    private LedgerCacheImpl ledgerCache;
+
+    @Before
+    public void setup() throws Exception {
+        indexDir = IOUtils.createTempDir("bkIndex", "test");
+        ServerConfiguration conf = new ServerConfiguration();
+        conf.setLedgerDirNames(new String[] { indexDir.getPath() });
+        conf.setPageLimit(PAGE_LIMIT);
+        conf.setPageSize(PAGE_SIZE);
+        LedgerDirsManager dirsManager = new LedgerDirsManager(conf, conf.getLedgerDirs(),
+                new DiskChecker(conf.getDiskUsageThreshold(), conf.getDiskUsageWarnThreshold()));
+        Bookie.checkDirectoryStructure(dirsManager.getAllLedgerDirs().get(0));
+
+        ledgerCache = new LedgerCacheImpl(conf, new SnapshotMap<>(), dirsManager);
+        byte[] masterKey = new byte[0];
+        for (long ledgerId = 0; ledgerId < NUM_LEDGERS; ledgerId++) {
+            ledgerCache.setMasterKey(ledgerId, masterKey);
+        }
+    }
+
+    @After
+    public void teardown() throws Exception {
+        ledgerCache.close();
+        FileUtils.deleteDirectory(indexDir);
+    }
+
+    private static long offset(long ledgerId, long entryId) {
+        return (ledgerId << 20) | (entryId + 1);
+    }
+
+    @Test(timeout = 120000)
+    public void testConcurrentWritersAndReaders() throws Exception {
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicBoolean writersDone = new AtomicBoolean(false);
+        List<Thread> writers = new ArrayList<>();
+        List<Thread> others = new ArrayList<>();
+
+        for (int w = 0; w < NUM_WRITERS; w++) {
+            final int writer = w;
+            writers.add(new Thread(() -> {
+                try {
+                    // Each writer owns a subset of the ledgers and writes their entries in order
+                    for (long entryId = 0; entryId < ENTRIES_PER_LEDGER; entryId++) {
+                        for (long ledgerId = writer; ledgerId < NUM_LEDGERS; ledgerId += NUM_WRITERS) {
+                            ledgerCache.putEntryOffset(ledgerId, entryId, offset(ledgerId, entryId));
+                        }
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }, "writer-" + w));
+        }
+
+        for (int r = 0; r < NUM_READERS; r++) {
+            others.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    for (int i = 0; i < READS_PER_READER && failure.get() == null; i++) {
+                        long ledgerId = random.nextInt(NUM_LEDGERS);
+                        long entryId = random.nextInt(ENTRIES_PER_LEDGER);
+                        long offset = ledgerCache.getEntryOffset(ledgerId, entryId);
+                        // An entry is either not written yet, or has the offset of this ledger and entry
+                        if (offset != 0 && offset != offset(ledgerId, entryId)) {
+                            throw new AssertionError("Wrong offset " + offset + " for entry " + entryId
+                                    + " of ledger " + ledgerId);
+                        }
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }, "reader-" + r));
+        }
+
+        // Flush the dirty pages so that they can be reclaimed
+        others.add(new Thread(() -> {
+            try {
+                while (!writersDone.get() && failure.get() == null) {
+                    ledgerCache.flushLedger(true);
+                    Thread.sleep(1);
+                }
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            }
+        }, "flusher"));
+
+        others.forEach(Thread::start);
+        writers.forEach(Thread::start);
+        for (Thread thread : writers) {
+            thread.join();
+        }
+        writersDone.set(true);
+        for (Thread thread : others) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError("Concurrent access to the index pages failed", failure.get());
+        }
+
+        // Every offset reads back correctly once the pages are flushed and evicted
+        ledgerCache.flushLedger(true);
+        for (long ledgerId = 0; ledgerId < NUM_LEDGERS; ledgerId++) {
+            for (long entryId = 0; entryId < ENTRIES_PER_LEDGER; entryId++) {
+                assertEquals(offset(ledgerId, entryId), ledgerCache.getEntryOffset(ledgerId, entryId));
+            }
+        }
+    }
+}
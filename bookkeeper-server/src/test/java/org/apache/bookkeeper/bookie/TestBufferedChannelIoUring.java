@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.bookkeeper.util.IoUring;
+import org.apache.bookkeeper.util.NativeIO;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+
+/**
+ * Test the io_uring backend of {@link BufferedChannel} and {@link BufferedReadChannel}. The tests are skipped when
+ * io_uring is not available.
+ */
+public class TestBufferedChannelIoUring {
+
+	private static final int QUEUE_DEPTH = 8;
+
+	private IoUring ioUring;
+	private File file;
+	private RandomAccessFile randomAccessFile;
+	private int fd;
+	private final List<ByteBuf> buffers = new ArrayList<>();
+
+	@Before
+	public void setup() throws Exception {
+		Assume.assumeTrue(IoUring.isAvailable());
+		ioUring = new IoUring(QUEUE_DEPTH);
+		file = File.createTempFile("test", "log");
+		file.deleteOnExit();
+		randomAccessFile = new RandomAccessFile(file, "rw");
+		fd = NativeIO.getSysFileDescriptor(randomAccessFile.getFD());
+	}
+
+	@After
+	public void teardown() throws Exception {
+		if (ioUring != null) {
+			ioUring.close();
+			randomAccessFile.close();
+			file.delete();
+		}
+		buffers.forEach(ByteBuf::release);
+	}
+
+	private ByteBuf data(int length, long seed) {
+		byte[] bytes = new byte[length];
+		new Random(seed).nextBytes(bytes);
+		ByteBuf buf = Unpooled.directBuffer(length);
+		buf.writeBytes(bytes);
+		buffers.add(buf);
+		return buf;
+	}
+
+	private ByteBuf readFile(long pos, int length) throws IOException {
+		ByteBuf buf = Unpooled.buffer(length);
+		buffers.add(buf);
+		while (buf.isWritable()) {
+			if (buf.writeBytes(randomAccessFile.getChannel(), pos + buf.writerIndex(), buf.writableBytes()) <= 0) {
+				break;
+			}
+		}
+		return buf;
+	}
+
+	private BufferedChannel createChannel(int capacity) throws IOException {
+		return new BufferedChannel(UnpooledByteBufAllocator.DEFAULT, randomAccessFile.getChannel(), capacity,
+				capacity, 0L, ioUring, fd);
+	}
+
+	@Test
+	public void testWriteAndRead() throws Exception {
+		ByteBuf src = data(4096, 1);
+		Assert.assertEquals(4096, IoUring.await(ioUring.write(fd, src.memoryAddress(), 4096, 0)));
+		IoUring.await(ioUring.fsync(fd, false));
+
+		ByteBuf dest = Unpooled.directBuffer(4096);
+		buffers.add(dest);
+		Assert.assertEquals(4096, IoUring.await(ioUring.read(fd, dest.memoryAddress(), 4096, 0)));
+		dest.writerIndex(4096);
+		Assert.assertEquals(src, dest);
+
+		// Reading past the end of the file returns 0
+		Assert.assertEquals(0, IoUring.await(ioUring.read(fd, dest.memoryAddress(), 4096, 4096)));
+	}
+
+	@Test
+	public void testMoreOperationsThanQueueDepth() throws Exception {
+		// The operations are all in flight before waiting for any of them, the submissions block while the queue is
+		// full
+		List<CompletableFuture<Integer>> writes = new ArrayList<>();
+		for (int i = 0; i < 4 * QUEUE_DEPTH; i++) {
+			ByteBuf src = data(512, i);
+			writes.add(ioUring.write(fd, src.memoryAddress(), 512, i * 512L));
+		}
+		for (CompletableFuture<Integer> write : writes) {
+			Assert.assertEquals(512, IoUring.await(write));
+		}
+
+		for (int i = 0; i < 4 * QUEUE_DEPTH; i++) {
+			Assert.assertEquals(buffers.get(i), readFile(i * 512L, 512));
+		}
+	}
+
+	@Test
+	public void testFailedOperationsReleaseTheirSlots() throws Exception {
+		ByteBuf src = data(512, 1);
+		for (int i = 0; i < 2 * QUEUE_DEPTH; i++) {
+			try {
+				IoUring.await(ioUring.write(-1, src.memoryAddress(), 512, 0));
+				Assert.fail("The write to an invalid file descriptor should fail");
+			} catch (IOException e) {
+				// expected
+			}
+		}
+
+		// The ring is still usable
+		Assert.assertEquals(512, IoUring.await(ioUring.write(fd, src.memoryAddress(), 512, 0)));
+	}
+
+	@Test
+	public void testOperationAfterClose() throws Exception {
+		ioUring.close();
+		ByteBuf src = data(512, 1);
+		try {
+			IoUring.await(ioUring.write(fd, src.memoryAddress(), 512, 0));
+			Assert.fail("The write should fail once the ring is closed");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testFlushesInFlight() throws Exception {
+		BufferedChannel bc = createChannel(64);
+		ByteBuf src = data(64 * 20 + 10, 1);
+		// Every 64 bytes the write buffer is flushed without waiting for the previous flushes
+		bc.write(src);
+		bc.flush();
+		Assert.assertEquals(src.readableBytes(), bc.position());
+		Assert.assertEquals(src.readableBytes(), bc.getFileChannelPosition());
+
+		// Everything flushed before the force write is in the file after it
+		Assert.assertEquals(src.readableBytes(), bc.forceWrite(false));
+		Assert.assertEquals(src, readFile(0, src.readableBytes()));
+		bc.close();
+	}
+
+	@Test
+	public void testReadFlushedData() throws Exception {
+		BufferedChannel bc = createChannel(64);
+		ByteBuf src = data(1000, 1);
+		bc.write(src);
+
+		// The data is read back from the file, from the writes that may still be in flight and from the write buffer
+		ByteBuf dest = Unpooled.buffer(1000);
+		buffers.add(dest);
+		Assert.assertEquals(1000, bc.read(dest, 0, 1000));
+		Assert.assertEquals(src, dest);
+		bc.close();
+	}
+
+	@Test
+	public void testAwaitFlushedWrites() throws Exception {
+		BufferedChannel bc = createChannel(128);
+		ByteBuf src = data(128 * 10, 1);
+		bc.write(src);
+		bc.awaitFlushedWrites();
+		Assert.assertEquals(src, readFile(0, src.readableBytes()));
+		bc.close();
+	}
+
+	@Test
+	public void testReadAsync() throws Exception {
+		ByteBuf src = data(8192, 1);
+		randomAccessFile.getChannel().write(src.nioBuffer(), 0);
+
+		BufferedReadChannel channel = new BufferedReadChannel(randomAccessFile.getChannel(), 512, ioUring, fd);
+		List<ByteBuf> dests = new ArrayList<>();
+		List<CompletableFuture<Integer>> reads = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			ByteBuf dest = Unpooled.directBuffer(1024, 1024);
+			buffers.add(dest);
+			dests.add(dest);
+			reads.add(channel.readAsync(dest, i * 1024L, 1024));
+		}
+		for (int i = 0; i < 8; i++) {
+			Assert.assertEquals(1024, IoUring.await(reads.get(i)));
+			Assert.assertEquals(src.slice(i * 1024, 1024), dests.get(i));
+		}
+	}
+}
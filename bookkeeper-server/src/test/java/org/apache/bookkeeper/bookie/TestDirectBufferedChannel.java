@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+
+/**
+ * Test the alignment and the handling of the partial last block of {@link DirectBufferedChannel}. The tests are
+ * skipped when the file system does not support direct I/O.
+ */
+public class TestDirectBufferedChannel {
+
+	private static final int ALIGNMENT = 4096;
+
+	private AlignedBufferPool bufferPool;
+	private File file;
+	private RandomAccessFile randomAccessFile;
+
+	@Before
+	public void setup() throws Exception {
+		bufferPool = new AlignedBufferPool(UnpooledByteBufAllocator.DEFAULT, ALIGNMENT, 3 * ALIGNMENT, 2);
+		file = File.createTempFile("test", "txn");
+		file.deleteOnExit();
+		randomAccessFile = new RandomAccessFile(file, "rw");
+	}
+
+	@After
+	public void teardown() throws Exception {
+		randomAccessFile.close();
+		bufferPool.close();
+		file.delete();
+	}
+
+	private DirectBufferedChannel createChannel() throws IOException {
+		try {
+			return new DirectBufferedChannel(randomAccessFile.getChannel(), file, bufferPool, ALIGNMENT);
+		} catch (IOException e) {
+			Assume.assumeNoException("Direct I/O is not supported", e);
+			return null;
+		}
+	}
+
+	private static ByteBuf data(int length, long seed) {
+		byte[] bytes = new byte[length];
+		new Random(seed).nextBytes(bytes);
+		return Unpooled.wrappedBuffer(bytes);
+	}
+
+	private ByteBuf readFile(long pos, int length) throws IOException {
+		ByteBuf buf = Unpooled.buffer(length);
+		while (buf.isWritable()) {
+			if (buf.writeBytes(randomAccessFile.getChannel(), pos + buf.writerIndex(), buf.writableBytes()) <= 0) {
+				break;
+			}
+		}
+		return buf;
+	}
+
+	private static void assertZeros(ByteBuf buf) {
+		while (buf.isReadable()) {
+			Assert.assertEquals(0, buf.readByte());
+		}
+	}
+
+	@Test
+	public void testAlignedBuffers() throws Exception {
+		ByteBuf first = bufferPool.acquire();
+		ByteBuf second = bufferPool.acquire();
+		Assert.assertEquals(0, first.memoryAddress() % ALIGNMENT);
+		Assert.assertEquals(0, second.memoryAddress() % ALIGNMENT);
+		Assert.assertEquals(3 * ALIGNMENT, first.capacity());
+
+		// A recycled buffer is reused, empty
+		first.writeInt(1);
+		bufferPool.recycle(first);
+		ByteBuf reused = bufferPool.acquire();
+		Assert.assertSame(first, reused);
+		Assert.assertEquals(0, reused.writerIndex());
+		bufferPool.recycle(reused);
+		bufferPool.recycle(second);
+	}
+
+	@Test
+	public void testBufferSizeRoundedToBlocks() throws Exception {
+		AlignedBufferPool pool = new AlignedBufferPool(UnpooledByteBufAllocator.DEFAULT, ALIGNMENT, 100, 1);
+		ByteBuf buffer = pool.acquire();
+		// At least two blocks, so that the partial last block can be kept while new data is buffered
+		Assert.assertEquals(2 * ALIGNMENT, buffer.capacity());
+		pool.recycle(buffer);
+		pool.close();
+	}
+
+	@Test
+	public void testPartialLastBlock() throws Exception {
+		DirectBufferedChannel bc = createChannel();
+		ByteBuf first = data(ALIGNMENT + 100, 1);
+		bc.write(first);
+		bc.flush();
+
+		// The last block is padded with zeros
+		Assert.assertEquals(2 * ALIGNMENT, randomAccessFile.length());
+		Assert.assertEquals(first, readFile(0, first.readableBytes()));
+		assertZeros(readFile(first.readableBytes(), ALIGNMENT - 100));
+		Assert.assertEquals(first.readableBytes(), bc.getFileChannelPosition());
+
+		// The next flush completes the partial block
+		ByteBuf second = data(ALIGNMENT, 2);
+		bc.write(second);
+		bc.flush();
+		Assert.assertEquals(3 * ALIGNMENT, randomAccessFile.length());
+		Assert.assertEquals(first, readFile(0, first.readableBytes()));
+		Assert.assertEquals(second, readFile(first.readableBytes(), second.readableBytes()));
+		Assert.assertEquals(first.readableBytes() + second.readableBytes(), bc.forceWrite(false));
+		bc.close();
+	}
+
+	@Test
+	public void testFlushWithoutNewData() throws Exception {
+		DirectBufferedChannel bc = createChannel();
+		bc.write(data(100, 1));
+		bc.flush();
+		long flushed = bc.getFileChannelPosition();
+		bc.flush();
+		Assert.assertEquals(flushed, bc.getFileChannelPosition());
+		Assert.assertEquals(ALIGNMENT, randomAccessFile.length());
+		bc.close();
+	}
+
+	@Test
+	public void testUnalignedStartPosition() throws Exception {
+		// Data written before the channel is created, like the header of a journal file
+		ByteBuf header = data(512, 1);
+		randomAccessFile.getChannel().write(header.nioBuffer());
+
+		DirectBufferedChannel bc = createChannel();
+		Assert.assertEquals(512, bc.position());
+		ByteBuf entry = data(1000, 2);
+		bc.write(entry);
+		bc.flush();
+
+		// The beginning of the first block was written back along with the new data
+		Assert.assertEquals(header, readFile(0, 512));
+		Assert.assertEquals(entry, readFile(512, 1000));
+		Assert.assertEquals(1512, bc.getFileChannelPosition());
+		bc.close();
+	}
+
+	@Test
+	public void testPreallocate() throws Exception {
+		DirectBufferedChannel bc = createChannel();
+		bc.write(data(100, 1));
+		bc.flush();
+
+		bc.preallocate(4 * ALIGNMENT);
+		Assert.assertEquals(4 * ALIGNMENT, randomAccessFile.length());
+		assertZeros(readFile(3 * ALIGNMENT, ALIGNMENT));
+
+		// The data written afterwards is not overwritten by the preallocation
+		ByteBuf entry = data(ALIGNMENT, 2);
+		bc.write(entry);
+		bc.flush();
+		Assert.assertEquals(entry, readFile(100, ALIGNMENT));
+		Assert.assertEquals(4 * ALIGNMENT, randomAccessFile.length());
+		bc.close();
+	}
+
+	@Test
+	public void testPreallocateSkippedOverBufferedData() throws Exception {
+		DirectBufferedChannel bc = createChannel();
+		ByteBuf entry = data(ALIGNMENT + 100, 1);
+		bc.write(entry);
+
+		// The last block before the end still has to be written by the next flush
+		bc.preallocate(2 * ALIGNMENT);
+		Assert.assertEquals(0, randomAccessFile.length());
+
+		bc.flush();
+		Assert.assertEquals(entry, readFile(0, entry.readableBytes()));
+		bc.close();
+	}
+
+	@Test
+	public void testPreallocateUnalignedEnd() throws Exception {
+		DirectBufferedChannel bc = createChannel();
+		bc.preallocate(ALIGNMENT + 1);
+		Assert.assertEquals(0, randomAccessFile.length());
+		bc.close();
+	}
+
+	@Test
+	public void testReadBufferedData() throws Exception {
+		DirectBufferedChannel bc = createChannel();
+		ByteBuf entry = data(ALIGNMENT + 100, 1);
+		bc.write(entry);
+		bc.flush();
+
+		// The partial last block is read from the write buffer
+		ByteBuf dest = Unpooled.buffer(entry.readableBytes());
+		Assert.assertEquals(entry.readableBytes(), bc.read(dest, 0, entry.readableBytes()));
+		Assert.assertEquals(entry, dest);
+		bc.close();
+	}
+}
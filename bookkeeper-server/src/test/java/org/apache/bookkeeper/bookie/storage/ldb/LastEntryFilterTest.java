@@ -0,0 +1,151 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.LongConsumer;
+
+import org.apache.bookkeeper.bookie.Bookie;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link LastEntryFilter}.
+ */
+public class LastEntryFilterTest {
+
+    private static final long LEDGER_ID = 1L;
+
+    // The entries of the ledger in the entry location index
+    private final NavigableSet<Long> storedEntries = new ConcurrentSkipListSet<>();
+    private EntryLocationIndex entryLocationIndex;
+    private LastEntryFilter filter;
+
+    @Before
+    public void setup() throws Exception {
+        entryLocationIndex = mock(EntryLocationIndex.class);
+        doAnswer(invocation -> {
+            long firstEntryId = invocation.getArgument(1);
+            long lastEntryId = invocation.getArgument(2);
+            LongConsumer consumer = invocation.getArgument(3);
+            for (long entryId : storedEntries.subSet(firstEntryId, lastEntryId)) {
+                consumer.accept(entryId);
+            }
+            return null;
+        }).when(entryLocationIndex).forEachEntryId(eq(LEDGER_ID), anyLong(), anyLong(), any());
+        when(entryLocationIndex.getLastEntryInLedger(LEDGER_ID)).thenAnswer(invocation -> {
+            if (storedEntries.isEmpty()) {
+                throw new Bookie.NoEntryException(LEDGER_ID, -1);
+            }
+            return storedEntries.last();
+        });
+
+        DbLedgerStorageStats stats = new DbLedgerStorageStats(NullStatsLogger.INSTANCE,
+                () -> 0L, () -> 0L, () -> 0L, () -> 0L, () -> 0L, () -> 0L);
+        filter = new LastEntryFilter(entryLocationIndex, stats);
+    }
+
+    @Test
+    public void rejectEntriesNotStored() throws Exception {
+        // The entries stored on the other bookies of the ensemble are in the gaps
+        storedEntries.addAll(Arrays.asList(0L, 2L, 4L));
+
+        assertTrue(filter.mightContain(LEDGER_ID, 0));
+        assertFalse(filter.mightContain(LEDGER_ID, 1));
+        assertTrue(filter.mightContain(LEDGER_ID, 2));
+        assertFalse(filter.mightContain(LEDGER_ID, 3));
+        assertTrue(filter.mightContain(LEDGER_ID, 4));
+        assertFalse(filter.mightContain(LEDGER_ID, 5));
+
+        // The entries added once the ledger is in the filter are set in its bitmap
+        filter.onAdd(LEDGER_ID, 6);
+        assertTrue(filter.mightContain(LEDGER_ID, 6));
+        assertFalse(filter.mightContain(LEDGER_ID, 7));
+
+        // The index was scanned once
+        verify(entryLocationIndex, times(1)).forEachEntryId(eq(LEDGER_ID), anyLong(), anyLong(), any());
+    }
+
+    @Test
+    public void entriesAddedBeforeLookupNotFlushedYet() throws Exception {
+        storedEntries.addAll(Arrays.asList(0L, 2L, 4L));
+        // Still in the write cache when the ledger is first looked up
+        filter.onAdd(LEDGER_ID, 10);
+        filter.onAdd(LEDGER_ID, 11);
+
+        assertTrue(filter.mightContain(LEDGER_ID, 10));
+        assertTrue(filter.mightContain(LEDGER_ID, 9));
+        assertFalse(filter.mightContain(LEDGER_ID, 12));
+
+        // Once the entries added before the lookup are flushed, the index is scanned again
+        storedEntries.addAll(Arrays.asList(10L, 11L));
+        filter.onFlush();
+        filter.onFlush();
+
+        assertFalse(filter.mightContain(LEDGER_ID, 9));
+        assertTrue(filter.mightContain(LEDGER_ID, 10));
+        assertTrue(filter.mightContain(LEDGER_ID, 11));
+        assertFalse(filter.mightContain(LEDGER_ID, 8));
+
+        // The bitmap is complete, there is no need to scan the index anymore
+        filter.onFlush();
+        assertFalse(filter.mightContain(LEDGER_ID, 7));
+        verify(entryLocationIndex, times(2)).forEachEntryId(eq(LEDGER_ID), anyLong(), anyLong(), any());
+    }
+
+    @Test
+    public void ledgerTooLargeForBitmap() throws Exception {
+        long lastEntryId = LastEntryFilter.MAX_BITMAP_ENTRIES + 5;
+        storedEntries.addAll(Arrays.asList(0L, lastEntryId));
+
+        // Only the reads past the last entry are rejected
+        assertTrue(filter.mightContain(LEDGER_ID, 1));
+        assertTrue(filter.mightContain(LEDGER_ID, lastEntryId));
+        assertFalse(filter.mightContain(LEDGER_ID, lastEntryId + 1));
+
+        filter.onAdd(LEDGER_ID, lastEntryId + 1);
+        assertTrue(filter.mightContain(LEDGER_ID, lastEntryId + 1));
+    }
+
+    @Test
+    public void deleteLedger() throws Exception {
+        storedEntries.add(0L);
+        assertTrue(filter.mightContain(LEDGER_ID, 0));
+
+        storedEntries.clear();
+        filter.deleteLedger(LEDGER_ID);
+        assertFalse(filter.mightContain(LEDGER_ID, 0));
+    }
+}
@@ -0,0 +1,223 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link ReadCache}.
+ */
+public class ReadCacheTest {
+
+    // 10 segments of 1KB, each holding 8 entries of 100 bytes
+    private static final int SEGMENT_SIZE = 1024;
+    private static final int SEGMENTS_COUNT = 10;
+    private static final int ENTRY_SIZE = 100;
+    private static final int ENTRIES_PER_SEGMENT = 8;
+
+    private ReadCache cache;
+
+    @Before
+    public void setup() {
+        cache = new ReadCache(UnpooledByteBufAllocator.DEFAULT, SEGMENTS_COUNT * SEGMENT_SIZE, SEGMENT_SIZE);
+    }
+
+    @After
+    public void teardown() {
+        cache.close();
+    }
+
+    private static ByteBuf entry(long entryId) {
+        ByteBuf entry = Unpooled.buffer(ENTRY_SIZE);
+        while (entry.isWritable()) {
+            entry.writeByte((int) entryId);
+        }
+        return entry;
+    }
+
+    private void put(long ledgerId, long entryId) {
+        ByteBuf entry = entry(entryId);
+        cache.put(ledgerId, entryId, entry);
+        entry.release();
+    }
+
+    private static void assertEntry(long entryId, ByteBuf cached) {
+        assertNotNull("Entry " + entryId + " should be cached", cached);
+        ByteBuf expected = entry(entryId);
+        assertEquals(expected, cached);
+        expected.release();
+    }
+
+    @Test
+    public void simple() {
+        assertNull(cache.get(0, 0));
+
+        put(0, 0);
+        put(1, 0);
+
+        ByteBuf cached = cache.get(0, 0);
+        assertEntry(0, cached);
+        cached.release();
+        assertNull(cache.get(0, 1));
+
+        assertEquals(2, cache.count());
+    }
+
+    @Test
+    public void readsAcrossRotation() {
+        int numEntries = 25 * ENTRIES_PER_SEGMENT;
+        for (int i = 0; i < numEntries; i++) {
+            put(1, i);
+
+            // The entries of the previous segments can still be read while the cache rotates
+            for (int j = Math.max(0, i - (SEGMENTS_COUNT - 1) * ENTRIES_PER_SEGMENT); j <= i; j++) {
+                ByteBuf cached = cache.get(1, j);
+                assertEntry(j, cached);
+                cached.release();
+            }
+        }
+
+        // The oldest entries were rotated out
+        for (int i = 0; i < numEntries - SEGMENTS_COUNT * ENTRIES_PER_SEGMENT; i++) {
+            assertNull(cache.get(1, i));
+        }
+    }
+
+    @Test
+    public void countExcludesRotatedEntries() {
+        for (int i = 0; i < SEGMENTS_COUNT * ENTRIES_PER_SEGMENT; i++) {
+            put(1, i);
+        }
+        assertEquals(SEGMENTS_COUNT * ENTRIES_PER_SEGMENT, cache.count());
+
+        // Rolling over to the next segment evicts the first one
+        put(1, SEGMENTS_COUNT * ENTRIES_PER_SEGMENT);
+        assertEquals((SEGMENTS_COUNT - 1) * ENTRIES_PER_SEGMENT + 1, cache.count());
+        assertNull(cache.get(1, 0));
+    }
+
+    @Test
+    public void sliceHeldWhileSegmentIsReused() {
+        put(1, 0);
+        ByteBuf held = cache.get(1, 0);
+        assertEntry(0, held);
+
+        // Wrap around the ring a few times, so that the slot of the held entry is reused
+        for (int i = 1; i < 3 * SEGMENTS_COUNT * ENTRIES_PER_SEGMENT; i++) {
+            put(1, i);
+        }
+
+        assertNull(cache.get(1, 0));
+
+        // The segment memory was not overwritten while the slice is still referenced
+        assertEntry(0, held);
+        assertEquals(1, cache.detachedCount());
+        held.release();
+
+        // The memory is freed on the next rotation
+        long last = 3 * SEGMENTS_COUNT * ENTRIES_PER_SEGMENT + ENTRIES_PER_SEGMENT;
+        for (long i = 3 * SEGMENTS_COUNT * ENTRIES_PER_SEGMENT; i <= last; i++) {
+            put(1, i);
+        }
+        assertEquals(0, held.refCnt());
+        assertEquals(0, cache.detachedCount());
+
+        // The cache keeps working with the segment that replaced it
+        ByteBuf cached = cache.get(1, last);
+        assertEntry(last, cached);
+        cached.release();
+    }
+
+    @Test
+    public void rotationDeferredWhileSegmentsArePinned() {
+        // Hold slices of the first two segments
+        for (int i = 0; i <= ENTRIES_PER_SEGMENT; i++) {
+            put(1, i);
+        }
+        ByteBuf held0 = cache.get(1, 0);
+        ByteBuf held1 = cache.get(1, ENTRIES_PER_SEGMENT);
+
+        // The first segment is detached when the ring wraps around
+        int next = ENTRIES_PER_SEGMENT + 1;
+        for (; next < (SEGMENTS_COUNT + 1) * ENTRIES_PER_SEGMENT; next++) {
+            put(1, next);
+        }
+        assertEquals(ReadCache.MAX_DETACHED_SEGMENTS, cache.detachedCount());
+        assertEquals(ReadCache.MAX_DETACHED_SEGMENTS * SEGMENT_SIZE, cache.detachedSize());
+
+        // No more segments can be detached, so the second one is kept and the new entries are not cached
+        put(1, next);
+        assertNull(cache.get(1, next));
+        ByteBuf cached = cache.get(1, ENTRIES_PER_SEGMENT + 1);
+        assertEntry(ENTRIES_PER_SEGMENT + 1, cached);
+        cached.release();
+
+        // Once the first segment is released, the second one can be detached in turn
+        held0.release();
+        put(1, next);
+        cached = cache.get(1, next);
+        assertEntry(next, cached);
+        cached.release();
+        assertNull(cache.get(1, ENTRIES_PER_SEGMENT + 1));
+        assertEquals(1, cache.detachedCount());
+
+        // The memory of the detached segments is released with the last slices
+        assertEntry(ENTRIES_PER_SEGMENT, held1);
+        held1.release();
+        for (int i = 0; i < ENTRIES_PER_SEGMENT; i++) {
+            put(1, ++next);
+        }
+        assertEquals(0, cache.detachedCount());
+    }
+
+    @Test
+    public void overwriteEntry() {
+        put(1, 0);
+        ByteBuf entry = entry(5);
+        cache.put(1, 0, entry);
+        entry.release();
+
+        ByteBuf cached = cache.get(1, 0);
+        assertEntry(5, cached);
+        cached.release();
+    }
+
+    @Test
+    public void entryLargerThanSegment() {
+        ByteBuf entry = Unpooled.buffer(SEGMENT_SIZE);
+        entry.writerIndex(SEGMENT_SIZE);
+        cache.put(1, 0, entry);
+        entry.release();
+
+        assertNull(cache.get(1, 0));
+        assertEquals(0, cache.count());
+    }
+}
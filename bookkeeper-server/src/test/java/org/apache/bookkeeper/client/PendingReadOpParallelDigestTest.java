@@ -0,0 +1,269 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.google.common.collect.Lists;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.bookkeeper.client.api.DigestType;
+import org.apache.bookkeeper.client.api.LedgerEntries;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.client.api.WriteFlag;
+import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.apache.bookkeeper.common.util.OrderedScheduler;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.meta.LedgerManager;
+import org.apache.bookkeeper.net.BookieSocketAddress;
+import org.apache.bookkeeper.proto.BookieClient;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.BatchReadEntriesCallback;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntryCallback;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.util.ByteBufList;
+import org.apache.bookkeeper.versioning.LongVersion;
+import org.apache.bookkeeper.versioning.Versioned;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the verification of the digests of batch reads in parallel by {@link PendingReadOp}.
+ */
+public class PendingReadOpParallelDigestTest {
+
+    private static final long LEDGER_ID = 1L;
+    private static final int NUM_ENTRIES = 100;
+    private static final int MIN_ENTRIES = 8;
+    private static final long CORRUPT_ENTRY_ID = 57L;
+
+    private OrderedExecutor mainWorkerPool;
+    private ParallelDigestVerifier digestVerifier;
+    private BookieClient bookieClient;
+    private LedgerHandle lh;
+
+    @Before
+    public void setup() throws Exception {
+        ClientConfiguration conf = new ClientConfiguration()
+                .setBatchReadEnabled(true)
+                .setParallelDigestVerificationEnabled(true)
+                .setParallelDigestVerificationMinEntries(MIN_ENTRIES)
+                .setParallelDigestVerificationThreads(4)
+                .setFirstSpeculativeReadTimeout(0);
+        ClientInternalConf internalConf = ClientInternalConf.fromConfig(conf);
+        BookKeeperClientStats clientStats = BookKeeperClientStats.newInstance(NullStatsLogger.INSTANCE);
+        mainWorkerPool = OrderedExecutor.newBuilder().name("TestWorker").numThreads(1).build();
+        digestVerifier = new ParallelDigestVerifier(conf.getParallelDigestVerificationThreads());
+        bookieClient = mock(BookieClient.class);
+
+        ClientContext clientCtx = new ClientContext() {
+            @Override
+            public ClientInternalConf getConf() {
+                return internalConf;
+            }
+
+            @Override
+            public LedgerManager getLedgerManager() {
+                return null;
+            }
+
+            @Override
+            public BookieWatcher getBookieWatcher() {
+                return null;
+            }
+
+            @Override
+            public EnsemblePlacementPolicy getPlacementPolicy() {
+                return null;
+            }
+
+            @Override
+            public BookieClient getBookieClient() {
+                return bookieClient;
+            }
+
+            @Override
+            public ByteBufAllocator getByteBufAllocator() {
+                return UnpooledByteBufAllocator.DEFAULT;
+            }
+
+            @Override
+            public OrderedExecutor getMainWorkerPool() {
+                return mainWorkerPool;
+            }
+
+            @Override
+            public OrderedScheduler getScheduler() {
+                return null;
+            }
+
+            @Override
+            public BookKeeperClientStats getClientStats() {
+                return clientStats;
+            }
+
+            @Override
+            public ParallelDigestVerifier getDigestVerifier() {
+                return digestVerifier;
+            }
+
+            @Override
+            public boolean isClientClosed() {
+                return false;
+            }
+        };
+
+        byte[] password = "test".getBytes(UTF_8);
+        List<BookieSocketAddress> ensemble = Lists.newArrayList(
+                new BookieSocketAddress("127.0.0.1", 3181),
+                new BookieSocketAddress("127.0.0.2", 3181),
+                new BookieSocketAddress("127.0.0.3", 3181));
+        LedgerMetadata metadata = LedgerMetadataBuilder.create()
+                .withEnsembleSize(3).withWriteQuorumSize(3).withAckQuorumSize(2)
+                .withPassword(password).withDigestType(DigestType.CRC32C)
+                .newEnsembleEntry(0L, ensemble)
+                .build();
+        lh = new LedgerHandle(clientCtx, LEDGER_ID, new Versioned<>(metadata, new LongVersion(0L)),
+                BookKeeper.DigestType.CRC32C, password, WriteFlag.NONE);
+    }
+
+    @After
+    public void teardown() throws Exception {
+        digestVerifier.shutdown();
+        mainWorkerPool.shutdown();
+    }
+
+    private static byte[] data(long entryId) {
+        return ("entry-" + entryId).getBytes(UTF_8);
+    }
+
+    private ByteBuf entry(long entryId) {
+        byte[] data = data(entryId);
+        ByteBufList toSend = lh.macManager.computeDigestAndPackageForSending(entryId, NUM_ENTRIES - 1, data.length,
+                Unpooled.wrappedBuffer(data));
+        ByteBuf entry = ByteBufList.coalesce(toSend);
+        toSend.release();
+        return entry;
+    }
+
+    @Test
+    public void testBatchWithCorruptEntry() throws Exception {
+        doAnswer(invocation -> {
+            long startEntryId = invocation.getArgument(2);
+            int maxCount = invocation.getArgument(3);
+            BatchReadEntriesCallback cb = invocation.getArgument(5);
+            List<ByteBuf> entries = new ArrayList<>();
+            for (long entryId = startEntryId; entryId < startEntryId + maxCount; entryId++) {
+                ByteBuf entry = entry(entryId);
+                if (entryId == CORRUPT_ENTRY_ID) {
+                    // flip the last byte of the payload
+                    int last = entry.writerIndex() - 1;
+                    entry.setByte(last, entry.getByte(last) ^ 0xff);
+                }
+                entries.add(entry);
+            }
+            cb.readEntriesComplete(BKException.Code.OK, LEDGER_ID, startEntryId, entries, invocation.getArgument(6));
+            return null;
+        }).when(bookieClient).batchReadEntries(any(), anyLong(), anyLong(), anyInt(), anyLong(), any(), any(),
+                anyInt());
+        doAnswer(invocation -> {
+            long entryId = invocation.getArgument(2);
+            ReadEntryCallback cb = invocation.getArgument(3);
+            ByteBuf entry = entry(entryId);
+            cb.readEntryComplete(BKException.Code.OK, LEDGER_ID, entryId, entry, invocation.getArgument(4));
+            entry.release();
+            return null;
+        }).when(bookieClient).readEntry(any(), anyLong(), anyLong(), any(), any(), anyInt(), any(), anyBoolean());
+
+        PendingReadOp op = new PendingReadOp(lh, lh.clientCtx, 0L, NUM_ENTRIES - 1, false);
+        op.submit();
+        try (LedgerEntries entries = op.future().get(30, TimeUnit.SECONDS)) {
+            for (long entryId = 0; entryId < NUM_ENTRIES; entryId++) {
+                assertArrayEquals(data(entryId), entries.getEntry(entryId).getEntryBytes());
+            }
+        }
+
+        // The batch was verified in parallel, and only the corrupt entry was read again from another replica
+        verify(bookieClient, times(1)).batchReadEntries(any(), eq(LEDGER_ID), eq(0L), eq(NUM_ENTRIES), anyLong(),
+                any(), any(), anyInt());
+        verify(bookieClient, times(1)).readEntry(any(), anyLong(), anyLong(), any(), any(), anyInt(), any(),
+                anyBoolean());
+        verify(bookieClient).readEntry(any(), eq(LEDGER_ID), eq(CORRUPT_ENTRY_ID), any(), any(), anyInt(), any(),
+                anyBoolean());
+    }
+
+    @Test
+    public void testBuffersReleasedWhenClientClosed() throws Exception {
+        AtomicReference<BatchReadEntriesCallback> callback = new AtomicReference<>();
+        AtomicReference<Object> context = new AtomicReference<>();
+        CompletableFuture<Void> sent = new CompletableFuture<>();
+        doAnswer(invocation -> {
+            callback.set(invocation.getArgument(5));
+            context.set(invocation.getArgument(6));
+            sent.complete(null);
+            return null;
+        }).when(bookieClient).batchReadEntries(any(), anyLong(), anyLong(), anyInt(), anyLong(), any(), any(),
+                anyInt());
+
+        PendingReadOp op = new PendingReadOp(lh, lh.clientCtx, 0L, NUM_ENTRIES - 1, false);
+        op.submit();
+        sent.get(30, TimeUnit.SECONDS);
+
+        // The response comes in once the ordered threads are shut down
+        mainWorkerPool.shutdown();
+        assertTrue(mainWorkerPool.awaitTermination(30, TimeUnit.SECONDS));
+        List<ByteBuf> entries = new ArrayList<>();
+        for (long entryId = 0; entryId < NUM_ENTRIES; entryId++) {
+            entries.add(entry(entryId));
+        }
+        callback.get().readEntriesComplete(BKException.Code.OK, LEDGER_ID, 0L, new ArrayList<>(entries),
+                context.get());
+
+        digestVerifier.shutdown();
+        assertTrue(digestVerifier.awaitTermination(30, TimeUnit.SECONDS));
+        for (ByteBuf entry : entries) {
+            assertEquals(0, entry.refCnt());
+        }
+        verify(bookieClient, never()).readEntry(any(), anyLong(), anyLong(), any(), any(), anyInt(), any(),
+                anyBoolean());
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.protobuf.ByteString;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.util.concurrent.GenericFutureListener;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.bookkeeper.bookie.Bookie;
+import org.apache.bookkeeper.bookie.BookieException;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BKPacketHeader;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BatchAddRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BatchAddResponse;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.OperationType;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.ProtocolVersion;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Request;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Response;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.StatusCode;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link BatchAddEntryProcessorV3}.
+ */
+public class BatchAddEntryProcessorV3Test {
+
+    private static final long LEDGER_ID = 1L;
+    private static final byte[] MASTER_KEY = "test".getBytes(UTF_8);
+
+    private Channel channel;
+    private Bookie bookie;
+    private BookieRequestProcessor requestProcessor;
+    private final List<Response> responses = new ArrayList<>();
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setup() throws Exception {
+        channel = mock(Channel.class);
+        when(channel.isWritable()).thenReturn(true);
+        ChannelFuture writeFuture = mock(ChannelFuture.class);
+        when(writeFuture.isSuccess()).thenReturn(true);
+        when(writeFuture.addListener(any())).thenAnswer(invocation -> {
+            // The response is written right away
+            GenericFutureListener<ChannelFuture> listener = invocation.getArgument(0);
+            listener.operationComplete(writeFuture);
+            return writeFuture;
+        });
+        when(channel.writeAndFlush(any())).thenAnswer(invocation -> {
+            // Serialize the response as the encoder would
+            Response response = invocation.getArgument(0);
+            responses.add(Response.parseFrom(response.toByteArray()));
+            return writeFuture;
+        });
+
+        bookie = mock(Bookie.class);
+
+        requestProcessor = mock(BookieRequestProcessor.class);
+        when(requestProcessor.getBookie()).thenReturn(bookie);
+        when(requestProcessor.getServerCfg()).thenReturn(new ServerConfiguration());
+        when(requestProcessor.getRequestStats()).thenReturn(new RequestStats(NullStatsLogger.INSTANCE));
+        when(requestProcessor.getWaitTimeoutOnBackpressureMillis()).thenReturn(-1L);
+    }
+
+    private static Request request(ProtocolVersion version, long... entryIds) {
+        BatchAddRequest.Builder batchAddRequest = BatchAddRequest.newBuilder()
+                .setLedgerId(LEDGER_ID)
+                .setMasterKey(ByteString.copyFrom(MASTER_KEY));
+        for (long entryId : entryIds) {
+            batchAddRequest.addEntryId(entryId);
+            batchAddRequest.addBody(ByteString.copyFrom(Long.toString(entryId), UTF_8));
+        }
+        return Request.newBuilder()
+                .setHeader(BKPacketHeader.newBuilder()
+                        .setVersion(version)
+                        .setOperation(OperationType.RANGE_ADD_ENTRY)
+                        .setTxnId(1L))
+                .setBatchAddRequest(batchAddRequest)
+                .build();
+    }
+
+    private Response process(Request request) {
+        new BatchAddEntryProcessorV3(request, channel, requestProcessor).run();
+        assertEquals(1, responses.size());
+        Response response = responses.get(0);
+        assertEquals(OperationType.RANGE_ADD_ENTRY, response.getHeader().getOperation());
+        assertEquals(1L, response.getHeader().getTxnId());
+        verify(requestProcessor, times(1)).onAddRequestStart(channel);
+        verify(requestProcessor, times(1)).onAddRequestFinish();
+        return response;
+    }
+
+    private static long entryId(ByteBuf entry) {
+        return Long.parseLong(entry.toString(UTF_8));
+    }
+
+    @Test
+    public void testAddEntries() throws Exception {
+        doAnswer(invocation -> {
+            ByteBuf entry = invocation.getArgument(0);
+            WriteCallback cb = invocation.getArgument(2);
+            cb.writeComplete(BookieProtocol.EOK, LEDGER_ID, entryId(entry), null, invocation.getArgument(3));
+            return null;
+        }).when(bookie).addEntry(any(ByteBuf.class), anyBoolean(), any(WriteCallback.class), any(), any());
+
+        Response response = process(request(ProtocolVersion.VERSION_THREE, 0L, 1L, 2L));
+
+        assertEquals(StatusCode.EOK, response.getStatus());
+        BatchAddResponse batchAddResponse = response.getBatchAddResponse();
+        assertEquals(StatusCode.EOK, batchAddResponse.getStatus());
+        assertEquals(LEDGER_ID, batchAddResponse.getLedgerId());
+        assertEquals(Arrays.asList(0L, 1L, 2L), batchAddResponse.getEntryIdList());
+        assertEquals(Arrays.asList(StatusCode.EOK, StatusCode.EOK, StatusCode.EOK),
+                batchAddResponse.getEntryStatusList());
+        verify(bookie, times(3)).addEntry(any(ByteBuf.class), anyBoolean(), any(WriteCallback.class), any(), any());
+    }
+
+    @Test
+    public void testPerEntryStatuses() throws Exception {
+        doAnswer(invocation -> {
+            ByteBuf entry = invocation.getArgument(0);
+            WriteCallback cb = invocation.getArgument(2);
+            long entryId = entryId(entry);
+            if (entryId == 1L) {
+                throw new BookieException.LedgerFencedException();
+            } else if (entryId == 2L) {
+                throw new IOException("disk failure");
+            } else if (entryId == 3L) {
+                cb.writeComplete(BookieProtocol.EIO, LEDGER_ID, entryId, null, invocation.getArgument(3));
+            } else {
+                cb.writeComplete(BookieProtocol.EOK, LEDGER_ID, entryId, null, invocation.getArgument(3));
+            }
+            return null;
+        }).when(bookie).addEntry(any(ByteBuf.class), anyBoolean(), any(WriteCallback.class), any(), any());
+
+        Response response = process(request(ProtocolVersion.VERSION_THREE, 0L, 1L, 2L, 3L, 4L));
+
+        // The overall status is the one of the first entry that failed
+        assertEquals(StatusCode.EFENCED, response.getStatus());
+        BatchAddResponse batchAddResponse = response.getBatchAddResponse();
+        assertEquals(StatusCode.EFENCED, batchAddResponse.getStatus());
+        assertEquals(Arrays.asList(0L, 1L, 2L, 3L, 4L), batchAddResponse.getEntryIdList());
+        assertEquals(Arrays.asList(StatusCode.EOK, StatusCode.EFENCED, StatusCode.EIO, StatusCode.EIO,
+                StatusCode.EOK), batchAddResponse.getEntryStatusList());
+    }
+
+    @Test
+    public void testResponseSentOnceLastEntryCompletes() throws Exception {
+        List<WriteCallback> callbacks = new ArrayList<>();
+        doAnswer(invocation -> {
+            callbacks.add(invocation.getArgument(2));
+            return null;
+        }).when(bookie).addEntry(any(ByteBuf.class), anyBoolean(), any(WriteCallback.class), any(), any());
+
+        new BatchAddEntryProcessorV3(request(ProtocolVersion.VERSION_THREE, 0L, 1L), channel, requestProcessor)
+                .run();
+        assertEquals(2, callbacks.size());
+        assertEquals(0, responses.size());
+
+        // The journal acknowledges the entries out of order
+        callbacks.get(1).writeComplete(BookieProtocol.EOK, LEDGER_ID, 1L, null, channel);
+        assertEquals(0, responses.size());
+        callbacks.get(0).writeComplete(BookieProtocol.EOK, LEDGER_ID, 0L, null, channel);
+        assertEquals(1, responses.size());
+        assertEquals(Arrays.asList(StatusCode.EOK, StatusCode.EOK),
+                responses.get(0).getBatchAddResponse().getEntryStatusList());
+    }
+
+    @Test
+    public void testMismatchedBodies() throws Exception {
+        Request request = request(ProtocolVersion.VERSION_THREE, 0L, 1L);
+        request = request.toBuilder()
+                .setBatchAddRequest(request.getBatchAddRequest().toBuilder().addEntryId(2L))
+                .build();
+
+        Response response = process(request);
+
+        assertEquals(StatusCode.EBADREQ, response.getStatus());
+        assertEquals(0, response.getBatchAddResponse().getEntryStatusCount());
+        verify(bookie, never()).addEntry(any(ByteBuf.class), anyBoolean(), any(WriteCallback.class), any(), any());
+    }
+
+    @Test
+    public void testReadOnlyBookie() throws Exception {
+        when(bookie.isReadOnly()).thenReturn(true);
+
+        Response response = process(request(ProtocolVersion.VERSION_THREE, 0L, 1L));
+
+        assertEquals(StatusCode.EREADONLY, response.getStatus());
+        verify(bookie, never()).addEntry(any(ByteBuf.class), anyBoolean(), any(WriteCallback.class), any(), any());
+    }
+
+    @Test
+    public void testBadVersion() throws Exception {
+        Response response = process(request(ProtocolVersion.VERSION_TWO, 0L, 1L));
+
+        assertEquals(StatusCode.EBADVERSION, response.getStatus());
+        verify(bookie, never()).addEntry(any(ByteBuf.class), anyBoolean(), any(WriteCallback.class), any(), any());
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.util.concurrent.GenericFutureListener;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.bookkeeper.bookie.Bookie;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BKPacketHeader;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BatchReadRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BatchReadResponse;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.OperationType;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.ProtocolVersion;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Request;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Response;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.StatusCode;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link BatchReadEntryProcessorV3}.
+ */
+public class BatchReadEntryProcessorV3Test {
+
+    private static final long LEDGER_ID = 1L;
+    // Must match the room the processor keeps for the framing of the response and of each entry
+    private static final int FRAME_OVERHEAD = 1024;
+    private static final int ENTRY_OVERHEAD = 16;
+
+    private Channel channel;
+    private Bookie bookie;
+    private BookieRequestProcessor requestProcessor;
+    private final List<Response> responses = new ArrayList<>();
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setup() throws Exception {
+        channel = mock(Channel.class);
+        when(channel.isWritable()).thenReturn(true);
+        ChannelFuture writeFuture = mock(ChannelFuture.class);
+        when(writeFuture.isSuccess()).thenReturn(true);
+        when(writeFuture.addListener(any())).thenAnswer(invocation -> {
+            // The response is written right away
+            GenericFutureListener<ChannelFuture> listener = invocation.getArgument(0);
+            listener.operationComplete(writeFuture);
+            return writeFuture;
+        });
+        when(channel.writeAndFlush(any())).thenAnswer(invocation -> {
+            // Serialize the response as the encoder would, before the write completes
+            Response response = invocation.getArgument(0);
+            responses.add(Response.parseFrom(response.toByteArray()));
+            return writeFuture;
+        });
+
+        bookie = mock(Bookie.class);
+        when(bookie.readLastAddConfirmed(LEDGER_ID)).thenReturn(10L);
+
+        requestProcessor = mock(BookieRequestProcessor.class);
+        when(requestProcessor.getBookie()).thenReturn(bookie);
+        when(requestProcessor.getServerCfg()).thenReturn(new ServerConfiguration());
+        when(requestProcessor.getRequestStats()).thenReturn(new RequestStats(NullStatsLogger.INSTANCE));
+        when(requestProcessor.getWaitTimeoutOnBackpressureMillis()).thenReturn(-1L);
+    }
+
+    private static Request request(ProtocolVersion version, long startEntryId, int maxCount, long maxSize) {
+        return Request.newBuilder()
+                .setHeader(BKPacketHeader.newBuilder()
+                        .setVersion(version)
+                        .setOperation(OperationType.RANGE_READ_ENTRY)
+                        .setTxnId(1L))
+                .setBatchReadRequest(BatchReadRequest.newBuilder()
+                        .setLedgerId(LEDGER_ID)
+                        .setStartEntryId(startEntryId)
+                        .setMaxCount(maxCount)
+                        .setMaxSize(maxSize))
+                .build();
+    }
+
+    private BatchReadResponse process(Request request) {
+        new BatchReadEntryProcessorV3(request, channel, requestProcessor).run();
+        assertEquals(1, responses.size());
+        Response response = responses.get(0);
+        assertEquals(OperationType.RANGE_READ_ENTRY, response.getHeader().getOperation());
+        return response.getBatchReadResponse();
+    }
+
+    private static List<ByteBuf> entries(int count, int size) {
+        List<ByteBuf> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ByteBuf entry = Unpooled.directBuffer(size);
+            while (entry.isWritable()) {
+                entry.writeByte(i);
+            }
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    private static void assertReleased(List<ByteBuf> entries) {
+        for (ByteBuf entry : entries) {
+            assertEquals(0, entry.refCnt());
+        }
+    }
+
+    @Test
+    public void testReadEntries() throws Exception {
+        List<ByteBuf> entries = entries(3, 100);
+        when(bookie.readEntries(eq(LEDGER_ID), eq(0L), eq(10), anyLong())).thenReturn(new ArrayList<>(entries));
+
+        BatchReadResponse response = process(request(ProtocolVersion.VERSION_THREE, 0L, 10, 1024 * 1024));
+
+        assertEquals(StatusCode.EOK, response.getStatus());
+        assertEquals(LEDGER_ID, response.getLedgerId());
+        assertEquals(0L, response.getStartEntryId());
+        assertEquals(10L, response.getMaxLAC());
+        assertEquals(3, response.getBodyCount());
+        for (int i = 0; i < 3; i++) {
+            byte[] body = response.getBody(i).toByteArray();
+            assertEquals(100, body.length);
+            for (byte b : body) {
+                assertEquals(i, b);
+            }
+        }
+
+        // The entries were referenced by the response until it was written
+        assertReleased(entries);
+    }
+
+    @Test
+    public void testSizeLimit() throws Exception {
+        List<ByteBuf> entries = entries(5, 1000);
+        when(bookie.readEntries(eq(LEDGER_ID), eq(0L), eq(5), anyLong())).thenReturn(new ArrayList<>(entries));
+
+        // Room for 2 entries and their framing, the storage may return a few more
+        long maxSize = FRAME_OVERHEAD + 2 * (1000 + ENTRY_OVERHEAD);
+        BatchReadResponse response = process(request(ProtocolVersion.VERSION_THREE, 0L, 5, maxSize));
+
+        assertEquals(StatusCode.EOK, response.getStatus());
+        assertEquals(2, response.getBodyCount());
+        assertReleased(entries);
+    }
+
+    @Test
+    public void testFirstEntryLargerThanMaxSize() throws Exception {
+        List<ByteBuf> entries = entries(2, 4096);
+        when(bookie.readEntries(eq(LEDGER_ID), eq(0L), eq(2), anyLong())).thenReturn(new ArrayList<>(entries));
+
+        BatchReadResponse response = process(request(ProtocolVersion.VERSION_THREE, 0L, 2, FRAME_OVERHEAD + 100));
+
+        // At least one entry is always returned
+        assertEquals(StatusCode.EOK, response.getStatus());
+        assertEquals(1, response.getBodyCount());
+        assertReleased(entries);
+    }
+
+    @Test
+    public void testCountLimit() throws Exception {
+        when(bookie.readEntries(anyLong(), anyLong(), anyInt(), anyLong())).thenReturn(new ArrayList<>());
+
+        process(request(ProtocolVersion.VERSION_THREE, 0L, Integer.MAX_VALUE, 1024 * 1024));
+
+        // The count is capped by the bookie, and the size by its max frame size
+        long maxFrameSize = new ServerConfiguration().getNettyMaxFrameSizeBytes();
+        verify(bookie).readEntries(LEDGER_ID, 0L, 10000, Math.min(1024 * 1024, maxFrameSize) - FRAME_OVERHEAD);
+    }
+
+    @Test
+    public void testInvalidRequest() throws Exception {
+        BatchReadResponse response = process(request(ProtocolVersion.VERSION_THREE, 0L, 0, 1024 * 1024));
+
+        assertEquals(StatusCode.EBADREQ, response.getStatus());
+        verify(bookie, never()).readEntries(anyLong(), anyLong(), anyInt(), anyLong());
+    }
+
+    @Test
+    public void testBadVersion() throws Exception {
+        BatchReadResponse response = process(request(ProtocolVersion.VERSION_TWO, 0L, 10, 1024 * 1024));
+
+        assertEquals(StatusCode.EBADVERSION, response.getStatus());
+        verify(bookie, never()).readEntries(anyLong(), anyLong(), anyInt(), anyLong());
+    }
+
+    @Test
+    public void testNoEntry() throws Exception {
+        when(bookie.readEntries(eq(LEDGER_ID), eq(5L), anyInt(), anyLong()))
+                .thenThrow(new Bookie.NoEntryException(LEDGER_ID, 5L));
+
+        BatchReadResponse response = process(request(ProtocolVersion.VERSION_THREE, 5L, 10, 1024 * 1024));
+
+        assertEquals(StatusCode.ENOENTRY, response.getStatus());
+        assertEquals(0, response.getBodyCount());
+    }
+
+    @Test
+    public void testErrorAfterRead() throws Exception {
+        List<ByteBuf> entries = entries(3, 100);
+        when(bookie.readEntries(eq(LEDGER_ID), eq(0L), eq(10), anyLong())).thenReturn(new ArrayList<>(entries));
+        when(bookie.readLastAddConfirmed(LEDGER_ID)).thenThrow(new IOException("test"));
+
+        BatchReadResponse response = process(request(ProtocolVersion.VERSION_THREE, 0L, 10, 1024 * 1024));
+
+        // No partial batch is returned along with an error, and the entries read are released
+        assertEquals(StatusCode.EIO, response.getStatus());
+        assertFalse(response.getBodyCount() > 0);
+        assertReleased(entries);
+    }
+
+    @Test
+    public void testResponseDroppedOnNonWritableChannel() throws Exception {
+        when(channel.isWritable()).thenReturn(false);
+        when(requestProcessor.getWaitTimeoutOnBackpressureMillis()).thenReturn(0L);
+        when(requestProcessor.isBlacklisted(channel)).thenReturn(true);
+        List<ByteBuf> entries = entries(3, 100);
+        when(bookie.readEntries(eq(LEDGER_ID), eq(0L), eq(10), anyLong())).thenReturn(new ArrayList<>(entries));
+
+        new BatchReadEntryProcessorV3(request(ProtocolVersion.VERSION_THREE, 0L, 10, 1024 * 1024), channel,
+                requestProcessor).run();
+
+        assertTrue(responses.isEmpty());
+        assertReleased(entries);
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.client.api.WriteFlag;
+import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.net.BookieSocketAddress;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.AddResponse;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BatchAddResponse;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.OperationType;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Request;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Response;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.StatusCode;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.util.ByteBufList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the batching of adds by {@link PerChannelBookieClient}.
+ */
+public class PerChannelBookieClientBatchAddTest {
+
+    private static final long LEDGER_ID = 1L;
+    private static final byte[] MASTER_KEY = "test".getBytes(UTF_8);
+    private static final int BATCH_SIZE = 2;
+
+    private OrderedExecutor executor;
+    private EmbeddedChannel channel;
+    private PerChannelBookieClient client;
+
+    @Before
+    public void setup() throws Exception {
+        ClientConfiguration conf = new ClientConfiguration()
+                .setBatchAddEnabled(true)
+                .setBatchAddMaxCount(BATCH_SIZE);
+        executor = OrderedExecutor.newBuilder().name("TestWorker").numThreads(1).build();
+        client = new PerChannelBookieClient(conf, executor, null, UnpooledByteBufAllocator.DEFAULT,
+                new BookieSocketAddress("127.0.0.1", 3181), NullStatsLogger.INSTANCE, null, null, null, null);
+        // The requests are kept in the outbound buffer of the channel instead of being sent to a bookie
+        channel = new EmbeddedChannel();
+        client.channel = channel;
+    }
+
+    @After
+    public void teardown() throws Exception {
+        channel.finishAndReleaseAll();
+        executor.shutdown();
+    }
+
+    private CompletableFuture<Integer> addEntry(long entryId) {
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        ByteBufList toSend = ByteBufList.get(Unpooled.wrappedBuffer(Long.toString(entryId).getBytes(UTF_8)));
+        client.addEntry(LEDGER_ID, MASTER_KEY, entryId, toSend,
+                (rc, ledgerId, eid, addr, ctx) -> result.complete(rc), null,
+                BookieProtocol.FLAG_NONE, false, WriteFlag.NONE);
+        return result;
+    }
+
+    // Hand a response to the client, and wait for the callbacks it triggers to have run
+    private void receive(Response response) throws Exception {
+        client.channelRead(null, response);
+        executor.submitOrdered(LEDGER_ID, () -> null).get(30, TimeUnit.SECONDS);
+    }
+
+    private List<Request> sentRequests() {
+        List<Request> requests = new ArrayList<>();
+        Object request;
+        while ((request = channel.readOutbound()) != null) {
+            requests.add((Request) request);
+        }
+        return requests;
+    }
+
+    @Test
+    public void testBatchAdd() throws Exception {
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for (long entryId = 0; entryId < BATCH_SIZE; entryId++) {
+            results.add(addEntry(entryId));
+        }
+
+        List<Request> requests = sentRequests();
+        assertEquals(1, requests.size());
+        Request request = requests.get(0);
+        assertEquals(OperationType.RANGE_ADD_ENTRY, request.getHeader().getOperation());
+        assertEquals(Arrays.asList(0L, 1L), request.getBatchAddRequest().getEntryIdList());
+        assertEquals("1", request.getBatchAddRequest().getBody(1).toString(UTF_8));
+
+        receive(Response.newBuilder()
+                .setHeader(request.getHeader())
+                .setStatus(StatusCode.EOK)
+                .setBatchAddResponse(BatchAddResponse.newBuilder()
+                        .setLedgerId(LEDGER_ID)
+                        .setStatus(StatusCode.EFENCED)
+                        .addAllEntryId(request.getBatchAddRequest().getEntryIdList())
+                        .addEntryStatus(StatusCode.EOK)
+                        .addEntryStatus(StatusCode.EFENCED))
+                .build());
+
+        // Each add completes with the status of its own entry
+        assertEquals(BKException.Code.OK, results.get(0).get(30, TimeUnit.SECONDS).intValue());
+        assertEquals(BKException.Code.LedgerFencedException, results.get(1).get(30, TimeUnit.SECONDS).intValue());
+    }
+
+    @Test
+    public void testFallbackWhenBatchAddNotSupported() throws Exception {
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for (long entryId = 0; entryId < BATCH_SIZE; entryId++) {
+            results.add(addEntry(entryId));
+        }
+        List<Request> requests = sentRequests();
+        assertEquals(1, requests.size());
+        Request batchRequest = requests.get(0);
+        assertEquals(OperationType.RANGE_ADD_ENTRY, batchRequest.getHeader().getOperation());
+
+        // A bookie that does not know about batch adds rejects the request without a batch add response
+        receive(Response.newBuilder()
+                .setHeader(batchRequest.getHeader())
+                .setStatus(StatusCode.EBADREQ)
+                .build());
+        for (CompletableFuture<Integer> result : results) {
+            assertFalse(result.isDone());
+        }
+
+        // The entries are sent again one by one
+        requests = sentRequests();
+        assertEquals(BATCH_SIZE, requests.size());
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            Request request = requests.get(i);
+            assertEquals(OperationType.ADD_ENTRY, request.getHeader().getOperation());
+            assertEquals(i, request.getAddRequest().getEntryId());
+            assertEquals(Long.toString(i), request.getAddRequest().getBody().toString(UTF_8));
+            receive(Response.newBuilder()
+                    .setHeader(request.getHeader())
+                    .setStatus(StatusCode.EOK)
+                    .setAddResponse(AddResponse.newBuilder()
+                            .setLedgerId(LEDGER_ID)
+                            .setEntryId(i)
+                            .setStatus(StatusCode.EOK))
+                    .build());
+        }
+        for (CompletableFuture<Integer> result : results) {
+            assertEquals(BKException.Code.OK, result.get(30, TimeUnit.SECONDS).intValue());
+        }
+
+        // Batching stays disabled for this bookie
+        CompletableFuture<Integer> result = addEntry(BATCH_SIZE);
+        requests = sentRequests();
+        assertEquals(1, requests.size());
+        assertEquals(OperationType.ADD_ENTRY, requests.get(0).getHeader().getOperation());
+        assertNull(result.getNow(null));
+    }
+}
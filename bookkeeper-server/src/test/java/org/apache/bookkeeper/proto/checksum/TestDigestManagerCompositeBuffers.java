@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.bookkeeper.proto.checksum;
+
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
+import org.apache.bookkeeper.proto.DataFormats.LedgerMetadataFormat.DigestType;
+import org.apache.bookkeeper.util.ByteBufList;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+
+/**
+ * Test that the digests computed over heap, direct and composite buffers holding the same data are the same.
+ */
+@RunWith(Parameterized.class)
+public class TestDigestManagerCompositeBuffers {
+
+	private static final long LEDGER_ID = 1L;
+	private static final long ENTRY_ID = 2L;
+	private static final long LAC = 1L;
+	private static final int LENGTH = 1000;
+
+	private final DigestType type;
+	private final boolean useV2Protocol;
+	private DigestManager digestManager;
+	private byte[] payload;
+
+	@Parameterized.Parameters
+	public static Collection<Object[]> parameters() {
+		return Arrays.asList(new Object[][] {
+			{DigestType.CRC32, true},
+			{DigestType.CRC32, false},
+			{DigestType.CRC32C, true},
+			{DigestType.CRC32C, false},
+			{DigestType.HMAC, false},
+			{DigestType.DUMMY, false}
+		});
+	}
+
+	public TestDigestManagerCompositeBuffers(DigestType type, boolean useV2Protocol) {
+		this.type = type;
+		this.useV2Protocol = useV2Protocol;
+	}
+
+	@Before
+	public void setUp() throws GeneralSecurityException {
+		digestManager = DigestManager.instantiate(LEDGER_ID, "testPassword".getBytes(), type,
+				UnpooledByteBufAllocator.DEFAULT, useV2Protocol);
+		payload = new byte[LENGTH];
+		new Random(1).nextBytes(payload);
+	}
+
+	private ByteBuf heapBuffer() {
+		return Unpooled.wrappedBuffer(payload);
+	}
+
+	private ByteBuf directBuffer() {
+		ByteBuf buf = Unpooled.directBuffer(LENGTH);
+		buf.writeBytes(payload);
+		return buf;
+	}
+
+	// A composite of heap and direct components, with a component boundary in the middle of the data
+	private ByteBuf compositeBuffer() {
+		CompositeByteBuf buf = Unpooled.compositeBuffer();
+		ByteBuf direct = Unpooled.directBuffer(300);
+		direct.writeBytes(payload, 100, 300);
+		buf.addComponent(true, Unpooled.wrappedBuffer(payload, 0, 100));
+		buf.addComponent(true, direct);
+		buf.addComponent(true, Unpooled.wrappedBuffer(payload, 400, LENGTH - 400));
+		return buf;
+	}
+
+	private byte[] computeHeader(ByteBuf data) {
+		ByteBufList toSend = digestManager.computeDigestAndPackageForSending(ENTRY_ID, LAC, LENGTH, data);
+		ByteBuf header = toSend.getBuffer(0);
+		byte[] bytes = new byte[header.readableBytes()];
+		header.getBytes(header.readerIndex(), bytes);
+		toSend.release();
+		return bytes;
+	}
+
+	@Test
+	public void testSameDigestForAllBuffers() {
+		byte[] heap = computeHeader(heapBuffer());
+		Assert.assertArrayEquals(heap, computeHeader(directBuffer()));
+		Assert.assertArrayEquals(heap, computeHeader(compositeBuffer()));
+	}
+
+	@Test
+	public void testVerifyCompositeBuffer() throws Exception {
+		ByteBufList toSend = digestManager.computeDigestAndPackageForSending(ENTRY_ID, LAC, LENGTH, heapBuffer());
+		ByteBuf header = toSend.getBuffer(0).retain();
+		toSend.release();
+
+		// An entry received as a composite of the header and of the data split over several components
+		CompositeByteBuf received = Unpooled.compositeBuffer();
+		received.addComponent(true, header);
+		received.addComponent(true, compositeBuffer());
+		ByteBuf data = digestManager.verifyDigestAndReturnData(ENTRY_ID, received);
+		Assert.assertEquals(heapBuffer(), data);
+		received.release();
+	}
+
+	@Test
+	public void testDirectMemoryCRC32Digest() {
+		Assume.assumeTrue(DirectMemoryCRC32Digest.isSupported());
+		DirectMemoryCRC32Digest direct = new DirectMemoryCRC32Digest();
+		StandardCRC32Digest standard = new StandardCRC32Digest();
+
+		standard.update(heapBuffer());
+		long expected = standard.getValueAndReset();
+		for (ByteBuf buf : Arrays.asList(heapBuffer(), directBuffer(), compositeBuffer())) {
+			direct.update(buf);
+			Assert.assertEquals(expected, direct.getValueAndReset());
+			buf.release();
+		}
+	}
+}
@@ -25,6 +25,7 @@ import com.scurrilous.circe.IncrementalIntHash;
 import com.scurrilous.circe.crc.Sse42Crc32C;
 import com.scurrilous.circe.crc.StandardCrcProvider;
 import io.netty.buffer.ByteBuf;
+import java.nio.ByteBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -58,8 +59,11 @@ public class Crc32cIntChecksum {
         } else if (payload.hasArray()) {
             return CRC32C_HASH.calculate(payload.array(), payload.arrayOffset() + payload.readerIndex(),
                 payload.readableBytes());
-        } else {
+        } else if (payload.nioBufferCount() == 1) {
             return CRC32C_HASH.calculate(payload.nioBuffer());
+        } else {
+            // the checksum of no data is 0, so a non contiguous buffer can be resumed from it
+            return resume(0, payload.nioBuffers());
         }
     }
 
@@ -79,8 +83,20 @@ public class Crc32cIntChecksum {
             return CRC32C_HASH.resume(previousChecksum, payload.array(), payload.arrayOffset() + payload.readerIndex(),
                 payload.readableBytes());
         } else {
-            return CRC32C_HASH.resume(previousChecksum, payload.nioBuffer());
+            return resume(previousChecksum, payload.nioBuffers());
+        }
+    }
+
+    /**
+     * Resumes the checksum over each of the buffers backing a non contiguous payload, such as a composite buffer,
+     * instead of merging them into a single buffer first.
+     */
+    private static int resume(int previousChecksum, ByteBuffer[] buffers) {
+        int crc = previousChecksum;
+        for (ByteBuffer buffer : buffers) {
+            crc = CRC32C_HASH.resume(crc, buffer);
         }
+        return crc;
     }
 
 }
@@ -25,6 +25,7 @@ import com.scurrilous.circe.IncrementalIntHash;
 import com.scurrilous.circe.crc.Sse42Crc32C;
 import com.scurrilous.circe.crc.StandardCrcProvider;
 import io.netty.buffer.ByteBuf;
+import java.nio.ByteBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -61,8 +62,11 @@ public class Crc32cLongChecksum {
         } else if (payload.hasArray()) {
             crc = CRC32C_HASH.calculate(payload.array(), payload.arrayOffset() + payload.readerIndex(),
                 payload.readableBytes());
-        } else {
+        } else if (payload.nioBufferCount() == 1) {
             crc = CRC32C_HASH.calculate(payload.nioBuffer());
+        } else {
+            // the checksum of no data is 0, so a non contiguous buffer can be resumed from it
+            crc = resume(0, payload.nioBuffers());
         }
         return crc & 0xffffffffL;
     }
@@ -84,9 +88,21 @@ public class Crc32cLongChecksum {
             crc = CRC32C_HASH.resume(crc, payload.array(), payload.arrayOffset() + payload.readerIndex(),
                 payload.readableBytes());
         } else {
-            crc = CRC32C_HASH.resume(crc, payload.nioBuffer());
+            crc = resume(crc, payload.nioBuffers());
         }
         return crc & 0xffffffffL;
     }
 
+    /**
+     * Resumes the checksum over each of the buffers backing a non contiguous payload, such as a composite buffer,
+     * instead of merging them into a single buffer first.
+     */
+    private static int resume(int previousChecksum, ByteBuffer[] buffers) {
+        int crc = previousChecksum;
+        for (ByteBuffer buffer : buffers) {
+            crc = CRC32C_HASH.resume(crc, buffer);
+        }
+        return crc;
+    }
+
 }
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import java.io.File;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.util.DiskChecker;
+import org.apache.bookkeeper.util.IOUtils;
+import org.apache.bookkeeper.util.SnapshotMap;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Microbenchmarks of the index pages of the {@link LedgerCacheImpl}, used by the interleaved ledger storage.
+ *
+ * <p>Each operation looks up or updates the offset of a random entry of a random ledger. With a page limit lower than
+ * the number of ledgers, most operations miss the page cache and evict a clean page, while with a higher limit they
+ * all hit it after the warmup.
+ *
+ * <p>Run with {@code -prof gc} to see the allocation rate of the page cache.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+@Threads(4)
+@Fork(1)
+public class LedgerCacheBenchmark {
+
+    private static final int ENTRIES_PER_LEDGER = 100;
+
+    /**
+     * The ledger cache and its index directory.
+     */
+    @State(Scope.Benchmark)
+    public static class CacheState {
+
+        @Param({ "10000", "100000" })
+        private int ledgers;
+
+        @Param({ "1000", "200000" })
+        private int pageLimit;
+
+        private File indexDir;
+        private LedgerCacheImpl ledgerCache;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            indexDir = IOUtils.createTempDir("bkIndex", "bench");
+            ServerConfiguration conf = new ServerConfiguration();
+            conf.setLedgerDirNames(new String[] { indexDir.getPath() });
+            conf.setPageLimit(pageLimit);
+            LedgerDirsManager dirsManager = new LedgerDirsManager(conf, conf.getLedgerDirs(),
+                    new DiskChecker(conf.getDiskUsageThreshold(), conf.getDiskUsageWarnThreshold()));
+            Bookie.checkDirectoryStructure(dirsManager.getAllLedgerDirs().get(0));
+
+            ledgerCache = new LedgerCacheImpl(conf, new SnapshotMap<>(), dirsManager);
+            byte[] masterKey = new byte[0];
+            for (long ledgerId = 0; ledgerId < ledgers; ledgerId++) {
+                ledgerCache.setMasterKey(ledgerId, masterKey);
+                for (long entryId = 0; entryId < ENTRIES_PER_LEDGER; entryId++) {
+                    ledgerCache.putEntryOffset(ledgerId, entryId, offset(ledgerId, entryId));
+                }
+            }
+            ledgerCache.flushLedger(true);
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() throws Exception {
+            ledgerCache.close();
+            FileUtils.deleteDirectory(indexDir);
+        }
+    }
+
+    private static long offset(long ledgerId, long entryId) {
+        return (ledgerId << 20) | (entryId + 1);
+    }
+
+    @Benchmark
+    public long getEntryOffset(CacheState s) throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return s.ledgerCache.getEntryOffset(random.nextInt(s.ledgers), random.nextInt(ENTRIES_PER_LEDGER));
+    }
+
+    @Benchmark
+    public void putEntryOffset(CacheState s) throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long ledgerId = random.nextInt(s.ledgers);
+        long entryId = random.nextInt(ENTRIES_PER_LEDGER);
+        s.ledgerCache.putEntryOffset(ledgerId, entryId, offset(ledgerId, entryId));
+    }
+}
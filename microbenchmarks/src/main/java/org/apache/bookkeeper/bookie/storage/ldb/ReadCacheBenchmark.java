@@ -0,0 +1,126 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Microbenchmarks for read cache hits.
+ *
+ * <p>Compares the zero-copy path, where a hit returns a retained slice of the cache segment, with copying the
+ * entry into a freshly allocated direct buffer, which is what the read cache used to do on every hit.
+ *
+ * <p>Run with {@code -prof gc} to compare the allocation rate of the two paths.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 10, timeUnit = TimeUnit.SECONDS)
+@Threads(4)
+@Fork(value = 1, warmups = 1)
+public class ReadCacheBenchmark {
+
+    private static final long LEDGER_ID = 1L;
+
+    /**
+     * HitMode.
+     */
+    public enum HitMode {
+        SLICE,
+        COPY
+    }
+
+    /**
+     * CacheState.
+     */
+    @State(Scope.Benchmark)
+    public static class CacheState {
+
+        @Param
+        public HitMode hitMode;
+        @Param({"100", "1024", "16384", "65536"})
+        public int entrySize;
+        @Param({"10000"})
+        public int entriesCount;
+
+        private final ByteBufAllocator allocator = PooledByteBufAllocator.DEFAULT;
+        private ReadCache cache;
+
+        @Setup(Level.Trial)
+        public void doSetup() {
+            // Size the cache so that all the entries fit without rolling over the segments
+            long cacheSize = 4L * entriesCount * WriteCache.align64(entrySize);
+            cache = new ReadCache(allocator, cacheSize);
+
+            byte[] data = new byte[entrySize];
+            ThreadLocalRandom.current().nextBytes(data);
+            ByteBuf entry = Unpooled.wrappedBuffer(data);
+            for (long entryId = 0; entryId < entriesCount; entryId++) {
+                cache.put(LEDGER_ID, entryId, entry);
+            }
+            entry.release();
+        }
+
+        @TearDown(Level.Trial)
+        public void doTearDown() {
+            cache.close();
+        }
+    }
+
+    @Benchmark
+    public int readCacheHit(CacheState state) {
+        long entryId = ThreadLocalRandom.current().nextInt(state.entriesCount);
+        ByteBuf entry = state.cache.get(LEDGER_ID, entryId);
+
+        if (state.hitMode == HitMode.COPY) {
+            ByteBuf copy = state.allocator.directBuffer(entry.readableBytes(), entry.readableBytes());
+            copy.writeBytes(entry);
+            entry.release();
+            entry = copy;
+        }
+
+        int size = entry.readableBytes();
+        entry.release();
+        return size;
+    }
+}
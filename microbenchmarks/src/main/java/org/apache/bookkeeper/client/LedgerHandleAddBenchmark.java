@@ -0,0 +1,295 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.client;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.Lists;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.client.AsyncCallback.AddCallback;
+import org.apache.bookkeeper.client.api.DigestType;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.client.api.WriteFlag;
+import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.apache.bookkeeper.common.util.OrderedScheduler;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.meta.LedgerManager;
+import org.apache.bookkeeper.net.BookieSocketAddress;
+import org.apache.bookkeeper.proto.BookieClient;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.BatchReadEntriesCallback;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ForceLedgerCallback;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GetBookieInfoCallback;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntryCallback;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadLacCallback;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteLacCallback;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.util.AvailabilityOfEntriesOfLedger;
+import org.apache.bookkeeper.util.ByteBufList;
+import org.apache.bookkeeper.versioning.LongVersion;
+import org.apache.bookkeeper.versioning.Versioned;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Microbenchmark of concurrent adds to a single {@link LedgerHandle}.
+ *
+ * <p>The bookies acknowledge every write as soon as it is sent, so that the benchmark measures the
+ * write path of the handle itself rather than the network or the bookies. The addAndRead group
+ * reads the LAC and the length of the handle while it is being written to.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(16)
+@Fork(1)
+@Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+public class LedgerHandleAddBenchmark {
+
+    /**
+     * Acks every add right away, from the ordered executor of the ledger as the real client does.
+     */
+    static class AckingBookieClient implements BookieClient {
+        private final OrderedExecutor executor;
+
+        AckingBookieClient(OrderedExecutor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public List<BookieSocketAddress> getFaultyBookies() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isWritable(BookieSocketAddress address, long ledgerId) {
+            return true;
+        }
+
+        @Override
+        public long getNumPendingRequests(BookieSocketAddress address, long ledgerId) {
+            return 0;
+        }
+
+        @Override
+        public void forceLedger(BookieSocketAddress address, long ledgerId, ForceLedgerCallback cb, Object ctx) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void readLac(BookieSocketAddress address, long ledgerId, ReadLacCallback cb, Object ctx) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void writeLac(BookieSocketAddress address, long ledgerId, byte[] masterKey, long lac,
+                             ByteBufList toSend, WriteLacCallback cb, Object ctx) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void addEntry(BookieSocketAddress address, long ledgerId, byte[] masterKey, long entryId,
+                             ByteBufList toSend, WriteCallback cb, Object ctx, int options,
+                             boolean allowFastFail, EnumSet<WriteFlag> writeFlags) {
+            executor.executeOrdered(ledgerId,
+                    () -> cb.writeComplete(BKException.Code.OK, ledgerId, entryId, address, ctx));
+        }
+
+        @Override
+        public void readEntry(BookieSocketAddress address, long ledgerId, long entryId, ReadEntryCallback cb,
+                              Object ctx, int flags, byte[] masterKey, boolean allowFastFail) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void batchReadEntries(BookieSocketAddress address, long ledgerId, long startEntryId, int maxCount,
+                                     long maxSize, BatchReadEntriesCallback cb, Object ctx, int flags) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void readEntryWaitForLACUpdate(BookieSocketAddress address, long ledgerId, long entryId,
+                                              long previousLAC, long timeOutInMillis, boolean piggyBackEntry,
+                                              ReadEntryCallback cb, Object ctx) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void getBookieInfo(BookieSocketAddress address, long requested, GetBookieInfoCallback cb,
+                                  Object ctx) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<AvailabilityOfEntriesOfLedger> getListOfEntriesOfLedger(
+                BookieSocketAddress address, long ledgerId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isClosed() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class TestState {
+        @Param({ "100", "1024" })
+        private int entrySize;
+
+        // Bounds the adds in flight, so that the benchmark does not run out of memory
+        private final Semaphore outstanding = new Semaphore(10000);
+
+        private OrderedExecutor mainWorkerPool;
+        private OrderedScheduler scheduler;
+        private LedgerHandle lh;
+        private byte[] data;
+
+        private final AddCallback callback = (rc, lh, entryId, ctx) -> outstanding.release();
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            mainWorkerPool = OrderedExecutor.newBuilder().name("BenchmarkWorker").numThreads(1).build();
+            scheduler = OrderedScheduler.newSchedulerBuilder().name("BenchmarkScheduler").numThreads(1).build();
+            final BookieClient bookieClient = new AckingBookieClient(mainWorkerPool);
+            final ClientInternalConf conf = ClientInternalConf.fromConfig(new ClientConfiguration());
+            final BookKeeperClientStats clientStats = BookKeeperClientStats.newInstance(NullStatsLogger.INSTANCE);
+
+            ClientContext clientCtx = new ClientContext() {
+                @Override
+                public ClientInternalConf getConf() {
+                    return conf;
+                }
+
+                @Override
+                public LedgerManager getLedgerManager() {
+                    return null;
+                }
+
+                @Override
+                public BookieWatcher getBookieWatcher() {
+                    return null;
+                }
+
+                @Override
+                public EnsemblePlacementPolicy getPlacementPolicy() {
+                    return null;
+                }
+
+                @Override
+                public BookieClient getBookieClient() {
+                    return bookieClient;
+                }
+
+                @Override
+                public ByteBufAllocator getByteBufAllocator() {
+                    return PooledByteBufAllocator.DEFAULT;
+                }
+
+                @Override
+                public OrderedExecutor getMainWorkerPool() {
+                    return mainWorkerPool;
+                }
+
+                @Override
+                public OrderedScheduler getScheduler() {
+                    return scheduler;
+                }
+
+                @Override
+                public BookKeeperClientStats getClientStats() {
+                    return clientStats;
+                }
+
+                @Override
+                public ParallelDigestVerifier getDigestVerifier() {
+                    return null;
+                }
+
+                @Override
+                public boolean isClientClosed() {
+                    return false;
+                }
+            };
+
+            byte[] password = "benchmark".getBytes(UTF_8);
+            List<BookieSocketAddress> ensemble = Lists.newArrayList(
+                    new BookieSocketAddress("127.0.0.1", 3181),
+                    new BookieSocketAddress("127.0.0.2", 3181),
+                    new BookieSocketAddress("127.0.0.3", 3181));
+            LedgerMetadata metadata = LedgerMetadataBuilder.create()
+                    .withEnsembleSize(3).withWriteQuorumSize(3).withAckQuorumSize(2)
+                    .withPassword(password).withDigestType(DigestType.DUMMY)
+                    .newEnsembleEntry(0L, ensemble)
+                    .build();
+            lh = new LedgerHandle(clientCtx, 1L, new Versioned<>(metadata, new LongVersion(0L)),
+                                  BookKeeper.DigestType.DUMMY, password, WriteFlag.NONE);
+            data = new byte[entrySize];
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() throws Exception {
+            outstanding.acquire(10000);
+            mainWorkerPool.shutdown();
+            scheduler.shutdown();
+        }
+    }
+
+    @Benchmark
+    public void asyncAddEntry(TestState s) throws Exception {
+        s.outstanding.acquire();
+        s.lh.asyncAddEntry(s.data, s.callback, null);
+    }
+
+    @Benchmark
+    @Group("addAndRead")
+    @GroupThreads(12)
+    public void addWhileReading(TestState s) throws Exception {
+        s.outstanding.acquire();
+        s.lh.asyncAddEntry(s.data, s.callback, null);
+    }
+
+    @Benchmark
+    @Group("addAndRead")
+    @GroupThreads(4)
+    public long readWhileAdding(TestState s) {
+        return s.lh.getLastAddConfirmed() + s.lh.getLastAddPushed() + s.lh.getLength();
+    }
+}
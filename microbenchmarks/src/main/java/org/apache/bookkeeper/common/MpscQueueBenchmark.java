@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.common;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.bookkeeper.common.collections.BlockingMpscQueue;
+import org.apache.bookkeeper.common.collections.StripedMpscQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Microbenchmarks of the queues used by the journal, with many producers and a single consumer.
+ *
+ * <p>Each invocation has the producer threads put a fixed number of items in the queue, split between them, while the
+ * benchmark thread drains the queue in batches, as the journal does.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(1)
+@Fork(1)
+@Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+public class MpscQueueBenchmark {
+
+    private static final int ITEMS_PER_INVOCATION = 64 * 1024;
+    private static final int QUEUE_SIZE = 10_000;
+    private static final int MAX_DRAINED_ITEMS = 1024;
+    private static final Object ITEM = new Object();
+
+    @State(Scope.Benchmark)
+    public static class TestState {
+        @Param({ "ArrayBlockingQueue", "BlockingMpscQueue", "StripedMpscQueue" })
+        private String queueName;
+
+        @Param({ "1", "4", "16", "64" })
+        private int producers;
+
+        private BlockingQueue<Object> queue;
+        private ExecutorService executor;
+        private final List<Object> drained = new ArrayList<>(MAX_DRAINED_ITEMS);
+
+        @Setup(Level.Trial)
+        public void setup() {
+            switch (queueName) {
+            case "ArrayBlockingQueue":
+                queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+                break;
+            case "BlockingMpscQueue":
+                queue = new BlockingMpscQueue<>(QUEUE_SIZE);
+                break;
+            default:
+                queue = new StripedMpscQueue<>(QUEUE_SIZE, false);
+                break;
+            }
+            executor = Executors.newFixedThreadPool(producers, new DefaultThreadFactory("producer", true));
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() {
+            executor.shutdownNow();
+        }
+
+        int drain() throws InterruptedException {
+            if (queue instanceof StripedMpscQueue) {
+                return ((StripedMpscQueue<Object>) queue).take(item -> { }, MAX_DRAINED_ITEMS);
+            }
+
+            drained.clear();
+            drained.add(queue.take());
+            queue.drainTo(drained, MAX_DRAINED_ITEMS - 1);
+            return drained.size();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ITEMS_PER_INVOCATION)
+    public void enqueueAndDrain(TestState s) throws Exception {
+        int itemsPerProducer = ITEMS_PER_INVOCATION / s.producers;
+        for (int i = 0; i < s.producers; i++) {
+            s.executor.execute(() -> {
+                try {
+                    for (int j = 0; j < itemsPerProducer; j++) {
+                        s.queue.put(ITEM);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+
+        int remaining = itemsPerProducer * s.producers;
+        while (remaining > 0) {
+            remaining -= s.drain();
+        }
+    }
+}
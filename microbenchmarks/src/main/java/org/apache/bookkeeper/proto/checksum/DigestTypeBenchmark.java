@@ -64,7 +64,9 @@ public class DigestTypeBenchmark {
     public enum BufferType {
         ARRAY_BACKED,
         NOT_ARRAY_BACKED,
-        BYTE_BUF_DEFAULT_ALLOC
+        BYTE_BUF_DEFAULT_ALLOC,
+        DIRECT,
+        COMPOSITE_DIRECT
     }
 
     /**
@@ -92,7 +94,7 @@ public class DigestTypeBenchmark {
         public BufferType bufferType;
         @Param
         public Digest digest;
-        @Param({"1024", "4086", "8192", "16384", "65536"})
+        @Param({"100", "1024", "4086", "8192", "16384", "65536", "1048576"})
         public int entrySize;
 
         private DigestManager crc32;
@@ -102,6 +104,8 @@ public class DigestTypeBenchmark {
         private ByteBuf arrayBackedBuffer;
         private CompositeByteBuf notArrayBackedBuffer;
         private ByteBuf byteBufDefaultAlloc;
+        private ByteBuf directBuffer;
+        private CompositeByteBuf compositeDirectBuffer;
 
         public ByteBuf digestBuf;
 
@@ -123,19 +127,31 @@ public class DigestTypeBenchmark {
 
             final int headerSize = 32 + getDigestManager(digest).getMacCodeLength();
             notArrayBackedBuffer = new CompositeByteBuf(ByteBufAllocator.DEFAULT, true, 2);
-            notArrayBackedBuffer.addComponent(Unpooled.wrappedBuffer(randomBytes(headerSize)));
-            notArrayBackedBuffer.addComponent(Unpooled.wrappedBuffer((randomBytes(entrySize - headerSize))));
+            notArrayBackedBuffer.addComponent(true, Unpooled.wrappedBuffer(randomBytes(headerSize)));
+            notArrayBackedBuffer.addComponent(true, Unpooled.wrappedBuffer((randomBytes(entrySize - headerSize))));
 
             byteBufDefaultAlloc = ByteBufAllocator.DEFAULT.buffer(entrySize, entrySize);
             byteBufDefaultAlloc.writeBytes(randomBytes(entrySize));
 
-            if (!arrayBackedBuffer.hasArray() || notArrayBackedBuffer.hasArray()) {
+            directBuffer = Unpooled.directBuffer(entrySize, entrySize);
+            directBuffer.writeBytes(randomBytes(entrySize));
+
+            compositeDirectBuffer = new CompositeByteBuf(ByteBufAllocator.DEFAULT, true, 2);
+            compositeDirectBuffer.addComponent(true, Unpooled.directBuffer(headerSize)
+                    .writeBytes(randomBytes(headerSize)));
+            compositeDirectBuffer.addComponent(true, Unpooled.directBuffer(entrySize - headerSize)
+                    .writeBytes(randomBytes(entrySize - headerSize)));
+
+            if (!arrayBackedBuffer.hasArray() || notArrayBackedBuffer.hasArray()
+                    || directBuffer.hasArray() || compositeDirectBuffer.nioBufferCount() != 2) {
                 throw new IllegalStateException("buffers in invalid state");
             }
         }
 
         @TearDown(Level.Trial)
         public void doTearDown() {
+            directBuffer.release();
+            compositeDirectBuffer.release();
         }
 
         public ByteBuf getByteBuff(BufferType bType) {
@@ -146,6 +162,10 @@ public class DigestTypeBenchmark {
                 return notArrayBackedBuffer;
             case BYTE_BUF_DEFAULT_ALLOC:
                 return byteBufDefaultAlloc;
+            case DIRECT:
+                return directBuffer;
+            case COMPOSITE_DIRECT:
+                return compositeDirectBuffer;
             default:
                 throw new IllegalArgumentException("unknown buffer type " + bType);
             }